@@ -0,0 +1,90 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.benchmarks.util.BenchmarkCache;
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+
+/**
+ * Measures {@code Oplog} appends by updating entries of a persistent
+ * region. Every put appends a modify record to the current oplog, either
+ * directly or through the async writer when the region is not
+ * synchronous.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OplogAppendBenchmark {
+
+  private static final int ENTRIES = 10000;
+
+  @Param({"false", "true"})
+  public boolean synchronous;
+
+  @Param({"100", "1000"})
+  public int valueSize;
+
+  private Cache cache;
+
+  private File diskDir;
+
+  private Region<Integer, byte[]> region;
+
+  private byte[] value;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.cache = BenchmarkCache.create();
+    this.diskDir = BenchmarkCache.createTempDir("oplogbench");
+    this.cache.createDiskStoreFactory()
+        .setDiskDirs(new File[] { this.diskDir })
+        .setMaxOplogSize(64)
+        .create("benchmarkStore");
+    this.region = this.cache.<Integer, byte[]>createRegionFactory(RegionShortcut.LOCAL_PERSISTENT)
+        .setDiskStoreName("benchmarkStore")
+        .setDiskSynchronous(this.synchronous)
+        .create("benchmark");
+    this.value = new byte[this.valueSize];
+    ThreadLocalRandom.current().nextBytes(this.value);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    BenchmarkCache.close(this.cache);
+    BenchmarkCache.deleteDir(this.diskDir);
+  }
+
+  @Benchmark
+  public byte[] put() {
+    return this.region.put(ThreadLocalRandom.current().nextInt(ENTRIES), this.value);
+  }
+}
@@ -0,0 +1,85 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.benchmarks.util.BenchmarkCache;
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+
+/**
+ * Measures put and get on a local region ({@code LocalRegion}) and on a
+ * partitioned region hosted by a single member ({@code PartitionedRegion}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionOperationsBenchmark {
+
+  private static final int ENTRIES = 10000;
+
+  @Param({"LOCAL", "PARTITION"})
+  public String regionType;
+
+  private Cache cache;
+
+  private Region<Integer, String> region;
+
+  private String value;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    this.cache = BenchmarkCache.create();
+    this.region = this.cache.<Integer, String>createRegionFactory(RegionShortcut.valueOf(this.regionType))
+        .create("benchmark");
+    this.value = "value";
+    for (int i = 0; i < ENTRIES; i++) {
+      this.region.put(i, this.value + i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    BenchmarkCache.close(this.cache);
+  }
+
+  @Benchmark
+  public String get() {
+    return this.region.get(ThreadLocalRandom.current().nextInt(ENTRIES));
+  }
+
+  @Benchmark
+  public String put() {
+    return this.region.put(ThreadLocalRandom.current().nextInt(ENTRIES), this.value);
+  }
+
+  @Benchmark
+  public String getMiss() {
+    return this.region.get(ENTRIES + ThreadLocalRandom.current().nextInt(ENTRIES));
+  }
+}
@@ -0,0 +1,85 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.internal;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.internal.util.concurrent.CustomEntryConcurrentHashMap;
+
+/**
+ * Measures the {@link CustomEntryConcurrentHashMap} operations that back
+ * region entry maps, using several threads to include segment contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CustomEntryConcurrentHashMapBenchmark {
+
+  private static final int ENTRIES = 100000;
+
+  private CustomEntryConcurrentHashMap<Integer, Object> map;
+
+  private Integer[] keys;
+
+  private Object value;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    this.map = new CustomEntryConcurrentHashMap<Integer, Object>();
+    this.keys = new Integer[ENTRIES];
+    this.value = new Object();
+    for (int i = 0; i < ENTRIES; i++) {
+      this.keys[i] = Integer.valueOf(i);
+      this.map.put(this.keys[i], this.value);
+    }
+  }
+
+  private Integer randomKey() {
+    return this.keys[ThreadLocalRandom.current().nextInt(ENTRIES)];
+  }
+
+  @Benchmark
+  public Object get() {
+    return this.map.get(randomKey());
+  }
+
+  @Benchmark
+  public Object put() {
+    return this.map.put(randomKey(), this.value);
+  }
+
+  @Benchmark
+  public Object putIfAbsent() {
+    return this.map.putIfAbsent(randomKey(), this.value);
+  }
+
+  @Benchmark
+  public Object removeAndPut() {
+    Integer key = randomKey();
+    this.map.remove(key);
+    return this.map.put(key, this.value);
+  }
+}
@@ -0,0 +1,42 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.query;
+
+import java.io.Serializable;
+
+/**
+ * The value stored in the region that {@link QueryBenchmark} queries.
+ */
+public class Position implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int id;
+
+  private final String status;
+
+  private final double marketValue;
+
+  public Position(int id, String status, double marketValue) {
+    this.id = id;
+    this.status = status;
+    this.marketValue = marketValue;
+  }
+
+  public int getId() {
+    return this.id;
+  }
+
+  public String getStatus() {
+    return this.status;
+  }
+
+  public double getMarketValue() {
+    return this.marketValue;
+  }
+}
@@ -0,0 +1,100 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.query;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.benchmarks.util.BenchmarkCache;
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.query.Query;
+import com.gemstone.gemfire.cache.query.QueryService;
+
+/**
+ * Measures OQL equality and range queries on a local region, with and
+ * without a {@code CompactRangeIndex} on the queried field.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBenchmark {
+
+  private static final int ENTRIES = 10000;
+
+  private static final String[] STATUSES = { "active", "inactive" };
+
+  @Param({"false", "true"})
+  public boolean indexed;
+
+  private Cache cache;
+
+  private Query equalityQuery;
+
+  private Query rangeQuery;
+
+  private Query statusQuery;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    this.cache = BenchmarkCache.create();
+    Region<Integer, Position> region = this.cache.<Integer, Position>createRegionFactory(RegionShortcut.LOCAL)
+        .create("positions");
+    for (int i = 0; i < ENTRIES; i++) {
+      region.put(i, new Position(i, STATUSES[i % STATUSES.length], i * 10.0));
+    }
+    QueryService queryService = this.cache.getQueryService();
+    if (this.indexed) {
+      // a functional index on a single field of the values is a CompactRangeIndex
+      queryService.createIndex("idIndex", "p.id", "/positions p");
+      queryService.createIndex("statusIndex", "p.status", "/positions p");
+    }
+    this.equalityQuery = queryService.newQuery("select * from /positions p where p.id = $1");
+    this.rangeQuery = queryService.newQuery("select * from /positions p where p.id >= $1 and p.id < $2");
+    this.statusQuery = queryService.newQuery("select count(*) from /positions p where p.status = $1");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    BenchmarkCache.close(this.cache);
+  }
+
+  @Benchmark
+  public Object equality() throws Exception {
+    return this.equalityQuery.execute(new Object[] { ThreadLocalRandom.current().nextInt(ENTRIES) });
+  }
+
+  @Benchmark
+  public Object range() throws Exception {
+    int low = ThreadLocalRandom.current().nextInt(ENTRIES - 100);
+    return this.rangeQuery.execute(new Object[] { low, low + 100 });
+  }
+
+  @Benchmark
+  public Object countByStatus() throws Exception {
+    return this.statusQuery.execute(new Object[] { STATUSES[0] });
+  }
+}
@@ -0,0 +1,79 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.serialization;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.internal.util.BlobHelper;
+
+/**
+ * Measures serialization and deserialization of a {@code DataSerializable}
+ * object and of a map of them through {@code InternalDataSerializer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataSerializationBenchmark {
+
+  private Trade trade;
+
+  private byte[] tradeBytes;
+
+  private Map<String, Trade> trades;
+
+  private byte[] tradesBytes;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.trade = new Trade(1L, "GEODE", 100, 12.5, System.currentTimeMillis());
+    this.tradeBytes = BlobHelper.serializeToBlob(this.trade);
+    this.trades = new HashMap<String, Trade>();
+    for (int i = 0; i < 100; i++) {
+      this.trades.put("trade" + i, new Trade(i, "SYM" + i, i, i * 1.5, i));
+    }
+    this.tradesBytes = BlobHelper.serializeToBlob(this.trades);
+  }
+
+  @Benchmark
+  public byte[] serializeObject() throws IOException {
+    return BlobHelper.serializeToBlob(this.trade);
+  }
+
+  @Benchmark
+  public Object deserializeObject() throws IOException, ClassNotFoundException {
+    return BlobHelper.deserializeBlob(this.tradeBytes);
+  }
+
+  @Benchmark
+  public byte[] serializeMap() throws IOException {
+    return BlobHelper.serializeToBlob(this.trades);
+  }
+
+  @Benchmark
+  public Object deserializeMap() throws IOException, ClassNotFoundException {
+    return BlobHelper.deserializeBlob(this.tradesBytes);
+  }
+}
@@ -0,0 +1,85 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.serialization;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gemstone.gemfire.benchmarks.util.BenchmarkCache;
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.internal.util.BlobHelper;
+import com.gemstone.gemfire.pdx.PdxInstance;
+
+/**
+ * Measures PDX serialization, deserialization to the domain class, and
+ * reading a single field from a {@link PdxInstance}. PDX needs a cache to
+ * hold the type registry, so one is created for the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PdxSerializationBenchmark {
+
+  private Cache cache;
+
+  private PdxTrade trade;
+
+  private byte[] tradeBytes;
+
+  private PdxInstance instance;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, ClassNotFoundException {
+    this.cache = BenchmarkCache.create();
+    this.trade = new PdxTrade(1L, "GEODE", 100, 12.5, System.currentTimeMillis());
+    this.tradeBytes = BlobHelper.serializeToBlob(this.trade);
+    this.instance = this.cache.createPdxInstanceFactory(PdxTrade.class.getName())
+        .writeLong("id", 1L)
+        .writeString("symbol", "GEODE")
+        .writeInt("quantity", 100)
+        .writeDouble("price", 12.5)
+        .writeLong("timestamp", System.currentTimeMillis())
+        .create();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    BenchmarkCache.close(this.cache);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws IOException {
+    return BlobHelper.serializeToBlob(this.trade);
+  }
+
+  @Benchmark
+  public Object deserialize() throws IOException, ClassNotFoundException {
+    return BlobHelper.deserializeBlob(this.tradeBytes);
+  }
+
+  @Benchmark
+  public Object readField() {
+    return this.instance.getField("symbol");
+  }
+}
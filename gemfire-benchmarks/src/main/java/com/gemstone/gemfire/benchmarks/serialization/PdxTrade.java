@@ -0,0 +1,63 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.serialization;
+
+import com.gemstone.gemfire.pdx.PdxReader;
+import com.gemstone.gemfire.pdx.PdxSerializable;
+import com.gemstone.gemfire.pdx.PdxWriter;
+
+/**
+ * The PDX version of {@link Trade}.
+ */
+public class PdxTrade implements PdxSerializable {
+
+  private long id;
+
+  private String symbol;
+
+  private int quantity;
+
+  private double price;
+
+  private long timestamp;
+
+  public PdxTrade() {
+  }
+
+  public PdxTrade(long id, String symbol, int quantity, double price, long timestamp) {
+    this.id = id;
+    this.symbol = symbol;
+    this.quantity = quantity;
+    this.price = price;
+    this.timestamp = timestamp;
+  }
+
+  public long getId() {
+    return this.id;
+  }
+
+  public String getSymbol() {
+    return this.symbol;
+  }
+
+  public void toData(PdxWriter writer) {
+    writer.writeLong("id", this.id);
+    writer.writeString("symbol", this.symbol);
+    writer.writeInt("quantity", this.quantity);
+    writer.writeDouble("price", this.price);
+    writer.writeLong("timestamp", this.timestamp);
+  }
+
+  public void fromData(PdxReader reader) {
+    this.id = reader.readLong("id");
+    this.symbol = reader.readString("symbol");
+    this.quantity = reader.readInt("quantity");
+    this.price = reader.readDouble("price");
+    this.timestamp = reader.readLong("timestamp");
+  }
+}
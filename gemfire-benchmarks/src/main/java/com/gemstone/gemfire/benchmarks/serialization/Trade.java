@@ -0,0 +1,68 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.serialization;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.gemstone.gemfire.DataSerializable;
+import com.gemstone.gemfire.DataSerializer;
+
+/**
+ * A small value object serialized with {@link DataSerializable}.
+ */
+public class Trade implements DataSerializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private long id;
+
+  private String symbol;
+
+  private int quantity;
+
+  private double price;
+
+  private long timestamp;
+
+  public Trade() {
+  }
+
+  public Trade(long id, String symbol, int quantity, double price, long timestamp) {
+    this.id = id;
+    this.symbol = symbol;
+    this.quantity = quantity;
+    this.price = price;
+    this.timestamp = timestamp;
+  }
+
+  public long getId() {
+    return this.id;
+  }
+
+  public String getSymbol() {
+    return this.symbol;
+  }
+
+  public void toData(DataOutput out) throws IOException {
+    out.writeLong(this.id);
+    DataSerializer.writeString(this.symbol, out);
+    out.writeInt(this.quantity);
+    out.writeDouble(this.price);
+    out.writeLong(this.timestamp);
+  }
+
+  public void fromData(DataInput in) throws IOException, ClassNotFoundException {
+    this.id = in.readLong();
+    this.symbol = DataSerializer.readString(in);
+    this.quantity = in.readInt();
+    this.price = in.readDouble();
+    this.timestamp = in.readLong();
+  }
+}
@@ -0,0 +1,78 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.benchmarks.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.FileUtil;
+
+/**
+ * Creates the stand-alone cache that the benchmarks run against. The
+ * cache does not join a distributed system, so the benchmarks measure
+ * the local code paths only.
+ */
+public final class BenchmarkCache {
+
+  private BenchmarkCache() {
+    // no instances allowed
+  }
+
+  /**
+   * Creates a cache that logs only warnings and does not write statistics.
+   */
+  public static Cache create() {
+    return create(false);
+  }
+
+  /**
+   * Creates a cache that logs only warnings and does not write statistics.
+   * @param pdxReadSerialized whether PDX objects are read as PdxInstances
+   */
+  public static Cache create(boolean pdxReadSerialized) {
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    props.setProperty(DistributionConfig.LOG_LEVEL_NAME, "warning");
+    props.setProperty(DistributionConfig.STATISTIC_SAMPLING_ENABLED_NAME, "false");
+    return new CacheFactory(props).setPdxReadSerialized(pdxReadSerialized).create();
+  }
+
+  /**
+   * Closes the given cache if it is still open.
+   */
+  public static void close(Cache cache) {
+    if (cache != null && !cache.isClosed()) {
+      cache.close();
+    }
+  }
+
+  /**
+   * Creates an empty temporary directory, for example for disk stores.
+   */
+  public static File createTempDir(String prefix) throws IOException {
+    File dir = File.createTempFile(prefix, "");
+    if (!dir.delete() || !dir.mkdirs()) {
+      throw new IOException("Could not create directory " + dir);
+    }
+    return dir;
+  }
+
+  /**
+   * Deletes the given directory and everything in it.
+   */
+  public static void deleteDir(File dir) throws IOException {
+    if (dir != null && dir.exists()) {
+      FileUtil.delete(dir);
+    }
+  }
+}
@@ -477,6 +477,7 @@ public class AttributesFactory<K,V> {
     }
     
     this.regionAttributes.compressor = regionAttributes.getCompressor();
+    this.regionAttributes.offHeap = regionAttributes.getOffHeap();
   }
 
   // CALLBACKS
@@ -1286,6 +1287,21 @@ public class AttributesFactory<K,V> {
     }
   }
 
+  /**
+   * Enables this region's usage of off-heap memory for storing entry values.
+   * The member must be configured with an
+   * {@link com.gemstone.gemfire.distributed.DistributedSystem#getProperties() off-heap-memory-size}
+   * for a region that uses off-heap memory to be created.
+   * An off-heap region can not use {@link EvictionAlgorithm#LRU_HEAP heap LRU} eviction
+   * since its values do not take up heap memory.
+   * @since 8.2
+   * @param offHeap true to store entry values off-heap; false to store them on the heap.
+   */
+  public void setOffHeap(boolean offHeap) {
+    this.regionAttributes.offHeap = offHeap;
+    this.regionAttributes.setHasOffHeap(true);
+  }
+
   // FACTORY METHOD
 
   /** Creates a <code>RegionAttributes</code> with the current settings.
@@ -1561,6 +1577,11 @@ public class AttributesFactory<K,V> {
     if (null != attrs.getCompressor() && !attrs.getCloningEnabled()) {
       throw new IllegalStateException("Cloning cannot be disabled when a compressor is set.");
     }
+
+    if (attrs.getOffHeap() && attrs.getEvictionAttributes() != null
+        && attrs.getEvictionAttributes().getAlgorithm().isLRUHeap()) {
+      throw new IllegalStateException("Heap LRU eviction can not be used by a region that stores its values off-heap.");
+    }
   }
 
 
@@ -1616,6 +1637,7 @@ public class AttributesFactory<K,V> {
     protected boolean isBucketRegion = false;
     private boolean isCloningEnabled = false;
     Compressor compressor = null;
+    boolean offHeap = false;
     
     /** Constructs an instance of <code>RegionAttributes</code> with default settings.
      * @see AttributesFactory
@@ -1671,6 +1693,7 @@ public class AttributesFactory<K,V> {
       buf.append("; GatewaySenderIds=").append(gatewaySenderIds);
       buf.append("; AsyncEventQueueIds=").append(asyncEventQueueIds);
       buf.append("; compressor=").append(compressor == null ? null : compressor.getClass().getName());
+      buf.append("; offHeap=").append(offHeap);
       return buf.toString();
     }
     public CacheLoader<K,V> getCacheLoader() {
@@ -1995,5 +2018,9 @@ public class AttributesFactory<K,V> {
     public Compressor getCompressor() {
       return this.compressor;
     }
+
+    public boolean getOffHeap() {
+      return this.offHeap;
+    }
   }
 }
@@ -190,6 +190,15 @@ public interface DiskStore {
    * @since 8.0
    */
   public float getDiskUsageCriticalPercentage();
+
+  /**
+   * Returns the number of threads used to read key files when this disk store
+   * is recovered.
+   *
+   * @return the recovery thread count
+   * @since 8.2
+   */
+  public int getRecoveryThreadCount();
   
   /**
    * Sets the value of the disk usage warning percentage.
@@ -101,6 +101,13 @@ public interface DiskStoreFactory
    * <p>Current value: <code>99</code>.
    */
   public static final float DEFAULT_DISK_USAGE_CRITICAL_PERCENTAGE = 99;
+
+  /**
+   * The default number of threads used to read key files during recovery.
+   * <p>Current value: <code>1</code>.
+   * @since 8.2
+   */
+  public static final int DEFAULT_RECOVERY_THREAD_COUNT = 1;
   
   /** 
    * Set to <code>true</code> to cause the disk files to be automatically compacted.
@@ -221,6 +228,19 @@ public interface DiskStoreFactory
    */
   public DiskStoreFactory setDiskUsageCriticalPercentage(float criticalPercent);
 
+  /**
+   * Sets the number of threads used to read the key files of the disk store's
+   * oplogs when it is recovered. With more than one thread the key files of
+   * several oplogs are read concurrently while the recovered entries are
+   * still applied one oplog at a time, newest first.
+   *
+   * @param recoveryThreadCount the number of recovery threads; must be at least 1
+   * @return a reference to <code>this</code>
+   * @throws IllegalArgumentException if <code>recoveryThreadCount</code> is less than 1
+   * @since 8.2
+   */
+  public DiskStoreFactory setRecoveryThreadCount(int recoveryThreadCount);
+
   /**
    * Create a new disk store or find an existing one. In either case the returned disk store's
    * configuration will be the same as this factory's configuration.
@@ -0,0 +1,36 @@
+/*=========================================================================
+ * Copyright (c) 2002-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * more patents listed at http://www.pivotal.io/patents.
+ *========================================================================
+ */
+
+package com.gemstone.gemfire.cache;
+
+/**
+ * Indicates that a value could not be stored in a region configured with
+ * {@link RegionAttributes#getOffHeap() off-heap} storage because the
+ * off-heap memory reserved by this member is exhausted.
+ *
+ * @see AttributesFactory#setOffHeap(boolean)
+ * @since 8.2
+ */
+public class OutOfOffHeapMemoryException extends ResourceException {
+
+  private static final long serialVersionUID = -4577912476357385451L;
+
+  /**
+   * Creates a new instance of <code>OutOfOffHeapMemoryException</code>.
+   */
+  public OutOfOffHeapMemoryException() {
+  }
+
+  /**
+   * Constructs an instance of <code>OutOfOffHeapMemoryException</code> with the specified detail message.
+   * @param msg the detail message
+   */
+  public OutOfOffHeapMemoryException(String msg) {
+    super(msg);
+  }
+}
@@ -444,6 +444,13 @@ public interface RegionAttributes<K,V> {
    * @return null if the region does not have compression enabled.
    */
   public Compressor getCompressor();
+
+  /**
+   * Returns whether or not this region uses off-heap memory to store its entry values.
+   * @since 8.2
+   * @return true if this region stores its entry values off-heap.
+   */
+  public boolean getOffHeap();
 }
 
 
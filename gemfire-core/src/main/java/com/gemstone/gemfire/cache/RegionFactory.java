@@ -890,4 +890,16 @@ public class RegionFactory<K,V>
     this.attrsFactory.setCompressor(compressor);
     return this;
   }
+
+  /**
+   * Enables this region's usage of off-heap memory for storing entry values.
+   * @param offHeap true to store entry values off-heap
+   * @return a reference to this RegionFactory instance
+   * @see AttributesFactory#setOffHeap(boolean)
+   * @since 8.2
+   */
+  public RegionFactory<K,V> setOffHeap(boolean offHeap) {
+    this.attrsFactory.setOffHeap(offHeap);
+    return this;
+  }
 }
@@ -10,6 +10,7 @@ package com.gemstone.gemfire.cache.client.internal;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 
 import org.apache.logging.log4j.Logger;
 
@@ -72,6 +73,17 @@ public abstract class AbstractOp implements Op {
    * @throws Exception if the send fails
    */
   protected void attemptSend(Connection cnx) throws Exception {
+    attemptSend(cnx, cnx.getCommBuffer());
+  }
+
+  /**
+   * Attempts to send this operation's message out on the
+   * given connection using the given buffer
+   * @param cnx the connection to use when sending
+   * @param commBuffer the buffer to serialize the message into
+   * @throws Exception if the send fails
+   */
+  void attemptSend(Connection cnx, ByteBuffer commBuffer) throws Exception {
     setMsgTransactionId();
     if (logger.isTraceEnabled(LogMarker.DISTRIBUTION_BRIDGE_SERVER)) {
       if (logger.isDebugEnabled()) {
@@ -79,7 +91,7 @@ public abstract class AbstractOp implements Op {
       }
     }
     getMessage().setComms(cnx.getSocket(), cnx.getInputStream(),
-        cnx.getOutputStream(), cnx.getCommBuffer(), cnx.getStats());
+        cnx.getOutputStream(), commBuffer, cnx.getStats());
     try {
       sendMessage(cnx);
     } finally {
@@ -380,6 +392,65 @@ public abstract class AbstractOp implements Op {
       endAttempt(cnx.getStats(), start);
     }
   }
+
+  /**
+   * Sends this operation's message without waiting for the response.
+   * Used to pipeline several operations on one connection; the response
+   * must later be read with {@link #attemptPipelinedRead}.
+   * @param cnx the connection to use when sending
+   * @param commBuffer the buffer to serialize the message into; it must
+   *        not be the connection's buffer, which is used to read responses
+   * @return the start time of this attempt
+   * @throws Exception if the send fails
+   * @see PipelinedOpExecutor
+   */
+  long attemptPipelinedSend(Connection cnx, ByteBuffer commBuffer) throws Exception {
+    this.failed = true;
+    this.timedOut = false;
+    long start = startAttempt(cnx.getStats());
+    try {
+      attemptSend(cnx, commBuffer);
+      this.failed = false;
+    } finally {
+      endSendAttempt(cnx.getStats(), start);
+      if (this.failed) {
+        endAttempt(cnx.getStats(), start);
+      }
+    }
+    return start;
+  }
+
+  /**
+   * Ends an attempt whose message was sent by {@link #attemptPipelinedSend}
+   * but whose response will never be read because the connection failed.
+   */
+  void abandonPipelinedAttempt(Connection cnx, long start) {
+    this.failed = true;
+    endAttempt(cnx.getStats(), start);
+  }
+
+  /**
+   * Reads the response to a message sent by {@link #attemptPipelinedSend}.
+   * @param cnx the connection the message was sent on
+   * @param start the value returned by {@link #attemptPipelinedSend}
+   * @return the result of the operation
+   * @throws Exception if the read failed
+   */
+  Object attemptPipelinedRead(Connection cnx, long start) throws Exception {
+    this.failed = true;
+    try {
+      Object result = attemptReadResponse(cnx);
+      this.failed = false;
+      return result;
+    } catch (SocketTimeoutException ste) {
+      this.failed = false;
+      this.timedOut = true;
+      throw ste;
+    } finally {
+      endAttempt(cnx.getStats(), start);
+    }
+  }
+
   protected final boolean hasFailed() {
     return this.failed;
   }
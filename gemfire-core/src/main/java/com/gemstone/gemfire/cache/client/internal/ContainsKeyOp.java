@@ -7,6 +7,8 @@
  */
 package com.gemstone.gemfire.cache.client.internal;
 
+import java.util.concurrent.Future;
+
 import com.gemstone.gemfire.internal.cache.tier.MessageType;
 import com.gemstone.gemfire.internal.cache.tier.sockets.Message;
 
@@ -33,6 +35,25 @@ public class ContainsKeyOp {
     Boolean result = (Boolean)pool.execute(op);
     return result.booleanValue();
   }
+
+  /**
+   * Does a region entry containsKey on a server without waiting for the
+   * result. The op is pipelined with other asynchronous ops by the given pool.
+   * @param pool the pool to use to communicate with the server.
+   * @param region the name of the region to do the entry containsKey on
+   * @param key the entry key to do the containsKey on
+   * @return a future for the Boolean result of containsKey on the server
+   * @see PipelinedOpExecutor
+   * @since 8.2
+   */
+  public static Future<Object> executeAsync(ExecutablePool pool,
+                                            String region,
+                                            Object key,
+                                            MODE mode)
+  {
+    AbstractOp op = new ContainsKeyOpImpl(region, key, mode);
+    return ((PoolImpl)pool).executeAsync(op);
+  }
                                                                
   private ContainsKeyOp() {
     // no instances allowed
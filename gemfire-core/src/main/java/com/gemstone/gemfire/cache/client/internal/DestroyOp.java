@@ -7,6 +7,8 @@
  */
 package com.gemstone.gemfire.cache.client.internal;
 
+import java.util.concurrent.Future;
+
 import org.apache.logging.log4j.Logger;
 
 import com.gemstone.gemfire.cache.CacheClosedException;
@@ -120,6 +122,26 @@ public class DestroyOp {
     pool.executeOn(con, op);
   }
 
+  /**
+   * Does a region entry destroy on a server without waiting for it to
+   * complete. The destroy is pipelined with other asynchronous ops by the
+   * given pool.
+   * @param pool the pool to use to communicate with the server.
+   * @param region the region to do the entry destroy on
+   * @param key the entry key to do the destroy on
+   * @param event the event for this destroy operation
+   * @param callbackArg an optional callback arg to pass to any cache callbacks
+   * @return a future that completes when the server has done the destroy
+   * @see PipelinedOpExecutor
+   * @since 8.2
+   */
+  public static Future<Object> executeAsync(ExecutablePool pool,
+      LocalRegion region, Object key, EntryEventImpl event, Object callbackArg) {
+    AbstractOp op = new DestroyOpImpl(region, key, null, Operation.DESTROY,
+        event, callbackArg, false);
+    return ((PoolImpl)pool).executeAsync(op);
+  }
+
   /** this is set if a response is received indicating that the entry was not found on the server */
   public static boolean TEST_HOOK_ENTRY_NOT_FOUND;
                                                                
@@ -7,6 +7,8 @@
  */
 package com.gemstone.gemfire.cache.client.internal;
 
+import java.util.concurrent.Future;
+
 import org.apache.logging.log4j.Logger;
 
 import com.gemstone.gemfire.cache.CacheClosedException;
@@ -94,6 +96,28 @@ public class GetOp {
     return pool.execute(op);
   }
 
+  /**
+   * Does a region get on a server without waiting for the result. The get
+   * is pipelined with other asynchronous ops by the given pool.
+   * @param pool the pool to use to communicate with the server.
+   * @param region the region to do the get on
+   * @param key the entry key to do the get on
+   * @param callbackArg an optional callback arg to pass to any cache callbacks
+   * @return a future for the entry value found by the get, or null
+   * @see PipelinedOpExecutor
+   * @since 8.2
+   */
+  public static Future<Object> executeAsync(ExecutablePool pool,
+      LocalRegion region, Object key, Object callbackArg) {
+    AbstractOp op = new GetOpImpl(region, key, callbackArg, false, null) {
+      @Override
+      protected Object processResponse(Message msg, Connection con) throws Exception {
+        Object result = super.processResponse(msg, con);
+        return Token.isInvalidOrRemoved(result) ? null : result;
+      }
+    };
+    return ((PoolImpl)pool).executeAsync(op);
+  }
                                                                
   private GetOp() {
     // no instances allowed
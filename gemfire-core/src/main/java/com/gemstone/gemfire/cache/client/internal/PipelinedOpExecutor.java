@@ -0,0 +1,502 @@
+/*=========================================================================
+ * Copyright (c) 2002-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.CancelCriterion;
+import com.gemstone.gemfire.CancelException;
+import com.gemstone.gemfire.GemFireException;
+import com.gemstone.gemfire.cache.client.ServerConnectivityException;
+import com.gemstone.gemfire.cache.client.ServerOperationException;
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionDestroyedException;
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionManager;
+import com.gemstone.gemfire.internal.cache.EventID;
+import com.gemstone.gemfire.internal.cache.tier.sockets.ServerConnection;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * Executes ops asynchronously by pipelining them over a small number of
+ * connections borrowed from the pool, instead of holding one pooled
+ * connection per outstanding op.
+ * <p>
+ * Several ops are written to a connection without waiting for their
+ * responses. A server handles the messages it reads from one connection
+ * in order, so the responses come back in the order the ops were sent.
+ * A reader, run by a daemon thread of this executor, reads them and
+ * completes the futures of the waiting ops. Only ops with a single
+ * response message may be pipelined. If a connection fails, every op still
+ * waiting on it fails with a {@link ServerConnectivityException} and the
+ * next op gets a new connection. Failed ops are not retried.
+ * <p>
+ * A connection is only held while ops are pipelined on it. Once no response
+ * has been waited for during {@link #PIPELINE_IDLE_MILLIS} it is returned
+ * to the pool, and once it is older than the pool's load conditioning
+ * interval no more ops are sent on it and it is returned after its last
+ * response. So the pool can expire and rebalance pipelined connections like
+ * any other.
+ * <p>
+ * The ops of one thread are always sent on the same pipeline, and a
+ * pipeline only borrows a new connection once the responses on its
+ * previous one have been read, so they are applied in the order they were
+ * submitted. Events of asynchronous ops should use
+ * {@link EventID#createForAsyncOp} ids, which are sequenced separately from
+ * the thread's synchronous ops.
+ * <p>
+ * Ops that need a particular server, such as single hop ops or ops in a
+ * transaction, should use the regular {@link ExecutablePool} methods.
+ *
+ * @since 8.2
+ */
+public class PipelinedOpExecutor {
+
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The number of connections that asynchronous ops are pipelined over
+   */
+  public static final int PIPELINED_CONNECTIONS = Integer.getInteger("gemfire.PoolImpl.PIPELINED_CONNECTIONS", 2).intValue();
+
+  /**
+   * The maximum number of ops waiting for a response on one connection.
+   * Threads submitting more ops block until responses arrive.
+   */
+  public static final int MAX_PIPELINE_DEPTH = Integer.getInteger("gemfire.PoolImpl.MAX_PIPELINE_DEPTH", 256).intValue();
+
+  /**
+   * The milliseconds a pipelined connection stays borrowed once no op is
+   * waiting for a response on it
+   */
+  public static final long PIPELINE_IDLE_MILLIS = Long.getLong("gemfire.PoolImpl.PIPELINE_IDLE_MILLIS", 100).longValue();
+
+  private final String poolName;
+
+  private final CancelCriterion cancelCriterion;
+
+  private final ConnectionManager manager;
+
+  private final int freeConnectionTimeout;
+
+  /** the age in nanos at which a connection is retired, or 0 for never */
+  private final long lifetimeNanos;
+
+  private final int maxDepth;
+
+  private final Pipeline[] pipelines;
+
+  private final ExecutorService readers;
+
+  private volatile boolean closed;
+
+  public PipelinedOpExecutor(PoolImpl pool, ConnectionManager manager) {
+    this(pool.getName(), pool.getCancelCriterion(), manager,
+        pool.getFreeConnectionTimeout(), pool.getLoadConditioningInterval(),
+        PIPELINED_CONNECTIONS, MAX_PIPELINE_DEPTH);
+  }
+
+  /**
+   * @param lifetime the milliseconds after which no more ops are sent on a
+   *        connection, or -1 to use it until it fails or idles
+   * @param connections the number of connections ops are pipelined over
+   * @param maxDepth the maximum number of ops waiting on one connection
+   */
+  PipelinedOpExecutor(String poolName, CancelCriterion cancelCriterion,
+      ConnectionManager manager, int freeConnectionTimeout, int lifetime,
+      int connections, int maxDepth) {
+    this.poolName = poolName;
+    this.cancelCriterion = cancelCriterion;
+    this.manager = manager;
+    this.freeConnectionTimeout = freeConnectionTimeout;
+    this.lifetimeNanos = lifetime > 0 ? TimeUnit.MILLISECONDS.toNanos(lifetime) : 0;
+    this.maxDepth = maxDepth;
+    this.pipelines = new Pipeline[Math.max(1, connections)];
+    for (int i = 0; i < this.pipelines.length; i++) {
+      this.pipelines[i] = new Pipeline();
+    }
+    final String readerName = "PipelinedOpReader-" + poolName + "-";
+    this.readers = Executors.newCachedThreadPool(new ThreadFactory() {
+      AtomicInteger threadNum = new AtomicInteger();
+      public Thread newThread(final Runnable r) {
+        Thread result = new Thread(r, readerName + threadNum.incrementAndGet());
+        result.setDaemon(true);
+        return result;
+      }
+    });
+  }
+
+  /**
+   * Sends the given op to a server and returns a future for its result.
+   * The calling thread only blocks if the pipeline is full.
+   * @throws ServerConnectivityException if no connection is available
+   *         or the op could not be sent
+   */
+  public Future<Object> submit(AbstractOp op) {
+    this.cancelCriterion.checkCancelInProgress(null);
+    // a thread always uses the same pipeline so that its ops reach the
+    // server in order; the server discards events with an older sequence id
+    int idx = (int)(Thread.currentThread().getId() % this.pipelines.length);
+    return this.pipelines[idx].submit(op);
+  }
+
+  /**
+   * Fails all outstanding ops and releases the pipelined connections.
+   */
+  public void close() {
+    this.closed = true;
+    for (Pipeline p : this.pipelines) {
+      p.close();
+    }
+    this.readers.shutdown();
+  }
+
+  private ServerConnectivityException closedException() {
+    return new ServerConnectivityException("Pool " + this.poolName + " is closed");
+  }
+
+  /**
+   * The future returned for a pipelined op.
+   */
+  static class OpFuture extends FutureTask<Object> {
+    private static final Callable<Object> NOOP = new Callable<Object>() {
+      public Object call() {
+        return null;
+      }
+    };
+
+    OpFuture() {
+      super(NOOP);
+    }
+
+    void complete(Object result) {
+      set(result);
+    }
+
+    void fail(Throwable t) {
+      setException(t);
+    }
+  }
+
+  private static class PendingOp {
+    /** queued to stop the reader of a failed channel */
+    static final PendingOp CLOSED = new PendingOp(null);
+
+    final AbstractOp op;
+    final OpFuture future = new OpFuture();
+    long start;
+
+    PendingOp(AbstractOp op) {
+      this.op = op;
+    }
+  }
+
+  /**
+   * Hands out the current {@link Channel}, opening a new one when the
+   * previous one was retired.
+   */
+  private class Pipeline {
+    private final Semaphore depth = new Semaphore(maxDepth);
+
+    /** the channel ops are sent on. Only changed while holding this. */
+    private volatile Channel channel;
+
+    Future<Object> submit(AbstractOp op) {
+      PendingOp p = new PendingOp(op);
+      try {
+        this.depth.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancelCriterion.checkCancelInProgress(e);
+        throw new ServerConnectivityException("Interrupted while waiting to pipeline " + op, e);
+      }
+      boolean sent = false;
+      try {
+        for (;;) {
+          Channel ch = getChannel();
+          Exception failure = null;
+          synchronized (ch) {
+            if (ch.retired) {
+              continue;
+            }
+            try {
+              p.start = op.attemptPipelinedSend(ch.cnx, ch.sendBuffer);
+              // queued in send order, which is the order of the responses
+              ch.pending.add(p);
+              sent = true;
+            } catch (Exception e) {
+              failure = e;
+            }
+          }
+          if (failure != null) {
+            ch.fail(failure);
+            throw failure instanceof GemFireException && !(failure instanceof CancelException)
+                ? (GemFireException)failure
+                : new ServerConnectivityException("Could not send " + op + " to " + ch.cnx.getServer(), failure);
+          }
+          return p.future;
+        }
+      } finally {
+        if (!sent) {
+          this.depth.release();
+        }
+      }
+    }
+
+    private synchronized Channel getChannel() {
+      Channel ch = this.channel;
+      if (ch != null && !ch.retired && ch.hasExpired()) {
+        ch.retire();
+      }
+      if (ch == null || ch.retired) {
+        if (ch != null) {
+          // the responses on the old connection are read first so that
+          // the server does not apply a thread's ops out of order
+          ch.awaitFinished();
+        }
+        if (closed) {
+          throw closedException();
+        }
+        ch = new Channel(this, manager.borrowConnection(freeConnectionTimeout));
+        this.channel = ch;
+        try {
+          readers.execute(ch);
+        } catch (RejectedExecutionException e) {
+          ch.fail(closedException());
+          throw closedException();
+        }
+        if (closed) {
+          // close did not see this channel
+          ch.fail(closedException());
+        }
+      }
+      return ch;
+    }
+
+    void close() {
+      Channel ch = this.channel;
+      if (ch != null) {
+        ch.fail(closedException());
+      }
+    }
+  }
+
+  /**
+   * One pipelined connection and the ops waiting for a response on it,
+   * in the order they were sent. Its reader exits once the connection
+   * fails or has been returned to the pool.
+   */
+  private class Channel implements Runnable {
+    final Pipeline pipeline;
+
+    final Connection cnx;
+
+    /**
+     * ops are serialized into this buffer, which leaves the connection's
+     * own buffer to the reader
+     */
+    final ByteBuffer sendBuffer;
+
+    final LinkedBlockingQueue<PendingOp> pending = new LinkedBlockingQueue<PendingOp>();
+
+    private final long birth = System.nanoTime();
+
+    /**
+     * set once no more ops may be sent on the connection, because it failed,
+     * idled or expired; no ops are added to {@link #pending} after that.
+     * Guarded by this.
+     */
+    volatile boolean retired;
+
+    /**
+     * set by whichever of the reader returning the idle connection and a
+     * failure destroying it comes first
+     */
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    /** set once the reader has exited. Guarded by this. */
+    private boolean finished;
+
+    Channel(Pipeline pipeline, Connection cnx) {
+      this.pipeline = pipeline;
+      this.cnx = cnx;
+      this.sendBuffer = ServerConnection.allocateCommBuffer(cnx.getCommBuffer().capacity());
+    }
+
+    public void run() {
+      try {
+        for (;;) {
+          PendingOp p;
+          try {
+            p = this.pending.poll(this.retired ? 0 : PIPELINE_IDLE_MILLIS, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            fail(new ServerConnectivityException("Pipelined op reader interrupted", e));
+            break;
+          }
+          if (p == null) {
+            if (returnIfIdle()) {
+              break;
+            }
+            continue;
+          }
+          if (p == PendingOp.CLOSED) {
+            break;
+          }
+          Object result;
+          try {
+            result = p.op.attemptPipelinedRead(this.cnx, p.start);
+          } catch (Exception e) {
+            complete(p, null, e);
+            if (isFatal(e)) {
+              fail(e);
+              break;
+            }
+            continue;
+          } catch (Error err) {
+            complete(p, null, new ServerConnectivityException("Pipelined op failed on " + this.cnx.getServer(), err));
+            fail(new ServerConnectivityException("Pipelined op failed on " + this.cnx.getServer(), err));
+            throw err;
+          }
+          complete(p, result, null);
+        }
+      } finally {
+        synchronized (this) {
+          this.finished = true;
+          notifyAll();
+        }
+      }
+    }
+
+    boolean hasExpired() {
+      return lifetimeNanos > 0 && System.nanoTime() - this.birth >= lifetimeNanos;
+    }
+
+    /**
+     * Stops ops from being sent on the connection. It is returned to the
+     * pool once their responses have been read.
+     */
+    synchronized void retire() {
+      this.retired = true;
+    }
+
+    /**
+     * Returns the connection to the pool, and retires this channel, if no op
+     * is waiting for a response on it.
+     * @return true if the connection is no longer used by this channel
+     */
+    private boolean returnIfIdle() {
+      synchronized (this) {
+        if (!this.pending.isEmpty()) {
+          return false;
+        }
+        this.retired = true;
+      }
+      if (this.released.compareAndSet(false, true)) {
+        manager.returnConnection(this.cnx);
+      }
+      return true;
+    }
+
+    /**
+     * Waits for the reader to exit, or for the executor to be closed.
+     */
+    synchronized void awaitFinished() {
+      boolean interrupted = Thread.interrupted();
+      try {
+        while (!this.finished && !closed) {
+          cancelCriterion.checkCancelInProgress(null);
+          try {
+            wait(PIPELINE_IDLE_MILLIS);
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    /**
+     * Returns true if the given exception, thrown while reading a response,
+     * means that the connection can not be used for the responses that
+     * follow. A response message is read completely before it is
+     * processed, so other exceptions only fail the op they were thrown for.
+     */
+    private boolean isFatal(Exception e) {
+      if (e instanceof ServerOperationException) {
+        return false;
+      }
+      return e instanceof IOException
+          || e instanceof ServerConnectivityException
+          || e instanceof ConnectionDestroyedException
+          || e instanceof CancelException;
+    }
+
+    private void complete(PendingOp p, Object result, Exception e) {
+      this.pipeline.depth.release();
+      if (e == null) {
+        p.future.complete(result);
+      } else if (e instanceof GemFireException && !(e instanceof CancelException)) {
+        p.future.fail(e);
+      } else {
+        p.future.fail(new ServerConnectivityException("Pipelined op failed on " + this.cnx.getServer(), e));
+      }
+    }
+
+    private void failOp(PendingOp p, Exception cause) {
+      p.op.abandonPipelinedAttempt(this.cnx, p.start);
+      complete(p, null, cause);
+    }
+
+    /**
+     * Destroys the connection, unless it was already returned to the pool,
+     * and fails all the ops waiting on it.
+     */
+    void fail(Exception cause) {
+      // destroy first so that a sender blocked in a write releases the lock
+      if (this.released.compareAndSet(false, true) && !this.cnx.isDestroyed()) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Pipelined connection {} failed", this.cnx, cause);
+        }
+        this.cnx.destroy();
+        try {
+          manager.returnConnection(this.cnx);
+        } catch (RuntimeException ignore) {
+          // the connection was already removed from the pool
+        }
+      }
+      synchronized (this) {
+        this.retired = true;
+      }
+      Exception failure = cause instanceof ServerConnectivityException ? cause
+          : new ServerConnectivityException("Pipelined connection to " + this.cnx.getServer() + " failed", cause);
+      PendingOp p;
+      while ((p = this.pending.poll()) != null) {
+        if (p != PendingOp.CLOSED) {
+          failOp(p, failure);
+        }
+      }
+      this.pending.add(PendingOp.CLOSED);
+    }
+  }
+}
@@ -17,6 +17,7 @@ import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
@@ -55,6 +56,7 @@ import com.gemstone.gemfire.internal.cache.InternalCache;
 import com.gemstone.gemfire.internal.cache.PoolFactoryImpl;
 import com.gemstone.gemfire.internal.cache.PoolManagerImpl;
 import com.gemstone.gemfire.internal.cache.PoolStats;
+import com.gemstone.gemfire.internal.cache.TXManagerImpl;
 import com.gemstone.gemfire.internal.cache.tier.sockets.AcceptorImpl;
 import com.gemstone.gemfire.internal.cache.tier.sockets.ClientProxyMembershipID;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
@@ -114,6 +116,7 @@ public class PoolImpl implements InternalPool {
   private final PoolStats stats;
   private ScheduledExecutorService backgroundProcessor; 
   private final OpExecutorImpl executor;
+  private PipelinedOpExecutor pipelinedExecutor; // guarded by this
   private final RegisterInterestTracker riTracker = new RegisterInterestTracker();
   private final InternalDistributedSystem dsys; 
 
@@ -538,6 +541,14 @@ public class PoolImpl implements InternalPool {
         logger.error(LocalizedMessage.create(LocalizedStrings.PoolImpl_ERROR_ENCOUNTERED_WHILE_STOPPING_CONNECTION_SOURCE), e);
       } 
 
+      try {
+        if (this.pipelinedExecutor != null) {
+          this.pipelinedExecutor.close();
+        }
+      } catch(RuntimeException e) {
+        logger.error(LocalizedMessage.create(LocalizedStrings.PoolImpl_ERROR_ENCOUNTERED_WHILE_STOPPING_CONNECTION_MANAGER), e);
+      }
+
       try {
         if(this.manager != null) {
           manager.close(keepAlive);
@@ -691,6 +702,36 @@ public class PoolImpl implements InternalPool {
    * @return the result of execution if any; null if not
    * @since 5.7
    */
+  /**
+   * Executes the given op without waiting for its result. The op is
+   * pipelined with other asynchronous ops over a few shared connections;
+   * see {@link PipelinedOpExecutor}. Ops done in a transaction or in
+   * multiuser secure mode need the calling thread's server affinity or
+   * credentials, so they are executed synchronously instead.
+   * @return a future for the result of the op
+   * @since 8.2
+   */
+  public Future<Object> executeAsync(AbstractOp op) {
+    if (this.multiuserSecureModeEnabled
+        || TXManagerImpl.getCurrentTXUniqueId() != TXManagerImpl.NOTX) {
+      PipelinedOpExecutor.OpFuture result = new PipelinedOpExecutor.OpFuture();
+      try {
+        result.complete(execute(op));
+      } catch (RuntimeException e) {
+        result.fail(e);
+      }
+      return result;
+    }
+    return getPipelinedOpExecutor().submit(op);
+  }
+
+  private synchronized PipelinedOpExecutor getPipelinedOpExecutor() {
+    if (this.pipelinedExecutor == null) {
+      this.pipelinedExecutor = new PipelinedOpExecutor(this, this.manager);
+    }
+    return this.pipelinedExecutor;
+  }
+
   public Object execute(Op op) {
     //if(multiuser)
     //get a server from threadlocal cache else throw cacheWriterException 
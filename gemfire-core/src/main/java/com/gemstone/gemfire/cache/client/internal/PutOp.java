@@ -29,6 +29,7 @@ import com.gemstone.gemfire.internal.logging.LogService;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.Logger;
 
@@ -140,6 +141,32 @@ public class PutOp {
     pool.executeOn(con, op);
   }
 
+  /**
+   * Does a region put on a server without waiting for it to complete.
+   * The put is pipelined with other asynchronous ops by the given pool.
+   * @param pool the pool to use to communicate with the server.
+   * @param region the region to do the put on
+   * @param key the entry key to do the put on
+   * @param value the entry value to put
+   * @param event the event for this put
+   * @param callbackArg an optional callback arg to pass to any cache callbacks
+   * @return a future that completes when the server has done the put
+   * @see PipelinedOpExecutor
+   * @since 8.2
+   */
+  public static Future<Object> executeAsync(ExecutablePool pool,
+                                            LocalRegion region,
+                                            Object key,
+                                            Object value,
+                                            EntryEventImpl event,
+                                            Object callbackArg)
+  {
+    AbstractOp op = new PutOpImpl(region, key, value, null, event,
+        Operation.UPDATE, false, null, callbackArg,
+        true/*send full obj*/, false);
+    return ((PoolImpl)pool).executeAsync(op);
+  }
+
   public static final byte HAS_OLD_VALUE_FLAG = 0x01;
   public static final byte OLD_VALUE_IS_OBJECT_FLAG = 0x02;
   public static final byte HAS_VERSION_TAG = 0x04;
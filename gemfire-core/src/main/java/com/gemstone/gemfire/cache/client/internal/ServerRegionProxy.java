@@ -13,6 +13,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import org.apache.logging.log4j.Logger;
 
@@ -135,8 +136,64 @@ public class ServerRegionProxy extends ServerProxy implements ServerRegionDataAc
     return GetOp.execute(this.pool, this.region, key, callbackArg, this.pool.getPRSingleHopEnabled(), clientEvent);
   }
 
-  
-  
+
+  /**
+   * Does a get on the server without waiting for the result. Unlike
+   * {@link #get}, this does not consult or update the local region;
+   * it is meant for regions that keep no data on the client.
+   * Asynchronous ops are pipelined over a few shared connections,
+   * see {@link PipelinedOpExecutor}.
+   * @param key the entry key to do the get on
+   * @param callbackArg an optional callback arg to pass to any cache callbacks
+   * @return a future for the value found on the server, or null
+   * @since 8.2
+   */
+  public Future<Object> getAsync(Object key, Object callbackArg) {
+    return GetOp.executeAsync(this.pool, this.region, key, callbackArg);
+  }
+
+  /**
+   * Does a put on the server without waiting for it to complete.
+   * The local region is not updated.
+   * @param key the entry key to do the put on
+   * @param value the entry value to put
+   * @param callbackArg an optional callback arg to pass to any cache callbacks
+   * @return a future that completes once the server has done the put
+   * @see #getAsync
+   * @since 8.2
+   */
+  public Future<Object> putAsync(Object key, Object value, Object callbackArg) {
+    EntryEventImpl event = new EntryEventImpl(
+        EventID.createForAsyncOp(this.region.getCache().getDistributedSystem()));
+    return PutOp.executeAsync(this.pool, this.region, key, value, event, callbackArg);
+  }
+
+  /**
+   * Does a destroy on the server without waiting for it to complete.
+   * The local region is not updated.
+   * @param key the entry key to do the destroy on
+   * @param callbackArg an optional callback arg to pass to any cache callbacks
+   * @return a future that completes once the server has done the destroy
+   * @see #getAsync
+   * @since 8.2
+   */
+  public Future<Object> destroyAsync(Object key, Object callbackArg) {
+    EntryEventImpl event = new EntryEventImpl(
+        EventID.createForAsyncOp(this.region.getCache().getDistributedSystem()));
+    return DestroyOp.executeAsync(this.pool, this.region, key, event, callbackArg);
+  }
+
+  /**
+   * Does a containsKey on the server without waiting for the result.
+   * @param key the entry key to check
+   * @return a future for the Boolean result from the server
+   * @see #getAsync
+   * @since 8.2
+   */
+  public Future<Object> containsKeyAsync(Object key) {
+    return ContainsKeyOp.executeAsync(this.pool, this.regionName, key, MODE.KEY);
+  }
+
   public int size() {
     return SizeOp.execute(this.pool, this.regionName);
   }
@@ -0,0 +1,450 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.gemstone.gemfire.cache.query.AmbiguousNameException;
+import com.gemstone.gemfire.cache.query.FunctionDomainException;
+import com.gemstone.gemfire.cache.query.NameResolutionException;
+import com.gemstone.gemfire.cache.query.QueryInvocationTargetException;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.pdx.internal.PdxString;
+
+/**
+ * An aggregate function (sum, min, max, avg or count) used in the projection
+ * list or the HAVING clause of a {@link CompiledGroupBySelect}. The function
+ * itself is never evaluated against a row; instead the enclosing select
+ * creates an {@link Aggregator} per group, feeds it the values of the
+ * argument expression and, for the HAVING clause, publishes the aggregated
+ * value in the execution context where {@link #evaluate} picks it up.
+ *
+ * Aggregators keep a partial state that can be shipped between members so
+ * that each data node of a partitioned region only returns one row per group.
+ *
+ * @since 8.2
+ */
+public class CompiledAggregateFunction extends AbstractCompiledValue {
+
+  /** one of LITERAL_sum, LITERAL_min, LITERAL_max, LITERAL_avg, LITERAL_count */
+  private final int aggFuncType;
+  /** the argument expression, null for count(*) */
+  private final CompiledValue expr;
+  private final boolean distinct;
+
+  public CompiledAggregateFunction(int aggFuncType, CompiledValue expr,
+      boolean distinct) {
+    this.aggFuncType = aggFuncType;
+    this.expr = expr;
+    this.distinct = distinct;
+  }
+
+  @Override
+  public List getChildren() {
+    if (this.expr == null) {
+      return Collections.EMPTY_LIST;
+    }
+    return Collections.singletonList(this.expr);
+  }
+
+  public int getType() {
+    return AGGREGATE_FUNCTION;
+  }
+
+  public int getFunction() {
+    return this.aggFuncType;
+  }
+
+  public CompiledValue getParameter() {
+    return this.expr;
+  }
+
+  public boolean isDistinct() {
+    return this.distinct;
+  }
+
+  /**
+   * Returns the name used for this function in the result struct type when
+   * no alias is given in the query.
+   */
+  public String getFunctionName() {
+    switch (this.aggFuncType) {
+      case LITERAL_sum:
+        return "sum";
+      case LITERAL_min:
+        return "min";
+      case LITERAL_max:
+        return "max";
+      case LITERAL_avg:
+        return "avg";
+      default:
+        return "count";
+    }
+  }
+
+  /**
+   * Returns the value computed for the group that is currently being
+   * evaluated. Only valid while the enclosing select applies its HAVING
+   * clause.
+   */
+  public Object evaluate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    Object result = context.cacheGet(this);
+    if (result == null) {
+      throw new FunctionDomainException("The aggregate function "
+          + getFunctionName()
+          + " can only be used as a projection or in the HAVING clause of a select");
+    }
+    return result == NULL_VALUE ? null : result;
+  }
+
+  /**
+   * Publishes the aggregated value of the current group so that it is
+   * returned by {@link #evaluate}.
+   */
+  void setCurrentValue(ExecutionContext context, Object value) {
+    context.cachePut(this, value == null ? NULL_VALUE : value);
+  }
+
+  @Override
+  public Set computeDependencies(ExecutionContext context)
+      throws TypeMismatchException, AmbiguousNameException,
+      NameResolutionException {
+    if (this.expr != null) {
+      context.addDependencies(this, this.expr.computeDependencies(context));
+    }
+    return context.getDependencySet(this, true);
+  }
+
+  @Override
+  public void generateCanonicalizedExpression(StringBuffer clauseBuffer,
+      ExecutionContext context) throws AmbiguousNameException,
+      TypeMismatchException, NameResolutionException {
+    clauseBuffer.insert(0, ')');
+    if (this.expr == null) {
+      clauseBuffer.insert(0, '*');
+    } else {
+      this.expr.generateCanonicalizedExpression(clauseBuffer, context);
+    }
+    if (this.distinct) {
+      clauseBuffer.insert(0, "distinct ");
+    }
+    clauseBuffer.insert(0, getFunctionName() + "(");
+  }
+
+  public Aggregator createAggregator() {
+    Aggregator aggregator;
+    switch (this.aggFuncType) {
+      case LITERAL_sum:
+        aggregator = new Sum();
+        break;
+      case LITERAL_min:
+        aggregator = new MinMax(false);
+        break;
+      case LITERAL_max:
+        aggregator = new MinMax(true);
+        break;
+      case LITERAL_avg:
+        aggregator = new Avg();
+        break;
+      default:
+        aggregator = new Count(this.expr == null);
+        break;
+    }
+    return this.distinct ? new Distinct(aggregator) : aggregator;
+  }
+
+  /** stands in for a null aggregate value in the execution context cache */
+  private static final Object NULL_VALUE = new Object();
+
+  /**
+   * Normalizes a value fed to an aggregator so that values coming from
+   * different members compare and hash the same way.
+   */
+  static Object normalize(Object value) {
+    if (value instanceof PdxString) {
+      return value.toString();
+    }
+    return value;
+  }
+
+  static boolean isIgnored(Object value) {
+    return value == null || value == QueryService.UNDEFINED;
+  }
+
+  static Number add(Number n1, Number n2) {
+    if (n1 == null) {
+      return n2;
+    }
+    if (isBig(n1) || isBig(n2)) {
+      return toBigDecimal(n1).add(toBigDecimal(n2));
+    }
+    if (isFloatingPoint(n1) || isFloatingPoint(n2)) {
+      return Double.valueOf(n1.doubleValue() + n2.doubleValue());
+    }
+    return Long.valueOf(n1.longValue() + n2.longValue());
+  }
+
+  static int compare(Object o1, Object o2) {
+    if (o1 instanceof Number && o2 instanceof Number
+        && o1.getClass() != o2.getClass()) {
+      Number n1 = (Number)o1;
+      Number n2 = (Number)o2;
+      if (isBig(n1) || isBig(n2)) {
+        return toBigDecimal(n1).compareTo(toBigDecimal(n2));
+      }
+      if (isFloatingPoint(n1) || isFloatingPoint(n2)) {
+        return Double.compare(n1.doubleValue(), n2.doubleValue());
+      }
+      return Long.compare(n1.longValue(), n2.longValue());
+    }
+    return ((Comparable)o1).compareTo(o2);
+  }
+
+  private static boolean isBig(Number n) {
+    return n instanceof BigDecimal || n instanceof BigInteger;
+  }
+
+  private static boolean isFloatingPoint(Number n) {
+    return n instanceof Double || n instanceof Float;
+  }
+
+  private static BigDecimal toBigDecimal(Number n) {
+    if (n instanceof BigDecimal) {
+      return (BigDecimal)n;
+    }
+    if (n instanceof BigInteger) {
+      return new BigDecimal((BigInteger)n);
+    }
+    if (isFloatingPoint(n)) {
+      return BigDecimal.valueOf(n.doubleValue());
+    }
+    return BigDecimal.valueOf(n.longValue());
+  }
+
+  private static Number checkNumber(Object value, String function)
+      throws TypeMismatchException {
+    if (!(value instanceof Number)) {
+      throw new TypeMismatchException("The " + function
+          + " aggregate function requires numeric values, found "
+          + value.getClass().getName());
+    }
+    return (Number)value;
+  }
+
+  /**
+   * Accumulates the values of one group. The partial result of an aggregator
+   * is a serializable value that can be {@link #merge merged} into another
+   * aggregator of the same function.
+   */
+  public static abstract class Aggregator {
+
+    /** adds a value of the argument expression; null for count(*) */
+    public abstract void accumulate(Object value) throws TypeMismatchException;
+
+    public abstract void merge(Object partialResult) throws TypeMismatchException;
+
+    public abstract Object getPartialResult();
+
+    /** returns the final value; only called once all values are merged */
+    public abstract Object getResult() throws TypeMismatchException;
+  }
+
+  static class Sum extends Aggregator {
+    private Number sum;
+
+    @Override
+    public void accumulate(Object value) throws TypeMismatchException {
+      if (!isIgnored(value)) {
+        this.sum = add(this.sum, checkNumber(value, "sum"));
+      }
+    }
+
+    @Override
+    public void merge(Object partialResult) throws TypeMismatchException {
+      accumulate(partialResult);
+    }
+
+    @Override
+    public Object getPartialResult() {
+      return this.sum;
+    }
+
+    @Override
+    public Object getResult() {
+      return this.sum;
+    }
+  }
+
+  static class MinMax extends Aggregator {
+    private final boolean max;
+    private Object current;
+
+    MinMax(boolean max) {
+      this.max = max;
+    }
+
+    @Override
+    public void accumulate(Object value) throws TypeMismatchException {
+      if (isIgnored(value)) {
+        return;
+      }
+      value = normalize(value);
+      if (!(value instanceof Comparable)) {
+        throw new TypeMismatchException("The " + (this.max ? "max" : "min")
+            + " aggregate function requires comparable values, found "
+            + value.getClass().getName());
+      }
+      if (this.current == null) {
+        this.current = value;
+      } else {
+        int cmp = compare(value, this.current);
+        if (this.max ? cmp > 0 : cmp < 0) {
+          this.current = value;
+        }
+      }
+    }
+
+    @Override
+    public void merge(Object partialResult) throws TypeMismatchException {
+      accumulate(partialResult);
+    }
+
+    @Override
+    public Object getPartialResult() {
+      return this.current;
+    }
+
+    @Override
+    public Object getResult() {
+      return this.current;
+    }
+  }
+
+  static class Avg extends Aggregator {
+    private Number sum;
+    private long count;
+
+    @Override
+    public void accumulate(Object value) throws TypeMismatchException {
+      if (!isIgnored(value)) {
+        this.sum = add(this.sum, checkNumber(value, "avg"));
+        this.count++;
+      }
+    }
+
+    @Override
+    public void merge(Object partialResult) throws TypeMismatchException {
+      if (partialResult != null) {
+        Object[] sumAndCount = (Object[])partialResult;
+        this.sum = add(this.sum, (Number)sumAndCount[0]);
+        this.count += ((Number)sumAndCount[1]).longValue();
+      }
+    }
+
+    @Override
+    public Object getPartialResult() {
+      if (this.count == 0) {
+        return null;
+      }
+      return new Object[] { this.sum, Long.valueOf(this.count) };
+    }
+
+    @Override
+    public Object getResult() {
+      if (this.count == 0) {
+        return null;
+      }
+      if (isBig(this.sum)) {
+        return toBigDecimal(this.sum).divide(BigDecimal.valueOf(this.count),
+            MathContext.DECIMAL128);
+      }
+      return Double.valueOf(this.sum.doubleValue() / this.count);
+    }
+  }
+
+  static class Count extends Aggregator {
+    private final boolean countAll;
+    private long count;
+
+    Count(boolean countAll) {
+      this.countAll = countAll;
+    }
+
+    @Override
+    public void accumulate(Object value) {
+      if (this.countAll || !isIgnored(value)) {
+        this.count++;
+      }
+    }
+
+    @Override
+    public void merge(Object partialResult) {
+      this.count += ((Number)partialResult).longValue();
+    }
+
+    @Override
+    public Object getPartialResult() {
+      return Long.valueOf(this.count);
+    }
+
+    @Override
+    public Object getResult() {
+      // count(*) has always been returned as an Integer
+      return Integer.valueOf((int)this.count);
+    }
+  }
+
+  /**
+   * Collects the distinct values of a group; they are only handed to the
+   * wrapped aggregator once all partial results have been merged.
+   */
+  static class Distinct extends Aggregator {
+    private final Aggregator delegate;
+    private final HashSet values = new HashSet();
+
+    Distinct(Aggregator delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void accumulate(Object value) {
+      if (!isIgnored(value)) {
+        this.values.add(normalize(value));
+      }
+    }
+
+    @Override
+    public void merge(Object partialResult) {
+      for (Object value : (Set)partialResult) {
+        accumulate(value);
+      }
+    }
+
+    @Override
+    public Object getPartialResult() {
+      return this.values;
+    }
+
+    @Override
+    public Object getResult() throws TypeMismatchException {
+      for (Object value : this.values) {
+        this.delegate.accumulate(value);
+      }
+      return this.delegate.getResult();
+    }
+  }
+}
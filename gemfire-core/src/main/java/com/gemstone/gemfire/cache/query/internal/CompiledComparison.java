@@ -28,6 +28,8 @@ import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
 import com.gemstone.gemfire.cache.query.types.ObjectType;
 import com.gemstone.gemfire.cache.query.types.StructType;
 import com.gemstone.gemfire.pdx.PdxInstance;
+import com.gemstone.gemfire.pdx.internal.PdxInstanceImpl;
+import com.gemstone.gemfire.pdx.internal.PdxReaderImpl;
 import com.gemstone.gemfire.pdx.internal.PdxString;
 
 /**
@@ -72,8 +74,25 @@ public class CompiledComparison extends AbstractCompiledValue implements
   public Object evaluate(ExecutionContext context)
       throws FunctionDomainException, TypeMismatchException,
       NameResolutionException, QueryInvocationTargetException {
-    Object left = _left.evaluate(context);
-    Object right = _right.evaluate(context);
+    Object left;
+    Object right;
+    if (_left.getType() == PATH && !context.isCqQueryContext()
+        && (_right.getType() == LITERAL || _right.getType() == QUERY_PARAM)) {
+      CompiledPath path = (CompiledPath) _left;
+      Object receiver = path.getReceiver().evaluate(context);
+      right = _right.evaluate(context);
+      if (receiver instanceof PdxInstanceImpl) {
+        Boolean result = compareSerializedField((PdxInstanceImpl) receiver,
+            path.getTailID(), right, context);
+        if (result != null) {
+          return result;
+        }
+      }
+      left = path.evaluateTail(receiver, context);
+    } else {
+      left = _left.evaluate(context);
+      right = _right.evaluate(context);
+    }
     
     if (context.isCqQueryContext() && left instanceof Region.Entry) {
       left = ((Region.Entry) left).getValue();
@@ -126,6 +145,45 @@ public class CompiledComparison extends AbstractCompiledValue implements
    return TypeUtils.compare(left,right,_operator);
   }
   
+  /**
+   * Compares a field of a PdxInstance with the constant right operand in the
+   * serialized form of the field, so that no object is created for the field
+   * of every instance that is compared.
+   * 
+   * @param right the evaluated right operand
+   * @return the result of the comparison, or null if the field has to be
+   *         read and compared as usual
+   */
+  private Boolean compareSerializedField(PdxInstanceImpl pdx, String fieldName,
+      Object right, ExecutionContext context) {
+    Object value = right;
+    if (value instanceof String) {
+      value = _right.getType() == LITERAL ? ((CompiledLiteral) _right)
+          .getSavedPdxString() : ((CompiledBindArgument) _right)
+          .getSavedPdxString(context);
+    }
+    int r = pdx.compareField(fieldName, value);
+    if (r == PdxReaderImpl.NOT_COMPARABLE) {
+      return null;
+    }
+    switch (_operator) {
+    case TOK_EQ:
+      return Boolean.valueOf(r == 0);
+    case TOK_NE:
+      return Boolean.valueOf(r != 0);
+    case TOK_LT:
+      return Boolean.valueOf(r < 0);
+    case TOK_LE:
+      return Boolean.valueOf(r <= 0);
+    case TOK_GT:
+      return Boolean.valueOf(r > 0);
+    case TOK_GE:
+      return Boolean.valueOf(r >= 0);
+    default:
+      return null;
+    }
+  }
+
   /**
    * Asif : Evaluates as a filter taking advantage of indexes if appropriate.
    * This function has a meaningful implementation only in CompiledComparison &
@@ -0,0 +1,439 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.query.FunctionDomainException;
+import com.gemstone.gemfire.cache.query.NameResolutionException;
+import com.gemstone.gemfire.cache.query.QueryInvalidException;
+import com.gemstone.gemfire.cache.query.QueryInvocationTargetException;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.Struct;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.CompiledAggregateFunction.Aggregator;
+import com.gemstone.gemfire.cache.query.internal.types.ObjectTypeImpl;
+import com.gemstone.gemfire.cache.query.internal.types.StructTypeImpl;
+import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
+import com.gemstone.gemfire.cache.query.types.ObjectType;
+import com.gemstone.gemfire.internal.cache.CachePerfStats;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.pdx.PdxInstance;
+
+/**
+ * A select with a GROUP BY clause and/or aggregate functions in its
+ * projection list.
+ *
+ * The select is evaluated as an inner select whose projections are the
+ * GROUP BY expressions, the plain projections and the arguments of the
+ * aggregate functions; its rows are then folded into one set of
+ * {@link Aggregator}s per group. When evaluated on the buckets of a
+ * partitioned region the result is one row of partial aggregates per group
+ * (an Object[] holding the group values, the plain projection values of the
+ * first row of the group and the partial aggregate of each function) which
+ * the query coordinator combines with {@link #mergePartialResults}. This way
+ * a data node ships back one row per group instead of every matching entry.
+ *
+ * Projections that are not aggregates take the value of the first row seen
+ * for their group, so they should only reference GROUP BY expressions. The
+ * HAVING clause may only combine aggregate functions, literals and bind
+ * parameters. ORDER BY is not supported together with grouping.
+ *
+ * @since 8.2
+ */
+public class CompiledGroupBySelect extends CompiledSelect {
+
+  private final List finalProjAttrs;
+  private final int numGroupByExprs;
+  private final int numPlainProjections;
+  private final CompiledValue having;
+  private final CompiledValue groupLimit;
+  private final boolean distinctGroups;
+  /** the aggregates of the projection list followed by those only in HAVING */
+  private final CompiledAggregateFunction[] aggregates;
+  /** position of each aggregate argument in an inner row, -1 for count(*) */
+  private final int[] aggregateArgIndex;
+  /** for each final projection, its aggregate index or -1 if it is plain */
+  private final int[] projAggregateIndex;
+  /** number of projections of the inner select */
+  private final int innerProjCount;
+
+  public CompiledGroupBySelect(boolean distinct, CompiledValue whereClause,
+      List iterators, List projAttrs, List groupByExprs,
+      CompiledValue having, List orderByAttrs, CompiledValue limit,
+      ArrayList hints) {
+    super(false, false, whereClause, iterators,
+        createInnerProjections(projAttrs, groupByExprs, having), null, null,
+        hints);
+    if (projAttrs == null) {
+      throw new QueryInvalidException(
+          "A select with GROUP BY must name its projections");
+    }
+    if (orderByAttrs != null) {
+      throw new QueryInvalidException(
+          "ORDER BY is not supported together with GROUP BY or aggregate functions");
+    }
+    this.finalProjAttrs = projAttrs;
+    this.numGroupByExprs = groupByExprs == null ? 0 : groupByExprs.size();
+    this.having = having;
+    this.groupLimit = limit;
+    this.distinctGroups = distinct;
+
+    List<CompiledAggregateFunction> aggs = collectAggregates(projAttrs, having);
+    this.aggregates = aggs.toArray(new CompiledAggregateFunction[aggs.size()]);
+    this.projAggregateIndex = new int[projAttrs.size()];
+    int plain = 0;
+    for (int i = 0; i < projAttrs.size(); i++) {
+      CompiledValue expr = (CompiledValue)((Object[])projAttrs.get(i))[1];
+      this.projAggregateIndex[i] = aggs.indexOf(expr);
+      if (this.projAggregateIndex[i] < 0) {
+        plain++;
+      }
+    }
+    this.numPlainProjections = plain;
+    int next = this.numGroupByExprs + plain;
+    this.aggregateArgIndex = new int[this.aggregates.length];
+    for (int i = 0; i < this.aggregates.length; i++) {
+      this.aggregateArgIndex[i] = this.aggregates[i].getParameter() == null ? -1
+          : next++;
+    }
+    this.innerProjCount = next;
+  }
+
+  /**
+   * Builds the projections of the inner select: the GROUP BY expressions,
+   * the plain projections and the aggregate arguments, in that order.
+   */
+  private static List createInnerProjections(List projAttrs,
+      List groupByExprs, CompiledValue having) {
+    List exprs = new ArrayList();
+    if (groupByExprs != null) {
+      exprs.addAll(groupByExprs);
+    }
+    List<CompiledAggregateFunction> aggs = collectAggregates(projAttrs, having);
+    if (projAttrs != null) {
+      for (Iterator itr = projAttrs.iterator(); itr.hasNext();) {
+        CompiledValue expr = (CompiledValue)((Object[])itr.next())[1];
+        if (!aggs.contains(expr)) {
+          exprs.add(expr);
+        }
+      }
+    }
+    for (CompiledAggregateFunction agg : aggs) {
+      if (agg.getParameter() != null) {
+        exprs.add(agg.getParameter());
+      }
+    }
+    if (exprs.isEmpty()) {
+      // only count(*): let the inner select return the iterated objects
+      return null;
+    }
+    List innerProjAttrs = new ArrayList(exprs.size());
+    for (int i = 0; i < exprs.size(); i++) {
+      // name the fields explicitly so multiple projections of the same
+      // path do not produce duplicate field names
+      String name = exprs.size() == 1 ? null : "field$" + i;
+      innerProjAttrs.add(new Object[] { name, exprs.get(i) });
+    }
+    return innerProjAttrs;
+  }
+
+  private static List<CompiledAggregateFunction> collectAggregates(
+      List projAttrs, CompiledValue having) {
+    List<CompiledAggregateFunction> aggs = new ArrayList<CompiledAggregateFunction>();
+    if (projAttrs != null) {
+      for (Iterator itr = projAttrs.iterator(); itr.hasNext();) {
+        Object expr = ((Object[])itr.next())[1];
+        if (expr instanceof CompiledAggregateFunction) {
+          aggs.add((CompiledAggregateFunction)expr);
+        }
+      }
+    }
+    if (having != null) {
+      collectAggregates(having, aggs);
+    }
+    return aggs;
+  }
+
+  private static void collectAggregates(CompiledValue cv,
+      List<CompiledAggregateFunction> aggs) {
+    if (cv instanceof CompiledAggregateFunction) {
+      aggs.add((CompiledAggregateFunction)cv);
+      return;
+    }
+    for (Object child : cv.getChildren()) {
+      if (child instanceof CompiledValue) {
+        collectAggregates((CompiledValue)child, aggs);
+      }
+    }
+  }
+
+  public CompiledValue getHavingClause() {
+    return this.having;
+  }
+
+  @Override
+  public Object evaluate(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    SelectResults innerResults = (SelectResults)super.evaluate(context);
+    Map<List, Group> groups = new LinkedHashMap<List, Group>();
+    for (Object row : innerResults) {
+      accumulate(groups, getRowValues(row));
+    }
+
+    if (context.getBucketList() != null || context.getBucketRegion() != null) {
+      // executing on the buckets of a partitioned region; the query
+      // coordinator finishes the aggregation
+      SelectResults partialResults = new ResultsBag(TypeUtils.OBJECT_TYPE,
+          context.getCachePerfStats());
+      for (Map.Entry<List, Group> e : groups.entrySet()) {
+        partialResults.add(e.getValue().toPartialRow(e.getKey()));
+      }
+      return partialResults;
+    }
+
+    SelectResults results = createResultSet(context.getCachePerfStats());
+    addFinalRows(groups, results, context);
+    return results;
+  }
+
+  /**
+   * Combines the partial rows returned by the data nodes of a partitioned
+   * region into the final rows of this select.
+   *
+   * @param partialResults the collections returned by the data nodes
+   * @param results the (empty) collection to add the final rows to
+   * @param convertPdx true if PdxInstances in group values have to be
+   *        converted to domain objects
+   */
+  public void mergePartialResults(Collection<Collection> partialResults,
+      SelectResults results, Object[] parameters, Cache cache,
+      boolean convertPdx) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    Map<List, Group> groups = new LinkedHashMap<List, Group>();
+    for (Collection partials : partialResults) {
+      if (partials == null) {
+        continue;
+      }
+      for (Object partial : partials) {
+        Object[] row = (Object[])partial;
+        int keyValues = this.numGroupByExprs + this.numPlainProjections;
+        for (int i = 0; i < keyValues; i++) {
+          row[i] = normalizeValue(row[i], convertPdx);
+        }
+        List key = Arrays.asList(row).subList(0, this.numGroupByExprs);
+        Group group = getGroup(groups, key, row);
+        for (int i = 0; i < this.aggregates.length; i++) {
+          group.aggregators[i].merge(row[keyValues + i]);
+        }
+      }
+    }
+    addFinalRows(groups, results, new QueryExecutionContext(parameters, cache));
+  }
+
+  private Object[] getRowValues(Object row) {
+    switch (this.innerProjCount) {
+      case 0:
+        return new Object[0];
+      case 1:
+        return new Object[] { row };
+      default:
+        return ((Struct)row).getFieldValues();
+    }
+  }
+
+  private void accumulate(Map<List, Group> groups, Object[] values)
+      throws TypeMismatchException {
+    for (int i = 0; i < this.numGroupByExprs + this.numPlainProjections; i++) {
+      values[i] = normalizeValue(values[i], false);
+    }
+    List key = Arrays.asList(values).subList(0, this.numGroupByExprs);
+    Group group = getGroup(groups, key, values);
+    for (int i = 0; i < this.aggregates.length; i++) {
+      int argIndex = this.aggregateArgIndex[i];
+      group.aggregators[i].accumulate(argIndex < 0 ? null : values[argIndex]);
+    }
+  }
+
+  private Group getGroup(Map<List, Group> groups, List key, Object[] row) {
+    Group group = groups.get(key);
+    if (group == null) {
+      Object[] plainValues = new Object[this.numPlainProjections];
+      System.arraycopy(row, this.numGroupByExprs, plainValues, 0,
+          this.numPlainProjections);
+      group = new Group(plainValues, createAggregators());
+      groups.put(new ArrayList(key), group);
+    }
+    return group;
+  }
+
+  private Aggregator[] createAggregators() {
+    Aggregator[] aggregators = new Aggregator[this.aggregates.length];
+    for (int i = 0; i < aggregators.length; i++) {
+      aggregators[i] = this.aggregates[i].createAggregator();
+    }
+    return aggregators;
+  }
+
+  private static Object normalizeValue(Object value, boolean convertPdx) {
+    if (convertPdx && value instanceof PdxInstance) {
+      return ((PdxInstance)value).getObject();
+    }
+    return CompiledAggregateFunction.normalize(value);
+  }
+
+  /**
+   * Applies HAVING and LIMIT to the aggregated groups and adds the resulting
+   * rows to the given results.
+   */
+  private void addFinalRows(Map<List, Group> groups, SelectResults results,
+      ExecutionContext context) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    if (groups.isEmpty() && this.numGroupByExprs == 0) {
+      // aggregates over no rows still produce a single row
+      groups.put(new ArrayList(), new Group(
+          new Object[this.numPlainProjections], createAggregators()));
+    }
+    int limit = evaluateGroupLimit(context);
+    StructTypeImpl structType = null;
+    if (results.getCollectionType().getElementType().isStructType()) {
+      structType = (StructTypeImpl)results.getCollectionType().getElementType();
+    }
+    for (Group group : groups.values()) {
+      if (limit >= 0 && results.size() >= limit) {
+        break;
+      }
+      Object[] aggregateValues = new Object[this.aggregates.length];
+      for (int i = 0; i < aggregateValues.length; i++) {
+        aggregateValues[i] = group.aggregators[i].getResult();
+      }
+      if (this.having != null) {
+        for (int i = 0; i < aggregateValues.length; i++) {
+          this.aggregates[i].setCurrentValue(context, aggregateValues[i]);
+        }
+        if (!Boolean.TRUE.equals(this.having.evaluate(context))) {
+          continue;
+        }
+      }
+      Object[] row = new Object[this.projAggregateIndex.length];
+      int plain = 0;
+      for (int i = 0; i < row.length; i++) {
+        int aggIndex = this.projAggregateIndex[i];
+        row[i] = aggIndex < 0 ? group.plainValues[plain++]
+            : aggregateValues[aggIndex];
+      }
+      if (structType != null) {
+        results.add(new StructImpl(structType, row));
+      } else {
+        results.add(row[0]);
+      }
+    }
+  }
+
+  private int evaluateGroupLimit(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    if (this.groupLimit == null) {
+      return -1;
+    }
+    Integer limitValue = (Integer)this.groupLimit.evaluate(context);
+    return limitValue == null ? -1 : limitValue.intValue();
+  }
+
+  @Override
+  public SelectResults getEmptyResultSet(Object[] parameters, Cache cache)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    return createResultSet(((GemFireCacheImpl)cache).getCachePerfStats());
+  }
+
+  /**
+   * Creates the collection holding the final rows. A single projection
+   * without an alias produces plain values, anything else produces structs.
+   */
+  private SelectResults createResultSet(CachePerfStats stats) {
+    int projCount = this.finalProjAttrs.size();
+    String[] fieldNames = new String[projCount];
+    ObjectType[] fieldTypes = new ObjectType[projCount];
+    for (int i = 0; i < projCount; i++) {
+      Object[] projDef = (Object[])this.finalProjAttrs.get(i);
+      CompiledValue expr = (CompiledValue)projDef[1];
+      fieldNames[i] = projDef[0] != null ? (String)projDef[0]
+          : getProjectionName(expr, i);
+      if (expr instanceof CompiledAggregateFunction
+          && ((CompiledAggregateFunction)expr).getFunction() == LITERAL_count) {
+        fieldTypes[i] = new ObjectTypeImpl(Integer.class);
+      } else {
+        fieldTypes[i] = TypeUtils.OBJECT_TYPE;
+      }
+    }
+    if (projCount == 1 && ((Object[])this.finalProjAttrs.get(0))[0] == null) {
+      if (this.distinctGroups) {
+        return new ResultsSet(fieldTypes[0]);
+      }
+      return new ResultsBag(fieldTypes[0], stats);
+    }
+    StructTypeImpl structType = new StructTypeImpl(fieldNames, fieldTypes);
+    if (this.distinctGroups) {
+      return new StructSet(structType);
+    }
+    return new StructBag(structType, stats);
+  }
+
+  private static String getProjectionName(CompiledValue expr, int index) {
+    switch (expr.getType()) {
+      case AGGREGATE_FUNCTION:
+        return ((CompiledAggregateFunction)expr).getFunctionName();
+      case PATH:
+        return ((CompiledPath)expr).getTailID();
+      case Identifier:
+        return ((CompiledID)expr).getId();
+      case METHOD_INV:
+        return ((CompiledOperation)expr).getMethodName();
+      default:
+        return "field$" + index;
+    }
+  }
+
+  /** The plain projection values and the aggregators of one group */
+  private final class Group {
+    final Object[] plainValues;
+    final Aggregator[] aggregators;
+
+    Group(Object[] plainValues, Aggregator[] aggregators) {
+      this.plainValues = plainValues;
+      this.aggregators = aggregators;
+    }
+
+    Object[] toPartialRow(List key) {
+      Object[] row = new Object[numGroupByExprs + numPlainProjections
+          + aggregators.length];
+      int pos = 0;
+      for (Object value : key) {
+        row[pos++] = value;
+      }
+      for (Object value : this.plainValues) {
+        row[pos++] = value;
+      }
+      for (Aggregator aggregator : this.aggregators) {
+        row[pos++] = aggregator.getPartialResult();
+      }
+      return row;
+    }
+  }
+}
@@ -132,6 +132,15 @@ public class CompiledPath extends AbstractCompiledValue {
     //                                                getTailID());
     //         }
     
+    return evaluateTail(evalRcvr, context);
+  }
+
+  /**
+   * Evaluates the tail attribute on the already evaluated receiver
+   */
+  Object evaluateTail(Object evalRcvr, ExecutionContext context)
+  throws FunctionDomainException, TypeMismatchException, NameResolutionException,
+          QueryInvocationTargetException {
     Object obj =  PathUtils.evaluateAttribute(evalRcvr, getTailID());
     // check for BucketRegion substitution
     PartitionedRegion pr = context.getPartitionedRegion();
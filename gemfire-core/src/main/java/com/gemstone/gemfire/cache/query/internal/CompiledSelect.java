@@ -17,6 +17,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -237,7 +238,136 @@ public class CompiledSelect extends AbstractCompiledValue {
     }
     return results;
   }
-  
+
+  /**
+   * Merges collections that are each already sorted on the order by clause of
+   * this select into <code>results</code>, a sorted result set created for
+   * the same clause. This select must iterate over the bind argument $1, like
+   * the query generated by the coordinator of a partitioned region query to
+   * order the results returned by the data stores.
+   *
+   * Only the heads of the collections are compared, so the sort criteria are
+   * evaluated once per element that is looked at, and the merge stops as soon
+   * as <code>limit</code> distinct elements have been added.
+   *
+   * @param sortedResults the sorted collections, null elements are ignored
+   * @param limit the number of elements to add, -1 for all of them
+   * @return the number of elements added to <code>results</code>
+   * @since 8.2
+   */
+  public int mergeSortedResults(List<Collection> sortedResults,
+      SelectResults results, int limit, DefaultQuery query, Cache cache)
+      throws FunctionDomainException, TypeMismatchException,
+      NameResolutionException, QueryInvocationTargetException {
+    OrderByComparator comparator = (OrderByComparator)((TreeSet)results).comparator();
+    boolean isSortedStructSet = results instanceof SortedStructSet;
+    // same conversion as applyProjectionAndAddToResultSet for a distinct select
+    boolean deserializePdx = !isSortedStructSet && !query.isRemoteQuery()
+        && !cache.getPdxReadSerialized();
+    PriorityQueue<SortedRun> heads = new PriorityQueue<SortedRun>(
+        Math.max(1, sortedResults.size()));
+    ExecutionContext context = null;
+    RuntimeIterator rIter = null;
+    int numAdded = 0;
+    try {
+      for (Collection sortedResult : sortedResults) {
+        if (sortedResult == null || sortedResult.isEmpty()) {
+          continue;
+        }
+        if (context == null) {
+          context = new QueryExecutionContext(new Object[] { sortedResult },
+              cache, query);
+          computeDependencies(context);
+          context.newScope(this.scopeID);
+          context.pushExecCache(this.scopeID);
+          CompiledIteratorDef iterDef = (CompiledIteratorDef)this.iterators.get(0);
+          rIter = iterDef.getRuntimeIterator(context);
+          context.bindIterator(rIter);
+        }
+        SortedRun run = new SortedRun(sortedResult.iterator(), heads.size());
+        if (run.advance(context, rIter)) {
+          heads.add(run);
+        }
+      }
+      while (!heads.isEmpty() && (limit < 0 || numAdded < limit)) {
+        // Check if query execution on this thread is canceled.
+        QueryMonitor.isQueryExecutionCanceled();
+
+        SortedRun run = heads.poll();
+        Object value = run.head;
+        boolean added;
+        if (isSortedStructSet) {
+          Object[] values = value instanceof StructImpl ? ((StructImpl)value)
+              .getFieldValues() : (Object[])value;
+          comparator.orderByMap.put(values, run.sortKey);
+          added = ((SortedStructSet)results).addFieldValues(values);
+        } else {
+          if (deserializePdx && value instanceof PdxInstance) {
+            value = ((PdxInstance)value).getObject();
+          }
+          comparator.orderByMap.put(value, run.sortKey);
+          added = results.add(value);
+        }
+        if (added) {
+          ++numAdded;
+        }
+        if (run.advance(context, rIter)) {
+          heads.add(run);
+        }
+      }
+    } finally {
+      if (context != null) {
+        context.popExecCache();
+        context.popScope();
+      }
+    }
+    return numAdded;
+  }
+
+  /**
+   * The remaining elements of one sorted collection being merged by
+   * {@link #mergeSortedResults}, ordered by the sort criteria of its head.
+   */
+  private final class SortedRun implements Comparable<SortedRun> {
+    private final Iterator iterator;
+    /** keeps the merge stable for elements with equal sort criteria */
+    private final int index;
+    Object head;
+    ArrayList sortKey;
+
+    SortedRun(Iterator iterator, int index) {
+      this.iterator = iterator;
+      this.index = index;
+    }
+
+    /**
+     * Moves to the next element and evaluates its sort criteria.
+     *
+     * @return false if the collection is exhausted
+     */
+    boolean advance(ExecutionContext context, RuntimeIterator rIter)
+        throws FunctionDomainException, TypeMismatchException,
+        NameResolutionException, QueryInvocationTargetException {
+      if (!this.iterator.hasNext()) {
+        this.head = null;
+        this.sortKey = null;
+        return false;
+      }
+      this.head = this.iterator.next();
+      rIter.setCurrent(this.head);
+      this.sortKey = evaluateSortCriteria(context, null);
+      return true;
+    }
+
+    public int compareTo(SortedRun other) {
+      int result = OrderByComparator.compareSortKeys(this.sortKey, other.sortKey);
+      if (result == 0) {
+        result = this.index < other.index ? -1 : (this.index == other.index ? 0 : 1);
+      }
+      return result;
+    }
+  }
+
   public Object evaluate(ExecutionContext context) throws FunctionDomainException, TypeMismatchException,
       NameResolutionException, QueryInvocationTargetException {
    // context.newScope(context.getScopeID(this));
@@ -534,35 +664,39 @@ public class CompiledSelect extends AbstractCompiledValue {
   private SelectResults doIterationEvaluate(ExecutionContext context, boolean evaluateWhereClause)
       throws TypeMismatchException, FunctionDomainException, NameResolutionException,
       QueryInvocationTargetException {
-    
-    SelectResults results = context.getResults();
-    if (results == null) {
-      results = prepareEmptyResultSet(context,false);
-    }
-    //TODO:Asif: SELF : Work on limit implementation on bulk get    
-    // check for bulk get optimization
-    if (evaluateWhereClause) {
-      List tmpResults = optimizeBulkGet(context);
-      if (tmpResults != null) {
-        // (has only one iterator)
-        RuntimeIterator rIter = (RuntimeIterator)context.getCurrentIterators().get(0); 
-        for (Iterator itr = tmpResults.iterator(); itr.hasNext(); ) {
-          Object currObj = itr.next();
-          rIter.setCurrent(currObj);
-          QueryObserver observer = QueryObserverHolder.getInstance();
-          observer.beforeIterationEvaluation(rIter, currObj);
-          applyProjectionAndAddToResultSet(context, results, this.orderByAttrs ==null);
+    QueryProfiler.enter(QueryProfiler.ITERATION);
+    try {
+      SelectResults results = context.getResults();
+      if (results == null) {
+        results = prepareEmptyResultSet(context,false);
+      }
+      //TODO:Asif: SELF : Work on limit implementation on bulk get    
+      // check for bulk get optimization
+      if (evaluateWhereClause) {
+        List tmpResults = optimizeBulkGet(context);
+        if (tmpResults != null) {
+          // (has only one iterator)
+          RuntimeIterator rIter = (RuntimeIterator)context.getCurrentIterators().get(0); 
+          for (Iterator itr = tmpResults.iterator(); itr.hasNext(); ) {
+            Object currObj = itr.next();
+            rIter.setCurrent(currObj);
+            QueryObserver observer = QueryObserverHolder.getInstance();
+            observer.beforeIterationEvaluation(rIter, currObj);
+            applyProjectionAndAddToResultSet(context, results, this.orderByAttrs ==null);
+          }
+          return results;
         }
-        return results;
       }
+      int numElementsInResult = 0;
+      try {
+        doNestedIterations(0, results, context, evaluateWhereClause,numElementsInResult);
+      }catch(CompiledSelect.NullIteratorException cnie) {
+        return null;
+      }
+      return results;
+    } finally {
+      QueryProfiler.exit(QueryProfiler.ITERATION);
     }
-    int numElementsInResult = 0;
-    try {
-      doNestedIterations(0, results, context, evaluateWhereClause,numElementsInResult);
-    }catch(CompiledSelect.NullIteratorException cnie) {
-      return null;
-    }
-    return results;
   }
   
   // @todo make this more general to work for any kind of map, not just regions
@@ -630,7 +764,13 @@ public class CompiledSelect extends AbstractCompiledValue {
     if (level == iterList.size()) {
       boolean addToResults = true;
       if (evaluateWhereClause) {
-        Object result = this.whereClause.evaluate(context);
+        Object result;
+        QueryProfiler.enter(QueryProfiler.FILTER);
+        try {
+          result = this.whereClause.evaluate(context);
+        } finally {
+          QueryProfiler.exit(QueryProfiler.FILTER);
+        }
         QueryObserver observer = QueryObserverHolder.getInstance();
         observer.afterIterationEvaluation(result);
         if (result == null) {
@@ -1388,6 +1528,57 @@ class OrderByComparator implements Comparator
     }
   }
 
+  /**
+   * Compares the evaluated sort criteria of two elements, as built by
+   * {@link CompiledSelect#evaluateSortCriteria}.
+   *
+   * @return 0 if the elements are equal on all sort criteria
+   */
+  static int compareSortKeys(List list1, List list2) {
+    int result = 0;
+    if (list1.size() != list2.size()) {
+      Support.assertionFailed("Error Occured due to improper sort criteria evaluation ");
+    }
+    for (int i=0; i< list1.size(); i++){
+      Object arr1[] = (Object [])list1.get(i);
+      Object arr2[] = (Object [])list2.get(i);
+      // check for null.
+      if (arr1[0] == null || arr2[0] == null) {
+        if (arr1[0] == null) {
+          result = (arr2[0] == null ? 0: -1); 
+        } else {
+          result = 1;
+        }
+      } else if (arr1[0] == QueryService.UNDEFINED || arr2[0] == QueryService.UNDEFINED) {
+        if (arr1[0] == QueryService.UNDEFINED) {
+          result = (arr2[0] == QueryService.UNDEFINED ? 0: -1); 
+        } else {
+          result = 1;
+        }
+      } else {
+        if(arr1[0] instanceof PdxString && arr2[0] instanceof String){
+          arr2[0] = new PdxString((String) arr2[0]);
+        }
+        else if(arr2[0] instanceof PdxString && arr1[0] instanceof String){
+          arr1[0] = new PdxString((String) arr1[0]);
+        }
+        result = ((Comparable)arr1[0]).compareTo(arr2[0]);
+      }
+
+      // equals.
+      if (result == 0) {
+        continue;
+      } else {
+        // not equal, change the sign based on the order by type (asc, desc).
+        if(((Boolean)arr1[1]).booleanValue()) {
+          result = (result * -1);
+        }
+        return result;
+      }		 			
+    }
+    return 0;
+  }
+
   /**
    * Compares its two arguments for order.  Returns a negative integer,
    * zero, or a positive integer as the first argument is less than, equal
@@ -1411,46 +1602,10 @@ class OrderByComparator implements Comparator
       ArrayList list1 = (ArrayList)orderByMap.get(obj1);          
       ArrayList list2 = (ArrayList)orderByMap.get(obj2);
 
-      if(list1.size() != list2.size()){ 
-        Support.assertionFailed("Error Occured due to improper sort criteria evaluation ");
-      }else{
-        for (int i=0; i< list1.size(); i++){
-          Object arr1[] = (Object [])list1.get(i);
-          Object arr2[] = (Object [])list2.get(i);
-          // check for null.
-          if (arr1[0] == null || arr2[0] == null) {
-            if (arr1[0] == null) {
-              result = (arr2[0] == null ? 0: -1); 
-            } else {
-              result = 1;
-            }
-          } else if (arr1[0] == QueryService.UNDEFINED || arr2[0] == QueryService.UNDEFINED) {
-            if (arr1[0] == QueryService.UNDEFINED) {
-              result = (arr2[0] == QueryService.UNDEFINED ? 0: -1); 
-            } else {
-              result = 1;
-            }
-          } else {
-            if(arr1[0] instanceof PdxString && arr2[0] instanceof String){
-              arr2[0] = new PdxString((String) arr2[0]);
-            }
-            else if(arr2[0] instanceof PdxString && arr1[0] instanceof String){
-              arr1[0] = new PdxString((String) arr1[0]);
-            }
-            result = ((Comparable)arr1[0]).compareTo(arr2[0]);
-          }
-
-          // equals.
-          if (result == 0) {
-            continue;
-          } else {
-            // not equal, change the sign based on the order by type (asc, desc).
-            if(((Boolean)arr1[1]).booleanValue()) {
-              result = (result * -1);
-            }
-            return result;
-          }		 			
-        }
+      result = compareSortKeys(list1, list2);
+      if (result != 0) {
+        return result;
+      } else {
         //The comparable fields are equal, so we check if the overall keys are equal or not
         if(this.objType.isStructType()) {
           int i =0;
@@ -37,6 +37,7 @@ public interface CompiledValue {
   public final static int SINGLECONDNEVALUATOR= -13;
   public final static int DOUBLECONDNRANGEJUNCTIONEVALUATOR = -14;
   public final static int LIKE = -15;
+  public final static int AGGREGATE_FUNCTION = -16;
   public static  final int INDEX_RESULT_THRESHOLD_DEFAULT = 100;
   public static final String INDX_THRESHOLD_PROP_STR = "gemfire.Query.INDEX_THRESHOLD_SIZE";
   public static final String INDEX_INFO = "index_info";
@@ -49,6 +49,7 @@ import com.gemstone.gemfire.internal.cache.PRQueryProcessor;
 import com.gemstone.gemfire.internal.cache.PartitionedRegion;
 import com.gemstone.gemfire.internal.cache.TXManagerImpl;
 import com.gemstone.gemfire.internal.cache.TXStateProxy;
+import com.gemstone.gemfire.internal.cache.persistence.query.CloseableIterator;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 
 
@@ -261,9 +262,11 @@ public class DefaultQuery implements Query {
    */
   public DefaultQuery(String queryString, Cache cache) {
     this.queryString = queryString;
-    QCompiler compiler = new QCompiler();
-    this.compiledQuery = compiler.compileQuery(queryString);
-    this.traceOn = (compiler.isTraceRequested() || QUERY_VERBOSE);
+    QueryPlanCache.Plan plan = cache instanceof GemFireCacheImpl
+        ? ((GemFireCacheImpl)cache).getQueryPlanCache().getPlan(queryString)
+        : QueryPlanCache.compile(queryString);
+    this.compiledQuery = plan.getCompiledQuery();
+    this.traceOn = (plan.isTraceRequested() || QUERY_VERBOSE);
     this.cache = cache;
     this.stats = new DefaultQueryStatistics();
   }
@@ -331,6 +334,7 @@ public class DefaultQuery implements Query {
     QueryObserver indexObserver = null;
     QueryMonitor queryMonitor = null;
     QueryExecutor qe = checkQueryOnPR(parameters);
+    QueryProfiler.Execution profile = QueryProfiler.begin(this.cache, this.queryString);
 
     try {
       //Setting the readserialized flag for local queries
@@ -404,10 +408,61 @@ public class DefaultQuery implements Query {
          queryMonitor.stopMonitoringQueryThread(Thread.currentThread(), this);
       }
       this.endTrace(indexObserver, startTime, result);
+      QueryProfiler.end(profile);
     }
 
   }
 
+  /**
+   * Executes this query and returns an iterator over its results.
+   * 
+   * A query on a partitioned region whose results do not have to be sorted,
+   * deduplicated or aggregated by this member hands out the results as the
+   * data stores return them. The data stores only send a few chunks of
+   * results ahead of the caller, so this member never holds the whole result.
+   * Other queries are executed like {@link #execute(Object[])}, and the
+   * iterator walks over the results already in memory.
+   * 
+   * The iterator must be closed if it is abandoned before its end.
+   * 
+   * @since 8.2
+   */
+  public CloseableIterator executeStreaming(Object[] parameters)
+  throws FunctionDomainException, TypeMismatchException, NameResolutionException, QueryInvocationTargetException {
+    if (parameters == null) {
+      throw new IllegalArgumentException(LocalizedStrings.DefaultQuery_PARAMETERS_CANNOT_BE_NULL.toLocalizedString());
+    }
+    if (this.serverProxy == null) {
+      QueryExecutor qe = checkQueryOnPR(parameters);
+      if (qe instanceof PartitionedRegion) {
+        CloseableIterator results = ((PartitionedRegion)qe).executeStreamingQuery(this, parameters);
+        if (results != null) {
+          return results;
+        }
+      }
+    }
+    Object result = execute(parameters);
+    Collection results = result instanceof Collection ? (Collection)result
+        : Collections.singletonList(result);
+    final Iterator iterator = results.iterator();
+    return new CloseableIterator() {
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      public Object next() {
+        return iterator.next();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+      public void close() {
+      }
+    };
+  }
+
   private Object executeOnServer(Object[] parameters) {
     long startTime = CachePerfStats.getStatTime();
     Object result = null;
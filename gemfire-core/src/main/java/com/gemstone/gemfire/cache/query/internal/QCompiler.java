@@ -188,6 +188,10 @@ public class QCompiler implements OQLLexerTokenTypes {
       limit = (CompiledBindArgument) limitObject;
     }
     List orderByAttrs = (List)pop();
+    // havingClause
+    CompiledValue having = (CompiledValue)pop();
+    // groupClause: list of CompiledValues
+    List groupByExprs = (List)pop();
     // whereClause
     CompiledValue where = (CompiledValue)pop();
     // fromClause: list of CompiledIteratorDefs
@@ -205,10 +209,38 @@ public class QCompiler implements OQLLexerTokenTypes {
       hints = (ArrayList<String>) hintObject;
     }
     
-    CompiledSelect select = new CompiledSelect(distinct != null, aggrExpr != null, where,
-        iterators, projAttrs, orderByAttrs, limit, hints);
+    CompiledSelect select;
+    if (groupByExprs != null || having != null || hasAggregateFunction(projAttrs)) {
+      select = new CompiledGroupBySelect(distinct != null, where, iterators,
+          projAttrs, groupByExprs, having, orderByAttrs, limit, hints);
+    } else {
+      select = new CompiledSelect(distinct != null, aggrExpr != null, where,
+          iterators, projAttrs, orderByAttrs, limit, hints);
+    }
     push(select);
   }
+
+  private static boolean hasAggregateFunction(List projAttrs) {
+    if (projAttrs != null) {
+      for (Object projAttr : projAttrs) {
+        if (((Object[])projAttr)[1] instanceof CompiledAggregateFunction) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Pops the argument of an aggregate function (null for count(*)) and
+   * pushes the function.
+   * @param aggFuncType the token type of the function
+   * @param distinct true if only distinct argument values are aggregated
+   */
+  public void aggregateFunction(int aggFuncType, boolean distinct) {
+    CompiledValue expr = (CompiledValue)pop();
+    push(new CompiledAggregateFunction(aggFuncType, expr, distinct));
+  }
   
   public void projection () {
     // find an id or null on the stack, then an expr CompiledValue
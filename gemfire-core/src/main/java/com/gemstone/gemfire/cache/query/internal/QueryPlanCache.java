@@ -0,0 +1,146 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caches the compiled form of query strings so that queries created again
+ * with the same string, typically to be executed with different bind
+ * parameters, do not parse and compile it again.
+ *
+ * A compiled query is shared by all the queries created from its string and
+ * is evaluated by several threads at the same time, the way the server already
+ * shares the compiled queries of its clients. Queries using <tt>LIKE</tt> or
+ * <tt>COUNT(*)</tt> keep state of an execution in their compiled form and are
+ * therefore compiled for every query.
+ *
+ * The maximum number of cached queries is set by the
+ * <tt>gemfire.Query.PLAN_CACHE_SIZE</tt> system property; zero disables the
+ * cache.
+ *
+ * @since 8.2
+ */
+public class QueryPlanCache {
+
+  public static final int PLAN_CACHE_SIZE = Integer.getInteger(
+      "gemfire.Query.PLAN_CACHE_SIZE", 1000).intValue();
+
+  private final ConcurrentMap<String, Plan> plans = new ConcurrentHashMap<String, Plan>();
+
+  private final int maxSize;
+
+  public QueryPlanCache() {
+    this(PLAN_CACHE_SIZE);
+  }
+
+  public QueryPlanCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the compiled form of the query string, compiling it if it is not
+   * cached.
+   *
+   * @throws com.gemstone.gemfire.cache.query.QueryInvalidException if the
+   *           query syntax is invalid
+   */
+  public Plan getPlan(String queryString) {
+    Plan plan = this.plans.get(queryString);
+    if (plan != null) {
+      return plan;
+    }
+    plan = compile(queryString);
+    if (this.maxSize > 0 && plan.isShareable()) {
+      if (this.plans.size() >= this.maxSize) {
+        // make room by dropping any plan; the ones in use are simply
+        // compiled again
+        Iterator<String> it = this.plans.keySet().iterator();
+        if (it.hasNext()) {
+          it.next();
+          it.remove();
+        }
+      }
+      Plan existing = this.plans.putIfAbsent(queryString, plan);
+      if (existing != null) {
+        plan = existing;
+      }
+    }
+    return plan;
+  }
+
+  public int size() {
+    return this.plans.size();
+  }
+
+  public void clear() {
+    this.plans.clear();
+  }
+
+  /**
+   * Compiles the query string without caching it.
+   */
+  public static Plan compile(String queryString) {
+    QCompiler compiler = new QCompiler();
+    CompiledValue compiledQuery = compiler.compileQuery(queryString);
+    return new Plan(compiledQuery, compiler.isTraceRequested());
+  }
+
+  /**
+   * A compiled query string
+   */
+  public static final class Plan {
+    private final CompiledValue compiledQuery;
+    private final boolean traceRequested;
+
+    Plan(CompiledValue compiledQuery, boolean traceRequested) {
+      this.compiledQuery = compiledQuery;
+      this.traceRequested = traceRequested;
+    }
+
+    public CompiledValue getCompiledQuery() {
+      return this.compiledQuery;
+    }
+
+    public boolean isTraceRequested() {
+      return this.traceRequested;
+    }
+
+    /**
+     * Returns whether the compiled query can be evaluated by several
+     * executions at the same time.
+     */
+    boolean isShareable() {
+      return isShareable(this.compiledQuery);
+    }
+
+    private static boolean isShareable(CompiledValue cv) {
+      if (cv instanceof CompiledLike) {
+        return false;
+      }
+      if (cv instanceof CompiledSelect && ((CompiledSelect) cv).isCount()) {
+        return false;
+      }
+      if (cv instanceof CompiledGroupBySelect) {
+        CompiledValue having = ((CompiledGroupBySelect) cv).getHavingClause();
+        if (having != null && !isShareable(having)) {
+          return false;
+        }
+      }
+      for (Object child : cv.getChildren()) {
+        if (child instanceof CompiledValue
+            && !isShareable((CompiledValue) child)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
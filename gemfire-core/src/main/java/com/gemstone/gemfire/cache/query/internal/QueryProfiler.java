@@ -0,0 +1,345 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+
+/**
+ * Records where the time of the queries executed by this member goes, per
+ * query string: looking up indexes, iterating over collections, evaluating the
+ * where clause, deserializing values, sending results and merging the results
+ * of other members. The totals of all queries are also kept in the
+ * {@link QueryProfilerStats} statistics.
+ *
+ * Profiling is off by default. It is turned on by the
+ * <tt>gemfire.Query.PROFILE</tt> system property or at runtime through the
+ * QueryProfilerMXBean. The number of query strings profiled is bounded by the
+ * <tt>gemfire.Query.PROFILE_SIZE</tt> system property; when it is reached, the
+ * profile of the query with the least total time is dropped.
+ *
+ * Phases may be nested: the iteration time includes the time spent evaluating
+ * the where clause and deserializing the iterated values. A phase entered
+ * again while it is in progress, e.g. by a nested query, is only timed once.
+ *
+ * @since 8.2
+ */
+public class QueryProfiler {
+
+  public static final int INDEX_LOOKUP = 0;
+  public static final int ITERATION = 1;
+  public static final int FILTER = 2;
+  public static final int DESERIALIZATION = 3;
+  public static final int RESULT_TRANSFER = 4;
+  public static final int MERGE = 5;
+
+  static final int NUM_PHASES = 6;
+
+  static final String[] PHASE_NAMES = { "indexLookup", "iteration", "filter",
+      "deserialization", "resultTransfer", "merge" };
+
+  public static final int PROFILE_SIZE = Integer.getInteger(
+      "gemfire.Query.PROFILE_SIZE", 100).intValue();
+
+  private static volatile boolean enabled = Boolean.getBoolean("gemfire.Query.PROFILE");
+
+  /** The execution profiled by the current thread */
+  private static final ThreadLocal<Frame> currentFrame = new ThreadLocal<Frame>();
+
+  private final ConcurrentMap<String, Profile> profiles = new ConcurrentHashMap<String, Profile>();
+
+  private final int maxProfiles;
+
+  private final QueryProfilerStats stats;
+
+  public QueryProfiler(QueryProfilerStats stats) {
+    this(stats, PROFILE_SIZE);
+  }
+
+  /**
+   * @param stats the statistics to update, or null
+   */
+  public QueryProfiler(QueryProfilerStats stats, int maxProfiles) {
+    this.stats = stats;
+    this.maxProfiles = maxProfiles;
+  }
+
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  public static void setEnabled(boolean enable) {
+    enabled = enable;
+  }
+
+  /**
+   * Starts profiling an execution of the query on the current thread.
+   *
+   * @return the execution to pass to {@link #end}, or null if profiling is
+   *         disabled or the thread already profiles an execution
+   */
+  public static Execution begin(Cache cache, String queryString) {
+    if (!enabled || !(cache instanceof GemFireCacheImpl)) {
+      return null;
+    }
+    return ((GemFireCacheImpl) cache).getQueryProfiler().begin(queryString);
+  }
+
+  public Execution begin(String queryString) {
+    if (!enabled || currentFrame.get() != null) {
+      return null;
+    }
+    Execution execution = new Execution(this, queryString);
+    currentFrame.set(new Frame(execution));
+    return execution;
+  }
+
+  /**
+   * Ends the execution started by {@link #begin} and adds its times to the
+   * profile of its query.
+   */
+  public static void end(Execution execution) {
+    if (execution == null) {
+      return;
+    }
+    currentFrame.remove();
+    execution.profiler.record(execution, System.nanoTime() - execution.startTime);
+  }
+
+  /**
+   * Returns the execution profiled by the current thread, if any, so that
+   * another thread working for it can {@link #attach} to it.
+   */
+  public static Execution current() {
+    if (!enabled) {
+      return null;
+    }
+    Frame frame = currentFrame.get();
+    return frame == null ? null : frame.execution;
+  }
+
+  /**
+   * Makes the current thread add the time of its phases to the given
+   * execution of another thread until it calls {@link #detach}.
+   *
+   * @return true if the thread was attached
+   */
+  public static boolean attach(Execution execution) {
+    if (execution == null || currentFrame.get() != null) {
+      return false;
+    }
+    currentFrame.set(new Frame(execution));
+    return true;
+  }
+
+  public static void detach() {
+    currentFrame.remove();
+  }
+
+  /**
+   * Starts timing a phase of the execution profiled by the current thread.
+   * Must be followed by a call to {@link #exit} with the same phase.
+   */
+  public static void enter(int phase) {
+    if (enabled) {
+      Frame frame = currentFrame.get();
+      if (frame != null) {
+        frame.enter(phase);
+      }
+    }
+  }
+
+  public static void exit(int phase) {
+    if (enabled) {
+      Frame frame = currentFrame.get();
+      if (frame != null) {
+        frame.exit(phase);
+      }
+    }
+  }
+
+  private void record(Execution execution, long executionTime) {
+    long[] phaseTimes = execution.getPhaseTimes();
+    if (this.stats != null) {
+      this.stats.endExecution(executionTime, phaseTimes);
+    }
+    if (this.maxProfiles <= 0) {
+      return;
+    }
+    Profile profile = this.profiles.get(execution.queryString);
+    if (profile == null) {
+      if (this.profiles.size() >= this.maxProfiles) {
+        removeCheapestProfile();
+      }
+      profile = new Profile(execution.queryString);
+      Profile existing = this.profiles.putIfAbsent(execution.queryString, profile);
+      if (existing != null) {
+        profile = existing;
+      }
+    }
+    profile.add(executionTime, phaseTimes);
+  }
+
+  private void removeCheapestProfile() {
+    Profile cheapest = null;
+    for (Profile profile : this.profiles.values()) {
+      if (cheapest == null || profile.getTotalTime() < cheapest.getTotalTime()) {
+        cheapest = profile;
+      }
+    }
+    if (cheapest != null) {
+      this.profiles.remove(cheapest.getQueryString(), cheapest);
+    }
+  }
+
+  /**
+   * Returns the profiles of the queries, the one with the highest total time
+   * first.
+   */
+  public List<Profile> getProfiles() {
+    List<Profile> result = new ArrayList<Profile>(this.profiles.values());
+    Collections.sort(result, new Comparator<Profile>() {
+      public int compare(Profile p1, Profile p2) {
+        long t1 = p1.getTotalTime();
+        long t2 = p2.getTotalTime();
+        return t1 > t2 ? -1 : (t1 == t2 ? 0 : 1);
+      }
+    });
+    return result;
+  }
+
+  public Profile getProfile(String queryString) {
+    return this.profiles.get(queryString);
+  }
+
+  public void clear() {
+    this.profiles.clear();
+  }
+
+  public QueryProfilerStats getStats() {
+    return this.stats;
+  }
+
+  /**
+   * The times of one execution of a query on this member. Several threads
+   * may work for the same execution.
+   */
+  public static final class Execution {
+    private final QueryProfiler profiler;
+    private final String queryString;
+    private final long startTime = System.nanoTime();
+    private final AtomicLongArray phaseTimes = new AtomicLongArray(NUM_PHASES);
+
+    Execution(QueryProfiler profiler, String queryString) {
+      this.profiler = profiler;
+      this.queryString = queryString;
+    }
+
+    void add(int phase, long time) {
+      this.phaseTimes.addAndGet(phase, time);
+    }
+
+    long[] getPhaseTimes() {
+      long[] result = new long[NUM_PHASES];
+      for (int i = 0; i < NUM_PHASES; i++) {
+        result[i] = this.phaseTimes.get(i);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The phases in progress on one thread
+   */
+  private static final class Frame {
+    private final Execution execution;
+    private final int[] depth = new int[NUM_PHASES];
+    private final long[] start = new long[NUM_PHASES];
+
+    Frame(Execution execution) {
+      this.execution = execution;
+    }
+
+    void enter(int phase) {
+      if (this.depth[phase]++ == 0) {
+        this.start[phase] = System.nanoTime();
+      }
+    }
+
+    void exit(int phase) {
+      // the phase was not entered if profiling was turned off and on again
+      // while it was in progress
+      if (this.depth[phase] > 0 && --this.depth[phase] == 0) {
+        this.execution.add(phase, System.nanoTime() - this.start[phase]);
+      }
+    }
+  }
+
+  /**
+   * The times of all the profiled executions of a query on this member
+   */
+  public static final class Profile {
+    private final String queryString;
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong();
+    private final AtomicLong maxTime = new AtomicLong();
+    private final AtomicLongArray phaseTimes = new AtomicLongArray(NUM_PHASES);
+
+    Profile(String queryString) {
+      this.queryString = queryString;
+    }
+
+    void add(long executionTime, long[] times) {
+      this.executions.incrementAndGet();
+      this.totalTime.addAndGet(executionTime);
+      long max;
+      while (executionTime > (max = this.maxTime.get())) {
+        if (this.maxTime.compareAndSet(max, executionTime)) {
+          break;
+        }
+      }
+      for (int i = 0; i < NUM_PHASES; i++) {
+        if (times[i] != 0) {
+          this.phaseTimes.addAndGet(i, times[i]);
+        }
+      }
+    }
+
+    public String getQueryString() {
+      return this.queryString;
+    }
+
+    public long getExecutions() {
+      return this.executions.get();
+    }
+
+    /** Returns the total time of the executions in nanoseconds */
+    public long getTotalTime() {
+      return this.totalTime.get();
+    }
+
+    /** Returns the time of the slowest execution in nanoseconds */
+    public long getMaxTime() {
+      return this.maxTime.get();
+    }
+
+    /** Returns the total time spent in the given phase in nanoseconds */
+    public long getPhaseTime(int phase) {
+      return this.phaseTimes.get(phase);
+    }
+  }
+}
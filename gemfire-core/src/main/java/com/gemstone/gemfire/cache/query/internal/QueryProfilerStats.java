@@ -0,0 +1,95 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import com.gemstone.gemfire.StatisticDescriptor;
+import com.gemstone.gemfire.Statistics;
+import com.gemstone.gemfire.StatisticsFactory;
+import com.gemstone.gemfire.StatisticsType;
+import com.gemstone.gemfire.StatisticsTypeFactory;
+import com.gemstone.gemfire.internal.StatisticsTypeFactoryImpl;
+
+/**
+ * Statistics about the queries profiled by the {@link QueryProfiler} of a
+ * member, summed over all queries.
+ *
+ * @since 8.2
+ */
+public class QueryProfilerStats {
+
+  private static final StatisticsType type;
+
+  private static final int profiledQueriesId;
+  private static final int profiledQueryTimeId;
+  private static final int[] phaseTimeIds = new int[QueryProfiler.NUM_PHASES];
+
+  private static final String[] PHASE_DESCRIPTIONS = {
+      "Total time spent looking up indexes by the profiled queries",
+      "Total time spent iterating over collections by the profiled queries, including the time spent evaluating their where clause",
+      "Total time spent evaluating the where clause of the profiled queries on candidate values",
+      "Total time spent deserializing values by the profiled queries",
+      "Total time spent sending the results of the profiled queries to the member or client that executed them",
+      "Total time spent merging the results of the profiled queries received from other members"
+  };
+
+  static {
+    StatisticsTypeFactory f = StatisticsTypeFactoryImpl.singleton();
+
+    StatisticDescriptor[] descriptors = new StatisticDescriptor[QueryProfiler.NUM_PHASES + 2];
+    descriptors[0] = f.createLongCounter("profiledQueries",
+        "Number of query executions profiled on this member", "operations");
+    descriptors[1] = f.createLongCounter("profiledQueryTime",
+        "Total time spent executing the profiled queries on this member", "nanoseconds");
+    for (int i = 0; i < QueryProfiler.NUM_PHASES; i++) {
+      descriptors[i + 2] = f.createLongCounter(
+          QueryProfiler.PHASE_NAMES[i] + "Time", PHASE_DESCRIPTIONS[i],
+          "nanoseconds");
+    }
+    type = f.createType("QueryProfilerStats",
+        "Statistics about where the time of the profiled queries goes",
+        descriptors);
+
+    profiledQueriesId = type.nameToId("profiledQueries");
+    profiledQueryTimeId = type.nameToId("profiledQueryTime");
+    for (int i = 0; i < QueryProfiler.NUM_PHASES; i++) {
+      phaseTimeIds[i] = type.nameToId(QueryProfiler.PHASE_NAMES[i] + "Time");
+    }
+  }
+
+  private final Statistics stats;
+
+  public QueryProfilerStats(StatisticsFactory factory, String name) {
+    this.stats = factory.createAtomicStatistics(type, name);
+  }
+
+  public void endExecution(long executionTime, long[] phaseTimes) {
+    this.stats.incLong(profiledQueriesId, 1);
+    this.stats.incLong(profiledQueryTimeId, executionTime);
+    for (int i = 0; i < phaseTimes.length; i++) {
+      if (phaseTimes[i] != 0) {
+        this.stats.incLong(phaseTimeIds[i], phaseTimes[i]);
+      }
+    }
+  }
+
+  public long getProfiledQueries() {
+    return this.stats.getLong(profiledQueriesId);
+  }
+
+  public long getProfiledQueryTime() {
+    return this.stats.getLong(profiledQueryTimeId);
+  }
+
+  public long getPhaseTime(int phase) {
+    return this.stats.getLong(phaseTimeIds[phase]);
+  }
+
+  public void close() {
+    this.stats.close();
+  }
+}
@@ -46,6 +46,7 @@ import com.gemstone.gemfire.cache.query.internal.IndexInfo;
 import com.gemstone.gemfire.cache.query.internal.LinkedStructSet;
 import com.gemstone.gemfire.cache.query.internal.QRegion;
 import com.gemstone.gemfire.cache.query.internal.QueryMonitor;
+import com.gemstone.gemfire.cache.query.internal.QueryProfiler;
 import com.gemstone.gemfire.cache.query.internal.QueryUtils;
 import com.gemstone.gemfire.cache.query.internal.ResultsBag;
 import com.gemstone.gemfire.cache.query.internal.RuntimeIterator;
@@ -202,6 +203,7 @@ public abstract class AbstractIndex implements IndexProtocol
     if (updateStats) {
       this.internalIndexStats.incUsesInProgress(1);
       result = System.nanoTime();
+      QueryProfiler.enter(QueryProfiler.INDEX_LOOKUP);
     }
     return result;
   }
@@ -213,6 +215,7 @@ public abstract class AbstractIndex implements IndexProtocol
   void updateIndexUseEndStats(long start, boolean updateStats)
   {
     if (updateStats) {
+      QueryProfiler.exit(QueryProfiler.INDEX_LOOKUP);
       long end = System.nanoTime();
       this.internalIndexStats.incUsesInProgress(-1);
       this.internalIndexStats.incNumUses();
@@ -0,0 +1,247 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentMap;
+
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.index.AbstractIndex.InternalIndexStatistics;
+
+/**
+ * The forward map of a {@link HashIndex}, split into a number of
+ * {@link HashIndexSet} segments selected by the hash of the index key.
+ *
+ * Each segment is locked on its own, so updates of entries whose keys fall in
+ * different segments proceed in parallel instead of serializing on a single
+ * monitor; an update that moves an entry to another segment locks both.
+ * Lookups for a key only visit that key's segment and, like the lookups on a
+ * single <tt>HashIndexSet</tt>, do not lock; iterating over all keys visits
+ * the segments one after the other.
+ *
+ * {@link HashIndex} only uses more than one segment when the
+ * <tt>gemfire.index.SEGMENTED_HASH_INDEX</tt> system property is set.
+ *
+ * @since 8.2
+ */
+public class ConcurrentHashIndexSet {
+
+  private final HashIndexSet[] segments;
+
+  /** the strategy used to hash index keys, shared with the segments */
+  private HashIndexStrategy hashingStrategy;
+
+  /**
+   * @param concurrencyLevel the number of segments
+   * @param reverseMap RegionEntries=>index key map shared by all segments,
+   *          null unless {@link IndexManager#isObjectModificationInplace()}
+   */
+  public ConcurrentHashIndexSet(int concurrencyLevel, ConcurrentMap reverseMap,
+      ThreadLocal<Object2ObjectOpenHashMap> entryToOldKeysMap,
+      InternalIndexStatistics internalIndexStats) {
+    this.segments = new HashIndexSet[Math.max(1, concurrencyLevel)];
+    for (int i = 0; i < this.segments.length; i++) {
+      this.segments[i] = new HashIndexSet(reverseMap, entryToOldKeysMap,
+          internalIndexStats);
+    }
+  }
+
+  public void setHashIndexStrategy(HashIndexStrategy hashingStrategy) {
+    this.hashingStrategy = hashingStrategy;
+    for (HashIndexSet segment : this.segments) {
+      segment.setHashIndexStrategy(hashingStrategy);
+    }
+  }
+
+  private HashIndexSet segmentFor(Object indexKey) {
+    return this.segments[segmentIndexFor(indexKey)];
+  }
+
+  private int segmentIndexFor(Object indexKey) {
+    if (this.segments.length == 1) {
+      return 0;
+    }
+    int hash = this.hashingStrategy.computeHashCode(indexKey, false);
+    // the segments use the hash modulo their prime capacity to find a
+    // slot, so mix in the high bits before picking the segment
+    hash ^= (hash >>> 16);
+    return (hash & 0x7fffffff) % this.segments.length;
+  }
+
+  /**
+   * Adds <tt>obj</tt> with the given index key and removes the mapping of
+   * its previous key, if any.
+   *
+   * When the previous key is in another segment both segments are locked,
+   * always in the order of their position in the array, so that the entry
+   * moves from one to the other in a single step.
+   *
+   * @return true if the set was modified by the add operation
+   */
+  public boolean add(Object indexKey, Object obj) throws TypeMismatchException {
+    final int index = segmentIndexFor(indexKey);
+    final HashIndexSet segment = this.segments[index];
+    boolean scan = false;
+    boolean added;
+    for (;;) {
+      Object oldKey = segment.getOldKey(obj);
+      final int oldIndex = oldKey == null ? index : segmentIndexFor(oldKey);
+      synchronized (this.segments[Math.min(index, oldIndex)]) {
+        synchronized (this.segments[Math.max(index, oldIndex)]) {
+          // the old key is read again now that it cannot change under us
+          oldKey = segment.getOldKey(obj);
+          if ((oldKey == null ? index : segmentIndexFor(oldKey)) != oldIndex) {
+            continue;
+          }
+          added = segment.add(indexKey, obj, oldKey, oldIndex == index);
+          if (added && indexKey != null && oldIndex != index) {
+            scan = !this.segments[oldIndex].removeWithKey(oldKey, obj, false, -1)
+                && !IndexManager.isObjectModificationInplace();
+          }
+        }
+      }
+      break;
+    }
+    if (scan) {
+      // the old mapping could not be found with its key after an in place
+      // modification; look for it in every segment, one lock at a time
+      removeByScan(obj, segment, indexKey);
+    }
+    return added;
+  }
+
+  /**
+   * Removes the mapping of <tt>obj</tt> for the given index key.
+   *
+   * @param key assumed to not be null, rather needs to be NULL token
+   * @return true if object was removed, false otherwise
+   */
+  public boolean remove(Object key, Object obj, boolean updateReverseMap) {
+    if (segmentFor(key).removeWithKey(key, obj, updateReverseMap, -1)) {
+      return true;
+    }
+    if (!IndexManager.isObjectModificationInplace()) {
+      // object could not be found so it's possible there was an inplace
+      // modification
+      return removeByScan(obj, null, null);
+    }
+    return false;
+  }
+
+  private boolean removeByScan(Object obj, HashIndexSet newSegment,
+      Object newKey) {
+    for (HashIndexSet segment : this.segments) {
+      if (segment.removeByScan(obj, segment == newSegment ? newKey : null)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean contains(Object obj) {
+    return segmentFor(this.hashingStrategy.computeKey(obj)).contains(obj);
+  }
+
+  /**
+   * @return an iterator over the region entries that match the index key
+   */
+  public Iterator get(Object indexKey) {
+    return segmentFor(indexKey).get(indexKey);
+  }
+
+  public Iterator getAll() {
+    return getAllNotMatching(Collections.EMPTY_LIST);
+  }
+
+  public Iterator getAllNotMatching(Collection keysToRemove) {
+    return new SegmentsIterator(keysToRemove);
+  }
+
+  public Iterator iterator() {
+    return getAll();
+  }
+
+  public int size(Object indexKey) {
+    return segmentFor(indexKey).size(indexKey);
+  }
+
+  /**
+   * Returns the number of slots used in the backing arrays of all segments
+   */
+  public int size() {
+    int size = 0;
+    for (HashIndexSet segment : this.segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    for (HashIndexSet segment : this.segments) {
+      if (!segment.isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void clear() {
+    for (HashIndexSet segment : this.segments) {
+      segment.clear();
+    }
+  }
+
+  public String printAll() {
+    StringBuilder sb = new StringBuilder();
+    for (HashIndexSet segment : this.segments) {
+      sb.append(segment.printAll());
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Iterates over the entries of one segment after the other
+   */
+  private class SegmentsIterator implements Iterator {
+    private final Collection keysToRemove;
+    private int segment = 0;
+    private Iterator current;
+
+    SegmentsIterator(Collection keysToRemove) {
+      this.keysToRemove = keysToRemove;
+      this.current = segments[0].getAllNotMatching(keysToRemove);
+    }
+
+    public boolean hasNext() {
+      while (!this.current.hasNext()) {
+        if (++this.segment >= segments.length) {
+          return false;
+        }
+        this.current = segments[this.segment].getAllNotMatching(
+            this.keysToRemove);
+      }
+      return true;
+    }
+
+    public Object next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return this.current.next();
+    }
+
+    public void remove() {
+      this.current.remove();
+    }
+  }
+}
@@ -92,11 +92,17 @@ public class HashIndex extends AbstractIndex {
    */
   protected ThreadLocal<Object2ObjectOpenHashMap> entryToOldKeysMap;
 
+  /**
+   * True if the forward map is split into as many segments as the
+   * concurrency level of the region.
+   */
+  static final boolean SEGMENTED = Boolean.getBoolean("gemfire.index.SEGMENTED_HASH_INDEX");
+
   /**
    * Map for valueOf(indexedExpression)=>RegionEntries. SortedMap<Object,
    * (RegionEntry | List<RegionEntry>)>. Package access for unit tests.
    */
-  final HashIndexSet entriesSet;
+  final ConcurrentHashIndexSet entriesSet;
 
   /**
    * Map for RegionEntries=>value of indexedExpression (reverse map)
@@ -147,7 +153,11 @@ public class HashIndex extends AbstractIndex {
       }
     }
     
-    entriesSet = new HashIndexSet(entryToValuesMap, entryToOldKeysMap, internalIndexStats);
+    // if asked to, segment the forward map like the region map so that
+    // concurrent updates do not serialize on a single lock
+    entriesSet = new ConcurrentHashIndexSet(
+        SEGMENTED ? ra.getConcurrencyLevel() : 1, entryToValuesMap,
+        entryToOldKeysMap, internalIndexStats);
   }
 
   /**
@@ -372,6 +372,14 @@ public class HashIndexSet implements Set {
   }
 
   public synchronized boolean add(Object indexKey, Object obj) throws TypeMismatchException {   
+    return add(indexKey, obj, getOldKey(obj), true);
+  }
+
+  /**
+   * Returns the key <tt>obj</tt> was indexed with before the current update
+   * or null if it was not indexed.
+   */
+  Object getOldKey(Object obj) throws TypeMismatchException {
     // Before adding the entry with new value, remove it from reverse map and
     // using the oldValue remove entry from the forward map.
     // Reverse-map is used based on the system property
@@ -385,6 +393,19 @@ public class HashIndexSet implements Set {
         oldKey = TypeUtils.indexKeyFor(oldKeyMap.get(obj));        
       }
     }
+    return oldKey;
+  }
+
+  /**
+   * Adds <tt>obj</tt> with the given index key.
+   * 
+   * @param oldKey the key <tt>obj</tt> was previously indexed with, may be null
+   * @param removeOldKey true if the old mapping is stored in this set and
+   *          should be removed from it
+   * @return true if the set was modified by the add operation
+   */
+  synchronized boolean add(Object indexKey, Object obj, Object oldKey,
+      boolean removeOldKey) {
     // Note we cannot make the optimization for hash index.  Due to in place modification
     // where old key == new key (when no reverse map) we end up not updating to the correct slot in this case
     // If oldKey and the newKey are same there is no need to update the
@@ -409,7 +430,7 @@ public class HashIndexSet implements Set {
       if ( IndexManager.isObjectModificationInplace()) {
         this.entryToValuesMap.put(obj, indexKey);
       }
-      if (indexKey != null && oldKey != null) {
+      if (removeOldKey && indexKey != null && oldKey != null) {
         remove(oldKey, obj, false, indexSlot);
       }
       // Update Stats after real addition
@@ -584,13 +605,9 @@ public class HashIndexSet implements Set {
     
     Object[] newSet = new Object[newCapacity];
     _removedTokens = 0;
-    //adds/removes/rehash should all be synchronized by the hashindex
-    //we are ok to clear this map and repopulate
-    //we do not do this for _set because we could still be querying 
-    //but the reversemap is only used for adds/removes/rehash
-    if (IndexManager.isObjectModificationInplace()) {
-      entryToValuesMap.clear();
-    }
+    //the reverse map is not cleared here: it may be shared with the other
+    //segments of a ConcurrentHashIndexSet which are updated concurrently,
+    //and every entry copied below overwrites its own mapping anyway
     for (int i = oldCapacity; i-- > 0;) {
       if (oldSet[i] != null && oldSet[i] != REMOVED) {
         Object o = oldSet[i];
@@ -727,6 +744,22 @@ public class HashIndexSet implements Set {
    * @return true if object was removed, false otherwise
    */
   public synchronized boolean remove(Object key, Object obj, boolean updateReverseMap, int newIndexSlot) {
+    if (removeWithKey(key, obj, updateReverseMap, newIndexSlot)) {
+      return true;
+    }
+    else if (!IndexManager.isObjectModificationInplace()) {
+      return scanAndRemove(obj, newIndexSlot);
+    }
+    return false;
+  }
+
+  /**
+   * Removes <tt>obj</tt> from the slot found by probing for <tt>key</tt>.
+   * Does not fall back to scanning the set.
+   * 
+   * @return true if object was removed, false otherwise
+   */
+  synchronized boolean removeWithKey(Object key, Object obj, boolean updateReverseMap, int newIndexSlot) {
     int indexSlot = index(key, obj, newIndexSlot);
     boolean removed = false;
     //The check for newIndexSlot != indexSlot is incase of in place modification.
@@ -742,17 +775,32 @@ public class HashIndexSet implements Set {
       }
       return removed;
     }
-    else if (!IndexManager.isObjectModificationInplace()){
-      //object could not be found so it's possible there was an inplace modification
-        HashIndexSetIterator iterator = (HashIndexSetIterator)getAll();
-        while (iterator.hasNext()) {
-          Object indexedObject = iterator.next();
-          if (_hashingStrategy.equalsOnAdd(indexedObject, obj) && iterator.currentObjectIndex() != newIndexSlot) {
-            iterator.remove();
-            internalIndexStats.incNumValues(-1);
-            return true;
-          }
-        }
+    return false;
+  }
+
+  /**
+   * Scans the whole set for <tt>obj</tt> and removes it. Used when
+   * <tt>obj</tt> could not be found with its old key, which can happen after
+   * an in place modification.
+   * 
+   * @param keyToKeep if not null, the mapping of <tt>obj</tt> that is found
+   *          by probing for this key is not removed
+   * @return true if object was removed, false otherwise
+   */
+  synchronized boolean removeByScan(Object obj, Object keyToKeep) {
+    return scanAndRemove(obj, keyToKeep == null ? -1 : index(keyToKeep, obj));
+  }
+
+  private boolean scanAndRemove(Object obj, int newIndexSlot) {
+    //object could not be found so it's possible there was an inplace modification
+    HashIndexSetIterator iterator = (HashIndexSetIterator)getAll();
+    while (iterator.hasNext()) {
+      Object indexedObject = iterator.next();
+      if (_hashingStrategy.equalsOnAdd(indexedObject, obj) && iterator.currentObjectIndex() != newIndexSlot) {
+        iterator.remove();
+        internalIndexStats.incNumValues(-1);
+        return true;
+      }
     }
     return false;
   }
@@ -12,22 +12,29 @@
  */
 package com.gemstone.gemfire.cache.query.internal.index;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.Logger;
 
@@ -60,6 +67,7 @@ import com.gemstone.gemfire.internal.Assert;
 import com.gemstone.gemfire.internal.cache.BucketRegion;
 import com.gemstone.gemfire.internal.cache.CachePerfStats;
 import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.GemfireCacheHelper;
 import com.gemstone.gemfire.internal.cache.LocalRegion;
 import com.gemstone.gemfire.internal.cache.PartitionedRegion;
 import com.gemstone.gemfire.internal.cache.RegionEntry;
@@ -128,6 +136,22 @@ public class IndexManager  {
 
   /** For test purpose only */
   public static boolean TEST_RANGEINDEX_ONLY = false;
+
+  /**
+   * System property to set the number of threads that populate new indexes.
+   * With more than one thread the entries of a region are handed out to the
+   * threads in batches, and the buckets of a partitioned region are populated
+   * in parallel.
+   */
+  public static final int INDEX_POPULATION_THREADS = Integer.getInteger("gemfire.index.POPULATION_THREADS", 1).intValue();
+
+  /** the number of entries a population thread takes from the region at a time */
+  private static final int INDEX_POPULATION_BATCH_SIZE = Integer.getInteger("gemfire.index.POPULATION_BATCH_SIZE", 1000).intValue();
+
+  /** overrides INDEX_POPULATION_THREADS if greater than 1, for tests */
+  public static int TEST_POPULATION_THREADS = 0;
+
+  private static ExecutorService populationExecutor;
   public static final String INDEX_ELEMARRAY_THRESHOLD_PROP = "index_elemarray_threshold";
   public static final String INDEX_ELEMARRAY_SIZE_PROP = "index_elemarray_size";
   public static final int INDEX_ELEMARRAY_THRESHOLD = Integer.parseInt(System.getProperty(INDEX_ELEMARRAY_THRESHOLD_PROP,"100"));
@@ -888,53 +912,281 @@ public class IndexManager  {
    * populates all the indexes in the region
    */
   public void populateIndexes(Collection<Index> indexSet) throws MultiIndexCreationException {
+    populateIndexes(indexSet, true);
+  }
+
+  /**
+   * populates all the indexes in the region
+   * 
+   * @param allowParallel false to populate the indexes on the calling thread
+   *          only, used when several regions are populated in parallel
+   */
+  public void populateIndexes(Collection<Index> indexSet, boolean allowParallel)
+      throws MultiIndexCreationException {
     waitBeforeUpdate();
     if(region.getCache().getLogger().infoEnabled()) {
       region.getCache().getLogger().info("Populating indexes for region " + region.getName());
     }
-    boolean throwException = false;
-    HashMap<String, Exception> exceptionsMap = new HashMap<String, Exception>();
+    // failed indexes are skipped for the remaining entries
+    Map<String, Exception> exceptionsMap = new ConcurrentHashMap<String, Exception>();
     try {
       Iterator entryIter = ((LocalRegion) region).getBestIterator(true);
-      while (entryIter.hasNext()) {
-        RegionEntry entry = (RegionEntry) entryIter.next();
-        if (entry == null || entry.isInvalidOrRemoved()) {
-          continue;
+      if (allowParallel && getPopulationThreads() > 1) {
+        populateInParallel(new EntryBatches(entryIter), indexSet, exceptionsMap);
+      } else {
+        while (entryIter.hasNext()) {
+          addIndexMappings((RegionEntry) entryIter.next(), indexSet, exceptionsMap);
         }
-        // Fault in the value once before index update so that every index
-        // update does not have
-        // to read the value from disk every time.
-        entry.getValue((LocalRegion)this.region);
+      }
+      if (!exceptionsMap.isEmpty()) {
         Iterator<Index> indexSetIterator = indexSet.iterator();
-        while(indexSetIterator.hasNext()) {
-          AbstractIndex index = (AbstractIndex) indexSetIterator.next();
-          if (!index.isPopulated() && index.getType() != IndexType.PRIMARY_KEY) {
-            if (logger.isDebugEnabled()) {
-              logger.debug("Adding to index :{}{} value :{}", index.getName(), this.region.getFullPath(), entry.getKey());
-            }
-            long start = ((AbstractIndex) index).updateIndexUpdateStats();
-            try {
-              index.addIndexMapping(entry);
-            } catch (IMQException e) {
-              if(logger.isDebugEnabled()) {
-                logger.debug("Adding to index failed for: {}, {}", index.getName(), e.getMessage(), e);
-              }
-              exceptionsMap.put(index.indexName, e);
-              indexSetIterator.remove();
-              throwException = true;
-            }
-            ((AbstractIndex) index).updateIndexUpdateStats(start);
+        while (indexSetIterator.hasNext()) {
+          if (exceptionsMap.containsKey(indexSetIterator.next().getName())) {
+            indexSetIterator.remove();
           }
         }
       }
       setPopulateFlagForIndexes(indexSet);
-      if (throwException) {
-        throw new MultiIndexCreationException(exceptionsMap);
+      if (!exceptionsMap.isEmpty()) {
+        throw new MultiIndexCreationException(new HashMap<String, Exception>(exceptionsMap));
+      }
+    } finally {
+      notifyAfterUpdate();
+    }
+  }
+
+  /**
+   * Restores the indexes of a region recovered from disk from the snapshot
+   * written when the region was closed, and populates the indexes that could
+   * not be restored from the region entries.
+   * 
+   * @see IndexSnapshot
+   */
+  public void restoreIndexes(File snapshot, Collection<Index> indexSet)
+      throws MultiIndexCreationException {
+    waitBeforeUpdate();
+    try {
+      Map<String, CompactRangeIndex> candidates = new HashMap<String, CompactRangeIndex>();
+      for (Index index : indexSet) {
+        if (IndexSnapshot.isSupported(index) && !((AbstractIndex) index).isPopulated()) {
+          candidates.put(index.getName(), (CompactRangeIndex) index);
+        }
+      }
+      Set<Index> restored = Collections.emptySet();
+      if (candidates.isEmpty()) {
+        snapshot.delete();
+      } else {
+        int liveEntries = 0;
+        Iterator entryIter = ((LocalRegion) region).getBestIterator(true);
+        while (entryIter.hasNext()) {
+          RegionEntry entry = (RegionEntry) entryIter.next();
+          if (entry != null && !entry.isInvalidOrRemoved()) {
+            liveEntries++;
+          }
+        }
+        restored = IndexSnapshot.restore(snapshot, (LocalRegion) region,
+            candidates, liveEntries);
+        setPopulateFlagForIndexes(restored);
+      }
+      if (region.getCache().getLogger().infoEnabled()) {
+        region.getCache().getLogger().info("Restored " + restored.size()
+            + " of " + indexSet.size() + " indexes for region " + region.getName());
+      }
+      List<Index> remaining = new ArrayList<Index>(indexSet);
+      remaining.removeAll(restored);
+      if (!remaining.isEmpty()) {
+        populateIndexes(remaining);
       }
     } finally {
       notifyAfterUpdate();
     }
   }
+
+  /**
+   * Saves the indexes of a persistent region that is being closed so that
+   * they can be restored by {@link #restoreIndexes} when it is recovered.
+   * 
+   * @see IndexSnapshot
+   */
+  public void saveIndexes(File snapshot) {
+    waitBeforeUpdate();
+    try {
+      IndexSnapshot.write(snapshot, (LocalRegion) region, getIndexes());
+    } finally {
+      notifyAfterUpdate();
+    }
+  }
+
+  private void addIndexMappings(RegionEntry entry, Collection<Index> indexSet,
+      Map<String, Exception> exceptionsMap) {
+    if (entry == null || entry.isInvalidOrRemoved()) {
+      return;
+    }
+    // Fault in the value once before index update so that every index
+    // update does not have
+    // to read the value from disk every time.
+    entry.getValue((LocalRegion)this.region);
+    for (Index ind : indexSet) {
+      AbstractIndex index = (AbstractIndex) ind;
+      if (!index.isPopulated() && index.getType() != IndexType.PRIMARY_KEY
+          && !exceptionsMap.containsKey(index.indexName)) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Adding to index :{}{} value :{}", index.getName(), this.region.getFullPath(), entry.getKey());
+        }
+        long start = ((AbstractIndex) index).updateIndexUpdateStats();
+        try {
+          index.addIndexMapping(entry);
+        } catch (IMQException e) {
+          if(logger.isDebugEnabled()) {
+            logger.debug("Adding to index failed for: {}, {}", index.getName(), e.getMessage(), e);
+          }
+          exceptionsMap.put(index.indexName, e);
+        }
+        ((AbstractIndex) index).updateIndexUpdateStats(start);
+      }
+    }
+  }
+
+  /**
+   * Populates the indexes with the population threads and the calling
+   * thread. The index stores already allow concurrent updates of different
+   * entries, so every thread adds its entries to the same indexes.
+   */
+  private void populateInParallel(final EntryBatches batches,
+      final Collection<Index> indexSet, final Map<String, Exception> exceptionsMap) {
+    Callable<Object> task = new Callable<Object>() {
+      public Object call() {
+        addIndexMappings(batches, indexSet, exceptionsMap);
+        return null;
+      }
+    };
+    int numThreads = getPopulationThreads();
+    ExecutorService executor = getPopulationExecutor();
+    List<Future<Object>> futures = new ArrayList<Future<Object>>(numThreads - 1);
+    try {
+      for (int i = 1; i < numThreads; i++) {
+        futures.add(executor.submit(task));
+      }
+      addIndexMappings(batches, indexSet, exceptionsMap);
+    } finally {
+      // stop the other threads if this one failed
+      batches.abort();
+      for (Future<Object> future : futures) {
+        waitForPopulation(future);
+      }
+    }
+  }
+
+  private void addIndexMappings(EntryBatches batches,
+      Collection<Index> indexSet, Map<String, Exception> exceptionsMap) {
+    List<RegionEntry> batch;
+    while ((batch = batches.next()) != null) {
+      for (RegionEntry entry : batch) {
+        addIndexMappings(entry, indexSet, exceptionsMap);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of threads that populate new indexes.
+   */
+  public static int getPopulationThreads() {
+    return TEST_POPULATION_THREADS > 1 ? TEST_POPULATION_THREADS
+        : INDEX_POPULATION_THREADS;
+  }
+
+  /**
+   * Returns the executor shared by all regions to populate indexes in
+   * parallel. Its tasks never wait for each other.
+   */
+  public static synchronized ExecutorService getPopulationExecutor() {
+    if (populationExecutor == null) {
+      final ThreadGroup group = LoggingThreadGroup.createThreadGroup(
+          "Index Population Thread Group", logger);
+      int numThreads = getPopulationThreads();
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(
+          numThreads, numThreads, 60,
+          TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+          GemfireCacheHelper.CreateThreadFactory(group, "Index Population Thread"));
+      executor.allowCoreThreadTimeOut(true);
+      populationExecutor = executor;
+    }
+    return populationExecutor;
+  }
+
+  /**
+   * Stops the threads of the population executor. This is called when the
+   * cache is closed, after its regions are closed; the next population creates
+   * a new executor.
+   */
+  public static synchronized void shutdownPopulationExecutor() {
+    if (populationExecutor != null) {
+      populationExecutor.shutdown();
+      populationExecutor = null;
+    }
+  }
+
+  /**
+   * Waits for a task submitted to the {@link #getPopulationExecutor()
+   * population executor} and returns its result. Runtime exceptions and errors
+   * thrown by the task are rethrown.
+   */
+  public static <T> T waitForPopulation(Future<T> future) {
+    boolean interrupted = false;
+    try {
+      for (;;) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          // the indexes are not usable before all population threads are done
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IndexMaintenanceException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Hands out the entries of a region to the threads populating its indexes
+   */
+  private static final class EntryBatches {
+    private final Iterator entryIter;
+    private boolean aborted = false;
+
+    EntryBatches(Iterator entryIter) {
+      this.entryIter = entryIter;
+    }
+
+    /**
+     * @return the next entries, or null once all entries were handed out
+     */
+    synchronized List<RegionEntry> next() {
+      if (this.aborted || !this.entryIter.hasNext()) {
+        return null;
+      }
+      List<RegionEntry> batch = new ArrayList<RegionEntry>(INDEX_POPULATION_BATCH_SIZE);
+      while (batch.size() < INDEX_POPULATION_BATCH_SIZE && this.entryIter.hasNext()) {
+        batch.add((RegionEntry) this.entryIter.next());
+      }
+      return batch;
+    }
+
+    synchronized void abort() {
+      this.aborted = true;
+    }
+  }
   
   /**
    * Sets the {@link AbstractIndex#isPopulated} after 
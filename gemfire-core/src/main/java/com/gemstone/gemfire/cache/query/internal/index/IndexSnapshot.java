@@ -0,0 +1,482 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.DataSerializer;
+import com.gemstone.gemfire.cache.query.Index;
+import com.gemstone.gemfire.cache.query.IndexMaintenanceException;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.internal.index.AbstractIndex.InternalIndexStatistics;
+import com.gemstone.gemfire.internal.ClassPathLoader;
+import com.gemstone.gemfire.internal.GemFireVersion;
+import com.gemstone.gemfire.internal.cache.CachedDeserializable;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.cache.RegionEntry;
+import com.gemstone.gemfire.internal.cache.Token;
+import com.gemstone.gemfire.internal.cache.versions.VersionStamp;
+import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.pdx.PdxInstance;
+import com.gemstone.gemfire.pdx.internal.PdxString;
+
+/**
+ * Saves the contents of the {@link CompactRangeIndex}es of a persistent region
+ * to a file when the region is closed, so that the indexes can be restored
+ * when the region is recovered from disk instead of evaluating the indexed
+ * expression on every recovered entry.
+ *
+ * The file holds, for each index, its index key and the key and version of
+ * every region entry in the index, followed by a checksum of the file. A
+ * mapping is only restored if the recovered entry still has the same version,
+ * and an index is only restored if all of its mappings are and it maps every
+ * recovered entry; otherwise it is populated from the region entries as
+ * usual. The file is deleted once it was read, so a region that is not closed
+ * cleanly always rebuilds its indexes.
+ *
+ * The index keys are only valid for the code that computed them, so each
+ * index is saved with a fingerprint of its definition, the product version
+ * and the class files of the keys and values it was built from. An index
+ * whose fingerprint no longer matches is rebuilt. The classes of values that
+ * are only on disk or still serialized when the snapshot is written are not
+ * known, so they are covered only through the key and value constraints of
+ * the region. A change to such a class that is not a constraint of the region
+ * is not detected.
+ *
+ * Other index types are always rebuilt.
+ *
+ * @since 8.2
+ */
+public class IndexSnapshot {
+
+  private static final Logger logger = LogService.getLogger();
+
+  private static final int MAGIC = 0x47464958;
+  private static final byte FORMAT_VERSION = 2;
+
+  private static final byte END = 0;
+  private static final byte INDEX_START = 1;
+  private static final byte MAPPING = 2;
+  private static final byte INDEX_END = 3;
+
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final byte OBJECT_KEY = 0;
+  private static final byte NULL_KEY = 1;
+  private static final byte UNDEFINED_KEY = 2;
+  private static final byte PDX_STRING_KEY = 3;
+
+  private IndexSnapshot() {
+  }
+
+  /**
+   * Returns whether the index can be saved to a snapshot and restored from it
+   */
+  static boolean isSupported(Index index) {
+    return index instanceof CompactRangeIndex
+        && ((CompactRangeIndex) index).getIndexStorage() instanceof MemoryIndexStore;
+  }
+
+  /**
+   * Writes the populated indexes of the region that support snapshots to the
+   * given file. The file is removed if the snapshot could not be written.
+   *
+   * @return true if the snapshot was written
+   */
+  public static boolean write(File file, LocalRegion region,
+      Collection<Index> indexes) {
+    List<CompactRangeIndex> toSave = new ArrayList<CompactRangeIndex>();
+    for (Index index : indexes) {
+      if (isSupported(index) && ((AbstractIndex) index).isPopulated()
+          && index.isValid()) {
+        toSave.add((CompactRangeIndex) index);
+      }
+    }
+    if (toSave.isEmpty()) {
+      file.delete();
+      return false;
+    }
+    File tmp = new File(file.getPath() + ".tmp");
+    boolean written = false;
+    try {
+      CheckedOutputStream checked = new CheckedOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024),
+          new CRC32());
+      DataOutputStream out = new DataOutputStream(checked);
+      try {
+        out.writeInt(MAGIC);
+        out.writeByte(FORMAT_VERSION);
+        for (CompactRangeIndex index : toSave) {
+          writeIndex(out, region, index);
+        }
+        out.writeByte(END);
+        out.flush();
+        out.writeLong(checked.getChecksum().getValue());
+      } finally {
+        out.close();
+      }
+      written = tmp.renameTo(file);
+    } catch (IOException e) {
+      logger.info("Unable to save the indexes of region {}; they will be rebuilt on recovery: {}",
+          region.getFullPath(), e.getMessage());
+    } catch (RuntimeException e) {
+      logger.info("Unable to save the indexes of region {}; they will be rebuilt on recovery: {}",
+          region.getFullPath(), e.getMessage());
+    } finally {
+      if (!written) {
+        tmp.delete();
+        file.delete();
+      }
+    }
+    if (written && logger.isDebugEnabled()) {
+      logger.debug("Saved {} indexes of region {} to {}", toSave.size(),
+          region.getFullPath(), file);
+    }
+    return written;
+  }
+
+  private static void writeIndex(DataOutputStream out, LocalRegion region,
+      CompactRangeIndex index) throws IOException {
+    out.writeByte(INDEX_START);
+    out.writeUTF(index.getName());
+    int count = 0;
+    Set<String> domainClasses = new TreeSet<String>();
+    MemoryIndexStore store = (MemoryIndexStore) index.getIndexStorage();
+    for (Object o : store.valueToEntriesMap.entrySet()) {
+      Map.Entry mapEntry = (Map.Entry) o;
+      Object indexKey = mapEntry.getKey();
+      Object value = mapEntry.getValue();
+      if (value instanceof RegionEntry) {
+        writeMapping(out, indexKey, (RegionEntry) value, region, domainClasses);
+        count++;
+      } else {
+        for (Object re : (Collection) value) {
+          if (re != null) {
+            writeMapping(out, indexKey, (RegionEntry) re, region, domainClasses);
+            count++;
+          }
+        }
+      }
+    }
+    // covers the classes of the values that are on disk or serialized
+    Class keyConstraint = region.getAttributes().getKeyConstraint();
+    if (keyConstraint != null) {
+      domainClasses.add(keyConstraint.getName());
+    }
+    Class valueConstraint = region.getAttributes().getValueConstraint();
+    if (valueConstraint != null) {
+      domainClasses.add(valueConstraint.getName());
+    }
+    out.writeByte(INDEX_END);
+    out.writeInt(count);
+    String[] classNames = domainClasses.toArray(new String[domainClasses.size()]);
+    DataSerializer.writeStringArray(classNames, out);
+    DataSerializer.writeByteArray(fingerprint(index, classNames), out);
+  }
+
+  private static void writeMapping(DataOutputStream out, Object indexKey,
+      RegionEntry entry, LocalRegion region, Set<String> domainClasses)
+      throws IOException {
+    VersionStamp stamp = entry.getVersionStamp();
+    if (stamp == null) {
+      throw new IOException("entry " + entry.getKey() + " has no version");
+    }
+    out.writeByte(MAPPING);
+    if (indexKey == IndexManager.NULL) {
+      out.writeByte(NULL_KEY);
+    } else if (indexKey == QueryService.UNDEFINED) {
+      out.writeByte(UNDEFINED_KEY);
+    } else if (indexKey instanceof PdxString) {
+      out.writeByte(PDX_STRING_KEY);
+      DataSerializer.writeString(indexKey.toString(), out);
+    } else {
+      out.writeByte(OBJECT_KEY);
+      DataSerializer.writeObject(indexKey, out);
+    }
+    DataSerializer.writeObject(entry.getKey(), out);
+    out.writeInt(stamp.getEntryVersion());
+    out.writeLong(stamp.getRegionVersion());
+    domainClasses.add(entry.getKey().getClass().getName());
+    Object value = entry.getValueInVM(region);
+    if (value instanceof CachedDeserializable) {
+      value = ((CachedDeserializable) value).getValue();
+    }
+    // the classes of values that are serialized or on disk are not known;
+    // writeIndex adds the value constraint of the region for them
+    if (value != null && !(value instanceof byte[]) && !(value instanceof Token)
+        && !(value instanceof PdxInstance)) {
+      domainClasses.add(value.getClass().getName());
+    }
+  }
+
+  /**
+   * Returns a digest of the index definition, the product version and the
+   * class files of the given classes, or null if a class cannot be found.
+   */
+  static byte[] fingerprint(CompactRangeIndex index, String[] classNames) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+    update(digest, GemFireVersion.getGemFireVersion());
+    update(digest, index.getClass().getName());
+    update(digest, index.getCanonicalizedIndexedExpression());
+    update(digest, index.getCanonicalizedFromClause());
+    byte[] buffer = new byte[8192];
+    for (String className : classNames) {
+      update(digest, className);
+      try {
+        Class<?> c = ClassPathLoader.getLatest().forName(className);
+        if (c.getClassLoader() == null) {
+          // a JDK class
+          continue;
+        }
+        InputStream classFile = c.getResourceAsStream(
+            "/" + className.replace('.', '/') + ".class");
+        if (classFile == null) {
+          return null;
+        }
+        try {
+          int n;
+          while ((n = classFile.read(buffer)) > 0) {
+            digest.update(buffer, 0, n);
+          }
+        } finally {
+          classFile.close();
+        }
+      } catch (ClassNotFoundException e) {
+        return null;
+      } catch (IOException e) {
+        return null;
+      }
+    }
+    return digest.digest();
+  }
+
+  private static void update(MessageDigest digest, String s) {
+    digest.update(s.getBytes(UTF8));
+    digest.update((byte) 0);
+  }
+
+  /**
+   * Restores the indexes saved in the given file and deletes the file. Must
+   * be called before the region applies any update to the indexes.
+   *
+   * @param indexes the empty indexes to restore by name
+   * @param liveEntries the number of region entries that are not invalid or
+   *          removed, each of which must be mapped by a restored index
+   * @return the indexes that were restored
+   */
+  static Set<Index> restore(File file, LocalRegion region,
+      Map<String, CompactRangeIndex> indexes, int liveEntries) {
+    Set<Index> restored = new HashSet<Index>();
+    if (!file.exists()) {
+      return restored;
+    }
+    try {
+      if (!isIntact(file)) {
+        logger.info("Ignoring corrupt index snapshot {}", file);
+        return restored;
+      }
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+          new FileInputStream(file), 64 * 1024));
+      try {
+        if (in.readInt() != MAGIC || in.readByte() != FORMAT_VERSION) {
+          logger.info("Ignoring index snapshot {} with an unknown format", file);
+          return restored;
+        }
+        byte b;
+        while ((b = in.readByte()) == INDEX_START) {
+          String name = in.readUTF();
+          CompactRangeIndex index = indexes.get(name);
+          if (restoreIndex(in, region, index, liveEntries)) {
+            restored.add(index);
+          }
+        }
+        if (b != END) {
+          throw new IOException("unexpected record " + b);
+        }
+      } finally {
+        in.close();
+      }
+    } catch (EOFException e) {
+      logger.info("Ignoring the rest of the truncated index snapshot {}", file);
+    } catch (IOException e) {
+      logger.info("Unable to read index snapshot {}: {}", file, e.getMessage());
+    } catch (ClassNotFoundException e) {
+      logger.info("Unable to read index snapshot {}: {}", file, e.getMessage());
+    } finally {
+      file.delete();
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("Restored indexes {} of region {} from {}", restored,
+          region.getFullPath(), file);
+    }
+    return restored;
+  }
+
+  /**
+   * Returns true if the checksum at the end of the file matches its contents
+   */
+  private static boolean isIntact(File file) throws IOException {
+    long length = file.length() - 8;
+    if (length < 0) {
+      return false;
+    }
+    CheckedInputStream checked = new CheckedInputStream(
+        new BufferedInputStream(new FileInputStream(file), 64 * 1024),
+        new CRC32());
+    DataInputStream in = new DataInputStream(checked);
+    try {
+      byte[] buffer = new byte[8192];
+      while (length > 0) {
+        int n = in.read(buffer, 0, (int) Math.min(buffer.length, length));
+        if (n < 0) {
+          return false;
+        }
+        length -= n;
+      }
+      long checksum = checked.getChecksum().getValue();
+      return in.readLong() == checksum;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads the mappings of one index and adds them to the index if they all
+   * match the recovered entries.
+   *
+   * @param index the index to restore, or null to skip the mappings
+   */
+  private static boolean restoreIndex(DataInputStream in, LocalRegion region,
+      CompactRangeIndex index, int liveEntries)
+      throws IOException, ClassNotFoundException {
+    boolean valid = index != null;
+    List<Object> keys = valid ? new ArrayList<Object>(liveEntries) : null;
+    List<RegionEntry> entries = valid ? new ArrayList<RegionEntry>(liveEntries) : null;
+    Set<RegionEntry> seen = valid ? Collections.newSetFromMap(
+        new IdentityHashMap<RegionEntry, Boolean>(liveEntries)) : null;
+    byte b;
+    while ((b = in.readByte()) == MAPPING) {
+      Object indexKey = readIndexKey(in);
+      Object regionKey = DataSerializer.readObject(in);
+      int entryVersion = in.readInt();
+      long regionVersion = in.readLong();
+      if (!valid) {
+        continue;
+      }
+      RegionEntry entry = region.getRegionEntry(regionKey);
+      VersionStamp stamp = entry == null ? null : entry.getVersionStamp();
+      if (stamp == null || entry.isInvalidOrRemoved()
+          || stamp.getEntryVersion() != entryVersion
+          || stamp.getRegionVersion() != regionVersion || !seen.add(entry)) {
+        // the entry was modified after the snapshot was written
+        valid = false;
+        keys = null;
+        entries = null;
+        seen = null;
+        continue;
+      }
+      keys.add(indexKey);
+      entries.add(entry);
+    }
+    if (b != INDEX_END) {
+      throw new IOException("unexpected record " + b);
+    }
+    int count = in.readInt();
+    String[] classNames = DataSerializer.readStringArray(in);
+    byte[] fingerprint = DataSerializer.readByteArray(in);
+    if (!valid || count != entries.size() || count != liveEntries) {
+      return false;
+    }
+    if (fingerprint == null
+        || !Arrays.equals(fingerprint, fingerprint(index, classNames))) {
+      logger.info("Index {} or the classes it was built from changed since it was saved; it will be rebuilt",
+          index.getName());
+      return false;
+    }
+    IndexStore store = index.getIndexStorage();
+    try {
+      for (int i = 0; i < count; i++) {
+        Object indexKey = keys.get(i);
+        // convert the keys the way the index does when it is populated
+        index.setPdxStringFlag(indexKey);
+        indexKey = index.getPdxStringForIndexedPdxKeys(indexKey);
+        store.addMapping(indexKey, entries.get(i));
+      }
+    } catch (IMQException e) {
+      discard(index, e);
+      return false;
+    } catch (IndexMaintenanceException e) {
+      discard(index, e);
+      return false;
+    }
+    index.internalIndexStats.incNumUpdates(count);
+    return true;
+  }
+
+  /**
+   * Removes the mappings added to an index that could not be fully restored,
+   * so that it can be populated from the region entries.
+   */
+  private static void discard(CompactRangeIndex index, Exception cause) {
+    logger.info("Unable to restore index {}; it will be rebuilt: {}",
+        index.getName(), cause.getMessage());
+    index.getIndexStorage().clear();
+    InternalIndexStatistics stats = index.internalIndexStats;
+    stats.incNumKeys(-stats.getNumberOfKeys());
+    stats.incNumValues((int) -stats.getNumberOfValues());
+  }
+
+  private static Object readIndexKey(DataInputStream in)
+      throws IOException, ClassNotFoundException {
+    byte kind = in.readByte();
+    switch (kind) {
+    case NULL_KEY:
+      return IndexManager.NULL;
+    case UNDEFINED_KEY:
+      return QueryService.UNDEFINED;
+    case PDX_STRING_KEY:
+      return new PdxString(DataSerializer.readString(in));
+    case OBJECT_KEY:
+      return DataSerializer.readObject(in);
+    default:
+      throw new IOException("unexpected index key kind " + kind);
+    }
+  }
+}
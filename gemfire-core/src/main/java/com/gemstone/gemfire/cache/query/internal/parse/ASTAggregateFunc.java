@@ -0,0 +1,54 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal.parse;
+
+import antlr.Token;
+
+import com.gemstone.gemfire.cache.query.internal.QCompiler;
+
+/**
+ * The sum, min, max, avg and count aggregate functions. The single child is
+ * the argument expression, a <code>*</code> for count(*) or a distinct
+ * conversion wrapping the argument for e.g. count(distinct(p.status)).
+ *
+ * @since 8.2
+ */
+public class ASTAggregateFunc extends GemFireAST {
+  private static final long serialVersionUID = 8713004765228379685L;
+
+  public ASTAggregateFunc() {
+  }
+
+  public ASTAggregateFunc(Token t) {
+    super(t);
+  }
+
+  /**
+   * Returns true if this is count(*)
+   */
+  public boolean isCountStar() {
+    return getType() == OQLLexerTokenTypes.LITERAL_count
+        && getFirstChild().getType() == OQLLexerTokenTypes.TOK_STAR;
+  }
+
+  @Override
+  public void compile(QCompiler compiler) {
+    GemFireAST child = (GemFireAST)getFirstChild();
+    boolean distinct = false;
+    if (child.getType() == OQLLexerTokenTypes.TOK_STAR) {
+      compiler.pushNull();
+    } else {
+      if (child.getType() == OQLLexerTokenTypes.LITERAL_distinct) {
+        distinct = true;
+        child = (GemFireAST)child.getFirstChild();
+      }
+      child.compile(compiler);
+    }
+    compiler.aggregateFunction(getType(), distinct);
+  }
+}
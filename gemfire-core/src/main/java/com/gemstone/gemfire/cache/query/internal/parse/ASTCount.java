@@ -10,15 +10,17 @@
  */
 package com.gemstone.gemfire.cache.query.internal.parse;
 
-import com.gemstone.gemfire.cache.query.internal.QCompiler;
-
 import antlr.Token;
 
 /**
+ * count(*) or count(expr). A count(*) that is the only projection of a select
+ * without GROUP BY is compiled by {@link ASTSelect} into the count fast path;
+ * everywhere else it is compiled like the other aggregate functions.
+ *
  * @author shobhit
  * @since 6.6
  */
-public class ASTCount extends GemFireAST {
+public class ASTCount extends ASTAggregateFunc {
 
   /**
    * 
@@ -33,13 +35,4 @@ public class ASTCount extends GemFireAST {
     super(tok);
   }
 
-  @Override
-  public void compile(QCompiler compiler) {
-    GemFireAST child = (GemFireAST)getFirstChild();
-    int tokenType = child.getType();
-    if (tokenType == OQLLexerTokenTypes.TOK_STAR) {
-      compiler.push("COUNT");
-    }
-  }
-
 }
@@ -0,0 +1,53 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal.parse;
+
+import antlr.Token;
+
+import com.gemstone.gemfire.cache.query.internal.QCompiler;
+
+/**
+ * The GROUP BY clause. The children are the grouping expressions optionally
+ * followed by a <code>having</code> node holding the HAVING expression.
+ * Pushes the list of grouping expressions followed by the HAVING expression
+ * or null.
+ *
+ * @since 8.2
+ */
+public class ASTGroupBy extends GemFireAST {
+  private static final long serialVersionUID = -2218398741541873645L;
+
+  public ASTGroupBy() {
+  }
+
+  public ASTGroupBy(Token t) {
+    super(t);
+  }
+
+  @Override
+  public void compile(QCompiler compiler) {
+    GemFireAST having = null;
+    int numExprs = 0;
+    GemFireAST child = (GemFireAST)getFirstChild();
+    while (child != null) {
+      if (child.getType() == OQLLexerTokenTypes.LITERAL_having) {
+        having = child;
+      } else {
+        child.compile(compiler);
+        numExprs++;
+      }
+      child = (GemFireAST)child.getNextSibling();
+    }
+    compiler.combine(numExprs);
+    if (having != null) {
+      ((GemFireAST)having.getFirstChild()).compile(compiler);
+    } else {
+      compiler.pushNull();
+    }
+  }
+}
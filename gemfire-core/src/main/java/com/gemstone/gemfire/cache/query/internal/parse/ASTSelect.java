@@ -54,9 +54,17 @@ public class ASTSelect extends GemFireAST {
     }
     
     //Count(*) expression
-    if (child.getType() == OQLLexerTokenTypes.LITERAL_count) {
-      ((ASTCount)child).compile(compiler);
+    if (child.getType() == OQLLexerTokenTypes.LITERAL_count
+        && ((ASTCount)child).isCountStar() && !hasGroupClause(child)) {
+      compiler.push("COUNT");
       compiler.pushNull(); //For No projectionAttributes
+    } else if (child instanceof ASTAggregateFunc) {
+      // a single aggregate function is the only projection
+      compiler.pushNull();
+      ((ASTAggregateFunc)child).compile(compiler);
+      compiler.pushNull(); // no label
+      compiler.projection();
+      compiler.combine(1);
     } else {
       compiler.pushNull();
       // projectionAttributes
@@ -74,52 +82,55 @@ public class ASTSelect extends GemFireAST {
     ((GemFireAST)child).compile(compiler);
    
       
-	/*If WHERE clause ,order by clause as well as Limit clause is missing, then push 3 null as a placeholder */ 
-    if (child.getNextSibling() == null) {
+    // whereClause, groupClause, orderClause and limitClause are optional;
+    // push a null placeholder for each one that is missing (two for the
+    // group clause: the grouping expressions and the HAVING expression)
+    child = child.getNextSibling();
+    clauseType = child == null ? -1 : child.getType();
+    if (child != null && clauseType != OQLLexerTokenTypes.LITERAL_group
+        && clauseType != OQLLexerTokenTypes.LITERAL_order
+        && clauseType != OQLLexerTokenTypes.LIMIT) {
+      ((GemFireAST)child).compile(compiler);
+      child = child.getNextSibling();
+      clauseType = child == null ? -1 : child.getType();
+    } else {
+      //Where clause is null
       compiler.pushNull();
+    }
+    if (clauseType == OQLLexerTokenTypes.LITERAL_group) {
+      ((GemFireAST)child).compile(compiler);
+      child = child.getNextSibling();
+      clauseType = child == null ? -1 : child.getType();
+    } else {
+      //Group by and having clauses are null
       compiler.pushNull();
-      //Asif: This placeholder is for limit 
       compiler.pushNull();
     }
-    else { 
-       child = child.getNextSibling();      
-       clauseType = child.getType();
-       if( clauseType != OQLLexerTokenTypes.LITERAL_order && clauseType != OQLLexerTokenTypes.LIMIT ) {
-         //  where is present , order by & limit may present |  may !present
-         ((GemFireAST)child).compile(compiler);
-         child = child.getNextSibling();
-         if(child != null) {
-           clauseType = child.getType();
-         }
-         
-       }else {
-         //Where clause is null
-         compiler.pushNull();         
-       }
-       if(clauseType == OQLLexerTokenTypes.LITERAL_order) {
-         ((GemFireAST)child).compile(compiler);
-         child = child.getNextSibling();
-         if(child != null) {
-           clauseType = child.getType();
-         } 
-       }else {
-         //Order by clause is null
-         compiler.pushNull();
-       }
-       
-       if(clauseType == OQLLexerTokenTypes.LIMIT) {
-         ((GemFireAST)child).compile(compiler);  
-         child = child.getNextSibling();
-         if(child != null) {
-           clauseType = child.getType();
-         } 
-       }else {
-         //Limit clause is null
-         compiler.pushNull();
-       }
-    }    
+    if (clauseType == OQLLexerTokenTypes.LITERAL_order) {
+      ((GemFireAST)child).compile(compiler);
+      child = child.getNextSibling();
+      clauseType = child == null ? -1 : child.getType();
+    } else {
+      //Order by clause is null
+      compiler.pushNull();
+    }
+    if (clauseType == OQLLexerTokenTypes.LIMIT) {
+      ((GemFireAST)child).compile(compiler);
+    } else {
+      //Limit clause is null
+      compiler.pushNull();
+    }
     compiler.select();
   }
+
+  private static boolean hasGroupClause(AST child) {
+    for (; child != null; child = child.getNextSibling()) {
+      if (child.getType() == OQLLexerTokenTypes.LITERAL_group) {
+        return true;
+      }
+    }
+    return false;
+  }
   
   
 }
@@ -1246,32 +1246,32 @@ inputState.guessing--;
 			switch ( LA(1)) {
 			case LITERAL_sum:
 			{
-				AST tmp61_AST = null;
-				tmp61_AST = astFactory.create(LT(1));
+				com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc tmp61_AST = null;
+				tmp61_AST = (com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc)astFactory.create(LT(1),"com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc");
 				astFactory.makeASTRoot(currentAST, tmp61_AST);
 				match(LITERAL_sum);
 				break;
 			}
 			case LITERAL_min:
 			{
-				AST tmp62_AST = null;
-				tmp62_AST = astFactory.create(LT(1));
+				com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc tmp62_AST = null;
+				tmp62_AST = (com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc)astFactory.create(LT(1),"com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc");
 				astFactory.makeASTRoot(currentAST, tmp62_AST);
 				match(LITERAL_min);
 				break;
 			}
 			case LITERAL_max:
 			{
-				AST tmp63_AST = null;
-				tmp63_AST = astFactory.create(LT(1));
+				com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc tmp63_AST = null;
+				tmp63_AST = (com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc)astFactory.create(LT(1),"com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc");
 				astFactory.makeASTRoot(currentAST, tmp63_AST);
 				match(LITERAL_max);
 				break;
 			}
 			case LITERAL_avg:
 			{
-				AST tmp64_AST = null;
-				tmp64_AST = astFactory.create(LT(1));
+				com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc tmp64_AST = null;
+				tmp64_AST = (com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc)astFactory.create(LT(1),"com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc");
 				astFactory.makeASTRoot(currentAST, tmp64_AST);
 				match(LITERAL_avg);
 				break;
@@ -1369,17 +1369,30 @@ inputState.guessing--;
 		ASTPair currentAST = new ASTPair();
 		AST groupClause_AST = null;
 		
-		AST tmp74_AST = null;
-		tmp74_AST = astFactory.create(LT(1));
+		com.gemstone.gemfire.cache.query.internal.parse.ASTGroupBy tmp74_AST = null;
+		tmp74_AST = (com.gemstone.gemfire.cache.query.internal.parse.ASTGroupBy)astFactory.create(LT(1),"com.gemstone.gemfire.cache.query.internal.parse.ASTGroupBy");
 		astFactory.makeASTRoot(currentAST, tmp74_AST);
 		match(LITERAL_group);
 		match(LITERAL_by);
-		fieldList();
+		expr();
 		astFactory.addASTChild(currentAST, returnAST);
 		{
+		_loop5150:
+		do {
+			if ((LA(1)==TOK_COMMA)) {
+				match(TOK_COMMA);
+				expr();
+				astFactory.addASTChild(currentAST, returnAST);
+			}
+			else {
+				break _loop5150;
+			}
+			
+		} while (true);
+		}
+		{
 		if ((LA(1)==LITERAL_having)) {
-			match(LITERAL_having);
-			expr();
+			havingClause();
 			astFactory.addASTChild(currentAST, returnAST);
 		}
 		else if ((_tokenSet_12.member(LA(1)))) {
@@ -1393,6 +1406,22 @@ inputState.guessing--;
 		returnAST = groupClause_AST;
 	}
 	
+	public final void havingClause() throws RecognitionException, TokenStreamException {
+		
+		returnAST = null;
+		ASTPair currentAST = new ASTPair();
+		AST havingClause_AST = null;
+		
+		AST tmp76_AST = null;
+		tmp76_AST = astFactory.create(LT(1));
+		astFactory.makeASTRoot(currentAST, tmp76_AST);
+		match(LITERAL_having);
+		expr();
+		astFactory.addASTChild(currentAST, returnAST);
+		havingClause_AST = (AST)currentAST.root;
+		returnAST = havingClause_AST;
+	}
+	
 	public final void orderClause() throws RecognitionException, TokenStreamException {
 		
 		returnAST = null;
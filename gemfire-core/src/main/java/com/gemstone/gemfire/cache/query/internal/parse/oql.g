@@ -549,14 +549,22 @@ projection! :
 
 groupClause :
 
-        "group"^
-        "by"!  fieldList
+        "group"^<AST=com.gemstone.gemfire.cache.query.internal.parse.ASTGroupBy>
+        "by"!  expr
+        (
+            TOK_COMMA! expr
+        )*
 
         (
-            "having"!
-            expr
+            havingClause
         )?
     ;
+
+havingClause :
+
+        "having"^
+        expr
+    ;
     
 hintCommand :
 		 	
@@ -915,10 +923,10 @@ aggregateExpr :
 
         (
             (
-                "sum"^
-            |   "min"^
-            |   "max"^
-            |   "avg"^
+                "sum"^<AST=com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc>
+            |   "min"^<AST=com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc>
+            |   "max"^<AST=com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc>
+            |   "avg"^<AST=com.gemstone.gemfire.cache.query.internal.parse.ASTAggregateFunc>
             )
             TOK_LPAREN! query TOK_RPAREN!
 
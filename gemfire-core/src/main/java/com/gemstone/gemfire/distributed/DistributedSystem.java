@@ -821,6 +821,17 @@ import com.gemstone.gemfire.security.GemFireSecurityException;
  *   <dd><U>Default</U>: ""</dd>
  * </dl>
  * 
+ * <dl>
+ *   <a name="off-heap-memory-size"><dt>off-heap-memory-size</dt></a>
+ *   <dd><U>Description</U>: The total amount of off-heap memory that will be
+ *   reserved for the values of regions that have off-heap enabled. The value
+ *   is a number followed by an optional unit of "k", "m", "g" or "t".
+ *   The memory is allocated as direct buffers so the JVM's
+ *   -XX:MaxDirectMemorySize must be at least this large.</dd>
+ *   <dd><U>Default</U>: "" which reserves no off-heap memory</dd>
+ *   <dd><U>Since</U>: 8.2</dd>
+ * </dl>
+ * 
  * <B>Asynchronous Message Properties</B>
  *
  * <dl>
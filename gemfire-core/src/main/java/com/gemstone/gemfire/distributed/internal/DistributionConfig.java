@@ -2792,6 +2792,39 @@ public interface DistributionConfig extends Config, LogConfig {
   public static String MEMCACHED_BIND_ADDRESS_NAME = "memcached-bind-address";
   public static String DEFAULT_MEMCACHED_BIND_ADDRESS = "";
 
+  /**
+   * Returns the value of the <a
+   * href="../DistributedSystem.html#off-heap-memory-size">"off-heap-memory-size"</a> property
+   * @return the amount of off-heap memory to reserve for region values
+   * @since 8.2
+   */
+  public String getOffHeapMemorySize();
+  /**
+   * Sets the value of the <a
+   * href="../DistributedSystem.html#off-heap-memory-size">"off-heap-memory-size"</a> property
+   * @param value the amount of off-heap memory, for example "64g" or "512m"
+   * @since 8.2
+   */
+  public void setOffHeapMemorySize(String value);
+  /**
+   * Returns true if the value of the
+   * attribute can currently be modified.
+   * Some attributes can not be modified while the system is running.
+   * @since 8.2
+   */
+  public boolean isOffHeapMemorySizeModifiable();
+  /**
+   * The name of the "off-heap-memory-size" property
+   * @since 8.2
+   */
+  public static String OFF_HEAP_MEMORY_SIZE_NAME = "off-heap-memory-size";
+  /**
+   * The default value of the "off-heap-memory-size" property.
+   * Current value is an empty string <code>""</code> which means no off-heap memory is reserved.
+   * @since 8.2
+   */
+  public static String DEFAULT_OFF_HEAP_MEMORY_SIZE = "";
+
   //Added for the HTTP service
   
   /**
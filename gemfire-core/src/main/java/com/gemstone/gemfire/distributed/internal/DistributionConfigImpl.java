@@ -302,6 +302,11 @@ public class DistributionConfigImpl
    */
   private String memcachedBindAddress = DEFAULT_MEMCACHED_BIND_ADDRESS;
 
+  /**
+   * Amount of off-heap memory reserved for region values
+   */
+  private String offHeapMemorySize = DEFAULT_OFF_HEAP_MEMORY_SIZE;
+
   private boolean jmxManager = Boolean.getBoolean(InternalLocator.FORCE_LOCATOR_DM_TYPE) ? true : DEFAULT_JMX_MANAGER;
   private boolean jmxManagerStart = DEFAULT_JMX_MANAGER_START;
   
@@ -487,6 +492,7 @@ public class DistributionConfigImpl
     this.memcachedPort = other.getMemcachedPort();
     this.memcachedProtocol = other.getMemcachedProtocol();
     this.memcachedBindAddress = other.getMemcachedBindAddress();
+    this.offHeapMemorySize = other.getOffHeapMemorySize();
     this.userCommandPackages = other.getUserCommandPackages();
     
     // following added for 8.0
@@ -2477,6 +2483,11 @@ public class DistributionConfigImpl
         return false;
     } else if (!httpServiceBindAddress.equals(other.httpServiceBindAddress))
       return false;
+    if (offHeapMemorySize == null) {
+      if (other.offHeapMemorySize != null)
+        return false;
+    } else if (!offHeapMemorySize.equals(other.offHeapMemorySize))
+      return false;
     if (httpServicePort != other.httpServicePort)
       return false;
     if (jmxManager != other.jmxManager)
@@ -2908,6 +2919,8 @@ public class DistributionConfigImpl
         + ((httpServiceBindAddress == null) ? 0 : httpServiceBindAddress
             .hashCode());
     result = prime * result + httpServicePort;
+    result = prime * result
+        + ((offHeapMemorySize == null) ? 0 : offHeapMemorySize.hashCode());
     result = prime * result + (jmxManager ? 1231 : 1237);
     result = prime
         * result
@@ -3180,6 +3193,17 @@ public class DistributionConfigImpl
     this.memcachedBindAddress = bindAddress;
   }
 
+  @Override
+  public String getOffHeapMemorySize() {
+    return this.offHeapMemorySize;
+  }
+
+  @Override
+  public void setOffHeapMemorySize(String value) {
+    checkOffHeapMemorySize(value);
+    this.offHeapMemorySize = value;
+  }
+
   @Override
   public void setEnableClusterConfiguration(boolean value) {
     checkEnableSharedConfiguration();
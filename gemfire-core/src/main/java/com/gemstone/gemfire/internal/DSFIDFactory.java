@@ -339,6 +339,7 @@ import com.gemstone.gemfire.internal.cache.partitioned.RemoveIndexesMessage.Remo
 import com.gemstone.gemfire.internal.cache.partitioned.SizeMessage;
 import com.gemstone.gemfire.internal.cache.partitioned.SizeMessage.SizeReplyMessage;
 import com.gemstone.gemfire.internal.cache.partitioned.SizedBasedLoadProbe;
+import com.gemstone.gemfire.internal.cache.partitioned.StreamingPartitionOperation.ChunkPermitMessage;
 import com.gemstone.gemfire.internal.cache.persistence.DiskStoreID;
 import com.gemstone.gemfire.internal.cache.persistence.MembershipFlushRequest;
 import com.gemstone.gemfire.internal.cache.persistence.MembershipViewRequest;
@@ -995,6 +996,7 @@ public final class DSFIDFactory implements DataSerializableFixedID {
     registerDSFID(PR_FETCH_BULK_ENTRIES_REPLY_MESSAGE, FetchBulkEntriesReplyMessage.class);
     registerDSFID(PR_QUERY_TRACE_INFO, PRQueryTraceInfo.class);
     registerDSFID(INDEX_CREATION_DATA, IndexCreationData.class);
+    registerDSFID(PR_STREAMING_CHUNK_PERMIT_MESSAGE, ChunkPermitMessage.class);
   }
 
   /**
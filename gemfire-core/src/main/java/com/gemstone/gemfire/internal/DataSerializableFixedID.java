@@ -792,6 +792,8 @@ public interface DataSerializableFixedID extends SerializationVersions {
   public static final short PR_QUERY_TRACE_INFO = 2162;
 
   public static final short INDEX_CREATION_DATA = 2163;
+
+  public static final short PR_STREAMING_CHUNK_PERMIT_MESSAGE = 2164;
   
   
   // NOTE, codes > 65535 will take 4 bytes to serialize
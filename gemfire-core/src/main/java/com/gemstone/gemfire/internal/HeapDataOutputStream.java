@@ -388,6 +388,31 @@ public class HeapDataOutputStream extends OutputStream implements
     sendChunkTo(this.buffer, chan, out);
   }
 
+  /**
+   * Write the remaining bytes of <code>prefix</code>, followed by this stream,
+   * to the specified channel using gathering writes. Unlike
+   * {@link #sendTo(SocketChannel, ByteBuffer)} the contents of this stream are
+   * not copied into another buffer first.
+   */
+  public final void gatherTo(SocketChannel chan, ByteBuffer prefix) throws IOException {
+    finishWriting();
+    int numChunks = this.chunks == null ? 0 : this.chunks.size();
+    ByteBuffer[] bufs = new ByteBuffer[numChunks + 2];
+    bufs[0] = prefix;
+    int i = 1;
+    if (this.chunks != null) {
+      for (ByteBuffer bb: this.chunks) {
+        bufs[i++] = bb;
+      }
+    }
+    bufs[i] = this.buffer;
+    long remaining = prefix.remaining() + size();
+    while (remaining > 0) {
+      remaining -= chan.write(bufs);
+    }
+    this.size = 0;
+  }
+
   /**
    * sends the data from "in" by writing it to "sc" through "out" (out is used
    * to chunk to data and is probably a direct memory buffer).
@@ -245,6 +245,12 @@ public abstract class AbstractRegion implements Region, RegionAttributes,
   
   protected Compressor compressor;
   
+  /**
+   * True if this region stores its entry values off-heap.
+   * @since 8.2
+   */
+  protected boolean offHeap;
+  
   /**
    * @see #getExtensionPoint()
    * @since 8.1
@@ -1791,6 +1797,7 @@ public abstract class AbstractRegion implements Region, RegionAttributes,
     }
     
     this.compressor = attrs.getCompressor();
+    this.offHeap = attrs.getOffHeap();
     // enable concurrency checks for persistent regions
     if(!attrs.getConcurrencyChecksEnabled() 
         && attrs.getDataPolicy().withPersistence()
@@ -1986,6 +1993,10 @@ public abstract class AbstractRegion implements Region, RegionAttributes,
     return this.compressor;
   }
   
+  public boolean getOffHeap() {
+    return this.offHeap;
+  }
+  
   /**
    * @since 8.1
    */
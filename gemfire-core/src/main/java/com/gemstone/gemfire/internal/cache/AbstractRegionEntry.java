@@ -46,6 +46,7 @@ import com.gemstone.gemfire.internal.lang.StringUtils;
 import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
 import com.gemstone.gemfire.internal.util.BlobHelper;
 import com.gemstone.gemfire.internal.util.Versionable;
 import com.gemstone.gemfire.internal.util.concurrent.CustomEntryConcurrentHashMap;
@@ -278,7 +279,20 @@ public abstract class AbstractRegionEntry implements RegionEntry,
     if (isTombstone()) {
       v = Token.TOMBSTONE;
     } else {
-      v = getValue(region); // OFFHEAP: need to incrc, copy bytes, decrc
+      if (region.getOffHeap() && region.getCompressor() == null && !dst.isEagerDeserialize()) {
+        Object sv = _getValueRetain();
+        if (sv instanceof StoredObject) {
+          // send the off-heap bytes without copying them to the heap;
+          // dst now owns the reference and InitialImageOperation releases it once it is sent
+          StoredObject so = (StoredObject)sv;
+          dst.setLastModified(mgr, getLastModified());
+          dst.value = so;
+          dst.setSerialized(so.isSerialized());
+          setRecentlyUsed();
+          return true;
+        }
+      }
+      v = getValue(region);
       if (v == null) {
         return false;
       }
@@ -593,7 +607,12 @@ public abstract class AbstractRegionEntry implements RegionEntry,
             }
           }
         } 
-        setValue(region, AbstractRegionMap.prepareValueForCache(region, newValueToWrite));
+        Object preparedValue = AbstractRegionMap.prepareValueForCache(region, newValueToWrite);
+        try {
+          setValue(region, preparedValue);
+        } finally {
+          AbstractRegionMap.releaseIfNotStored(this, preparedValue);
+        }
         result = true;
 
         if (newValueToWrite != Token.TOMBSTONE){
@@ -1068,12 +1087,63 @@ public abstract class AbstractRegionEntry implements RegionEntry,
    * Instead of overriding this method; override areSetValue.
    */
   protected final void _setValue(Object val) {
+    Object oldValue = areGetValue();
     areSetValue(val);
+    // release only after the new value is visible so a reader that fails
+    // to retain the old value is guaranteed to see its replacement
+    if (oldValue != val && oldValue instanceof StoredObject) {
+      ((StoredObject)oldValue).release();
+    }
   }
   
+  /**
+   * Returns the value of this entry in the form it would have had on the heap.
+   * A value stored off-heap is copied to the heap so the result remains
+   * valid after the entry's value changes.
+   */
   @Override
   public final Object _getValue() {
-    return areGetValue();
+    Object v = areGetValue();
+    if (v instanceof StoredObject) {
+      v = _getValueRetain();
+      if (v instanceof StoredObject) {
+        StoredObject so = (StoredObject)v;
+        try {
+          v = so.getValueAsHeapObject();
+        } finally {
+          so.release();
+        }
+      }
+    }
+    return v;
+  }
+
+  /**
+   * Returns the value of this entry as it is stored without copying an
+   * off-heap value to the heap. If the result is a {@link StoredObject}
+   * a reference to it has been retained for the caller, who must
+   * {@link StoredObject#release() release} it once done.
+   * @since 8.2
+   */
+  public final Object _getValueRetain() {
+    for (;;) {
+      Object v = areGetValue();
+      if (!(v instanceof StoredObject) || ((StoredObject)v).retain()) {
+        return v;
+      }
+      // the value was freed after being replaced so read the new one
+    }
+  }
+
+  /**
+   * Frees this entry's off-heap value, if it has one, leaving the entry removed.
+   * Only used when the entry is being discarded along with its map.
+   * @since 8.2
+   */
+  public final void releaseOffHeapValue() {
+    if (areGetValue() instanceof StoredObject) {
+      _setValue(Token.REMOVED_PHASE2);
+    }
   }
   @Override
   public Token getValueAsToken() {
@@ -1088,8 +1158,13 @@ public abstract class AbstractRegionEntry implements RegionEntry,
   protected abstract Object areGetValue();
   protected abstract void areSetValue(Object v);
 
+  /**
+   * Returns the value as stored in this entry. An off-heap value is returned
+   * without being retained so the result must only be used for identity
+   * comparisons.
+   */
   public Object getTransformedValue() {
-    return _getValueUse(null, false);
+    return areGetValue();
   }
   
   public final boolean getValueWasResultOfSearch() {
@@ -1144,7 +1219,7 @@ public abstract class AbstractRegionEntry implements RegionEntry,
 
   protected StringBuilder appendFieldsToString(final StringBuilder sb) {
     sb.append("key=").append(getKey()).append("; rawValue=")
-        .append(_getValue()); // OFFHEAP _getValue ok: the current toString on OffHeapCachedDeserializable is safe to use without incing refcount.
+        .append(areGetValue()); // the toString of an off-heap value does not read its data so it need not be retained
     VersionStamp stamp = getVersionStamp();
     if (stamp != null) {
       sb.append("; version=").append(stamp.asVersionTag()+";member="+stamp.getMemberID());
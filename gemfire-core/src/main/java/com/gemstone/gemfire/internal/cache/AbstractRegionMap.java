@@ -60,8 +60,12 @@ import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocator;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
 import com.gemstone.gemfire.internal.sequencelog.EntryLogger;
+import com.gemstone.gemfire.internal.util.concurrent.ConcurrentMapWithReusableEntries;
 import com.gemstone.gemfire.internal.util.concurrent.CustomEntryConcurrentHashMap;
+import com.gemstone.gemfire.internal.util.concurrent.PrimitiveKeyConcurrentHashMap;
 import com.gemstone.gemfire.pdx.PdxInstance;
 import com.gemstone.gemfire.pdx.PdxSerializationException;
 import com.gemstone.gemfire.pdx.internal.ConvertableToBytes;
@@ -86,9 +90,16 @@ import com.gemstone.gemfire.pdx.internal.ConvertableToBytes;
 abstract class AbstractRegionMap implements RegionMap {
 
   private static final Logger logger = LogService.getLogger();
+
+  /**
+   * If true, regions whose key constraint is Long or Integer keep their
+   * entries in a {@link PrimitiveKeyConcurrentHashMap}. Not final so that
+   * tests can change it.
+   */
+  static boolean PRIMITIVE_KEY_REGION_MAP = Boolean.getBoolean("gemfire.PRIMITIVE_KEY_REGION_MAP");
   
   /** The underlying map for this region. */
-  protected CustomEntryConcurrentHashMap<Object, Object> map;
+  protected ConcurrentMapWithReusableEntries<Object, Object> map;
   /** An internal Listener for index maintenance for SQLFabric. */
   private final IndexUpdater indexUpdater;
 
@@ -115,9 +126,16 @@ abstract class AbstractRegionMap implements RegionMap {
                             boolean isLRU) {
     _setAttributes(attr);
     setOwner(owner);
-    _setMap(createConcurrentMap(attr.initialCapacity, attr.loadFactor,
-        attr.concurrencyLevel, false,
-        new AbstractRegionEntry.HashRegionEntryCreator()));
+    if (PRIMITIVE_KEY_REGION_MAP
+        && PrimitiveKeyConcurrentHashMap.isSupportedKeyType(attr.keyConstraint)) {
+      _setMap(new PrimitiveKeyConcurrentHashMap<Object>(attr.keyConstraint,
+          attr.initialCapacity, attr.loadFactor, attr.concurrencyLevel));
+    }
+    else {
+      _setMap(createConcurrentMap(attr.initialCapacity, attr.loadFactor,
+          attr.concurrencyLevel, false,
+          new AbstractRegionEntry.HashRegionEntryCreator()));
+    }
 
     final GemFireCacheImpl cache;
     boolean isDisk;
@@ -316,11 +334,11 @@ abstract class AbstractRegionMap implements RegionMap {
     this.owner = r;
   }
   
-  protected final CustomEntryConcurrentHashMap<Object, Object> _getMap() {
+  protected final ConcurrentMapWithReusableEntries<Object, Object> _getMap() {
     return this.map;
   }
 
-  protected final void _setMap(CustomEntryConcurrentHashMap<Object, Object> m) {
+  protected final void _setMap(ConcurrentMapWithReusableEntries<Object, Object> m) {
     this.map = m;
   }
 
@@ -436,6 +454,17 @@ abstract class AbstractRegionMap implements RegionMap {
   }
 
   private void _mapClear() {
+    Object owner = _getOwnerObject();
+    if (owner instanceof LocalRegion && ((LocalRegion)owner).getOffHeap()) {
+      // entries dropped from the map would otherwise never free their off-heap values
+      for (Object re : _getMap().values()) {
+        if (re instanceof AbstractRegionEntry) {
+          synchronized (re) {
+            ((AbstractRegionEntry)re).releaseOffHeapValue();
+          }
+        }
+      }
+    }
     _getMap().clear();
   }
   
@@ -653,7 +682,7 @@ abstract class AbstractRegionMap implements RegionMap {
     //so that they will be in the correct order.
     OrderedTombstoneMap<RegionEntry> tombstones = new OrderedTombstoneMap<RegionEntry>();
     if (rm != null) {
-      CustomEntryConcurrentHashMap<Object, Object> other = ((AbstractRegionMap)rm)._getMap();
+      ConcurrentMapWithReusableEntries<Object, Object> other = ((AbstractRegionMap)rm)._getMap();
       Iterator<Map.Entry<Object, Object>> it = other
           .entrySetWithReusableEntries().iterator();
       while (it.hasNext()) {
@@ -940,7 +969,12 @@ abstract class AbstractRegionMap implements RegionMap {
                     logger.debug("initialImagePut: received base value for list of deltas; event: {}", event);
                   }
                   ((ListOfDeltas)oldValue).apply(event);
-                  oldRe.setValue(owner, prepareValueForCache(owner, event.getNewValue()), event);
+                  Object preparedValue = prepareValueForCache(owner, event.getNewValue());
+                  try {
+                    oldRe.setValue(owner, preparedValue, event);
+                  } finally {
+                    releaseIfNotStored(oldRe, preparedValue);
+                  }
                   //event.setNewValue(event.getOldValue());
                   event.setOldValue(null);
                   try {
@@ -2475,7 +2509,12 @@ RETRY_LOOP:
                     processAndGenerateTXVersionTag(owner, cbEvent, oldRe, txEntryState);
                     boolean clearOccured = false;
                     try {
-                      oldRe.setValue(owner, prepareValueForCache(owner, newValue));
+                      Object preparedValue = prepareValueForCache(owner, newValue);
+                      try {
+                        oldRe.setValue(owner, preparedValue);
+                      } finally {
+                        releaseIfNotStored(oldRe, preparedValue);
+                      }
                       EntryLogger.logTXInvalidate(_getOwnerObject(), key);
                       owner.updateSizeOnPut(key, oldSize, 0);
                       if (oldWasTombstone) {
@@ -2518,7 +2557,12 @@ RETRY_LOOP:
                 boolean clearOccured = false;
                 try {
                   processAndGenerateTXVersionTag(owner, cbEvent, newRe, txEntryState);
-                  newRe.setValue(owner, prepareValueForCache(owner, newValue));
+                  Object preparedValue = prepareValueForCache(owner, newValue);
+                  try {
+                    newRe.setValue(owner, preparedValue);
+                  } finally {
+                    releaseIfNotStored(newRe, preparedValue);
+                  }
                   EntryLogger.logTXInvalidate(_getOwnerObject(), key);
                   owner.updateSizeOnCreate(newRe.getKey(), 0);//we are putting in a new invalidated entry
                 }
@@ -2584,7 +2628,12 @@ RETRY_LOOP:
                 processAndGenerateTXVersionTag(owner, cbEvent, re, txEntryState);
                 boolean clearOccured = false;
                 try {
-                  re.setValue(owner, prepareValueForCache(owner, newValue));
+                  Object preparedValue = prepareValueForCache(owner, newValue);
+                  try {
+                    re.setValue(owner, preparedValue);
+                  } finally {
+                    releaseIfNotStored(re, preparedValue);
+                  }
                   EntryLogger.logTXInvalidate(_getOwnerObject(), key);
                   if (wasTombstone) {
                     owner.unscheduleTombstone(re);
@@ -3293,7 +3342,12 @@ RETRY_LOOP:
                         //cbEvent.putExistingEntry(owner, re);
                         sqlfEvent.putExistingEntry(owner, re);
                       } else {
-                        re.setValue(owner, prepareValueForCache(owner, newValue, cbEvent));
+                        Object preparedValue = prepareValueForCache(owner, newValue, cbEvent);
+                        try {
+                          re.setValue(owner, preparedValue);
+                        } finally {
+                          releaseIfNotStored(re, preparedValue);
+                        }
                       }
                       if (putOp.isCreate()) {
                         owner.updateSizeOnCreate(key, owner.calculateRegionEntryValueSize(re));
@@ -3400,7 +3454,12 @@ RETRY_LOOP:
                         //cbEvent.putExistingEntry(owner, oldRe);
                         sqlfEvent.putExistingEntry(owner, oldRe);
                       } else {
-                        oldRe.setValue(owner, prepareValueForCache(owner, newValue, cbEvent));
+                        Object preparedValue = prepareValueForCache(owner, newValue, cbEvent);
+                        try {
+                          oldRe.setValue(owner, preparedValue);
+                        } finally {
+                          releaseIfNotStored(oldRe, preparedValue);
+                        }
                         if (wasTombstone) {
                           owner.unscheduleTombstone(oldRe);
                         }
@@ -3479,7 +3538,12 @@ RETRY_LOOP:
                   if (sqlfEvent != null ) {
                     sqlfEvent.putNewEntry(owner,newRe);
                   } else {
-                    newRe.setValue(owner, prepareValueForCache(owner, newValue, cbEvent));
+                    Object preparedValue = prepareValueForCache(owner, newValue, cbEvent);
+                    try {
+                      newRe.setValue(owner, preparedValue);
+                    } finally {
+                      releaseIfNotStored(newRe, preparedValue);
+                    }
                   }
                   owner.updateSizeOnCreate(newRe.getKey(), owner.calculateRegionEntryValueSize(newRe));
                 }
@@ -3619,8 +3683,50 @@ RETRY_LOOP:
     } else {
       nv = AbstractRegionEntry.compress(r, nv, event);
     }
+    if (r instanceof LocalRegion && ((LocalRegion)r).getOffHeap()) {
+      nv = copyToOffHeap((LocalRegion)r, nv);
+    }
     return nv;
   }
+
+  /**
+   * Releases a value returned by {@link #prepareValueForCache} if it was
+   * copied off-heap but <code>re</code> did not take it, because setting it
+   * failed or the operation was aborted first. Must be called while
+   * synchronized on the entry so that its value cannot change in between.
+   * 
+   * @param re the entry the value was prepared for
+   * @param preparedValue the value returned by prepareValueForCache
+   */
+  static void releaseIfNotStored(RegionEntry re, Object preparedValue) {
+    if (preparedValue instanceof StoredObject
+        && re.getTransformedValue() != preparedValue) {
+      ((StoredObject)preparedValue).release();
+    }
+  }
+
+  /**
+   * Copies a value that is about to be stored in an off-heap region into
+   * off-heap memory. Tokens and values that are already off-heap are returned as is.
+   */
+  private static Object copyToOffHeap(LocalRegion r, Object nv) {
+    if (nv == null || nv instanceof Token || nv instanceof StoredObject
+        || nv instanceof ListOfDeltas) {
+      return nv;
+    }
+    MemoryAllocator ma = r.getCache().getOffHeapStore();
+    if (ma == null) {
+      throw new IllegalStateException(LocalizedStrings.LocalRegion_OFF_HEAP_REGION_0_REQUIRES_OFF_HEAP_MEMORY_SIZE.toLocalizedString(r.getFullPath()));
+    }
+    if (nv instanceof byte[]) {
+      // a byte[] value or the compressed form of any value
+      return ma.allocateAndInitialize((byte[])nv, false);
+    } else if (nv instanceof CachedDeserializable) {
+      return ma.allocateAndInitialize(((CachedDeserializable)nv).getSerializedValue(), true);
+    } else {
+      return ma.allocateAndInitialize(EntryEventImpl.serialize(nv), true);
+    }
+  }
   
   private static byte[] compressBytes(RegionEntryContext context, byte[] value) {
     if (AbstractRegionEntry.isCompressible(context, value)) {
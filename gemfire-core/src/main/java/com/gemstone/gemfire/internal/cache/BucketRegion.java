@@ -79,6 +79,7 @@ import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
 
 /**
  * The storage used for a Partitioned Region.
@@ -2000,6 +2001,7 @@ implements Bucket
       return 0;
     }
     if (!(value instanceof byte[]) && !(value instanceof CachedDeserializable)
+        && !(value instanceof StoredObject)
         && !(value instanceof com.gemstone.gemfire.Delta) && !(value instanceof Delta)) {
     // ezoerner:20090401 it's possible this value is a Delta
       throw new InternalGemFireError("DEBUG: calcMemSize: weird value (class " 
@@ -2054,7 +2056,8 @@ implements Bucket
   }
   @Override
   public int calculateRegionEntryValueSize(RegionEntry re) {
-    return calcMemSize(re._getValue()); // OFFHEAP _getValue ok
+    // use the value as stored so that an off-heap value is sized the same way it was when it was put
+    return calcMemSize(re.getTransformedValue());
   }
 
   @Override
@@ -17,6 +17,7 @@ import com.gemstone.gemfire.internal.HeapDataOutputStream;
 import com.gemstone.gemfire.internal.NullDataOutputStream;
 import com.gemstone.gemfire.internal.cache.lru.Sizeable;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
 import com.gemstone.gemfire.pdx.PdxInstance;
 
 /**
@@ -185,6 +186,10 @@ public class CachedDeserializableFactory {
       // overhead never added
       result = ((CachedDeserializable)o).getSizeInBytes();
       addOverhead = false;
+    } else if (o instanceof StoredObject) {
+      // an off-heap byte[]; like one on the heap it is never wrapped
+      result = ((StoredObject)o).getSizeInBytes();
+      addOverhead = false;
     } else if (o instanceof Sizeable) {
       result = ((Sizeable)o).getSizeInBytes();
     } else if (os != null) {
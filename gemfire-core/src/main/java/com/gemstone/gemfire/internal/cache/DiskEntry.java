@@ -967,12 +967,16 @@ public interface DiskEntry extends RegionEntry {
         int bytesOnDisk = getValueLength(did);
         Assert.assertTrue(value != null);
         Object preparedValue = AbstractRegionMap.prepareValueForCache((RegionEntryContext) region, value);
-        region.updateSizeOnFaultIn(entry.getKey(), region.calculateValueSize(preparedValue), bytesOnDisk);
-        //did.setValueSerializedSize(0);
-        // I think the following assertion is true but need to run
-        // a regression with it. Reenable this post 6.5
-        //Assert.assertTrue(entry._getValue() == null);
-        entry.setValueWithContext((RegionEntryContext) region, preparedValue);
+        try {
+          region.updateSizeOnFaultIn(entry.getKey(), region.calculateValueSize(preparedValue), bytesOnDisk);
+          //did.setValueSerializedSize(0);
+          // I think the following assertion is true but need to run
+          // a regression with it. Reenable this post 6.5
+          //Assert.assertTrue(entry._getValue() == null);
+          entry.setValueWithContext((RegionEntryContext) region, preparedValue);
+        } finally {
+          AbstractRegionMap.releaseIfNotStored(entry, preparedValue);
+        }
         dr.incNumEntriesInVM(1L);
         dr.incNumOverflowOnDisk(-1L);
         incrementBucketStats(region, 1/*InVM*/, -1/*OnDisk*/, -bytesOnDisk);
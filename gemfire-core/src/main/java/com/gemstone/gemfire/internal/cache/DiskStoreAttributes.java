@@ -41,6 +41,8 @@ public class DiskStoreAttributes implements Serializable, DiskStore {
   public File[] diskDirs;
 
   public String name;
+
+  public int recoveryThreadCount;
   
   private volatile float diskUsageWarningPct;
   private volatile float diskUsageCriticalPct;
@@ -58,6 +60,7 @@ public class DiskStoreAttributes implements Serializable, DiskStore {
     this.diskDirSizes = DiskStoreFactory.DEFAULT_DISK_DIR_SIZES;
     this.diskUsageWarningPct = DiskStoreFactory.DEFAULT_DISK_USAGE_WARNING_PERCENTAGE;
     this.diskUsageCriticalPct = DiskStoreFactory.DEFAULT_DISK_USAGE_CRITICAL_PERCENTAGE;
+    this.recoveryThreadCount = DiskStoreFactory.DEFAULT_RECOVERY_THREAD_COUNT;
   }
 
   public UUID getDiskStoreUUID() {
@@ -85,6 +88,14 @@ public class DiskStoreAttributes implements Serializable, DiskStore {
     return this.compactionThreshold;
   }
 
+  /* (non-Javadoc)
+   * @see com.gemstone.gemfire.cache.DiskStore#getRecoveryThreadCount()
+   */
+  public int getRecoveryThreadCount() {
+    // instances serialized before 8.2 will not have a thread count
+    return this.recoveryThreadCount < 1 ? DiskStoreFactory.DEFAULT_RECOVERY_THREAD_COUNT : this.recoveryThreadCount;
+  }
+
   /* (non-Javadoc)
    * @see com.gemstone.gemfire.cache.DiskStore#getDiskDirSizes()
    */
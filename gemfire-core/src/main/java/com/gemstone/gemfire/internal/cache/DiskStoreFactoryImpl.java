@@ -53,6 +53,7 @@ public class DiskStoreFactoryImpl implements DiskStoreFactory
     setDiskDirsAndSizes(cloneArray(attrs.getDiskDirs()), cloneArray(attrs.getDiskDirSizes()));
     setDiskUsageWarningPercentage(attrs.getDiskUsageWarningPercentage());
     setDiskUsageCriticalPercentage(attrs.getDiskUsageCriticalPercentage());
+    setRecoveryThreadCount(attrs.getRecoveryThreadCount());
     this.cache = cache;
   }
 
@@ -93,6 +94,14 @@ public class DiskStoreFactoryImpl implements DiskStoreFactory
     return this;
   }
   
+  public DiskStoreFactory setRecoveryThreadCount(int recoveryThreadCount) {
+    if (recoveryThreadCount < 1) {
+      throw new IllegalArgumentException(LocalizedStrings.DiskWriteAttributesImpl_0_HAS_TO_BE_POSITIVE_NUMBER_AND_THE_VALUE_GIVEN_1_IS_NOT_ACCEPTABLE.toLocalizedString(new Object[] {CacheXml.RECOVERY_THREAD_COUNT, Integer.valueOf(recoveryThreadCount)}));
+    }
+    this.attrs.recoveryThreadCount = recoveryThreadCount;
+    return this;
+  }
+
   public DiskStoreFactory setTimeInterval(long timeInterval) {
     if (timeInterval < 0) {
       throw new IllegalArgumentException(LocalizedStrings.DiskWriteAttributesFactory_TIME_INTERVAL_SPECIFIED_HAS_TO_BE_A_NONNEGATIVE_NUMBER_AND_THE_VALUE_GIVEN_0_IS_NOT_ACCEPTABLE.toLocalizedString(Long.valueOf(timeInterval)));
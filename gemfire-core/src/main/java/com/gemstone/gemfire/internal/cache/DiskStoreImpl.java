@@ -276,6 +276,9 @@ public class DiskStoreImpl implements DiskStore {
 
   private final int compactionThreshold;
 
+  /** The number of threads that read krfs during recovery */
+  private final int recoveryThreadCount;
+
   /**
    * The limit of how many items can be in the async queue before async starts
    * blocking and a flush is forced. If this value is 0 then no limit.
@@ -408,6 +411,7 @@ public class DiskStoreImpl implements DiskStore {
     this.allowForceCompaction = props.getAllowForceCompaction();
     this.compactionThreshold = calcCompactionThreshold(props
         .getCompactionThreshold());
+    this.recoveryThreadCount = props.getRecoveryThreadCount();
     this.maxOplogSizeInBytes = props.getMaxOplogSizeInBytes();
     this.timeInterval = props.getTimeInterval();
     this.queueSize = props.getQueueSize();
@@ -2114,6 +2118,10 @@ public class DiskStoreImpl implements DiskStore {
     return this.compactionThreshold;
   }
 
+  public int getRecoveryThreadCount() {
+    return this.recoveryThreadCount;
+  }
+
   private final boolean isCompactionPossible;
 
   final boolean isCompactionPossible() {
@@ -49,6 +49,13 @@ public class DiskStoreStats {
   private static final int oplogRecoveriesId;
   private static final int oplogRecoveryTimeId;
   private static final int oplogRecoveredBytesId;
+  private static final int oplogsToRecoverId;
+  private static final int groupCommitsId;
+  private static final int groupCommitTimeId;
+  private static final int groupCommitRecordsId;
+  private static final int krfPrefetchesId;
+  private static final int krfPrefetchTimeId;
+  private static final int krfPrefetchedBytesId;
   private static final int bytesReadId;
   private static final int removesId;
   private static final int removeTimeId;
@@ -66,6 +73,8 @@ public class DiskStoreStats {
   private static final int compactableOplogsId;
 
   private static final int oplogReadsId;
+  private static final int oplogMappedReadsId;
+  private static final int mappedOplogsId;
   private static final int oplogSeeksId;
 
   private static final int uncreatedRecoveredRegionsId;
@@ -142,6 +151,13 @@ public class DiskStoreStats {
          f.createIntCounter("oplogRecoveries", oplogRecoveriesDesc, "ops"),
          f.createLongCounter("oplogRecoveryTime", oplogRecoveryTimeDesc, "nanoseconds"),
          f.createLongCounter("oplogRecoveredBytes", oplogRecoveredBytesDesc, "bytes"),
+         f.createLongCounter("groupCommits", "The total number of flushes done to commit a group of synchronous writes.", "ops"),
+         f.createLongCounter("groupCommitTime", "The total amount of time spent flushing groups of synchronous writes.", "nanoseconds"),
+         f.createLongCounter("groupCommitRecords", "The total number of synchronous write records committed by group commit flushes.", "records"),
+         f.createIntGauge("oplogsToRecover", "The number of oplogs that the recovery in progress has not yet recovered.", "oplogs"),
+         f.createLongCounter("krfPrefetches", "The total number of oplog key files read into memory by recovery threads ahead of being recovered.", "ops"),
+         f.createLongCounter("krfPrefetchTime", "The total amount of time recovery threads spent reading oplog key files into memory.", "nanoseconds"),
+         f.createLongCounter("krfPrefetchedBytes", "The total number of bytes of oplog key files read into memory by recovery threads.", "bytes"),
          f.createLongCounter("removes", removesDesc, "ops"),
          f.createLongCounter("removeTime", removeTimeDesc, "nanoseconds"),
          f.createIntGauge("queueSize", queueSizeDesc, "entries"),
@@ -160,6 +176,8 @@ public class DiskStoreStats {
          f.createIntGauge("compactableOplogs", "Current number of oplogs ready to be compacted", "oplogs"),
          f.createIntGauge("inactiveOplogs", "Current number of oplogs that are no longer being written but are not ready ready to compact", "oplogs"),
          f.createLongCounter("oplogReads", "Total number of oplog reads", "reads"),
+         f.createLongCounter("oplogMappedReads", "Total number of oplog reads served from a memory mapped oplog without a seek", "reads"),
+         f.createIntGauge("mappedOplogs", "Current number of oplogs whose crf is memory mapped for reads", "oplogs"),
          f.createLongCounter("oplogSeeks", "Total number of oplog seeks", "seeks"),
          f.createIntGauge("uncreatedRecoveredRegions", "The current number of regions that have been recovered but have not yet been created.", "regions"),
          f.createIntGauge("backupsInProgress", backupsInProgressDesc, "backups"),
@@ -193,6 +211,13 @@ public class DiskStoreStats {
     oplogRecoveriesId = type.nameToId("oplogRecoveries");
     oplogRecoveryTimeId = type.nameToId("oplogRecoveryTime");
     oplogRecoveredBytesId = type.nameToId("oplogRecoveredBytes");
+    oplogsToRecoverId = type.nameToId("oplogsToRecover");
+    groupCommitsId = type.nameToId("groupCommits");
+    groupCommitTimeId = type.nameToId("groupCommitTime");
+    groupCommitRecordsId = type.nameToId("groupCommitRecords");
+    krfPrefetchesId = type.nameToId("krfPrefetches");
+    krfPrefetchTimeId = type.nameToId("krfPrefetchTime");
+    krfPrefetchedBytesId = type.nameToId("krfPrefetchedBytes");
     removesId = type.nameToId("removes");
     removeTimeId = type.nameToId("removeTime");
     queueSizeId = type.nameToId("queueSize");
@@ -204,6 +229,8 @@ public class DiskStoreStats {
     compactUpdatesId = type.nameToId("compactUpdates");
     compactUpdateTimeId = type.nameToId("compactUpdateTime");
     oplogReadsId = type.nameToId("oplogReads");
+    oplogMappedReadsId = type.nameToId("oplogMappedReads");
+    mappedOplogsId = type.nameToId("mappedOplogs");
     oplogSeeksId = type.nameToId("oplogSeeks");
 
     openOplogsId = type.nameToId("openOplogs");
@@ -432,6 +459,41 @@ public class DiskStoreStats {
     this.stats.incLong(oplogRecoveryTimeId, end - start);
     this.stats.incLong(oplogRecoveredBytesId, bytesRead);
   }
+  public long startGroupCommit() {
+    return DistributionStats.getStatTime();
+  }
+  public void endGroupCommit(long start) {
+    long end = DistributionStats.getStatTime();
+    this.stats.incLong(groupCommitsId, 1);
+    this.stats.incLong(groupCommitTimeId, end - start);
+  }
+  public void incGroupCommitRecords(long records) {
+    this.stats.incLong(groupCommitRecordsId, records);
+  }
+  public long getGroupCommits() {
+    return this.stats.getLong(groupCommitsId);
+  }
+  public long getGroupCommitRecords() {
+    return this.stats.getLong(groupCommitRecordsId);
+  }
+  public void incOplogsToRecover(int delta) {
+    this.stats.incInt(oplogsToRecoverId, delta);
+  }
+  public int getOplogsToRecover() {
+    return this.stats.getInt(oplogsToRecoverId);
+  }
+  public long startKrfPrefetch() {
+    return DistributionStats.getStatTime();
+  }
+  public void endKrfPrefetch(long start, long bytesRead) {
+    long end = DistributionStats.getStatTime();
+    this.stats.incLong(krfPrefetchesId, 1);
+    this.stats.incLong(krfPrefetchTimeId, end - start);
+    this.stats.incLong(krfPrefetchedBytesId, bytesRead);
+  }
+  public long getKrfPrefetches() {
+    return this.stats.getLong(krfPrefetchesId);
+  }
   public void incRecoveredEntryCreates() {
     this.stats.incLong(recoveredEntryCreatesId, 1);
   }
@@ -475,6 +537,18 @@ public class DiskStoreStats {
   public void incOplogReads() {
     this.stats.incLong(oplogReadsId, 1);
   }
+  public void incOplogMappedReads() {
+    this.stats.incLong(oplogMappedReadsId, 1);
+  }
+  public long getOplogMappedReads() {
+    return this.stats.getLong(oplogMappedReadsId);
+  }
+  public void incMappedOplogs(int delta) {
+    this.stats.incInt(mappedOplogsId, delta);
+  }
+  public int getMappedOplogs() {
+    return this.stats.getInt(mappedOplogsId);
+  }
   public void incOplogSeeks() {
     this.stats.incLong(oplogSeeksId, 1);
   }
@@ -32,6 +32,7 @@ import com.gemstone.gemfire.cache.TransactionId;
 import com.gemstone.gemfire.cache.query.IndexMaintenanceException;
 import com.gemstone.gemfire.cache.query.QueryException;
 import com.gemstone.gemfire.cache.query.internal.IndexUpdater;
+import com.gemstone.gemfire.cache.query.internal.QueryProfiler;
 import com.gemstone.gemfire.cache.query.internal.index.IndexManager;
 import com.gemstone.gemfire.cache.query.internal.index.IndexProtocol;
 import com.gemstone.gemfire.cache.query.internal.index.IndexUtils;
@@ -1225,55 +1226,58 @@ public class EntryEventImpl
     } 
  
     v = AbstractRegionMap.prepareValueForCache(this.region, v, this);
-
-    setNewValueBucketSize(owner, v);
-    
-    // ezoerner:20081030 
-    // last possible moment to do index maintenance with old value in
-    // RegionEntry before new value is set.
-    // As part of an update, this is a remove operation as prelude to an add that
-    // will come after the new value is set.
-    // If this is an "update" from INVALID state, treat this as a create instead
-    // for the purpose of index maintenance since invalid entries are not
-    // indexed.
-    
     boolean isTombstone = (v == Token.TOMBSTONE);
+    try {
+      setNewValueBucketSize(owner, v);
     
-    if ((this.op.isUpdate() && !reentry.isInvalid()) || this.op.isInvalidate()) {
-      IndexManager idxManager = IndexUtils.getIndexManager(this.region, false);
-      if (idxManager != null) {
-        try {
-          idxManager.updateIndexes(reentry,
-                                   IndexManager.REMOVE_ENTRY,
-                                   this.op.isUpdate() ?
-                                     IndexProtocol.BEFORE_UPDATE_OP :
-                                     IndexProtocol.OTHER_OP);
-        }
-        catch (QueryException e) {
-          throw new IndexMaintenanceException(e);
+      // ezoerner:20081030 
+      // last possible moment to do index maintenance with old value in
+      // RegionEntry before new value is set.
+      // As part of an update, this is a remove operation as prelude to an add that
+      // will come after the new value is set.
+      // If this is an "update" from INVALID state, treat this as a create instead
+      // for the purpose of index maintenance since invalid entries are not
+      // indexed.
+    
+      if ((this.op.isUpdate() && !reentry.isInvalid()) || this.op.isInvalidate()) {
+        IndexManager idxManager = IndexUtils.getIndexManager(this.region, false);
+        if (idxManager != null) {
+          try {
+            idxManager.updateIndexes(reentry,
+                                     IndexManager.REMOVE_ENTRY,
+                                     this.op.isUpdate() ?
+                                       IndexProtocol.BEFORE_UPDATE_OP :
+                                       IndexProtocol.OTHER_OP);
+          }
+          catch (QueryException e) {
+            throw new IndexMaintenanceException(e);
+          }
         }
       }
-    }
-    final IndexUpdater indexUpdater = this.region.getIndexUpdater();
-    if (indexUpdater != null) {
-      boolean success = false;
-      final LocalRegion indexRegion;
-      if (owner != null) {
-        indexRegion = owner;
+      final IndexUpdater indexUpdater = this.region.getIndexUpdater();
+      if (indexUpdater != null) {
+        boolean success = false;
+        final LocalRegion indexRegion;
+        if (owner != null) {
+          indexRegion = owner;
+        }
+        else {
+          indexRegion = this.region;
+        }
+        try {
+          indexUpdater.onEvent(indexRegion, this, reentry);
+          reentry.setValueWithTombstoneCheck(v, this); // already called prepareValueForCache
+          success = true;
+        } finally {
+          indexUpdater.postEvent(indexRegion, this, reentry, success);
+        }
       }
       else {
-        indexRegion = this.region;
-      }
-      try {
-        indexUpdater.onEvent(indexRegion, this, reentry);
         reentry.setValueWithTombstoneCheck(v, this); // already called prepareValueForCache
-        success = true;
-      } finally {
-        indexUpdater.postEvent(indexRegion, this, reentry, success);
       }
-    }
-    else {
-      reentry.setValueWithTombstoneCheck(v, this); // already called prepareValueForCache
+    } finally {
+      // an index maintenance failure must not leak an off-heap value
+      AbstractRegionMap.releaseIfNotStored(reentry, v);
     }
     if (logger.isTraceEnabled()) {
       if (v instanceof CachedDeserializable) {
@@ -1546,6 +1550,7 @@ public class EntryEventImpl
       ByteArrayDataInput in) {
     if (bytes == null)
       return null;
+    QueryProfiler.enter(QueryProfiler.DESERIALIZATION);
     try {
       return BlobHelper.deserializeBlob(bytes, version, in);
     }
@@ -1556,6 +1561,9 @@ public class EntryEventImpl
       // fix for bug 43602
       throw new SerializationException(LocalizedStrings.EntryEventImpl_A_CLASSNOTFOUNDEXCEPTION_WAS_THROWN_WHILE_TRYING_TO_DESERIALIZE_CACHED_VALUE.toLocalizedString(), e);
     }
+    finally {
+      QueryProfiler.exit(QueryProfiler.DESERIALIZATION);
+    }
   }
 
   /**
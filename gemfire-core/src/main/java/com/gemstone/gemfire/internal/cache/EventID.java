@@ -92,6 +92,20 @@ public final class EventID
     }
   };
 
+  /**
+   * Thread and sequence ids for the events of a thread's asynchronous
+   * client operations. These reach the server independently of the
+   * thread's synchronous operations, so they must not share a sequence
+   * with them or the server could discard them as duplicates.
+   */
+  private static ThreadLocal asyncThreadIDLocal = new ThreadLocal() {
+    @Override
+    protected Object initialValue()
+    {
+      return new ThreadAndSequenceIDWrapper();
+    }
+  };
+
   private transient int hashCode = 0;
 
   /**
@@ -128,14 +142,16 @@ public final class EventID
    * they will cause serialization and comparison problems when used in EventIDs
    */
   private EventID(final byte[] membershipId) {
+    this(membershipId, (ThreadAndSequenceIDWrapper)threadIDLocal.get());
+  }
+
+  private EventID(final byte[] membershipId, ThreadAndSequenceIDWrapper wrapper) {
     // Assert.assertTrue(membershipId.length <= Short.MAX_VALUE);
     this.membershipID = membershipId;
     // TODO:Asif : If the DS is closed & restarted can we continue with the
     // existing Thread ID & Sequenec ID. Should not be an issue.
     // But we should not cache membershipID as for the same thread it can
     // differ.Hence it should be passed as parameter in the constructor
-    ThreadAndSequenceIDWrapper wrapper = (ThreadAndSequenceIDWrapper)threadIDLocal
-        .get();
     this.threadID = wrapper.threadID;
     this.sequenceID = wrapper.getAndIncrementSequenceID();
     this.bucketID = -1;
@@ -149,6 +165,18 @@ public final class EventID
     this(initializeAndGetDSEventIdentity(sys));
   }
   
+  /**
+   * Creates an event ID for an asynchronous client operation of the
+   * calling thread. The calling thread's asynchronous operations are
+   * sequenced separately from its other operations.
+   * @param sys the local distributed system
+   * @since 8.2
+   */
+  public static EventID createForAsyncOp(DistributedSystem sys) {
+    return new EventID(initializeAndGetDSEventIdentity(sys),
+        (ThreadAndSequenceIDWrapper)asyncThreadIDLocal.get());
+  }
+
   public static byte[] getMembershipId(DistributedSystem sys) {
     return EventID.initializeAndGetDSEventIdentity(sys);
   }
@@ -118,8 +118,12 @@ import com.gemstone.gemfire.cache.query.QueryService;
 import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
 import com.gemstone.gemfire.cache.query.internal.DefaultQueryService;
 import com.gemstone.gemfire.cache.query.internal.QueryMonitor;
+import com.gemstone.gemfire.cache.query.internal.QueryPlanCache;
+import com.gemstone.gemfire.cache.query.internal.QueryProfiler;
+import com.gemstone.gemfire.cache.query.internal.QueryProfilerStats;
 import com.gemstone.gemfire.cache.query.internal.cq.CqService;
 import com.gemstone.gemfire.cache.query.internal.cq.CqServiceProvider;
+import com.gemstone.gemfire.cache.query.internal.index.IndexManager;
 import com.gemstone.gemfire.cache.server.CacheServer;
 import com.gemstone.gemfire.cache.snapshot.CacheSnapshotService;
 import com.gemstone.gemfire.cache.util.BridgeServer;
@@ -190,6 +194,8 @@ import com.gemstone.gemfire.internal.logging.InternalLogWriter;
 import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocator;
+import com.gemstone.gemfire.internal.offheap.OffHeapStorage;
 import com.gemstone.gemfire.internal.process.ClusterConfigurationNotAvailableException;
 import com.gemstone.gemfire.internal.sequencelog.SequenceLoggerImpl;
 import com.gemstone.gemfire.internal.tcp.ConnectionTable;
@@ -470,6 +476,13 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
 
   private final InternalResourceManager resourceManager;
 
+  /**
+   * The off-heap memory used by regions that store their values off-heap;
+   * null if this member has no off-heap-memory-size.
+   * @since 8.2
+   */
+  private final MemoryAllocator offHeapStore;
+
   private final AtomicReference<BackupManager> backupManager = new AtomicReference<BackupManager>();
 
   private HeapEvictor heapEvictor = null;
@@ -489,6 +502,10 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
 
   private final Object queryMonitorLock = new Object();
 
+  private final QueryPlanCache queryPlanCache = new QueryPlanCache();
+
+  private final QueryProfiler queryProfiler;
+
   private final PersistentMemberManager persistentMemberManager;
 
   private ClientMetadataService clientMetadatService = null;
@@ -715,6 +732,7 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
       // Create the CacheStatistics
       this.cachePerfStats = new CachePerfStats(system);
       CachePerfStats.enableClockStats = this.system.getConfig().getEnableTimeStatistics();
+      this.queryProfiler = new QueryProfiler(new QueryProfilerStats(system, "queryProfiler"));
 
       this.txMgr = new TXManagerImpl(this.cachePerfStats, this);
       dm.addMembershipListener(this.txMgr);
@@ -753,6 +771,11 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
       this.jmxAdvisor = JmxManagerAdvisor.createJmxManagerAdvisor(new JmxManagerAdvisee(this));
       
       resourceManager = InternalResourceManager.createResourceManager(this);
+      this.offHeapStore = OffHeapStorage.createOffHeapStorage(this.system, this.system.getConfig().getOffHeapMemorySize());
+      if (this.offHeapStore != null) {
+        logger.info(LocalizedMessage.create(LocalizedStrings.GemFireCacheImpl_ALLOCATED_0_BYTES_OF_OFF_HEAP_MEMORY,
+            this.offHeapStore.getTotalMemory()));
+      }
       this.serialNumber = DistributionAdvisor.createSerialNumber();
       getResourceManager().addResourceListener(getHeapEvictor());
       recordedEventSweeper = EventTracker.startTrackerServices(this);
@@ -2080,6 +2103,7 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
         }
 
         this.cachePerfStats.close();
+        this.queryProfiler.getStats().close();
         TXLockService.destroyServices();
 
         EventTracker.stopTrackerServices(this);
@@ -2097,6 +2121,7 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
           this.queryMonitor.stopMonitoring();
         }
         stopDiskStoreTaskPool();        
+        IndexManager.shutdownPopulationExecutor();
 
       } finally {
         // NO DISTRIBUTED MESSAGING CAN BE DONE HERE!
@@ -2108,6 +2133,10 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
           this.txMgr.resume(tx);
         }
         TXCommitMessage.getTracker().clearForCacheClose();
+        // all the regions are closed so nothing refers to off-heap memory anymore
+        if (this.offHeapStore != null) {
+          this.offHeapStore.close();
+        }
       }
       // Added to close the TransactionManager's cleanup thread
       TransactionManagerImpl.refresh();
@@ -4063,6 +4092,14 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
     return getResourceManager(true);
   }
 
+  /**
+   * Returns the off-heap memory of this cache or null if it has none.
+   * @since 8.2
+   */
+  public MemoryAllocator getOffHeapStore() {
+    return this.offHeapStore;
+  }
+
   public InternalResourceManager getResourceManager(boolean checkCancellationInProgress) {
     if (checkCancellationInProgress) {
       stopper.checkCancelInProgress(null);
@@ -4189,6 +4226,22 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
     return QUERY_MONITOR_DISABLED_FOR_LOW_MEM;
   }
   
+  /**
+   * Returns the compiled queries shared by the queries created on this cache.
+   * @since 8.2
+   */
+  public QueryPlanCache getQueryPlanCache() {
+    return this.queryPlanCache;
+  }
+
+  /**
+   * Returns the profiles of the queries executed by this member.
+   * @since 8.2
+   */
+  public QueryProfiler getQueryProfiler() {
+    return this.queryProfiler;
+  }
+
   /**
    * Returns the QueryMonitor instance based on system property MAX_QUERY_EXECUTION_TIME.
    * @since 6.0
@@ -0,0 +1,119 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+/**
+ * Commits the records appended by synchronous writers in groups. A writer
+ * takes a ticket with {@link #append} once its record is in the write buffer
+ * and then calls {@link #commit} with it. The first writer to find no flush in
+ * progress becomes the leader and calls {@link #flush} for every record
+ * appended so far; the others wait for it.
+ *
+ * If a flush fails, every writer whose record it was to commit gets the
+ * exception it threw, including the writers that were only waiting for it.
+ *
+ * @since 8.2
+ */
+abstract class GroupCommitter {
+
+  /** The number of tickets handed out. Guarded by this. */
+  private long appendCount;
+
+  private final Object monitor = new Object();
+
+  /** True while the leader is flushing. Guarded by monitor. */
+  private boolean inProgress;
+
+  /** The ticket up to which records have been committed. Guarded by monitor. */
+  private long committedCount;
+
+  /**
+   * The exception thrown by a failed flush, or null. Tickets after
+   * failedFrom and up to failedTo fail with it. Guarded by monitor.
+   */
+  private RuntimeException failure;
+  private long failedFrom;
+  private long failedTo;
+
+  /**
+   * Flushes every record appended so far.
+   */
+  protected abstract void flush();
+
+  /**
+   * Called by the leader once a flush has committed the given number of
+   * records.
+   */
+  protected void committed(long records) {
+  }
+
+  /**
+   * Returns the ticket of the record just appended to the write buffer. The
+   * caller must hold the lock that guards the write buffer so that the records
+   * of all the tickets handed out are in the buffer.
+   */
+  final synchronized long append() {
+    return ++this.appendCount;
+  }
+
+  private synchronized long getAppendCount() {
+    return this.appendCount;
+  }
+
+  /**
+   * Returns once the record with the given ticket has been flushed, flushing
+   * every record appended so far if no other writer is already doing so.
+   *
+   * @throws RuntimeException
+   *           the exception thrown by the flush that was to commit the record
+   */
+  final void commit(long ticket) throws InterruptedException {
+    synchronized (this.monitor) {
+      for (;;) {
+        if (this.failure != null && ticket > this.failedFrom && ticket <= this.failedTo) {
+          throw this.failure;
+        }
+        if (this.committedCount >= ticket) {
+          return;
+        }
+        if (!this.inProgress) {
+          break;
+        }
+        this.monitor.wait();
+      }
+      this.inProgress = true;
+    }
+    final long count = getAppendCount();
+    RuntimeException flushFailure = null;
+    boolean flushed = false;
+    try {
+      flush();
+      flushed = true;
+    } catch (RuntimeException ex) {
+      flushFailure = ex;
+      throw ex;
+    } finally {
+      synchronized (this.monitor) {
+        if (flushed) {
+          if (count > this.committedCount) {
+            committed(count - this.committedCount);
+            this.committedCount = count;
+          }
+        } else if (flushFailure != null) {
+          if (this.failure == null) {
+            this.failedFrom = this.committedCount;
+          }
+          this.failure = flushFailure;
+          this.failedTo = Math.max(this.failedTo, count);
+        }
+        this.inProgress = false;
+        this.monitor.notifyAll();
+      }
+    }
+  }
+}
@@ -48,7 +48,7 @@ public class InitialImageFlowControl implements MembershipListener {
   
   private static final ProcessorKeeper21 keeper = new ProcessorKeeper21(false);
   private int id;
-  private int maxPermits = InitialImageOperation.CHUNK_PERMITS;
+  private int maxPermits = getMaxPermits();
   private final Semaphore permits = new Semaphore(maxPermits);
   private final DM dm;
   private final InternalDistributedMember target;
@@ -66,12 +66,26 @@ public class InitialImageFlowControl implements MembershipListener {
     return control;
   }
 
+  /**
+   * Returns the number of chunks that may be in flight to one image target.
+   * If {@link InitialImageOperation#MAX_BYTES_IN_FLIGHT} is set this is the
+   * number of full chunks that fit in that many bytes, so that the provider
+   * never has more than that many bytes unprocessed by the target.
+   */
+  static int getMaxPermits() {
+    int maxBytes = InitialImageOperation.MAX_BYTES_IN_FLIGHT;
+    if (maxBytes <= 0) {
+      return InitialImageOperation.CHUNK_PERMITS;
+    }
+    return Math.max(1, maxBytes / InitialImageOperation.getChunkSizeInBytes());
+  }
+
   private InitialImageFlowControl(DM dm, InternalDistributedMember target) {
     this.dm = dm;
     this.target = target;
   }
   
-  private void releasePermit() {
+  void releasePermit() {
     permits.release();
     incMessagesInFlight(-1);
   }
@@ -24,6 +24,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -84,6 +89,7 @@ import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
 import com.gemstone.gemfire.internal.sequencelog.EntryLogger;
 import com.gemstone.gemfire.internal.sequencelog.RegionLogger;
 import com.gemstone.gemfire.internal.util.ObjectIntProcedure;
@@ -124,7 +130,40 @@ public class InitialImageOperation  {
    */
   public static int MAX_PARALLEL_GIIS =
     Integer.getInteger("gemfire.GetInitialImage.MAX_PARALLEL_GIIS", 5).intValue();
-  
+
+  /**
+   * Maximum number of bytes of GII chunks in flight from a provider to one
+   * image target. If set, this replaces {@link #CHUNK_PERMITS} with the
+   * number of chunks that fit in this many bytes, and chunks are made no
+   * larger than this.
+   */
+  public static int MAX_BYTES_IN_FLIGHT =
+    Integer.getInteger("gemfire.GetInitialImage.MAX_BYTES_IN_FLIGHT", 0).intValue();
+
+  /**
+   * Number of threads the image target uses to apply the entries of a
+   * received chunk. Each thread applies a separate range of the chunk.
+   */
+  public static int APPLY_THREADS =
+    Integer.getInteger("gemfire.GetInitialImage.APPLY_THREADS", 1).intValue();
+
+  /**
+   * Chunks are only split across apply threads into ranges of at least
+   * this many entries.
+   */
+  static final int MIN_ENTRIES_PER_APPLY_THREAD = 100;
+
+  /**
+   * Returns the size in bytes at which a GII chunk is sent, taking
+   * {@link #MAX_BYTES_IN_FLIGHT} into account.
+   */
+  static int getChunkSizeInBytes() {
+    if (MAX_BYTES_IN_FLIGHT > 0 && MAX_BYTES_IN_FLIGHT < CHUNK_SIZE_IN_BYTES) {
+      return MAX_BYTES_IN_FLIGHT;
+    }
+    return CHUNK_SIZE_IN_BYTES;
+  }
+
   /**
    * the region we are fetching
    */
@@ -765,6 +804,105 @@ public class InitialImageOperation  {
   }
   
   
+  /**
+   * Called from separate thread when reply is processed. Splits the chunk
+   * into ranges of entries that are applied by {@link #processChunk} on
+   * {@link #APPLY_THREADS} threads, and returns once all ranges are applied.
+   * The entries of one chunk all have different keys.
+   * @param entries entries to add to the region
+   * @return false if should abort (region was destroyed or cache was closed)
+   */
+  boolean applyChunk(List entries, InternalDistributedMember sender,
+      Version remoteVersion) throws IOException, ClassNotFoundException {
+    return applyChunk(entries, sender, remoteVersion, this.region
+        .getDistributionManager().getWaitingThreadPool());
+  }
+
+  /**
+   * Applies the ranges of the chunk other than the first one with the given
+   * executor.
+   * @see #applyChunk(List, InternalDistributedMember, Version)
+   */
+  boolean applyChunk(List entries, final InternalDistributedMember sender,
+      final Version remoteVersion, ExecutorService executor)
+      throws IOException, ClassNotFoundException {
+    int threads = Math.min(APPLY_THREADS,
+        entries.size() / MIN_ENTRIES_PER_APPLY_THREAD);
+    // keys needing a region context are only usable once processChunk has
+    // set it, so those chunks are applied on this thread
+    if (threads <= 1 || this.region.keyRequiresRegionContext()) {
+      return processChunk(entries, sender, remoteVersion);
+    }
+    final int rangeSize = (entries.size() + threads - 1) / threads;
+    List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(threads - 1);
+    List<List> inlineRanges = new ArrayList<List>(1);
+    inlineRanges.add(entries.subList(0, rangeSize));
+    for (int start = rangeSize; start < entries.size(); start += rangeSize) {
+      final List range = entries.subList(start,
+          Math.min(start + rangeSize, entries.size()));
+      try {
+        results.add(executor.submit(new Callable<Boolean>() {
+          public Boolean call() throws Exception {
+            EntryLogger.setSource(sender, "gii");
+            try {
+              return processChunk(range, sender, remoteVersion);
+            } finally {
+              EntryLogger.clearSource();
+            }
+          }
+        }));
+      } catch (RejectedExecutionException e) {
+        // apply it on this thread instead
+        inlineRanges.add(range);
+      }
+    }
+    boolean keepGoing = true;
+    Throwable failure = null;
+    boolean interrupted = false;
+    try {
+      for (List range : inlineRanges) {
+        if (keepGoing) {
+          keepGoing = processChunk(range, sender, remoteVersion);
+        }
+      }
+    } finally {
+      // wait for every range, even after a failure, so that no entries of
+      // this chunk are applied after it has been reported as processed
+      for (Future<Boolean> f : results) {
+        for (;;) {
+          try {
+            if (!f.get().booleanValue()) {
+              keepGoing = false;
+            }
+            break;
+          } catch (InterruptedException e) {
+            interrupted = true;
+          } catch (ExecutionException e) {
+            if (failure == null) {
+              failure = e.getCause();
+            }
+            break;
+          }
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (failure instanceof IOException) {
+      throw (IOException)failure;
+    } else if (failure instanceof ClassNotFoundException) {
+      throw (ClassNotFoundException)failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException)failure;
+    } else if (failure instanceof Error) {
+      throw (Error)failure;
+    } else if (failure != null) {
+      throw new InternalGemFireException(failure);
+    }
+    return keepGoing;
+  }
+
   /** Called from separate thread when reply is processed.
    *  @param entries entries to add to the region
    *  @return false if should abort (region was destroyed or cache was closed)
@@ -1303,7 +1441,7 @@ public class InitialImageOperation  {
               // bug 37461: don't allow abort flag to be reset
               boolean isAborted = this.abort; // volatile fetch
               if (!isAborted) {
-                isAborted = !processChunk(m.entries, m.getSender(),
+                isAborted = !applyChunk(m.entries, m.getSender(),
                     m.remoteVersion);
                 if (isAborted) {
                   this.abort = true; // volatile store
@@ -1739,7 +1877,7 @@ public class InitialImageOperation  {
               }
             }
             final RegionVersionHolder holderToSend = holderToSync;
-            boolean finished = chunkEntries(rgn, CHUNK_SIZE_IN_BYTES, !keysOnly, versionVector,
+            boolean finished = chunkEntries(rgn, getChunkSizeInBytes(), !keysOnly, versionVector,
                 (HashSet)this.unfinishedKeys, flowControl, new ObjectIntProcedure() {
               int msgNum = 0;
 
@@ -2003,6 +2141,7 @@ public class InitialImageOperation  {
           int lastMsg = it.hasNext() ? 0 : 1;
           keepGoing = proc.executeWith(chunkEntries, lastMsg);
           sentLastChunk = lastMsg == 1 && keepGoing;
+          releaseOffHeapValues(chunkEntries);
           chunkEntries.clear();
 
           // if this region is destroyed while we are sending data, then abort.
@@ -2018,12 +2157,28 @@ public class InitialImageOperation  {
         return sentLastChunk;
       }
       finally {
+        // if the chunk was not sent then its entries still hold off-heap references
+        releaseOffHeapValues(chunkEntries);
         if( dr!=null ){
           dr.removeClearCountReference();
         }
       }
     }
 
+    /**
+     * Releases the off-heap values that {@link RegionEntry#fillInValue}
+     * retained for the given entries.
+     */
+    private void releaseOffHeapValues(List chunkEntries) {
+      for (int i=0; i < chunkEntries.size(); i++) {
+        InitialImageOperation.Entry entry = (InitialImageOperation.Entry)chunkEntries.get(i);
+        if (entry.value instanceof StoredObject) {
+          ((StoredObject)entry.value).release();
+          entry.value = null;
+        }
+      }
+    }
+
     private void replyNoData(DistributionManager dm, boolean isDeltaGII, Map<VersionSource, Long> gcVersions) {
       ImageReplyMessage.send(getSender(), this.processorId, null, dm, null, 0, 0, 1, true,0, isDeltaGII, null, gcVersions);
     }
@@ -3055,7 +3210,10 @@ public class InitialImageOperation  {
       out.writeByte(flags);
       DataSerializer.writeObject(this.key, out);
       if (!EntryBits.isTombstone(this.entryBits)) {
-        if (!isEagerDeserialize()) {
+        if (this.value instanceof StoredObject) {
+          ((StoredObject)this.value).sendAsByteArray(out);
+        }
+        else if (!isEagerDeserialize()) {
           DataSerializer.writeObjectAsByteArray(this.value, out);
         }
         else {
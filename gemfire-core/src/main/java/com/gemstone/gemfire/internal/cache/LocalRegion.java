@@ -186,6 +186,8 @@ import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
+import com.gemstone.gemfire.internal.offheap.SerializedChunk;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
 import com.gemstone.gemfire.internal.sequencelog.EntryLogger;
 import com.gemstone.gemfire.internal.util.concurrent.FutureResult;
 import com.gemstone.gemfire.internal.util.concurrent.StoppableCountDownLatch;
@@ -575,6 +577,10 @@ public class LocalRegion extends AbstractRegion
     this.parentRegion = parentRegion;
     this.fullPath = calcFullPath(regionName, parentRegion);
 
+    if (this.offHeap && cache.getOffHeapStore() == null) {
+      throw new IllegalStateException(LocalizedStrings.LocalRegion_OFF_HEAP_REGION_0_REQUIRES_OFF_HEAP_MEMORY_SIZE.toLocalizedString(this.fullPath));
+    }
+
     String myName = getFullPath();
     if (internalRegionArgs.getPartitionedRegion() != null) {
       myName = internalRegionArgs.getPartitionedRegion().getFullPath();
@@ -676,6 +682,7 @@ public class LocalRegion extends AbstractRegion
       ma.loadFactor = this.loadFactor;
       ma.initialCapacity = this.initialCapacity;
       ma.concurrencyLevel = this.concurrencyLevel;
+      ma.keyConstraint = this.keyConstraint;
       result = RegionMapFactory.createVM(this, ma, internalRegionArgs);
     }
     return result;
@@ -1245,8 +1252,18 @@ public class LocalRegion extends AbstractRegion
   protected final Object getDeserialized(RegionEntry re, boolean updateStats, boolean disableCopyOnRead, boolean preferCD) {
     try {
       Object v = null;
+      if (this.offHeap && !preferCD && this.compressor == null && re instanceof AbstractRegionEntry) {
+        v = getDeserializedOffHeap((AbstractRegionEntry)re);
+        if (v != null) {
+          // deserializing always creates a new object so no copy on read is needed
+          if (updateStats) {
+            updateStatsForGet(re, true);
+          }
+          return v;
+        }
+      }
       try {
-         v = re.getValue(this); // OFFHEAP: incrc, deserialize, decrc TODO: optimize if preferCD but need to track down when to decrc in that case
+         v = re.getValue(this); // TODO: optimize the preferCD case for off-heap but need to track down when to release in that case
       } catch(DiskAccessException dae) {
         this.handleDiskAccessException(dae);
         throw dae;
@@ -1284,6 +1301,32 @@ public class LocalRegion extends AbstractRegion
     }
   }
   
+  /**
+   * Deserializes the value of an entry that is stored off-heap directly from
+   * off-heap memory instead of first copying it to the heap.
+   * @return the deserialized value or null if the entry's value is not
+   *         a serialized off-heap value, in which case the caller must
+   *         read it the normal way.
+   * @since 8.2
+   */
+  private Object getDeserializedOffHeap(AbstractRegionEntry re) {
+    Object v = re._getValueRetain();
+    if (!(v instanceof StoredObject)) {
+      return null;
+    }
+    StoredObject so = (StoredObject)v;
+    try {
+      if (!(so instanceof SerializedChunk)) {
+        return null;
+      }
+      v = ((SerializedChunk)so).deserialize();
+    } finally {
+      so.release();
+    }
+    re.setRecentlyUsed();
+    return v;
+  }
+
   @Override
   public Object get(Object key, Object aCallbackArgument,
       boolean generateCallbacks, EntryEventImpl clientEvent) throws TimeoutException, CacheLoaderException
@@ -2352,9 +2395,16 @@ public class LocalRegion extends AbstractRegion
  
   protected void createOQLIndexes(InternalRegionArguments internalRegionArgs, boolean recoverFromDisk) {
     
+    File indexSnapshot = recoverFromDisk ? getIndexSnapshotFile() : null;
     if (internalRegionArgs == null || internalRegionArgs.getIndexes() == null || internalRegionArgs.getIndexes().size() == 0){
+      if (indexSnapshot != null) {
+        indexSnapshot.delete();
+      }
       return;
     }
+    if (indexSnapshot != null && !indexSnapshot.exists()) {
+      indexSnapshot = null;
+    }
     if (logger.isDebugEnabled()) {
       logger.debug("LocalRegion.createOQLIndexes on region {}", this.getFullPath());
     }
@@ -2377,6 +2427,8 @@ public class LocalRegion extends AbstractRegion
         dr.waitForAsyncRecovery();
       }
     }
+    // indexes restored from a snapshot are loaded after they are all created
+    boolean loadEntries = !isOverflowToDisk && indexSnapshot == null;
     try {
       // Release the initialization latch for index creation.
       initLevel = LocalRegion.setThreadInitLevelRequirement(ANY_INIT);
@@ -2395,7 +2447,7 @@ public class LocalRegion extends AbstractRegion
             //load entries during initialization only for non overflow regions
             indexes.add(this.indexManager.createIndex(icd.getIndexName(), icd.getIndexType(), 
                 icd.getIndexExpression(), icd.getIndexFromClause(), 
-                icd.getIndexImportString(), externalContext, icd.getPartitionedIndex(), !isOverflowToDisk));           
+                icd.getIndexImportString(), externalContext, icd.getPartitionedIndex(), loadEntries));           
           } else {
             if (logger.isDebugEnabled()) {
               logger.debug("QueryService Index creation process for {}" + icd.getIndexName());
@@ -2403,7 +2455,7 @@ public class LocalRegion extends AbstractRegion
             DefaultQueryService qs = (DefaultQueryService) this.getGemFireCache().getLocalQueryService();
             String fromClause = (icd.getIndexType() == IndexType.FUNCTIONAL || icd.getIndexType() == IndexType.HASH)? icd.getIndexFromClause() : this.getFullPath();
             //load entries during initialization only for non overflow regions
-            indexes.add(qs.createIndex(icd.getIndexName(), icd.getIndexType(), icd.getIndexExpression(), fromClause, icd.getIndexImportString(), !isOverflowToDisk));
+            indexes.add(qs.createIndex(icd.getIndexName(), icd.getIndexType(), icd.getIndexExpression(), fromClause, icd.getIndexImportString(), loadEntries));
           }
 
         } catch (Exception ex) {
@@ -2422,8 +2474,11 @@ public class LocalRegion extends AbstractRegion
       // Reset the initialization lock.
       LocalRegion.setThreadInitLevelRequirement(initLevel);
     }
+    if (indexSnapshot != null) {
+      restoreOQLIndexes(indexes, indexSnapshot);
+    }
     // Load data into OQL indexes in case of disk recovery and disk overflow
-    if(isOverflowToDisk){
+    else if(isOverflowToDisk){
       if(recoverFromDisk) {
         populateOQLIndexes(indexes);
       } else {
@@ -2448,6 +2503,33 @@ public class LocalRegion extends AbstractRegion
     }
   }
   
+  /**
+   * Restore the indexes from the snapshot written when the region was closed,
+   * populating the ones that cannot be restored with region entries
+   */
+  protected void restoreOQLIndexes(Set<Index> indexes, File indexSnapshot) {
+    logger.info(LocalizedMessage.create(LocalizedStrings.GemFireCache_INDEX_LOADING));
+    try {
+      this.indexManager.restoreIndexes(indexSnapshot, indexes);
+    } catch (MultiIndexCreationException ex) {
+      logger.info("Failed to update index on region {}: {}", this.getFullPath(), ex.getMessage());
+    }
+  }
+
+  /**
+   * Returns the file to which the indexes of this region are saved when it is
+   * closed, or null if they are not saved because the region is not
+   * persistent or has no entry versions to validate the saved indexes with.
+   */
+  File getIndexSnapshotFile() {
+    DiskRegion dr = this.diskRegion;
+    if (dr == null || !dr.isBackup() || !this.concurrencyChecksEnabled) {
+      return null;
+    }
+    return new File(dr.getInfoFileDir().getDir(),
+        "INDEX" + getFullPath().replace('/', '_') + ".snapshot");
+  }
+
   /**
    * The region is now fully initialized, as far as LocalRegion is concerned
    */
@@ -2616,6 +2698,12 @@ public class LocalRegion extends AbstractRegion
 
       try {
         if (this.indexManager != null) {
+          if (isClose) {
+            File indexSnapshot = getIndexSnapshotFile();
+            if (indexSnapshot != null) {
+              this.indexManager.saveIndexes(indexSnapshot);
+            }
+          }
           try {
             if (this instanceof BucketRegion) {
               this.indexManager.removeBucketIndexes(getPartitionedRegion());
@@ -6682,6 +6770,10 @@ public class LocalRegion extends AbstractRegion
   {
     if (this.diskRegion != null) {
       if (destroyDiskRegion) {
+        File indexSnapshot = getIndexSnapshotFile();
+        if (indexSnapshot != null) {
+          indexSnapshot.delete();
+        }
         this.diskRegion.endDestroy(this);
       }
       else {
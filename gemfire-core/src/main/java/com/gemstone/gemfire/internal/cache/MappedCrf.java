@@ -0,0 +1,172 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.internal.cache.persistence.BytesAndBits;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * The read only mapping of the crf of an oplog, or overflow oplog, that is no
+ * longer appended to. Values are copied out of it without holding the oplog
+ * lock.
+ *
+ * The mapping is released by {@link #unmap} rather than when it is garbage
+ * collected, since a file that is mapped can not be deleted or truncated on
+ * some platforms. Unmapping waits for the reads in progress to finish; the
+ * reads that start afterwards return null so that their caller reads the
+ * value from the file.
+ *
+ * @since 8.2
+ */
+final class MappedCrf {
+
+  private static final Logger logger = LogService.getLogger();
+
+  private final MappedByteBuffer buffer;
+
+  private final DiskStoreStats stats;
+
+  /** The number of reads in progress. Guarded by this. */
+  private int readers;
+
+  /** True once the mapping is being released. Guarded by this. */
+  private boolean unmapped;
+
+  private MappedCrf(MappedByteBuffer buffer, DiskStoreStats stats) {
+    this.buffer = buffer;
+    this.stats = stats;
+  }
+
+  /**
+   * Maps the first <code>length</code> bytes of a crf that will no longer be
+   * written to.
+   *
+   * @return the mapping or null if the file could not be mapped
+   */
+  static MappedCrf map(File f, long length, DiskStoreStats stats) {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(f, "r");
+      // never map past the end of the file since reading such a page faults
+      length = Math.min(length, raf.length());
+      if (length <= 0 || length > Integer.MAX_VALUE) {
+        return null;
+      }
+      MappedByteBuffer result = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+      stats.incMappedOplogs(1);
+      return new MappedCrf(result, stats);
+    } catch (IOException ex) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("Could not map {}; values will be read with seeks", f, ex);
+      }
+      return null;
+    } finally {
+      if (raf != null) {
+        // the mapping stays valid after its channel is closed
+        try {
+          raf.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Copies a value out of the mapping. Each call reads through its own view
+   * of the mapping so no lock is held while copying.
+   *
+   * @return the value or null if the mapping does not contain the value or
+   *         has been unmapped
+   */
+  BytesAndBits read(long offsetInOplog, int valueLength, byte userBits) {
+    if (offsetInOplog < 0 || offsetInOplog + valueLength > this.buffer.capacity()) {
+      return null;
+    }
+    synchronized (this) {
+      if (this.unmapped) {
+        return null;
+      }
+      this.readers++;
+    }
+    try {
+      ByteBuffer view = this.buffer.duplicate();
+      view.position((int) offsetInOplog);
+      byte[] valueBytes = new byte[valueLength];
+      view.get(valueBytes);
+      this.stats.incOplogMappedReads();
+      return new BytesAndBits(valueBytes, userBits);
+    } finally {
+      synchronized (this) {
+        this.readers--;
+        if (this.readers == 0 && this.unmapped) {
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  /**
+   * Releases the mapping once the reads in progress have finished. Does
+   * nothing if it was already unmapped.
+   */
+  void unmap() {
+    synchronized (this) {
+      if (this.unmapped) {
+        return;
+      }
+      this.unmapped = true;
+      boolean interrupted = Thread.interrupted();
+      try {
+        while (this.readers > 0) {
+          try {
+            wait();
+          } catch (InterruptedException ex) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+    release(this.buffer);
+    this.stats.incMappedOplogs(-1);
+  }
+
+  /**
+   * Unmaps the buffer with its cleaner. If the JVM does not let us, the
+   * buffer is unmapped once it is garbage collected.
+   */
+  private static void release(MappedByteBuffer buffer) {
+    try {
+      Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+      cleanerMethod.setAccessible(true);
+      Object cleaner = cleanerMethod.invoke(buffer);
+      if (cleaner != null) {
+        Method cleanMethod = cleaner.getClass().getMethod("clean");
+        cleanMethod.setAccessible(true);
+        cleanMethod.invoke(cleaner);
+      }
+    } catch (Exception ex) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("Could not unmap a crf; it will be unmapped when garbage collected", ex);
+      }
+    }
+  }
+}
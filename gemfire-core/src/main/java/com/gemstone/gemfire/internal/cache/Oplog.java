@@ -15,6 +15,7 @@ import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
@@ -25,6 +26,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.SyncFailedException;
 import java.nio.ByteBuffer;
@@ -178,6 +180,55 @@ public final class Oplog implements CompactableOplog {
    */
   private static final boolean SYNC_WRITES = Boolean.getBoolean("gemfire.syncWrites");
 
+  /**
+   * Synchronous creates, modifies and removes are group committed: each writer
+   * appends its record to the write buffer while holding the oplog lock and,
+   * once it has released the lock, waits until some writer has flushed the
+   * buffer past its record. The first writer to find no flush in progress
+   * does the flush for every record appended so far. Setting this system
+   * property makes each synchronous write flush the oplog itself while holding
+   * the oplog lock.
+   */
+  private static final boolean GROUP_COMMIT = !Boolean.getBoolean("gemfire.disk.disableGroupCommit");
+
+  /**
+   * This system property causes the crf of an oplog, or overflow oplog, that
+   * is no longer being appended to be memory mapped the first time a value is faulted in from
+   * it. Values are then read from the mapping without a seek and without
+   * holding the oplog lock. The crf is unmapped when the oplog is closed or
+   * before its crf is deleted. Not final so that tests can change it.
+   */
+  static boolean MMAP_READS = Boolean.getBoolean("gemfire.disk.mmapOplogReads");
+
+  /**
+   * The read only mapping of the crf once this oplog is done appending.
+   * Null if it has not been mapped or has been dropped.
+   */
+  private volatile MappedCrf mappedCrf;
+
+  /**
+   * Set once this oplog's crf has been mapped or could not be mapped so that
+   * it is not mapped again. Guarded by lock.
+   */
+  private boolean crfMapAttempted;
+
+  /**
+   * Group commits the records appended by synchronous writers.
+   */
+  private final GroupCommitter groupCommitter = new GroupCommitter() {
+    @Override
+    protected void flush() {
+      long start = getStats().startGroupCommit();
+      flushAll(false);
+      getStats().endGroupCommit(start);
+    }
+
+    @Override
+    protected void committed(long records) {
+      getStats().incGroupCommitRecords(records);
+    }
+  };
+
   /**
    * The HighWaterMark of recentValues.
    */
@@ -1683,8 +1734,63 @@ public final class Oplog implements CompactableOplog {
    */
   private OplogEntryIdMap skippedKeyBytes;
 
+  /**
+   * Returns the file name, without an extension, that this oplog's crf and krf
+   * are recovered from.
+   */
+  private File getRecoveryDiskFile() {
+    return new File(this.drf.f.getParentFile(), oplogSet.getPrefix() + getParent().getName() + "_" + this.oplogId);
+  }
+
+  /**
+   * Reads this oplog's entire krf into memory so that a later call of
+   * {@link #recoverCrf} can parse it without waiting on the disk. This is
+   * called by the disk store's recovery threads for several oplogs at once;
+   * it only reads the file and changes no state of this oplog.
+   *
+   * @return the contents of the krf or null if it does not exist or could not
+   *         be read, in which case {@link #recoverCrf} reads it from disk
+   */
+  byte[] prefetchKrf() {
+    File f = new File(getRecoveryDiskFile().getPath() + KRF_FILE_EXT);
+    long length = f.length();
+    if (length == 0 || length > Integer.MAX_VALUE) {
+      return null;
+    }
+    long start = this.stats.startKrfPrefetch();
+    byte[] result = new byte[(int)length];
+    FileInputStream fis;
+    try {
+      fis = new FileInputStream(f);
+    } catch (FileNotFoundException ex) {
+      return null;
+    }
+    try {
+      new DataInputStream(fis).readFully(result);
+    } catch (IOException ex) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("Could not prefetch krf {}; it will be read during recovery", f, ex);
+      }
+      return null;
+    } finally {
+      try {
+        fis.close();
+      } catch (IOException ignore) {
+      }
+    }
+    this.stats.endKrfPrefetch(start, length);
+    return result;
+  }
+
+  private DataInputStream openKrf(File f, byte[] prefetchedKrf) throws FileNotFoundException {
+    if (prefetchedKrf != null) {
+      return new DataInputStream(new ByteArrayInputStream(prefetchedKrf));
+    }
+    return new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1024 * 1024));
+  }
+
   private boolean readKrf(OplogEntryIdSet deletedIds, boolean recoverValues, boolean recoverValuesSync,
-      Set<Oplog> oplogsNeedingValueRecovery, boolean latestOplog) {
+      Set<Oplog> oplogsNeedingValueRecovery, boolean latestOplog, byte[] prefetchedKrf) {
     File f = new File(this.diskFile.getPath() + KRF_FILE_EXT);
     if (!f.exists()) {
       return false;
@@ -1694,6 +1800,7 @@ public final class Oplog implements CompactableOplog {
       logger.info(LocalizedMessage.create(LocalizedStrings.Oplog_REMOVING_INCOMPLETE_KRF, new Object[] { f.getName(), this.oplogId,
           getParent().getName() }));
       f.delete();
+      prefetchedKrf = null;
     }
     // Set krfCreated to true since we have a krf.
     this.krfCreated.set(true);
@@ -1704,9 +1811,9 @@ public final class Oplog implements CompactableOplog {
       return false;
     }
 
-    FileInputStream fis;
+    DataInputStream dis;
     try {
-      fis = new FileInputStream(f);
+      dis = openKrf(f, prefetchedKrf);
     } catch (FileNotFoundException ex) {
       return false;
     }
@@ -1721,7 +1828,6 @@ public final class Oplog implements CompactableOplog {
       this.recoverModEntryIdHWM = DiskStoreImpl.INVALID_ID;
       long oplogKeyIdHWM = DiskStoreImpl.INVALID_ID;
       int krfEntryCount = 0;
-      DataInputStream dis = new DataInputStream(new BufferedInputStream(fis, 1024 * 1024));
       final Version version = getProductVersionIfOld();
       final ByteArrayDataInput in = new ByteArrayDataInput();
       try {
@@ -1736,17 +1842,15 @@ public final class Oplog implements CompactableOplog {
           // file is in old format which does not have a magic seq in the
           // beginning or this is not a valid file at all. Try reading it as a
           // file in old format
-          fis.close();
-          fis = new FileInputStream(f);
-          dis = new DataInputStream(new BufferedInputStream(fis, 1024 * 1024));
+          dis.close();
+          dis = openKrf(f, prefetchedKrf);
           readDiskStoreRecord(dis, f);
         } catch (IllegalStateException notOldFileErr) {
           // Failed to read the file. There are two possibilities. Either this
           // is in new format which has a magic seq in the beginning or this is
           // not a valid file at all
-          fis.close();
-          fis = new FileInputStream(f);
-          dis = new DataInputStream(new BufferedInputStream(fis, 1024 * 1024));
+          dis.close();
+          dis = openKrf(f, prefetchedKrf);
           readDiskStoreRecord(dis, f);
         }
 
@@ -1847,8 +1951,8 @@ public final class Oplog implements CompactableOplog {
         setRecoverNewEntryId(oplogKeyIdHWM);
       } catch (IOException ex) {
         try {
-          fis.close();
-          fis = null;
+          dis.close();
+          dis = null;
         } catch (IOException ignore) {
         }
         throw new DiskAccessException("Unable to recover from krf file for oplogId=" + oplogId + ", file=" + f.getName()
@@ -1871,10 +1975,10 @@ public final class Oplog implements CompactableOplog {
       }
     } finally {
       // fix for bug 42776
-      if (fis != null) {
+      if (dis != null) {
         try {
-          fis.close();
-          fis = null;
+          dis.close();
+          dis = null;
         } catch (IOException ignore) {
         }
       }
@@ -2241,11 +2345,13 @@ public final class Oplog implements CompactableOplog {
    * 
    * @param latestOplog
    *          - true if this oplog is the latest oplog in the disk store.
+   * @param prefetchedKrf
+   *          - the contents of the krf read by {@link #prefetchKrf} or null
    */
   long recoverCrf(OplogEntryIdSet deletedIds, boolean recoverValues, boolean recoverValuesSync, boolean alreadyRecoveredOnce,
-      Set<Oplog> oplogsNeedingValueRecovery, boolean latestOplog) {
+      Set<Oplog> oplogsNeedingValueRecovery, boolean latestOplog, byte[] prefetchedKrf) {
     // crf might not exist; but drf always will
-    this.diskFile = new File(this.drf.f.getParentFile(), oplogSet.getPrefix() + getParent().getName() + "_" + this.oplogId);
+    this.diskFile = getRecoveryDiskFile();
 
     File crfFile = this.crf.f;
     if (crfFile == null) {
@@ -2266,7 +2372,7 @@ public final class Oplog implements CompactableOplog {
       long byteCount;
       // if we have a KRF then read it and delay reading the CRF.
       // Unless we are in synchronous recovery mode
-      if (!readKrf(deletedIds, recoverValues, recoverValuesSync, oplogsNeedingValueRecovery, latestOplog)) {
+      if (!readKrf(deletedIds, recoverValues, recoverValuesSync, oplogsNeedingValueRecovery, latestOplog, prefetchedKrf)) {
         logger.info(LocalizedMessage.create(LocalizedStrings.DiskRegion_RECOVERING_OPLOG_0_1_2, new Object[] { toString(),
             crfFile.getAbsolutePath(), getParent().getName() }));
         byteCount = readCrf(deletedIds, recoverValues, latestOplog);
@@ -3312,6 +3418,7 @@ public final class Oplog implements CompactableOplog {
 
   private void basicClose(boolean forceDelete) {
     flushAll();
+    unmapCrf();
     synchronized (this.lock/* crf */) {
       unpreblow(this.crf, getMaxCrfSize());
       if (!this.crf.RAFClosed) {
@@ -3617,6 +3724,7 @@ public final class Oplog implements CompactableOplog {
     DiskId id = entry.getDiskId();
     boolean useNextOplog = false;
     long startPosForSynchOp = -1;
+    long commitTicket = 0;
     if (DiskStoreImpl.KRF_DEBUG) {
       // wait for cache close to create krf
       System.out.println("basicCreate KRF_DEBUG");
@@ -3683,7 +3791,8 @@ public final class Oplog implements CompactableOplog {
         id.setOplogId(getOplogId());
         // do the io while holding lock so that switch can set doneAppending
         // Write the data to the opLog for the synch mode
-        startPosForSynchOp = writeOpLogBytes(this.crf, async, true);
+        startPosForSynchOp = writeOpLogBytes(this.crf, async, true, true);
+        commitTicket = getGroupCommitTicket(async);
         // if (this.crf.currSize != startPosForSynchOp) {
         // assert false;
         // }
@@ -3741,6 +3850,7 @@ public final class Oplog implements CompactableOplog {
       Assert.assertTrue(this != getOplogSet().getChild());
       getOplogSet().getChild().basicCreate(dr, entry, value, userBits, async);
     } else {
+      groupCommit(commitTicket);
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSettingOplogOffSet(startPosForSynchOp);
       }
@@ -4631,6 +4741,7 @@ public final class Oplog implements CompactableOplog {
     DiskId id = entry.getDiskId();
     boolean useNextOplog = false;
     long startPosForSynchOp = -1L;
+    long commitTicket = 0;
     int adjustment = 0;
     Oplog emptyOplog = null;
     if (DiskStoreImpl.KRF_DEBUG) {
@@ -4661,7 +4772,8 @@ public final class Oplog implements CompactableOplog {
           long oldOplogId;
           // do the io while holding lock so that switch can set doneAppending
           // Write the data to the opLog for the synch mode
-          startPosForSynchOp = writeOpLogBytes(this.crf, async, true);
+          startPosForSynchOp = writeOpLogBytes(this.crf, async, true, true);
+          commitTicket = getGroupCommitTicket(async);
           this.crf.currSize = temp;
           startPosForSynchOp += getOpStateValueOffset();
           if (logger.isTraceEnabled(LogMarker.PERSIST_WRITES)) {
@@ -4735,6 +4847,7 @@ public final class Oplog implements CompactableOplog {
       Assert.assertTrue(getOplogSet().getChild() != this);
       getOplogSet().getChild().basicModify(dr, entry, value, valueLength, userBits, async, calledByCompactor);
     } else {
+      groupCommit(commitTicket);
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSettingOplogOffSet(startPosForSynchOp);
       }
@@ -5063,6 +5176,7 @@ public final class Oplog implements CompactableOplog {
 
     boolean useNextOplog = false;
     long startPosForSynchOp = -1;
+    long commitTicket = 0;
     Oplog emptyOplog = null;
     if (DiskStoreImpl.KRF_DEBUG) {
       // wait for cache close to create krf
@@ -5108,7 +5222,8 @@ public final class Oplog implements CompactableOplog {
           // before we flush the crf.
           // However we can't have removes by async if we are doing a sync write
           // because we might be killed right after we do this write.
-          startPosForSynchOp = writeOpLogBytes(this.drf, async, true);
+          startPosForSynchOp = writeOpLogBytes(this.drf, async, true, true);
+          commitTicket = getGroupCommitTicket(async);
           setHasDeletes(true);
           if (logger.isTraceEnabled(LogMarker.PERSIST_WRITES)) {
             logger.debug("basicRemove: id=<{}> key=<{}> drId={} oplog#{}", abs(id.getKeyId()), entry.getKey(), dr.getId(),
@@ -5148,6 +5263,7 @@ public final class Oplog implements CompactableOplog {
       Assert.assertTrue(getOplogSet().getChild() != this);
       getOplogSet().getChild().basicRemove(dr, entry, async, isClear);
     } else {
+      groupCommit(commitTicket);
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSettingOplogOffSet(startPosForSynchOp);
       }
@@ -5259,6 +5375,17 @@ public final class Oplog implements CompactableOplog {
    *         written to
    */
   private long writeOpLogBytes(OplogFile olf, boolean async, boolean doFlushIfSync) throws IOException {
+    return writeOpLogBytes(olf, async, doFlushIfSync, false);
+  }
+
+  /**
+   * @param groupCommit
+   *          if true and {@link #GROUP_COMMIT} is enabled then a sync write is
+   *          only appended to the write buffer; the caller must pass the ticket
+   *          from {@link #getGroupCommitTicket} to {@link #groupCommit} once it
+   *          has released the lock
+   */
+  private long writeOpLogBytes(OplogFile olf, boolean async, boolean doFlushIfSync, boolean groupCommit) throws IOException {
     long startPos = -1L;
     synchronized (this.lock/* olf */) {
       Assert.assertTrue(!this.doneAppending);
@@ -5280,7 +5407,9 @@ public final class Oplog implements CompactableOplog {
       // " was not > lastWritePos=" + lastWritePos);
       long bytesWritten = this.opState.write(olf);
       if (!async && doFlushIfSync) {
-        flushAndSync(olf);
+        if (!groupCommit || !GROUP_COMMIT) {
+          flushAndSync(olf);
+        }
       }
       getStats().incWrittenBytes(bytesWritten, async);
 
@@ -5292,6 +5421,34 @@ public final class Oplog implements CompactableOplog {
     return startPos;
   }
 
+  /**
+   * Returns the ticket of the record just appended by a sync writer or 0 if
+   * the record does not need to be group committed. Must be called while
+   * holding lock.
+   */
+  private long getGroupCommitTicket(boolean async) {
+    if (async || !GROUP_COMMIT) {
+      return 0;
+    }
+    return this.groupCommitter.append();
+  }
+
+  /**
+   * Waits until the record with the given ticket has been flushed, flushing
+   * every record appended so far if no other writer is already doing so.
+   */
+  private void groupCommit(long ticket) throws InterruptedException {
+    if (ticket == 0) {
+      return;
+    }
+    if (Thread.holdsLock(this.lock)) {
+      // the writer that flushes would need the lock we hold
+      flushAll(false);
+      return;
+    }
+    this.groupCommitter.commit(ticket);
+  }
+
   boolean isRAFOpen() {
     return !this.crf.RAFClosed; // volatile read
   }
@@ -5435,6 +5592,70 @@ public final class Oplog implements CompactableOplog {
     }
   }
 
+  /**
+   * Returns the crf mapping, mapping the crf if this oplog is done appending
+   * and it has not been mapped yet.
+   * 
+   * @return the mapping or null if mapped reads are disabled or the crf can
+   *         not be mapped
+   */
+  private MappedCrf getMappedCrf() {
+    if (!MMAP_READS || !this.doneAppending) {
+      return null;
+    }
+    MappedCrf result = this.mappedCrf;
+    if (result == null) {
+      synchronized (this.lock/* crf */) {
+        result = this.mappedCrf;
+        if (result == null && !this.crfMapAttempted && !this.closed && this.crf.f != null) {
+          this.crfMapAttempted = true;
+          result = MappedCrf.map(this.crf.f, this.crf.bytesFlushed, this.stats);
+          this.mappedCrf = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Releases the crf mapping, waiting for the reads in progress, so that
+   * the crf can be deleted.
+   */
+  private void unmapCrf() {
+    MappedCrf mapped = null;
+    if (this.mappedCrf != null) {
+      synchronized (this.lock/* crf */) {
+        mapped = this.mappedCrf;
+        this.mappedCrf = null;
+      }
+    }
+    if (mapped != null) {
+      mapped.unmap();
+    }
+  }
+
+  /**
+   * Reads a value from the crf mapping without holding the lock.
+   * 
+   * @return the value or null if it needs to be read from the file
+   */
+  private BytesAndBits mappedGet(long offsetInOplog, int valueLength, byte userBits) {
+    MappedCrf mapped = getMappedCrf();
+    if (mapped == null) {
+      return null;
+    }
+    BytesAndBits bb = mapped.read(offsetInOplog, valueLength, userBits);
+    if (bb == null) {
+      return null;
+    }
+    // also set the product version for an older product
+    final Version version = getProductVersionIfOld();
+    if (version != null) {
+      bb.setVersion(version);
+    }
+    return bb;
+  }
+
   /**
    * Asif: Extracts the Value byte array & UserBit from the OpLog
    * 
@@ -5462,6 +5683,10 @@ public final class Oplog implements CompactableOplog {
     } else {
       if (offsetInOplog == -1)
         return null;
+      bb = mappedGet(offsetInOplog, valueLength, userBits);
+      if (bb != null) {
+        return bb;
+      }
       try {
         for (;;) {
           dr.getCancelCriterion().checkCancelInProgress(null);
@@ -5667,6 +5892,7 @@ public final class Oplog implements CompactableOplog {
   }
 
   public void deleteCRFFileOnly() {
+    unmapCrf();
     deleteFile(this.crf);
     // replace .crf at the end with .krf
     if (this.crf.f != null) {
@@ -87,7 +87,18 @@ class OverflowOplog implements CompactableOplog {
    * Set to true when this oplog will no longer be written to.
    * Never set to false once it becomes true.
    */
-  private boolean doneAppending = false;
+  private volatile boolean doneAppending = false;
+
+  /**
+   * The read only mapping of the crf once this oplog is done appending.
+   * Only used if {@link Oplog#MMAP_READS}.
+   */
+  private volatile MappedCrf mappedCrf;
+
+  /**
+   * Set once the crf has been mapped or could not be mapped. Guarded by crf.
+   */
+  private boolean crfMapAttempted;
 
   private final OplogDiskEntry liveEntries = new OplogDiskEntry();
 
@@ -446,6 +457,7 @@ class OverflowOplog implements CompactableOplog {
   
   private void basicClose() {
     flushAll();
+    unmapCrf();
     synchronized (this.crf) {
       if (!this.crf.RAFClosed) {
         try {
@@ -924,6 +936,45 @@ class OverflowOplog implements CompactableOplog {
     return bb;
   }
 
+  /**
+   * Returns the crf mapping, mapping the crf if this oplog is done appending
+   * and it has not been mapped yet.
+   */
+  private MappedCrf getMappedCrf() {
+    if (!Oplog.MMAP_READS || !this.doneAppending) {
+      return null;
+    }
+    MappedCrf result = this.mappedCrf;
+    if (result == null) {
+      synchronized (this.crf) {
+        result = this.mappedCrf;
+        if (result == null && !this.crfMapAttempted && !this.closed && this.crf.f != null) {
+          this.crfMapAttempted = true;
+          result = MappedCrf.map(this.crf.f, Math.min(this.crf.currSize, this.crf.bytesFlushed), this.stats);
+          this.mappedCrf = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Releases the crf mapping, waiting for the reads in progress, so that
+   * the crf can be deleted.
+   */
+  private void unmapCrf() {
+    MappedCrf mapped = null;
+    if (this.mappedCrf != null) {
+      synchronized (this.crf) {
+        mapped = this.mappedCrf;
+        this.mappedCrf = null;
+      }
+    }
+    if (mapped != null) {
+      mapped.unmap();
+    }
+  }
+
   /**
    * Asif: Extracts the Value byte array & UserBit from the OpLog
    * 
@@ -953,6 +1004,13 @@ class OverflowOplog implements CompactableOplog {
     }
     else {
       if (offsetInOplog == -1) return null;
+      MappedCrf mapped = getMappedCrf();
+      if (mapped != null) {
+        bb = mapped.read(offsetInOplog, valueLength, userBits);
+        if (bb != null) {
+          return bb;
+        }
+      }
       try {
         for (;;) {
           dr.getCancelCriterion().checkCancelInProgress(null);
@@ -1001,6 +1059,7 @@ class OverflowOplog implements CompactableOplog {
     boolean needsDestroy = this.deleted.compareAndSet(false, true);
     if (needsDestroy) {
       this.getOplogSet().removeOverflow(this);
+      unmapCrf();
       deleteFile();
     }
   }
@@ -41,6 +41,7 @@ import com.gemstone.gemfire.cache.query.internal.QueryExecutionContext;
 import com.gemstone.gemfire.cache.query.internal.QueryMonitor;
 import com.gemstone.gemfire.cache.query.internal.QueryObserver;
 import com.gemstone.gemfire.cache.query.internal.QueryObserverHolder;
+import com.gemstone.gemfire.cache.query.internal.QueryProfiler;
 import com.gemstone.gemfire.internal.Assert;
 import com.gemstone.gemfire.internal.DataSerializableFixedID;
 import com.gemstone.gemfire.internal.Version;
@@ -493,6 +494,8 @@ public class PRQueryProcessor
     private final PartitionedRegionDataStore _prDs;
     private final Integer _bucketId;
     private final Collection<Collection> resultColl;
+    /** the profiled execution of the thread that created this task */
+    private final QueryProfiler.Execution profile;
     
     public QueryTask(DefaultQuery query, Object[] parameters, PartitionedRegionDataStore prDS, 
         Integer bucketId, final Collection<Collection> rColl) {
@@ -501,11 +504,13 @@ public class PRQueryProcessor
       this._bucketId = bucketId;
       this.resultColl = rColl;
       this.parameters = parameters;
+      this.profile = QueryProfiler.current();
     }
     
     public Object call() throws Exception {
       BucketQueryResult bukResult = new BucketQueryResult(this._bucketId);
       boolean retry = false;
+      boolean profiled = QueryProfiler.attach(this.profile);
       try {
         //Add indexInfo of this thread to result collector
         QueryObserver observer = QueryObserverHolder.getInstance();
@@ -525,6 +530,10 @@ public class PRQueryProcessor
         bukResult.setException(e);
       } catch (CacheRuntimeException cre) {
         bukResult.setException(cre);
+      } finally {
+        if (profiled) {
+          QueryProfiler.detach();
+        }
       }
       // Exception
       return bukResult;
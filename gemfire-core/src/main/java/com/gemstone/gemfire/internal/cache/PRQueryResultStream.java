@@ -0,0 +1,315 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.gemstone.gemfire.CancelCriterion;
+import com.gemstone.gemfire.InternalGemFireException;
+import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
+import com.gemstone.gemfire.cache.query.internal.QueryExecutionCanceledException;
+import com.gemstone.gemfire.cache.query.internal.StructImpl;
+import com.gemstone.gemfire.cache.query.internal.types.StructTypeImpl;
+import com.gemstone.gemfire.distributed.internal.DM;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.internal.cache.partitioned.StreamingPartitionOperation.ChunkPermitMessage;
+import com.gemstone.gemfire.internal.cache.persistence.query.CloseableIterator;
+import com.gemstone.gemfire.pdx.PdxInstance;
+import com.gemstone.gemfire.pdx.internal.PdxString;
+
+/**
+ * Hands the results of a partitioned region query to the caller as the
+ * members return them, instead of collecting them in a
+ * <code>SelectResults</code> first.
+ *
+ * The chunks received from the data stores are queued until the caller
+ * iterates over them. A data store on 8.2 or later only sends a few chunks
+ * ahead of the caller; whenever the caller takes one of its chunks from the
+ * queue a {@link ChunkPermitMessage} lets it send another one. The results of
+ * the buckets hosted by the coordinator itself go through a window of the same
+ * size: the thread querying them waits in {@link #addLocal} until the caller
+ * has taken enough of the chunks queued before. The coordinator therefore
+ * holds at most a window of chunks per member.
+ *
+ * The iterator must be {@link #close() closed} if it is abandoned before the
+ * end of the results, which also stops the data stores. Exceptions raised by
+ * the query are thrown from {@link #hasNext()}; checked query exceptions are
+ * wrapped in an {@link InternalGemFireException}.
+ *
+ * @since 8.2
+ */
+public class PRQueryResultStream implements CloseableIterator {
+
+  /** how often a waiting caller checks for cancellation */
+  private static final long POLL_MILLIS = 1000;
+
+  /** marks the end of the results in the queue */
+  private static final Object END = new Object();
+
+  private final PartitionedRegionQueryEvaluator evaluator;
+  private final DefaultQuery query;
+  private final DM dm;
+  private final CancelCriterion cancelCriterion;
+  private final int limit;
+  /** whether PdxInstances are converted to domain objects */
+  private final boolean convertPdx;
+  /** whether serialized values from remote members are deserialized */
+  private final boolean deserialize;
+
+  /**
+   * the number of chunks a member may have in the queue, zero for no limit
+   */
+  private final int window;
+
+  private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+  /** the number of local chunks in the queue. Guarded by localLock. */
+  private int localChunks = 0;
+  private final Object localLock = new Object();
+
+  private volatile boolean closed = false;
+  private volatile Throwable failure;
+
+  private boolean done = false;
+  private Iterator current;
+  private boolean currentIsRemote;
+  private int returned = 0;
+
+  PRQueryResultStream(PartitionedRegionQueryEvaluator evaluator,
+      PartitionedRegion pr, DefaultQuery query, int limit, int window) {
+    this(evaluator, pr.getDistributionManager(), pr.getCancelCriterion(),
+        query, limit, window, !pr.getCache().getPdxReadSerialized(),
+        !query.isKeepSerialized());
+  }
+
+  PRQueryResultStream(PartitionedRegionQueryEvaluator evaluator, DM dm,
+      CancelCriterion cancelCriterion, DefaultQuery query, int limit,
+      int window, boolean convertPdx, boolean deserialize) {
+    this.evaluator = evaluator;
+    this.query = query;
+    this.dm = dm;
+    this.cancelCriterion = cancelCriterion;
+    this.limit = limit;
+    this.window = window;
+    this.convertPdx = convertPdx;
+    this.deserialize = deserialize;
+  }
+
+  /**
+   * Queues a chunk of results returned by another member.
+   *
+   * @param sender the member that returned the results
+   * @param processorId if not zero, the reply processor to which the sender
+   *          streams its results and the id for granting it more chunks
+   * @return false if the stream was closed and no more results are needed
+   */
+  boolean add(InternalDistributedMember sender, Collection results,
+      int processorId) {
+    if (this.closed) {
+      return false;
+    }
+    this.queue.add(new Chunk(sender, results, true, processorId));
+    return true;
+  }
+
+  /**
+   * Queues a chunk of the results of the buckets hosted by this member,
+   * waiting while a window of local chunks is queued already.
+   *
+   * @return false if the stream was closed and no more results are needed
+   */
+  boolean addLocal(InternalDistributedMember me, Collection results)
+      throws InterruptedException {
+    synchronized (this.localLock) {
+      while (this.window > 0 && this.localChunks >= this.window
+          && !this.closed) {
+        this.cancelCriterion.checkCancelInProgress(null);
+        this.localLock.wait(POLL_MILLIS);
+      }
+      if (this.closed) {
+        return false;
+      }
+      this.localChunks++;
+    }
+    this.queue.add(new Chunk(me, results, false, 0));
+    return true;
+  }
+
+  /**
+   * Called once no more results will be added.
+   *
+   * @param failure the exception that ended the query, or null
+   */
+  void finish(Throwable failure) {
+    this.failure = failure;
+    this.queue.add(END);
+  }
+
+  boolean isClosed() {
+    return this.closed;
+  }
+
+  public boolean hasNext() {
+    if (this.closed) {
+      return false;
+    }
+    if (this.limit >= 0 && this.returned >= this.limit) {
+      close();
+      return false;
+    }
+    while (this.current == null || !this.current.hasNext()) {
+      Object next = take();
+      if (next == END) {
+        this.done = true;
+        close();
+        checkFailure();
+        return false;
+      }
+      Chunk chunk = (Chunk)next;
+      if (chunk.processorId != 0) {
+        grantChunk(chunk.sender, chunk.processorId);
+      } else if (!chunk.remote) {
+        synchronized (this.localLock) {
+          this.localChunks--;
+          this.localLock.notifyAll();
+        }
+      }
+      this.current = chunk.results.iterator();
+      this.currentIsRemote = chunk.remote;
+    }
+    return true;
+  }
+
+  public Object next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    this.returned++;
+    Object obj = this.current.next();
+    if (obj instanceof StructImpl) {
+      StructImpl struct = (StructImpl)obj;
+      Object[] values = struct.getFieldValues();
+      Object[] converted = new Object[values.length];
+      for (int i = 0; i < values.length; i++) {
+        converted[i] = convert(values[i]);
+      }
+      return new StructImpl((StructTypeImpl)struct.getStructType(), converted);
+    }
+    return convert(obj);
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Stops the query on all members and drops the results that have not been
+   * returned yet.
+   */
+  public void close() {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    if (!this.done) {
+      abortStreaming();
+    }
+    this.queue.clear();
+    this.current = null;
+    synchronized (this.localLock) {
+      // release the thread waiting to queue local results
+      this.localLock.notifyAll();
+    }
+  }
+
+  /**
+   * Lets a member that streams its results send another chunk.
+   */
+  void grantChunk(InternalDistributedMember sender, int processorId) {
+    ChunkPermitMessage.send(this.dm, sender, processorId, 1);
+  }
+
+  /**
+   * Tells the members to stop sending results.
+   */
+  void abortStreaming() {
+    this.evaluator.abortStreaming();
+  }
+
+  private Object convert(Object value) {
+    if (this.currentIsRemote && this.deserialize
+        && value instanceof VMCachedDeserializable) {
+      value = ((VMCachedDeserializable)value).getDeserializedForReading();
+    }
+    if (this.convertPdx) {
+      if (value instanceof PdxInstance) {
+        value = ((PdxInstance)value).getObject();
+      } else if (value instanceof PdxString) {
+        value = value.toString();
+      }
+    }
+    return value;
+  }
+
+  private Object take() {
+    for (;;) {
+      this.cancelCriterion.checkCancelInProgress(null);
+      if (this.query.isCanceled()) {
+        close();
+        throw this.query.getQueryCanceledException();
+      }
+      try {
+        Object next = this.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (next != null) {
+          return next;
+        }
+      } catch (InterruptedException e) {
+        close();
+        Thread.currentThread().interrupt();
+        throw new QueryExecutionCanceledException(
+            "Interrupted while waiting for the results of the query "
+                + this.query.getQueryString());
+      }
+    }
+  }
+
+  private void checkFailure() {
+    Throwable t = this.failure;
+    if (t == null) {
+      return;
+    }
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException)t;
+    }
+    if (t instanceof Error) {
+      throw (Error)t;
+    }
+    throw new InternalGemFireException("Query " + this.query.getQueryString()
+        + " failed: " + t.getMessage(), t);
+  }
+
+  private static final class Chunk {
+    final InternalDistributedMember sender;
+    final Collection results;
+    final boolean remote;
+    final int processorId;
+
+    Chunk(InternalDistributedMember sender, Collection results,
+        boolean remote, int processorId) {
+      this.sender = sender;
+      this.results = results;
+      this.remote = remote;
+      this.processorId = processorId;
+    }
+  }
+}
@@ -1851,6 +1851,43 @@ public class PartitionedRegion extends LocalRegion implements
       }
     }
   }
+  /**
+   * Executes a query on this PartitionedRegion and returns an iterator that
+   * hands out the results as the members return them, so that this member
+   * never holds all of them. Only queries whose results do not have to be
+   * sorted, deduplicated or aggregated here can be streamed.
+   * 
+   * @return null if the query can not be streamed
+   * @see DefaultQuery#executeStreaming(Object[])
+   * @since 8.2
+   */
+  public CloseableIterator executeStreamingQuery(DefaultQuery query,
+      Object[] parameters) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    CompiledSelect selectExpr = query.getSimpleSelect();
+    if (!PartitionedRegionQueryEvaluator.isStreamable(selectExpr)) {
+      return null;
+    }
+    HashSet<Integer> allBuckets = new HashSet<Integer>();
+    final Iterator remoteIter = getRegionAdvisor().getBucketSet().iterator();
+    try {
+      while (remoteIter.hasNext()) {
+        allBuckets.add((Integer)remoteIter.next());
+      }
+    }
+    catch (NoSuchElementException stop) {
+    }
+    if (allBuckets.isEmpty()) {
+      // no data yet, the regular execution returns the empty result set
+      return null;
+    }
+    PartitionedRegionQueryEvaluator prqe = new PartitionedRegionQueryEvaluator(
+        this.getSystem(), this, query, parameters,
+        selectExpr.getEmptyResultSet(parameters, getCache()), allBuckets);
+    return prqe.streamBuckets(query.getLimit(parameters));
+  }
+
   /**
    * If ForceReattemptException is thrown then the caller must loop and call us again.
    * @throws ForceReattemptException if one of the buckets moved out from under us
@@ -4976,6 +5013,164 @@ public class PartitionedRegion extends LocalRegion implements
     }
   }
 
+  /**
+   * Gets the values of the keys the way {@link #get(Object, Object)} does,
+   * except that the keys hosted by other members are fetched with a single
+   * message per member, sent to all of them in parallel, instead of a message
+   * per key.
+   * 
+   * @since 8.2
+   */
+  @Override
+  Map basicGetAll(Collection keys, Object callback) {
+    if (callback != null || hasServerProxy() || getTXState() != null
+        || keys.size() < 2) {
+      // the callback argument may route the keys or be given to a loader
+      return super.basicGetAll(keys, callback);
+    }
+    discoverJTA();
+    Map<Object, Object> fetched = new HashMap<Object, Object>();
+    long start = getCachePerfStats().startGet();
+    fetchEntriesInBulk(keys, false, fetched, null);
+    Map allResults = new HashMap();
+    for (Object key : keys) {
+      if (fetched.containsKey(key)) {
+        Object value = fetched.get(key);
+        if (value instanceof CachedDeserializable) {
+          value = ((CachedDeserializable)value).getDeserializedForReading();
+        } else if (Token.isInvalidOrRemoved(value)) {
+          value = null;
+        }
+        // the time of the bulk fetch is only counted for the first key
+        getCachePerfStats().endGet(start, value == null);
+        start = getCachePerfStats().startGet();
+        allResults.put(key, value);
+      } else {
+        try {
+          allResults.put(key, get(key, callback));
+        } catch (Exception e) {
+          logger.warn(LocalizedMessage.create(LocalizedStrings.LocalRegion_THE_FOLLOWING_EXCEPTION_OCCURRED_ATTEMPTING_TO_GET_KEY_0, key), e);
+        }
+      }
+    }
+    return allResults;
+  }
+
+  /**
+   * Fetches the entries of the keys hosted by other members, sending a single
+   * {@link FetchBulkEntriesMessage} to each member and waiting for the replies
+   * only once all of them were sent. The keys hosted by this member, the keys
+   * whose bucket does not exist and the keys whose fetch failed are not
+   * fetched; the caller gets them one by one. Each failed fetch is counted in
+   * the getAllMsgsRetried statistic.
+   * 
+   * @param values
+   *          receives the value of each fetched key as returned by the
+   *          bucket, which may be a CachedDeserializable or a Token
+   * @param versions
+   *          receives the version tag of each fetched key, or null
+   * @since 8.2
+   */
+  public void fetchEntriesInBulk(Collection keys, boolean returnTombstones,
+      Map<Object, Object> values, Map<Object, VersionTag> versions) {
+    BulkEntriesFetcher fetcher = bulkEntriesFetcher;
+    HashMap<InternalDistributedMember, HashMap<Integer, HashSet>> nodeToBuckets =
+        new HashMap<InternalDistributedMember, HashMap<Integer, HashSet>>();
+    for (Object key : keys) {
+      if (key == null) {
+        continue;
+      }
+      int bucketId = PartitionedRegionHelper.getHashKey(this, Operation.GET,
+          key, null, null);
+      InternalDistributedMember node = fetcher.getNode(this, bucketId);
+      if (node == null) {
+        continue;
+      }
+      HashMap<Integer, HashSet> bucketKeys = nodeToBuckets.get(node);
+      if (bucketKeys == null) {
+        bucketKeys = new HashMap<Integer, HashSet>();
+        nodeToBuckets.put(node, bucketKeys);
+      }
+      HashSet keysOfBucket = bucketKeys.get(bucketId);
+      if (keysOfBucket == null) {
+        keysOfBucket = new HashSet();
+        bucketKeys.put(bucketId, keysOfBucket);
+      }
+      keysOfBucket.add(key);
+    }
+    if (nodeToBuckets.isEmpty()) {
+      return;
+    }
+
+    List<FetchBulkEntriesResponse> responses =
+        new ArrayList<FetchBulkEntriesResponse>(nodeToBuckets.size());
+    for (Map.Entry<InternalDistributedMember, HashMap<Integer, HashSet>> entry : nodeToBuckets.entrySet()) {
+      try {
+        responses.add(fetcher.send(this, entry.getKey(), entry.getValue(),
+            returnTombstones));
+      } catch (ForceReattemptException fre) {
+        getPrStats().incGetAllMsgsRetried();
+        if (logger.isDebugEnabled()) {
+          logger.debug("Unable to fetch the entries of {} buckets from {}: {}",
+              entry.getValue().size(), entry.getKey(), fre.getMessage());
+        }
+      }
+    }
+    for (FetchBulkEntriesResponse response : responses) {
+      try {
+        // only the buckets that were fetched completely are returned
+        for (BucketDump dump : response.waitForEntries()) {
+          values.putAll(dump.getValues());
+          if (versions != null) {
+            versions.putAll(dump.getVersions());
+          }
+        }
+      } catch (ForceReattemptException fre) {
+        getPrStats().incGetAllMsgsRetried();
+        if (logger.isDebugEnabled()) {
+          logger.debug("Unable to fetch entries in bulk: {}", fre.getMessage());
+        }
+      }
+    }
+  }
+
+  /**
+   * The fetcher used by {@link #fetchEntriesInBulk}. Not final so that tests
+   * can change it.
+   */
+  static BulkEntriesFetcher bulkEntriesFetcher = new BulkEntriesFetcher();
+
+  /**
+   * Chooses the member the keys of a bucket are fetched from by
+   * {@link #fetchEntriesInBulk} and sends it the fetch message.
+   * 
+   * @since 8.2
+   */
+  static class BulkEntriesFetcher {
+    /**
+     * Returns the member to fetch the keys of the bucket from, or null if
+     * they must be gotten one by one.
+     */
+    InternalDistributedMember getNode(PartitionedRegion pr, int bucketId) {
+      // loads are done by the primary, see getNodeForBucketReadOrLoad
+      InternalDistributedMember node = pr.haveCacheLoader
+          ? pr.getNodeForBucketWrite(bucketId, null)
+          : pr.getNodeForBucketRead(bucketId);
+      if (node == null || node.equals(pr.getMyId())
+          || node.getVersionObject().compareTo(Version.GFE_80) < 0) {
+        return null;
+      }
+      return node;
+    }
+
+    FetchBulkEntriesResponse send(PartitionedRegion pr,
+        InternalDistributedMember node, HashMap<Integer, HashSet> bucketKeys,
+        boolean returnTombstones) throws ForceReattemptException {
+      return FetchBulkEntriesMessage.send(node, pr, bucketKeys, null, null,
+          returnTombstones);
+    }
+  }
+
   // /**
   // * Fetch all {@link InternalDistributedMember}s hosting a bucket using the
   // * bucket2Node region
@@ -9131,6 +9326,9 @@ public class PartitionedRegion extends LocalRegion implements
       HashMap<String, Exception> exceptionsMap) {
     boolean throwException = false;
     if (getDataStore() != null && indexes.size() > 0) {
+      // populate the buckets in parallel, each of them on a single thread
+      boolean parallel = IndexManager.getPopulationThreads() > 1;
+      List<Future<MultiIndexCreationException>> futures = new ArrayList<Future<MultiIndexCreationException>>();
       Set localBuckets = getDataStore().getAllLocalBuckets();
       Iterator it = localBuckets.iterator();
       while (it.hasNext()) {
@@ -9140,8 +9338,22 @@ public class PartitionedRegion extends LocalRegion implements
         if (bucket == null) {
           continue;
         }
-        IndexManager bucketIndexManager = IndexUtils.getIndexManager(bucket, true);
-        Set<Index> bucketIndexes = getBucketIndexesForPRIndexes(bucket, indexes);
+        final IndexManager bucketIndexManager = IndexUtils.getIndexManager(bucket, true);
+        final Set<Index> bucketIndexes = getBucketIndexesForPRIndexes(bucket, indexes);
+        if (parallel) {
+          futures.add(IndexManager.getPopulationExecutor().submit(
+              new Callable<MultiIndexCreationException>() {
+                public MultiIndexCreationException call() {
+                  try {
+                    bucketIndexManager.populateIndexes(bucketIndexes, false);
+                    return null;
+                  } catch (MultiIndexCreationException ex) {
+                    return ex;
+                  }
+                }
+              }));
+          continue;
+        }
         try {
           bucketIndexManager.populateIndexes(bucketIndexes);
         } catch (MultiIndexCreationException ex) {
@@ -9149,6 +9361,13 @@ public class PartitionedRegion extends LocalRegion implements
           throwException = true;
         }
       }
+      for (Future<MultiIndexCreationException> future : futures) {
+        MultiIndexCreationException ex = IndexManager.waitForPopulation(future);
+        if (ex != null) {
+          exceptionsMap.putAll(ex.getExceptionsMap());
+          throwException = true;
+        }
+      }
     }
     return throwException;
  }
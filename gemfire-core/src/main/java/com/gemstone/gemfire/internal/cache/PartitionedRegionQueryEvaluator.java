@@ -36,6 +36,7 @@ import com.gemstone.gemfire.cache.query.QueryException;
 import com.gemstone.gemfire.cache.query.QueryExecutionLowMemoryException;
 import com.gemstone.gemfire.cache.query.QueryInvocationTargetException;
 import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.internal.CompiledGroupBySelect;
 import com.gemstone.gemfire.cache.query.internal.CompiledID;
 import com.gemstone.gemfire.cache.query.internal.CompiledIndexOperation;
 import com.gemstone.gemfire.cache.query.internal.CompiledIteratorDef;
@@ -52,6 +53,7 @@ import com.gemstone.gemfire.cache.query.internal.IndexTrackingQueryObserver.Inde
 import com.gemstone.gemfire.cache.query.internal.PRQueryTraceInfo;
 import com.gemstone.gemfire.cache.query.internal.QueryExecutionContext;
 import com.gemstone.gemfire.cache.query.internal.QueryMonitor;
+import com.gemstone.gemfire.cache.query.internal.QueryProfiler;
 import com.gemstone.gemfire.cache.query.internal.ResultsBag;
 import com.gemstone.gemfire.cache.query.internal.RuntimeIterator;
 import com.gemstone.gemfire.cache.query.internal.StructBag;
@@ -66,8 +68,11 @@ import com.gemstone.gemfire.distributed.internal.ReplyProcessor21;
 import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
 import com.gemstone.gemfire.internal.Assert;
 import com.gemstone.gemfire.internal.NanoTimer;
+import com.gemstone.gemfire.internal.Version;
 import com.gemstone.gemfire.internal.cache.partitioned.QueryMessage;
 import com.gemstone.gemfire.internal.cache.partitioned.StreamingPartitionOperation;
+import com.gemstone.gemfire.internal.cache.partitioned.StreamingPartitionOperation.ChunkPermitMessage;
+import com.gemstone.gemfire.internal.cache.persistence.query.CloseableIterator;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.LogService;
 import com.gemstone.gemfire.pdx.PdxInstance;
@@ -145,6 +150,11 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
     public void hook(final int spot) throws RuntimeException;
   }
   private static final int MAX_PR_QUERY_RETRIES = Integer.getInteger("gemfire.MAX_PR_QUERY_RETRIES", 10).intValue();
+  /**
+   * The number of result chunks a member may send ahead of the consumer of a
+   * streaming query; zero lets the members send all their results at once.
+   */
+  private static final int STREAMING_CHUNK_WINDOW = Integer.getInteger("gemfire.PR_QUERY_STREAMING_CHUNK_WINDOW", 8).intValue();
 
   private final PartitionedRegion pr;
   private volatile Map node2bucketIds;
@@ -162,6 +172,13 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
   private final IntOpenHashSet successfulBuckets;
   //set of members failed to execute query
   private Set<InternalDistributedMember> failedMembers;
+  /** if not null the results are handed to the consumer of this stream as they arrive */
+  private PRQueryResultStream resultStream;
+  /** the reply processor of the current attempt of a streaming query */
+  private volatile StreamingQueryPartitionResponse streamingProcessor;
+  /** members that streamed some but not all of their results */
+  private final Set<InternalDistributedMember> partiallyStreamedMembers =
+      Collections.newSetFromMap(new ConcurrentHashMap<InternalDistributedMember, Boolean>());
 
   /**
    * Construct a PartitionedRegionQueryEvaluator
@@ -196,7 +213,20 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
   }
   
   protected DistributionMessage createRequestMessage(InternalDistributedMember recipient, ReplyProcessor21 processor, List bucketIds) {
-    return new QueryMessage(recipient, this.pr.getPRId(), processor, this.query, this.parameters, bucketIds);
+    QueryMessage m = new QueryMessage(recipient, this.pr.getPRId(), processor, this.query, this.parameters, bucketIds);
+    if (isFlowControlled(recipient)) {
+      m.setChunkWindow(STREAMING_CHUNK_WINDOW);
+    }
+    return m;
+  }
+
+  /**
+   * Returns true if the given member only sends a window of result chunks
+   * ahead of the consumer of this query.
+   */
+  private boolean isFlowControlled(InternalDistributedMember member) {
+    return this.resultStream != null && STREAMING_CHUNK_WINDOW > 0
+        && member.getVersionObject().compareTo(Version.GFE_82) >= 0;
   }
   
  
@@ -255,6 +285,10 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
       logger.debug("Results per member, for {} size: {}", sender, objects.size());
     }
 
+    if (this.resultStream != null) {
+      return streamData(objects, sender, lastInSequence, (MemberResultsList) results);
+    }
+
     synchronized (results) {
       if (!QueryMonitor.isLowMemory()) {
         results.add(objects);
@@ -291,6 +325,39 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
     */
     return true;
   }
+
+  /**
+   * Hands a chunk of results received from a member to the consumer of the
+   * result stream instead of collecting it.
+   * 
+   * The reply processor is never aborted here, even if the query is canceled:
+   * it has to keep waiting so that it can tell every flow controlled member
+   * to stop, see {@link #abortStreaming()}.
+   */
+  private boolean streamData(List objects, InternalDistributedMember sender,
+      boolean lastInSequence, MemberResultsList results) {
+    if (QueryMonitor.isLowMemory()) {
+      String reason = LocalizedStrings.QueryMonitor_LOW_MEMORY_WHILE_GATHERING_RESULTS_FROM_PARTITION_REGION
+          .toLocalizedString();
+      // the consumer sees the cancellation and closes the stream
+      query.setCanceled(true, new QueryExecutionLowMemoryException(reason));
+    }
+    if (!objects.isEmpty() && !query.isCanceled()) {
+      if (!lastInSequence) {
+        this.partiallyStreamedMembers.add(sender);
+      }
+      StreamingQueryPartitionResponse processor = this.streamingProcessor;
+      int processorId = isFlowControlled(sender) && processor != null ? processor.getProcessorId() : 0;
+      this.resultStream.add(sender, objects, processorId);
+    }
+    if (lastInSequence) {
+      this.partiallyStreamedMembers.remove(sender);
+      synchronized (results) {
+        results.setLastChunkReceived(true);
+      }
+    }
+    return true;
+  }
   
   /**
     * Returns normally if succeeded to get data, otherwise throws an exception
@@ -333,6 +400,9 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
         // send separate message to each recipient since each one has a
         // different list of bucket ids
         processor = new StreamingQueryPartitionResponse(this.sys, n2b.keySet());
+        if (this.resultStream != null) {
+          this.streamingProcessor = processor;
+        }
         for (Iterator itr = n2b.entrySet().iterator(); itr.hasNext();) {
           Map.Entry me = (Map.Entry) itr.next();
           final InternalDistributedMember rcp = (InternalDistributedMember) me.getKey();
@@ -478,6 +548,19 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
       if (th != null) {
         th.hook(1);
       }
+      if (this.resultStream != null) {
+        if (this.resultStream.isClosed()) {
+          // the consumer does not want any more results
+          return;
+        }
+        if (needsRetry && !this.partiallyStreamedMembers.isEmpty()) {
+          // the consumer has already seen some results of these members so
+          // their buckets can not be queried again
+          throw new QueryException("Members " + this.partiallyStreamedMembers
+              + " failed while streaming the results of the query "
+              + this.query.getQueryString());
+        }
+      }
       
       if (needsRetry) {
         //Shobhit: Only one chance is allowed for Function queries.
@@ -539,7 +622,84 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
       */
     }
 
-    addResultsToResultSet();
+    if (this.resultStream == null) {
+      QueryProfiler.enter(QueryProfiler.MERGE);
+      try {
+        addResultsToResultSet();
+      } finally {
+        QueryProfiler.exit(QueryProfiler.MERGE);
+      }
+    }
+  }
+
+  /**
+   * Returns true if the results of the given select can be handed to the
+   * caller as they arrive, that is if they do not need to be sorted,
+   * deduplicated or aggregated on this member first.
+   */
+  public static boolean isStreamable(CompiledSelect cs) {
+    return cs != null && !cs.isDistinct() && !cs.isCount()
+        && cs.getOrderByAttrs() == null
+        && !(cs instanceof CompiledGroupBySelect);
+  }
+
+  /**
+   * Queries the buckets like {@link #queryBuckets} but in a background thread,
+   * and returns an iterator over the results that hands them out as the
+   * members return them. The results are not added to the cumulative result
+   * set.
+   * 
+   * @param limit the limit of the query, -1 for none
+   * @see #isStreamable(CompiledSelect)
+   * @since 8.2
+   */
+  public CloseableIterator streamBuckets(int limit) {
+    final PRQueryResultStream stream = new PRQueryResultStream(this, this.pr,
+        this.query, limit, STREAMING_CHUNK_WINDOW);
+    this.resultStream = stream;
+    this.pr.getDistributionManager().getWaitingThreadPool().execute(new Runnable() {
+      public void run() {
+        Throwable failure = null;
+        // like the local part of a query run by DefaultQuery.execute
+        DefaultQuery.setPdxReadSerialized(pr.getCache(), true);
+        try {
+          queryBuckets(null);
+        } catch (VirtualMachineError e) {
+          SystemFailure.initiateFailure(e);
+          throw e;
+        } catch (Throwable t) {
+          SystemFailure.checkFailure();
+          failure = t;
+        } finally {
+          DefaultQuery.setPdxReadSerialized(pr.getCache(), false);
+          stream.finish(failure);
+        }
+      }
+    });
+    return stream;
+  }
+
+  /**
+   * Called when the consumer of the result stream closes it before the end of
+   * the results. Tells the members to end their streams of results early.
+   * 
+   * A member that has not started to execute the query yet ignores this. The
+   * reply processor therefore repeats the abort for every chunk that arrives
+   * after the stream was closed, and keeps waiting until every member has
+   * sent its last chunk.
+   */
+  void abortStreaming() {
+    StreamingQueryPartitionResponse processor = this.streamingProcessor;
+    if (processor == null) {
+      return;
+    }
+    for (Object member : this.node2bucketIds.keySet()) {
+      InternalDistributedMember m = (InternalDistributedMember) member;
+      if (!m.equals(this.pr.getMyId()) && isFlowControlled(m)) {
+        ChunkPermitMessage.sendAbort(this.pr.getDistributionManager(), m,
+            processor.getProcessorId());
+      }
+    }
   }
   
   /**
@@ -651,6 +811,18 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
       isCount = (cs != null)? cs.isCount():false;
     }
     
+    if (cs instanceof CompiledGroupBySelect) {
+      // the members returned partial aggregates for each group
+      List<Collection> partialResults = new ArrayList<Collection>();
+      for (Collection<Collection> results : this.resultsPerMember.values()) {
+        partialResults.addAll(results);
+      }
+      ((CompiledGroupBySelect)cs).mergePartialResults(partialResults,
+          this.cumulativeResults, this.parameters, this.pr.getCache(),
+          !this.pr.getCache().getPdxReadSerializedByAnyGemFireServices());
+      return;
+    }
+
     if (isCount && !isDistinct) {
       addTotalCountForMemberToResults(limit);
       return;
@@ -858,10 +1030,10 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
   /**
    * Applies order-by on the results returned from PR nodes and puts the results in 
    * the cumulative result set.
-   * The order-by is applied by running a generated query on the each result returned
-   * by the remote nodes.
+   * The results of each node are already sorted, so they are merged using the
+   * order-by clause of a generated query to evaluate the sort criteria, and
+   * only until the limit of the query is reached.
    * Example generated query: SELECT DISTINCT * FROM $1 p ORDER BY p.ID
-   * Where results are passed as bind parameter.
    * This is added as quick turn-around, this is added based on most commonly used
    * queries, needs to be investigated further.
    */   
@@ -1054,19 +1226,30 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
 
       DefaultQuery q = (DefaultQuery)this.pr.getCache().getQueryService()
           .newQuery(tempQueryBuffer.toString());
-      ExecutionContext context;
-      
-      final DistributedMember me = this.pr.getMyId();
 
-      for (Collection<Collection> memberResults : this.resultsPerMember.values()) {
-        for (Collection res : memberResults) {
+      // Every member sorted the results of each bucket, or of all its buckets,
+      // and applied the limit. A chunk never spans two of those result sets
+      // (see QueryMessage#startsNewChunk), so each chunk is a sorted slice of
+      // one of them and instead of running the generated query over each
+      // chunk the chunks are merged and the merge stops once the limit is
+      // reached. Members older than 8.2 may send chunks that span buckets, so
+      // their chunks are still sorted by the generated query.
+      List<Collection> sortedResults = new ArrayList<Collection>();
+      for (Map.Entry<InternalDistributedMember, Collection<Collection>> entry : this.resultsPerMember.entrySet()) {
+        if (entry.getKey().getVersionObject().compareTo(Version.GFE_82) >= 0) {
+          sortedResults.addAll(entry.getValue());
+          continue;
+        }
+        for (Collection res : entry.getValue()) {
           if (res != null) {
-            context = new QueryExecutionContext((new Object[] { res }), this.pr
+            ExecutionContext context = new QueryExecutionContext((new Object[] { res }), this.pr
                 .getCache(), this.cumulativeResults, q);
             q.executeUsingContext(context);
           }
         }
       }
+      q.getSimpleSelect().mergeSortedResults(sortedResults,
+          this.cumulativeResults, limit, q, this.pr.getCache());
     } catch (Exception ex) {
       throw new QueryException("Unable to apply order-by on the partition region cumulative results.", ex);
     }
@@ -1473,6 +1656,18 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
         resultCollector.setLastChunkReceived(true);
         // Add results to the results-list.
         this.resultsPerMember.put(me, resultCollector);
+        if (this.resultStream != null) {
+          // only the stream holds on to the results until they are consumed
+          Object[] chunks = resultCollector.toArray();
+          resultCollector.clear();
+          for (int i = 0; i < chunks.length; i++) {
+            Collection results = (Collection) chunks[i];
+            chunks[i] = null;
+            if (!this.resultStream.addLocal(me, results)) {
+              break;
+            }
+          }
+        }
         
       } catch (ForceReattemptException retryRequired) {
         if (logger.isDebugEnabled()) {
@@ -1720,7 +1915,15 @@ public class PartitionedRegionQueryEvaluator extends StreamingPartitionOperation
         }
         
         //we will process null objects if it is a query msg and it is canceled.  This allows us to signal the query processor about dropped objects due to low memory
-        if (objects != null) {  // CONSTRAINT: objects should only be null if there's no data at all
+        if (objects != null && resultStream != null && resultStream.isClosed()) {
+          // the consumer of the stream does not want any more results, drop
+          // them and make sure the member stops sending them
+          if (isFlowControlled(m.getSender())) {
+            ChunkPermitMessage.sendAbort(getDistributionManager(), m.getSender(), getProcessorId());
+          }
+          isLast = trackMessage(m);
+        }
+        else if (objects != null) {  // CONSTRAINT: objects should only be null if there's no data at all
           // Bug 37461: don't allow abort flag to be cleared
           boolean isAborted = this.abort; // volatile fetch
           if (!isAborted) {
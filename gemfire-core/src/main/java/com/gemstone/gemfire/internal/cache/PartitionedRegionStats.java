@@ -108,6 +108,10 @@ public class PartitionedRegionStats {
   private final static int fieldId_REMOVE_ALL_RETRIES;
   private final static int fieldId_REMOVE_ALL_TIME;
   
+  private final static String GETALL_MSGS_RETRIED = "getAllMsgsRetried";
+  
+  private final static int fieldId_GETALL_MSGS_RETRIED;
+  
   private final static int volunteeringInProgressId; // count of volunteering in progress
   private final static int volunteeringBecamePrimaryId; // ended as primary
   private final static int volunteeringBecamePrimaryTimeId; // time spent that ended as primary
@@ -228,6 +232,8 @@ public class PartitionedRegionStats {
             "retry attempts", false),
         f.createLongCounter(REMOVE_ALL_TIME, "Total time spent doing removeAlls.",
             "nanoseconds", !largerIsBetter),
+        f.createIntCounter(GETALL_MSGS_RETRIED, "Number of getAll messages fetching entries in bulk which failed so that their keys had to be gotten one by one.",
+            "operations", false),
        f.createIntCounter(
             "preferredReadRemote", 
             "Number of reads satisfied from remote store",
@@ -586,6 +592,7 @@ public class PartitionedRegionStats {
     fieldId_REMOVE_ALL_MSGS_RETRIED = type.nameToId(REMOVE_ALL_MSGS_RETRIED);
     fieldId_REMOVE_ALL_RETRIES = type.nameToId(REMOVE_ALL_RETRIES);
     fieldId_REMOVE_ALL_TIME = type.nameToId(REMOVE_ALL_TIME);
+    fieldId_GETALL_MSGS_RETRIED = type.nameToId(GETALL_MSGS_RETRIED);
     putTimeId = type.nameToId("putTime");
     createTimeId = type.nameToId("createTime");
     getTimeId = type.nameToId("getTime");
@@ -906,6 +913,14 @@ type, name /* fixes bug 42343 */);
   public void incRemoveAllMsgsRetried() {
     this.stats.incInt(fieldId_REMOVE_ALL_MSGS_RETRIED, 1);
   }
+
+  public void incGetAllMsgsRetried() {
+    this.stats.incInt(fieldId_GETALL_MSGS_RETRIED, 1);
+  }
+
+  public int getGetAllMsgsRetried() {
+    return this.stats.getInt(fieldId_GETALL_MSGS_RETRIED);
+  }
   
   // ------------------------------------------------------------------------
   // stats for volunteering/discovering/becoming primary
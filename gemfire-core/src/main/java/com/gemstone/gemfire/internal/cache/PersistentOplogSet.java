@@ -20,7 +20,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.LinkedList;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -37,6 +44,7 @@ import com.gemstone.gemfire.internal.cache.persistence.OplogType;
 import com.gemstone.gemfire.internal.cache.versions.RegionVersionVector;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
 import com.gemstone.gemfire.internal.sequencelog.EntryLogger;
@@ -455,26 +463,43 @@ public class PersistentOplogSet implements OplogSet {
       parent.incDeadRecordCount(deletedIds.size());
       // now figure out live entries
       latestOplog = true;
-      for (Oplog oplog: oplogSet) {
-        long startOpLogRead = parent.getStats().startOplogRead();
-        long bytesRead = oplog.recoverCrf(deletedIds,
-                                          // @todo make recoverValues per region
-                                          recoverValues(),
-                                          recoverValuesSync(),
-                                          this.alreadyRecoveredOnce.get(),
-                                          oplogsNeedingValueRecovery, 
-                                          latestOplog);
-        latestOplog = false;
-        if (!this.alreadyRecoveredOnce.get()) {
-          updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+      // The krfs are read ahead by the prefetcher but are still applied one
+      // oplog at a time, newest first, since that order decides which oplog
+      // an entry is recovered from.
+      KrfPrefetcher prefetcher = createKrfPrefetcher(oplogSet);
+      int oplogsToRecover = oplogSet.size();
+      parent.getStats().incOplogsToRecover(oplogsToRecover);
+      try {
+        for (Oplog oplog: oplogSet) {
+          byte[] prefetchedKrf = prefetcher != null ? prefetcher.next() : null;
+          long startOpLogRead = parent.getStats().startOplogRead();
+          long bytesRead = oplog.recoverCrf(deletedIds,
+                                            // @todo make recoverValues per region
+                                            recoverValues(),
+                                            recoverValuesSync(),
+                                            this.alreadyRecoveredOnce.get(),
+                                            oplogsNeedingValueRecovery, 
+                                            latestOplog,
+                                            prefetchedKrf);
+          latestOplog = false;
+          if (!this.alreadyRecoveredOnce.get()) {
+            updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+          }
+          byteCount += bytesRead;
+          parent.getStats().endOplogRead(startOpLogRead, bytesRead);
+          parent.getStats().incOplogsToRecover(-1);
+          oplogsToRecover--;
+          
+          //Callback to the disk regions to indicate the oplog is recovered
+          //Used for offline export
+          for (DiskRecoveryStore drs: this.currentRecoveryMap.values()) {
+            drs.getDiskRegionView().oplogRecovered(oplog.oplogId);
+          }
         }
-        byteCount += bytesRead;
-        parent.getStats().endOplogRead(startOpLogRead, bytesRead);
-        
-        //Callback to the disk regions to indicate the oplog is recovered
-        //Used for offline export
-        for (DiskRecoveryStore drs: this.currentRecoveryMap.values()) {
-          drs.getDiskRegionView().oplogRecovered(oplog.oplogId);
+      } finally {
+        parent.getStats().incOplogsToRecover(-oplogsToRecover);
+        if (prefetcher != null) {
+          prefetcher.close();
         }
       }
       long endOpLogRecovery = System.currentTimeMillis();
@@ -526,6 +551,78 @@ public class PersistentOplogSet implements OplogSet {
     return byteCount;
   }
 
+  /**
+   * Returns a prefetcher for the krfs of <code>oplogs</code> or null if the
+   * disk store recovers with a single thread or will not read krfs.
+   */
+  private KrfPrefetcher createKrfPrefetcher(TreeSet<Oplog> oplogs) {
+    int threads = Math.min(parent.getRecoveryThreadCount(), oplogs.size());
+    if (threads <= 1 || recoverValuesSync()
+        || (parent.isOffline() && !parent.FORCE_KRF_RECOVERY)) {
+      return null;
+    }
+    return new KrfPrefetcher(oplogs, threads);
+  }
+
+  /**
+   * Reads the krfs of a sequence of oplogs into memory using a pool of threads.
+   * The krfs are handed out by {@link #next} in the order of the sequence.
+   * At most one krf per thread is read ahead of the one being recovered
+   * so that the memory used is bounded.
+   */
+  private class KrfPrefetcher {
+    private final ThreadPoolExecutor executor;
+    private final Iterator<Oplog> toRead;
+    private final LinkedList<Future<byte[]>> reads = new LinkedList<Future<byte[]>>();
+
+    KrfPrefetcher(TreeSet<Oplog> oplogs, int threads) {
+      final ThreadGroup group = LoggingThreadGroup.createThreadGroup("Oplog Recovery Thread Group", logger);
+      this.executor = new ThreadPoolExecutor(threads, threads, 10, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          GemfireCacheHelper.CreateThreadFactory(group, "Oplog Recovery for disk store " + parent.getName()));
+      this.toRead = new ArrayList<Oplog>(oplogs).iterator();
+      for (int i=0; i < threads; i++) {
+        readNext();
+      }
+    }
+
+    private void readNext() {
+      if (!this.toRead.hasNext()) {
+        return;
+      }
+      final Oplog oplog = this.toRead.next();
+      this.reads.add(this.executor.submit(new Callable<byte[]>() {
+        public byte[] call() {
+          return oplog.prefetchKrf();
+        }
+      }));
+    }
+
+    /**
+     * Returns the krf of the next oplog, or null if it could not be read
+     * ahead, in which case the oplog reads it itself.
+     */
+    byte[] next() {
+      Future<byte[]> read = this.reads.removeFirst();
+      readNext();
+      try {
+        return read.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      } catch (ExecutionException e) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("krf prefetch failed", e.getCause());
+        }
+        return null;
+      }
+    }
+
+    void close() {
+      this.executor.shutdownNow();
+    }
+  }
+
   protected boolean recoverValuesSync() {
     return parent.RECOVER_VALUES_SYNC;
   }
@@ -58,6 +58,9 @@ public interface RegionMap extends LRUMapCallbacks {
     
     /** whether "api" statistics are enabled */
     boolean statisticsEnabled = false;
+
+    /** the class all keys must be instances of, or null if not constrained */
+    Class<?> keyConstraint = null;
     
     /** whether LRU stats are required */
 //    boolean lru = false;
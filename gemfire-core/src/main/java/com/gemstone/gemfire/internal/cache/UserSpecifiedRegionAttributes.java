@@ -111,6 +111,13 @@ public abstract class UserSpecifiedRegionAttributes<K,V> implements RegionAttrib
    */
   private boolean hasCompressor = false;
   
+  /**
+   * Whether this region stores its entry values off-heap.
+   * 
+   * @since 8.2
+   */
+  private boolean hasOffHeap = false;
+  
   public boolean hasCacheLoader()
   {
     return this.hasCacheLoader;
@@ -262,6 +269,10 @@ public abstract class UserSpecifiedRegionAttributes<K,V> implements RegionAttrib
     return this.hasCompressor;
   }
   
+  public boolean hasOffHeap() {
+    return this.hasOffHeap;
+  }
+  
   public boolean hasCloningEnabled()
   {
     return this.hasCloningEnabled;
@@ -432,6 +443,10 @@ public abstract class UserSpecifiedRegionAttributes<K,V> implements RegionAttrib
     this.hasCompressor = hasCompressor;
   }
   
+  public void setHasOffHeap(boolean hasOffHeap) {
+    this.hasOffHeap = hasOffHeap;
+  }
+  
   public void setAllHasFields(boolean b) {
     int hasCounter = 0;
     Field thisFields[] = UserSpecifiedRegionAttributes.class.getDeclaredFields();
@@ -490,7 +505,7 @@ public abstract class UserSpecifiedRegionAttributes<K,V> implements RegionAttrib
   {
     this.hasDiskSynchronous = val;
   }
-  private static final int HAS_COUNT = 39;
+  private static final int HAS_COUNT = 40;
   
   public void initHasFields(UserSpecifiedRegionAttributes<K,V> other)
   {
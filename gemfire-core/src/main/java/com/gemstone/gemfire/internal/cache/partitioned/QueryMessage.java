@@ -23,11 +23,13 @@ import com.gemstone.gemfire.DataSerializer;
 import com.gemstone.gemfire.cache.CacheException;
 import com.gemstone.gemfire.cache.query.QueryException;
 import com.gemstone.gemfire.cache.query.QueryExecutionLowMemoryException;
+import com.gemstone.gemfire.cache.query.internal.CompiledSelect;
 import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
 import com.gemstone.gemfire.cache.query.internal.IndexTrackingQueryObserver;
 import com.gemstone.gemfire.cache.query.internal.PRQueryTraceInfo;
 import com.gemstone.gemfire.cache.query.internal.QueryMonitor;
 import com.gemstone.gemfire.cache.query.internal.QueryObserver;
+import com.gemstone.gemfire.cache.query.internal.QueryProfiler;
 import com.gemstone.gemfire.distributed.internal.DM;
 import com.gemstone.gemfire.distributed.internal.DistributionManager;
 import com.gemstone.gemfire.distributed.internal.ReplyException;
@@ -60,6 +62,10 @@ public final class QueryMessage extends StreamingPartitionOperation.StreamingPar
   private transient int tokenCount = 0; // counts how many end of stream tokens received
   private transient Iterator currentResultIterator;
   private transient Iterator<Collection> currentSelectResultIterator;
+  /** true if each results collection must be sent in chunks of its own */
+  private transient boolean keepResultsApart;
+  /** true if the last reply object is the first of a results collection */
+  private transient boolean startsNewResults;
 
   /**
    * Empty constructor to satisfy {@link DataSerializer} requirements
@@ -90,6 +96,7 @@ public final class QueryMessage extends StreamingPartitionOperation.StreamingPar
       throw new QueryExecutionLowMemoryException(reason);
     }
     if (Thread.interrupted()) throw new InterruptedException();
+    boolean newResults = false;
     while ((this.currentResultIterator == null || !this.currentResultIterator.hasNext())) {
       if (this.currentSelectResultIterator.hasNext()) {
         Collection results = this.currentSelectResultIterator.next();
@@ -97,14 +104,40 @@ public final class QueryMessage extends StreamingPartitionOperation.StreamingPar
           logger.debug("Query result size: {}", results.size());
         }
         this.currentResultIterator = results.iterator();
+        newResults = true;
       } else {
         //Assert.assertTrue(this.resultCollector.isEmpty());
         return Token.END_OF_STREAM;
       }
     }
+    this.startsNewResults = newResults;
     return this.currentResultIterator.next();
   }
 
+  /**
+   * The results of an ORDER BY query are only sorted per collection, one per
+   * bucket when the buckets are queried in parallel. The requestor merges
+   * the chunks it receives assuming that each of them is sorted, so a chunk
+   * must not span two collections.
+   */
+  @Override
+  protected boolean startsNewChunk() {
+    return this.keepResultsApart && this.startsNewResults;
+  }
+
+  /**
+   * Starts sending the given results. Package access for unit tests.
+   *
+   * @param results the collections of results to send one after the other
+   * @param keepApart true if each collection must be sent in chunks of its
+   *          own
+   */
+  void startReplies(Collection<Collection> results, boolean keepApart) {
+    this.currentSelectResultIterator = results.iterator();
+    this.currentResultIterator = null;
+    this.keepResultsApart = keepApart;
+  }
+
 
   @Override
   protected boolean operateOnPartitionedRegion(DistributionManager dm, PartitionedRegion r, long startTime)
@@ -141,6 +174,7 @@ public final class QueryMessage extends StreamingPartitionOperation.StreamingPar
     // form and send
     query.setRemoteQuery(true);
     QueryObserver indexObserver = query.startTrace();
+    QueryProfiler.Execution profile = QueryProfiler.begin(r.getCache(), this.queryString);
 
     try {
       query.setIsCqQuery(this.cqQuery);
@@ -162,7 +196,9 @@ public final class QueryMessage extends StreamingPartitionOperation.StreamingPar
       }
 
       qp.executeQuery(this.resultCollector);
-      this.currentSelectResultIterator = this.resultCollector.iterator();
+      CompiledSelect select = query.getSimpleSelect();
+      startReplies(this.resultCollector, select != null
+          && select.getOrderByAttrs() != null);
 
       // If trace is enabled, we will generate a trace object to send back
       // The time info will be slightly different than the one logged on this
@@ -206,7 +242,12 @@ public final class QueryMessage extends StreamingPartitionOperation.StreamingPar
             .toLocalizedString(QueryMonitor.getMemoryUsedDuringLowMemory());
         throw new QueryExecutionLowMemoryException(reason);
       }
-      super.operateOnPartitionedRegion(dm, r, startTime);
+      QueryProfiler.enter(QueryProfiler.RESULT_TRANSFER);
+      try {
+        super.operateOnPartitionedRegion(dm, r, startTime);
+      } finally {
+        QueryProfiler.exit(QueryProfiler.RESULT_TRANSFER);
+      }
     } finally {
       // remove trace info so that it is not included in the num results when
       // logged
@@ -216,6 +257,7 @@ public final class QueryMessage extends StreamingPartitionOperation.StreamingPar
       DefaultQuery.setPdxReadSerialized(r.getCache(), false);
       query.setRemoteQuery(false);
       query.endTrace(indexObserver, traceStartTime, this.resultCollector);
+      QueryProfiler.end(profile);
     }
     //}
     //else {
@@ -8,6 +8,8 @@
 
 package com.gemstone.gemfire.internal.cache.partitioned;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -15,6 +17,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.Logger;
@@ -308,12 +314,24 @@ public abstract class StreamingPartitionOperation extends StreamingOperation {
   }
   
   public static abstract class StreamingPartitionMessage extends PartitionMessage {    
+    /** flag to indicate that the requestor limits the chunks sent ahead */
+    protected static final short HAS_CHUNK_WINDOW = PartitionMessage.UNRESERVED_FLAGS_START;
+    /** the unreserved flags start for child classes */
+    protected static final short UNRESERVED_FLAGS_START = (HAS_CHUNK_WINDOW << 1);
+
     // the following transient fields are used for passing extra data to the sendReply method
     transient HeapDataOutputStream outStream = null;
     transient int replyMsgNum = 0;
     transient boolean replyLastMsg = true;
     transient int numObjectsInChunk = 0;
     
+    /**
+     * The number of reply chunks that may be sent before the requestor grants
+     * more with a {@link ChunkPermitMessage}, or zero to send all chunks
+     * without waiting.
+     */
+    private int chunkWindow = 0;
+    
     public StreamingPartitionMessage() {
       super();
     }
@@ -327,6 +345,18 @@ public abstract class StreamingPartitionOperation extends StreamingOperation {
       super(recipient, regionId, processor);
     }
     
+    /**
+     * Limits the number of reply chunks sent ahead of the requestor. Must
+     * only be set for recipients that are on version 8.2 or later.
+     * 
+     * @param chunkWindow the number of chunks that may be sent before the
+     *          requestor grants more, zero for no limit
+     * @since 8.2
+     */
+    public void setChunkWindow(int chunkWindow) {
+      this.chunkWindow = chunkWindow;
+    }
+    
     /** send a reply message.  This is in a method so that subclasses can override the reply message type
       *  @see PutMessage#sendReply
       */
@@ -375,6 +405,10 @@ public abstract class StreamingPartitionOperation extends StreamingOperation {
       
       this.outStream = new HeapDataOutputStream(chunkSize, getSender().getVersionObject());
       
+      ChunkWindow window = null;
+      if (this.chunkWindow > 0) {
+        window = ChunkWindow.register(getSender(), this.processorId, this.chunkWindow);
+      }
       try {        
         do {
 //          boolean firstObject = true;
@@ -405,6 +439,11 @@ public abstract class StreamingPartitionOperation extends StreamingOperation {
               this.replyLastMsg = nextObject == Token.END_OF_STREAM;
               
               if (!this.replyLastMsg) {
+                if (startsNewChunk()) {
+                  // send it with the next chunk
+                  failedObject = nextObject;
+                  break;
+                }
                 try {
                   
                   if (isTraceEnabled) {
@@ -422,6 +461,17 @@ public abstract class StreamingPartitionOperation extends StreamingOperation {
             } while (nextObject != Token.END_OF_STREAM);
           }
           
+          if (window != null && this.numObjectsInChunk > 0
+              && !window.acquire(dm)) {
+            // the requestor does not want any more results; end the stream
+            // with an empty chunk so that it stops waiting for this member
+            if (isTraceEnabled) {
+              logger.trace("Streaming of replies aborted by {}", getSender());
+            }
+            this.outStream.reset();
+            this.numObjectsInChunk = 0;
+            this.replyLastMsg = true;
+          }
           try {
             sendReply(getSender(), this.processorId, dm, null, pr, startTime);
             this.replyMsgNum++;
@@ -441,6 +491,10 @@ public abstract class StreamingPartitionOperation extends StreamingOperation {
       } catch (IOException ioe) {
         // not expected to ever happen
         throw new InternalGemFireException(ioe);
+      } finally {
+        if (window != null) {
+          window.unregister();
+        }
       }
       
       
@@ -458,8 +512,224 @@ public abstract class StreamingPartitionOperation extends StreamingOperation {
     protected abstract Object getNextReplyObject(PartitionedRegion pr)
     throws CacheException, ForceReattemptException, InterruptedException;
     
+    /**
+     * Returns true if the object just returned by
+     * {@link #getNextReplyObject(PartitionedRegion)} must not be sent in the
+     * same chunk as the objects before it.
+     * 
+     * @since 8.2
+     */
+    protected boolean startsNewChunk() {
+      return false;
+    }
+    
     protected Object getNextReplyObject() {
       throw new UnsupportedOperationException(LocalizedStrings.StreamingPartitionOperation_USE_GETNEXTREPLYOBJECTPARTITIONEDREGION_INSTEAD.toLocalizedString());
     }
+
+    @Override
+    protected short computeCompressedShort(short s) {
+      s = super.computeCompressedShort(s);
+      if (this.chunkWindow > 0) s |= HAS_CHUNK_WINDOW;
+      return s;
+    }
+
+    @Override
+    public void fromData(DataInput in) throws IOException,
+        ClassNotFoundException {
+      super.fromData(in);
+      if ((this.flags & HAS_CHUNK_WINDOW) != 0) {
+        this.chunkWindow = in.readInt();
+      }
+    }
+
+    @Override
+    public void toData(DataOutput out) throws IOException {
+      super.toData(out);
+      if (this.chunkWindow > 0) {
+        out.writeInt(this.chunkWindow);
+      }
+    }
+  }
+
+  /**
+   * Limits the number of reply chunks that a data store sends ahead of the
+   * requestor. The window starts out with as many permits as the requestor
+   * asked for; the requestor returns a permit with a
+   * {@link ChunkPermitMessage} for each chunk its consumer has taken.
+   * 
+   * @since 8.2
+   */
+  static final class ChunkWindow {
+    /** how often a waiting data store checks that the requestor is still there */
+    private static final long PERMIT_POLL_MILLIS = 1000;
+
+    private static final ConcurrentMap<WindowKey, ChunkWindow> windows =
+        new ConcurrentHashMap<WindowKey, ChunkWindow>();
+
+    private final WindowKey key;
+    private final Semaphore permits;
+    private volatile boolean aborted = false;
+
+    private ChunkWindow(WindowKey key, int size) {
+      this.key = key;
+      this.permits = new Semaphore(size);
+    }
+
+    static ChunkWindow register(InternalDistributedMember requestor,
+        int processorId, int size) {
+      ChunkWindow window = new ChunkWindow(new WindowKey(requestor,
+          processorId), size);
+      windows.put(window.key, window);
+      return window;
+    }
+
+    void unregister() {
+      windows.remove(this.key, this);
+    }
+
+    static void grant(InternalDistributedMember requestor, int processorId,
+        int numPermits) {
+      ChunkWindow window = windows.get(new WindowKey(requestor, processorId));
+      if (window == null) {
+        return;
+      }
+      if (numPermits < 0) {
+        window.aborted = true;
+        // wake up the sender, it checks the abort flag after acquiring
+        window.permits.release(Integer.MAX_VALUE / 2);
+      } else {
+        window.permits.release(numPermits);
+      }
+    }
+
+    /**
+     * Waits until another chunk may be sent.
+     * 
+     * @return false if the requestor aborted the stream or left the
+     *         distributed system
+     */
+    boolean acquire(DM dm) throws InterruptedException {
+      for (;;) {
+        if (this.aborted) {
+          return false;
+        }
+        dm.getCancelCriterion().checkCancelInProgress(null);
+        if (this.permits.tryAcquire(PERMIT_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          return !this.aborted;
+        }
+        if (!dm.getDistributionManagerIds().contains(this.key.requestor)) {
+          return false;
+        }
+      }
+    }
+  }
+
+  private static final class WindowKey {
+    final InternalDistributedMember requestor;
+    final int processorId;
+
+    WindowKey(InternalDistributedMember requestor, int processorId) {
+      this.requestor = requestor;
+      this.processorId = processorId;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.requestor.hashCode() * 31 + this.processorId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof WindowKey)) {
+        return false;
+      }
+      WindowKey other = (WindowKey)obj;
+      return this.processorId == other.processorId
+          && this.requestor.equals(other.requestor);
+    }
+  }
+
+  /**
+   * Sent by the requestor of a streaming operation to let a data store send
+   * more reply chunks, or to make it stop sending them.
+   * 
+   * @since 8.2
+   */
+  public static final class ChunkPermitMessage extends DistributionMessage {
+    /** the number of permits that aborts the stream */
+    private static final int ABORT = -1;
+
+    private int replyProcessorId;
+    private int numPermits;
+
+    /** for deserialization */
+    public ChunkPermitMessage() {
+    }
+
+    private ChunkPermitMessage(int replyProcessorId, int numPermits) {
+      this.replyProcessorId = replyProcessorId;
+      this.numPermits = numPermits;
+    }
+
+    /**
+     * Lets the data store send <code>numPermits</code> more chunks for the
+     * request whose replies go to the given processor.
+     */
+    public static void send(DM dm, InternalDistributedMember recipient,
+        int replyProcessorId, int numPermits) {
+      ChunkPermitMessage m = new ChunkPermitMessage(replyProcessorId, numPermits);
+      m.setRecipient(recipient);
+      dm.putOutgoing(m);
+    }
+
+    /**
+     * Tells the data store to end the stream of replies to the given
+     * processor with an empty chunk.
+     */
+    public static void sendAbort(DM dm, InternalDistributedMember recipient,
+        int replyProcessorId) {
+      send(dm, recipient, replyProcessorId, ABORT);
+    }
+
+    @Override
+    public int getProcessorType() {
+      return DistributionManager.STANDARD_EXECUTOR;
+    }
+
+    @Override
+    public boolean getInlineProcess() {
+      return true;
+    }
+
+    @Override
+    protected void process(DistributionManager dm) {
+      ChunkWindow.grant(getSender(), this.replyProcessorId, this.numPermits);
+    }
+
+    public int getDSFID() {
+      return PR_STREAMING_CHUNK_PERMIT_MESSAGE;
+    }
+
+    @Override
+    public void fromData(DataInput in) throws IOException,
+        ClassNotFoundException {
+      super.fromData(in);
+      this.replyProcessorId = in.readInt();
+      this.numPermits = in.readInt();
+    }
+
+    @Override
+    public void toData(DataOutput out) throws IOException {
+      super.toData(out);
+      out.writeInt(this.replyProcessorId);
+      out.writeInt(this.numPermits);
+    }
+
+    @Override
+    public String toString() {
+      return "ChunkPermitMessage(processorId=" + this.replyProcessorId
+          + "; permits=" + this.numPermits + ")";
+    }
   }
 }
@@ -15,6 +15,7 @@ import com.gemstone.gemfire.cache.query.SelectResults;
 import com.gemstone.gemfire.cache.query.Struct;
 import com.gemstone.gemfire.cache.query.internal.CqEntry;
 import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
+import com.gemstone.gemfire.cache.query.internal.QueryProfiler;
 import com.gemstone.gemfire.cache.query.internal.cq.InternalCqQuery;
 import com.gemstone.gemfire.cache.query.internal.cq.ServerCQ;
 import com.gemstone.gemfire.cache.query.internal.types.CollectionTypeImpl;
@@ -91,6 +92,7 @@ public abstract class BaseCommandQuery extends BaseCommand {
     if (servConn.getClientVersion().compareTo(Version.GFE_70) >= 0) {
       ((DefaultQuery) query).setRemoteQuery(true);
     }
+    QueryProfiler.Execution profile = QueryProfiler.begin(crHelper.getCache(), queryString);
     // Process the query request
     try {
 
@@ -195,36 +197,41 @@ public abstract class BaseCommandQuery extends BaseCommand {
         start = DistributionStats.getStatTime();
         stats.incProcessQueryTime(start - oldStart);
 
-        if(sendResults){
-          queryResponseMsg.setMessageType(MessageType.RESPONSE);
-          queryResponseMsg.setTransactionId(msg.getTransactionId());
-          queryResponseMsg.sendHeader();
-        }
+        QueryProfiler.enter(QueryProfiler.RESULT_TRANSFER);
+        try {
+          if(sendResults){
+            queryResponseMsg.setMessageType(MessageType.RESPONSE);
+            queryResponseMsg.setTransactionId(msg.getTransactionId());
+            queryResponseMsg.sendHeader();
+          }
 
-        if (sendResults && numberOfChunks == 0) {
-          // Send 1 empty chunk
-          if (logger.isTraceEnabled()) {
-            logger.trace("{}: Creating chunk: 0", servConn.getName() );
+          if (sendResults && numberOfChunks == 0) {
+            // Send 1 empty chunk
+            if (logger.isTraceEnabled()) {
+              logger.trace("{}: Creating chunk: 0", servConn.getName() );
+            }
+            writeQueryResponseChunk(new Object[0], collectionType, true, servConn);
+            if (logger.isDebugEnabled()) {
+              logger.debug("{}: Sent chunk (1 of 1) of query response for query {}", servConn.getName(), queryString);
+            }
           }
-          writeQueryResponseChunk(new Object[0], collectionType, true, servConn);
-          if (logger.isDebugEnabled()) {
-            logger.debug("{}: Sent chunk (1 of 1) of query response for query {}", servConn.getName(), queryString);
+          else {
+            // Send response to client.
+            // from 7.0, if the object is in the form of serialized byte array,
+            // send it as a part of ObjectPartList
+            if (hasSerializedObjects) {
+              sendResultsAsObjectPartList(numberOfChunks, servConn,
+                  selectResults.asList(), isStructs, collectionType,
+                  queryString, cqQuery, sendCqResultsWithKey, sendResults);
+            } else {
+              sendResultsAsObjectArray(selectResults, numberOfChunks, servConn,
+                  isStructs, collectionType, queryString, cqQuery, sendCqResultsWithKey, sendResults);
+            }
           }
+        } finally {
+          QueryProfiler.exit(QueryProfiler.RESULT_TRANSFER);
         }
-        else {
-          // Send response to client.
-          // from 7.0, if the object is in the form of serialized byte array,
-          // send it as a part of ObjectPartList
-          if (hasSerializedObjects) {
-            sendResultsAsObjectPartList(numberOfChunks, servConn,
-                selectResults.asList(), isStructs, collectionType,
-                queryString, cqQuery, sendCqResultsWithKey, sendResults);
-          } else {
-            sendResultsAsObjectArray(selectResults, numberOfChunks, servConn,
-                isStructs, collectionType, queryString, cqQuery, sendCqResultsWithKey, sendResults);
-          }
-        }
-        
+
         if(cqQuery != null){
           // Set the CQ query result cache initialized flag.
           cqQuery.setCqResultsCacheInitialized();
@@ -283,6 +290,7 @@ public abstract class BaseCommandQuery extends BaseCommand {
       // remote query execution, resetting it is not required.
 
       //((DefaultQuery)query).setRemoteQuery(false);
+      QueryProfiler.end(profile);
     }
 
     if (logger.isDebugEnabled()) {
@@ -94,6 +94,12 @@ public class Message  {
     return sb.toString();
   }
 
+  /**
+   * If true, parts that do not fit in the comm buffer are written to the
+   * socket channel straight from the part's bytes with gathering writes.
+   */
+  private static final boolean GATHERING_WRITES = !Boolean.getBoolean("gemfire.Message.DISABLE_GATHERING_WRITES");
+
   protected final static int FIXED_LENGTH = 17;
   protected int msgType;
   protected int payloadLength=0;
@@ -541,6 +547,14 @@ public class Message  {
           cb.put(part.getTypeCode());
           if (partLen <= cb.remaining()) {
             part.sendTo(cb);
+          } else if (this.sockCh != null && GATHERING_WRITES) {
+            // write what is buffered and the part in one go instead of
+            // copying the part through the comm buffer
+            int buffered = cb.position();
+            part.gatherTo(this.sockCh, cb);
+            if (this.msgStats != null) {
+              this.msgStats.incSentBytes(buffered + partLen);
+            }
           } else {
             flushBuffer();
             // send partBytes
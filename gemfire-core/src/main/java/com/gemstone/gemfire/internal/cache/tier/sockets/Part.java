@@ -308,6 +308,35 @@ public class Part {
       }
     }
   }
+
+  /**
+   * Write the bytes left in the specified byte buffer, followed by the
+   * contents of this part, to the specified socket channel using gathering
+   * writes. Unlike {@link #sendTo(SocketChannel, ByteBuffer)} the contents
+   * are not copied into the buffer first. The buffer is cleared on return.
+   */
+  public final void gatherTo(SocketChannel sc, ByteBuffer buf) throws IOException {
+    buf.flip();
+    if (getLength() > 0) {
+      if (this.part instanceof byte[]) {
+        final byte[] bytes = (byte[])this.part;
+        final ByteBuffer[] bufs = new ByteBuffer[] {buf, ByteBuffer.wrap(bytes)};
+        long remaining = buf.remaining() + bytes.length;
+        while (remaining > 0) {
+          remaining -= sc.write(bufs);
+        }
+      } else {
+        HeapDataOutputStream hdos = (HeapDataOutputStream)this.part;
+        hdos.gatherTo(sc, buf);
+        hdos.rewind();
+      }
+    } else {
+      while (buf.remaining() > 0) {
+        sc.write(buf);
+      }
+    }
+    buf.clear();
+  }
   
   static private String typeCodeToString(byte c) {
     switch (c) {
@@ -32,6 +32,7 @@ import com.gemstone.gemfire.distributed.internal.DM;
 import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
 import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
 import com.gemstone.gemfire.internal.DataSerializableFixedID;
+import com.gemstone.gemfire.internal.HeapDataOutputStream;
 import com.gemstone.gemfire.internal.InternalDataSerializer;
 import com.gemstone.gemfire.internal.Version;
 import com.gemstone.gemfire.internal.cache.versions.DiskVersionTag;
@@ -322,6 +323,12 @@ public class VersionedObjectList extends ObjectPartList implements Externalizabl
     }
   }
 
+  /**
+   * Serialized values at least this large are added to a
+   * HeapDataOutputStream by reference instead of being copied into it.
+   */
+  static final int MIN_WRAPPED_VALUE_SIZE = 8 * 1024;
+
   static final byte FLAG_NULL_TAG = 0;
   static final byte FLAG_FULL_TAG = 1;
   static final byte FLAG_TAG_WITH_NEW_ID = 2;
@@ -503,10 +510,15 @@ public class VersionedObjectList extends ObjectPartList implements Externalizabl
     }
     out.writeByte(objectType);
     if (objectType == OBJECT && value instanceof byte[]) {
+      byte[] bytes = (byte[])value;
       if (this.serializeValues) {
-        DataSerializer.writeByteArray((byte[])value, out);
+        InternalDataSerializer.writeArrayLength(bytes.length, out);
+      }
+      if (bytes.length >= MIN_WRAPPED_VALUE_SIZE && out instanceof HeapDataOutputStream) {
+        // the value is sent from the array it is held in, without a copy
+        ((HeapDataOutputStream)out).writeWithByteArrayWrappedConditionally(bytes, 0, bytes.length);
       } else {
-        out.write((byte[])value);
+        out.write(bytes);
       }
     }
     else if (objectType == EXCEPTION) {
@@ -242,7 +242,6 @@ public class Get70 extends BaseCommand {
 
 //    entry = lregion.getEntry(key, true);
 
-    boolean isObject = true;
     Object data = null;
 
     EntryEventImpl versionHolder = EntryEventImpl.createVersionTagHolder();
@@ -271,7 +270,24 @@ public class Get70 extends BaseCommand {
       data  = ((LocalRegion) region).get(key, callbackArg, true, true, true, id, versionHolder, true);
 //    }
     versionTag = versionHolder.getVersionTag();
-    
+    return createEntry(data, versionTag);
+  }
+
+  /**
+   * Returns the entry of a key whose value and version were fetched from
+   * another member by {@link PartitionedRegion#fetchEntriesInBulk}.
+   * @since 8.2
+   */
+  public Entry getFetchedValueAndIsObject(Region region, Object key,
+      Object data, VersionTag versionTag, ServerConnection servConn) {
+    if (servConn != null) {
+      servConn.setModificationInfo(true, region.getFullPath(), key);
+    }
+    return createEntry(data, versionTag);
+  }
+
+  private static Entry createEntry(Object data, VersionTag versionTag) {
+    boolean isObject = true;
     // If the value in the VM is a CachedDeserializable,
     // get its value. If it is Token.REMOVED, Token.DESTROYED,
     // Token.INVALID, or Token.LOCAL_INVALID
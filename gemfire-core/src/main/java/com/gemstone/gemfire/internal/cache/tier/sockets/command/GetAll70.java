@@ -13,10 +13,12 @@ import com.gemstone.gemfire.cache.operations.GetOperationContext;
 import com.gemstone.gemfire.i18n.LogWriterI18n;
 import com.gemstone.gemfire.internal.Version;
 import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.cache.PartitionedRegion;
 import com.gemstone.gemfire.internal.cache.tier.CachedRegionHelper;
 import com.gemstone.gemfire.internal.cache.tier.Command;
 import com.gemstone.gemfire.internal.cache.tier.MessageType;
 import com.gemstone.gemfire.internal.cache.tier.sockets.*;
+import com.gemstone.gemfire.internal.cache.versions.VersionTag;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.log4j.LocalizedMessage;
 import com.gemstone.gemfire.internal.security.AuthorizeRequest;
@@ -24,7 +26,10 @@ import com.gemstone.gemfire.internal.security.AuthorizeRequestPP;
 import com.gemstone.gemfire.security.NotAuthorizedException;
 
 import java.io.IOException  ;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 public class GetAll70 extends BaseCommand {
@@ -162,6 +167,18 @@ public class GetAll70 extends BaseCommand {
     AuthorizeRequestPP postAuthzRequest = servConn.getPostAuthzRequest();
     Get70 request = (Get70) Get70.getCommand();
     final boolean isDebugEnabled = logger.isDebugEnabled();
+    // Fetch the keys of the partitioned region hosted by other members in
+    // bulk, one message per member, instead of one get per key. The keys
+    // that could not be fetched this way are gotten one by one below.
+    Map<Object, Object> fetchedValues = null;
+    Map<Object, VersionTag> fetchedVersions = null;
+    if (keys != null && keys.length > 1 && region instanceof PartitionedRegion
+        && ((PartitionedRegion) region).getTXState() == null) {
+      fetchedValues = new HashMap<Object, Object>();
+      fetchedVersions = new HashMap<Object, VersionTag>();
+      ((PartitionedRegion) region).fetchEntriesInBulk(Arrays.asList(keys),
+          true, fetchedValues, fetchedVersions);
+    }
     for (int i = 0; i < numKeys; i++) {
       // Send the intermediate chunk if necessary
       if (values.size() == maximumChunkSize) {
@@ -200,8 +217,13 @@ public class GetAll70 extends BaseCommand {
       // the value if it is a byte[].
       // Getting a value in serialized form is pretty nasty. I split this out
       // so the logic can be re-used by the CacheClientProxy.
-      Get70.Entry entry = request.getValueAndIsObject(region, key,
-              null, servConn);
+      Get70.Entry entry;
+      if (fetchedValues != null && fetchedValues.containsKey(key)) {
+        entry = request.getFetchedValueAndIsObject(region, key,
+            fetchedValues.get(key), fetchedVersions.get(key), servConn);
+      } else {
+        entry = request.getValueAndIsObject(region, key, null, servConn);
+      }
       keyNotPresent = entry.keyNotPresent;
       if (isDebugEnabled) {
         logger.debug("retrieved key={} {}", key, entry);
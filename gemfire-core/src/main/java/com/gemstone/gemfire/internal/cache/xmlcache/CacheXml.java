@@ -592,10 +592,17 @@ public abstract class CacheXml implements EntityResolver2, ErrorHandler {
   
   /** name of the disk store property for disk usage critical percentage */
   public static final String DISK_USAGE_CRITICAL_PERCENTAGE = "disk-usage-critical-percentage";
+  
+  /** name of the disk store property for the number of recovery threads */
+  public static final String RECOVERY_THREAD_COUNT = "recovery-thread-count";
 
   /** Name of region property specifying the cloning **/
   public static final String CLONING_ENABLED = "cloning-enabled";
 
+  /** Name of region property specifying whether entry values are stored off-heap
+   * @since 8.2 */
+  public static final String OFF_HEAP = "off-heap";
+
   // begin constants for connection pool
   public static final String CONNECTION_POOL = "pool";
   public static final String POOL_NAME = "pool-name";
@@ -1132,6 +1132,15 @@ public class CacheXmlGenerator extends CacheXml implements XMLReader {
               String.valueOf(ds.getDiskUsageCriticalPercentage()));
         }
       }
+
+      if (this.version.compareTo(CacheXmlVersion.VERSION_8_1) >= 0) {
+        if ((!(ds instanceof DiskStoreAttributesCreation) ||
+            ((DiskStoreAttributesCreation) ds).hasRecoveryThreadCount())) {
+          if (generateDefaults() || ds.getRecoveryThreadCount() != DiskStoreFactory.DEFAULT_RECOVERY_THREAD_COUNT)
+          atts.addAttribute("", "", RECOVERY_THREAD_COUNT, "", 
+              String.valueOf(ds.getRecoveryThreadCount()));
+        }
+      }
     } finally {
       handler.startElement("", DISK_STORE, DISK_STORE, atts);
       
@@ -2010,6 +2019,15 @@ public class CacheXmlGenerator extends CacheXml implements XMLReader {
         atts.addAttribute("", "", CLONING_ENABLED, "",
             String.valueOf(attrs.getCloningEnabled()));
      }
+
+    if (this.version.compareTo(CacheXmlVersion.VERSION_8_1) >= 0) {
+      if ((!(attrs instanceof RegionAttributesCreation) ||
+          ((RegionAttributesCreation) attrs).hasOffHeap())) {
+        if (generateDefaults() || attrs.getOffHeap()) {
+          atts.addAttribute("", "", OFF_HEAP, "", String.valueOf(attrs.getOffHeap()));
+        }
+      }
+    }
     
     if (this.version.compareTo(CacheXmlVersion.VERSION_7_0) >= 0) {
       if ((!(attrs instanceof RegionAttributesCreation) || ((RegionAttributesCreation)attrs)
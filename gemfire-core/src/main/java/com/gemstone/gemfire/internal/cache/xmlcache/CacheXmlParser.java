@@ -1004,6 +1004,11 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
       attrs.setDiskUsageCriticalPercentage(parseFloat(criticalPct));
     }
 
+    String recoveryThreadCount = atts.getValue(RECOVERY_THREAD_COUNT);
+    if (recoveryThreadCount != null) {
+      attrs.setRecoveryThreadCount(parseInt(recoveryThreadCount));
+    }
+
     stack.push(attrs);
   }
   
@@ -1188,6 +1193,10 @@ public class CacheXmlParser extends CacheXml implements ContentHandler {
     if (cloningEnabledStr != null) {
       attrs.setCloningEnable(Boolean.valueOf(cloningEnabledStr).booleanValue());
     }
+    String offHeapStr = atts.getValue(OFF_HEAP);
+    if (offHeapStr != null) {
+      attrs.setOffHeap(Boolean.valueOf(offHeapStr).booleanValue());
+    }
     String gatewaySenderIds = atts.getValue(GATEWAY_SENDER_IDS);
     if(gatewaySenderIds != null && (gatewaySenderIds.length() != 0)){
       StringTokenizer st = new StringTokenizer(gatewaySenderIds, ",");
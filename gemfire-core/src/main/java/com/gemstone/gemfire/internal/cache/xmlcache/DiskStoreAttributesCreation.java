@@ -59,6 +59,7 @@ public class DiskStoreAttributesCreation extends UserSpecifiedDiskStoreAttribute
     this.queueSize = attrs.getQueueSize();
     this.diskDirs = attrs.getDiskDirs();
     this.diskDirSizes = attrs.getDiskDirSizes();
+    this.recoveryThreadCount = attrs.getRecoveryThreadCount();
     
     setDiskUsageWarningPercentage(attrs.getDiskUsageWarningPercentage());
     setDiskUsageCriticalPercentage(attrs.getDiskUsageCriticalPercentage());
@@ -203,6 +204,9 @@ public class DiskStoreAttributesCreation extends UserSpecifiedDiskStoreAttribute
     if (! equal(getDiskUsageCriticalPercentage(), other.getDiskUsageCriticalPercentage())) {
       throw new RuntimeException(LocalizedStrings.DiskStoreAttributesCreation_DISK_USAGE_CRITICAL_ARE_NOT_THE_SAME.toLocalizedString(name));
     }
+    if (getRecoveryThreadCount() != other.getRecoveryThreadCount()) {
+      throw new RuntimeException(LocalizedStrings.DiskStoreAttributesCreation_RECOVERYTHREADCOUNT_OF_0_IS_NOT_THE_SAME_THIS_1_OTHER_2.toLocalizedString(new Object[] {name, getRecoveryThreadCount(), other.getRecoveryThreadCount()}));
+    }
     return true;
   }
   
@@ -245,6 +249,11 @@ public class DiskStoreAttributesCreation extends UserSpecifiedDiskStoreAttribute
     this.setHasQueueSize(true);
   }
   
+  public void setRecoveryThreadCount(int recoveryThreadCount) {
+    this.recoveryThreadCount = recoveryThreadCount;
+    this.setHasRecoveryThreadCount(true);
+  }
+  
   public void setDiskDirs(File[] diskDirs)
   {
     checkIfDirectoriesExist(diskDirs);
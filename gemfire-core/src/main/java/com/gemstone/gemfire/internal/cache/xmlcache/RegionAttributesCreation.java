@@ -175,6 +175,13 @@ public class RegionAttributesCreation extends UserSpecifiedRegionAttributes impl
    */
   private Compressor compressor;
   
+  /**
+   * True if this region stores its entry values off-heap.
+   * 
+   * @since 8.2
+   */
+  private boolean offHeap;
+  
   private static RegionAttributes getDefaultAttributes(CacheCreation cc) {
     if (cc != null) {
       return cc.getDefaultAttributes();
@@ -256,6 +263,7 @@ public class RegionAttributesCreation extends UserSpecifiedRegionAttributes impl
     this.multicastEnabled = attrs.getMulticastEnabled();
     this.cloningEnabled = attrs.getCloningEnabled();
     this.compressor = attrs.getCompressor();
+    this.offHeap = attrs.getOffHeap();
     if (attrs instanceof UserSpecifiedRegionAttributes) {
       UserSpecifiedRegionAttributes nonDefault = (UserSpecifiedRegionAttributes) attrs;
       this.requiresPoolName = nonDefault.requiresPoolName;
@@ -484,6 +492,9 @@ public class RegionAttributesCreation extends UserSpecifiedRegionAttributes impl
     if(! equal(this.compressor, other.getCompressor())) {
       throw new RuntimeException("Compressors are not the same.");
     }
+    if (this.offHeap != other.getOffHeap()) {
+      throw new RuntimeException("OffHeap is not the same: this: " + this.offHeap + " other: " + other.getOffHeap());
+    }
     return true;
   }
 
@@ -1440,6 +1451,16 @@ public class RegionAttributesCreation extends UserSpecifiedRegionAttributes impl
         setCompressor(parent.getCompressor());
       }
     }
+    
+    if (!hasOffHeap()) {
+      if (parentIsUserSpecified) {
+        if (parentWithHas.hasOffHeap()) {
+          setOffHeap(parent.getOffHeap());
+        }
+      } else {
+        setOffHeap(parent.getOffHeap());
+      }
+    }
     if (!hasConcurrencyChecksEnabled()) {
       if (parentIsUserSpecified) {
         if (parentWithHas.hasConcurrencyChecksEnabled()) {
@@ -1550,6 +1571,15 @@ public class RegionAttributesCreation extends UserSpecifiedRegionAttributes impl
     return this.compressor;
   }
   
+  public void setOffHeap(boolean offHeap) {
+    this.offHeap = offHeap;
+    setHasOffHeap(true);
+  }
+  
+  public boolean getOffHeap() {
+    return this.offHeap;
+  }
+  
   public void prepareForValidation() {
     // As of 6.5 we automatically enable stats if expiration is used.
     {
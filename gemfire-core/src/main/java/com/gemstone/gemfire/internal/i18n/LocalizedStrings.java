@@ -2051,6 +2051,13 @@ public class LocalizedStrings extends ParentLocalizedStrings {
   public static final StringId MinimumSystemRequirements_NOT_MET = new StringIdImpl(6604, "Minimum system requirements not met. Unexpected behavior may result in additional errors.");
   public static final StringId MinimumSystemRequirements_JAVA_VERSION = new StringIdImpl(6605, "Java version older than {0}.");
 
+  public static final StringId AbstractDistributionConfig_OFF_HEAP_MEMORY_SIZE_0_INVALID = new StringIdImpl(6606, "The off-heap-memory-size \"{0}\" is not valid. It must be a number followed by an optional unit of \"k\", \"m\", \"g\" or \"t\".");
+  public static final StringId GemFireCacheImpl_ALLOCATED_0_BYTES_OF_OFF_HEAP_MEMORY = new StringIdImpl(6607, "Allocated {0} bytes of off-heap memory.");
+  public static final StringId LocalRegion_OFF_HEAP_REGION_0_REQUIRES_OFF_HEAP_MEMORY_SIZE = new StringIdImpl(6608, "The region {0} was configured to use off-heap memory but no off-heap-memory-size was configured for this member.");
+  public static final StringId SimpleMemoryAllocatorImpl_OUT_OF_OFF_HEAP_MEMORY_ALLOCATING_0_BYTES = new StringIdImpl(6609, "Out of off-heap memory. Could not allocate {0} bytes; {1} bytes of {2} are in use.");
+  public static final StringId SimpleMemoryAllocatorImpl_OFF_HEAP_MEMORY_HAS_BEEN_CLOSED = new StringIdImpl(6610, "The off-heap memory of this member has been closed.");
+  public static final StringId DiskStoreAttributesCreation_RECOVERYTHREADCOUNT_OF_0_IS_NOT_THE_SAME_THIS_1_OTHER_2 = new StringIdImpl(6611, "RecoveryThreadCount of disk store {0} is not the same: this:  {1}  other:  {2}");
+
   /**JGroups strings, messageId 15000-90000 **/
   
   /** Testing strings, messageId 90000-99999 **/
@@ -42,8 +42,12 @@ public class ConnectionHandler implements Runnable {
     this.socket = socket;
     this.cache = cache;
     this.protocol = protocol;
+    initLogger(cache);
+  }
+
+  static void initLogger(Cache cache) {
     if (logger == null) {
-      logger = this.cache.getLogger();
+      logger = cache.getLogger();
     }
   }
   
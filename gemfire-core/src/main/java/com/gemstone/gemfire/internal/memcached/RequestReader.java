@@ -55,12 +55,29 @@ public class RequestReader {
 
   private static final int POSITION_OPAQUE = 12;
 
+  private static final int POSITION_RESPONSE_STATUS = 6;
+
+  /**
+   * The largest request accepted from a client, in bytes. A client that
+   * sends a longer request, or a negative length, is sent an error and
+   * disconnected.
+   */
+  static final int MAX_REQUEST_LENGTH = Integer.getInteger("gemfire.memcached.maxRequestLength", 16 * 1024 * 1024);
+
   private Socket socket;
   
   private final Protocol protocol;
 
   private CharBuffer commandBuffer = CharBuffer.allocate(11);   // no command exceeds 9 chars
-  
+
+  /**
+   * When non-null, replies are appended to this buffer instead of
+   * being written to the socket, so that all the replies for a batch
+   * of pipelined requests can be sent with a single write.
+   * @see #RequestReader(Protocol)
+   */
+  private ByteBuffer pendingReplies;
+
   public RequestReader(Socket socket, Protocol protocol) {
     buffer = ByteBuffer.allocate(getBufferSize(socket.getChannel()));
     // set position to limit so that first read attempt
@@ -70,6 +87,17 @@ public class RequestReader {
     this.protocol = protocol;
   }
 
+  /**
+   * Creates a reader that is not bound to a socket. Requests are
+   * supplied one at a time by {@link #readRequest(ByteBuffer)} and
+   * replies are accumulated until {@link #getPendingReplies()} is called.
+   * Used by the selector based server.
+   */
+  RequestReader(Protocol protocol) {
+    this.protocol = protocol;
+    this.pendingReplies = ByteBuffer.allocate(1024);
+  }
+
   public Command readCommand() throws IOException {
     if (protocol == Protocol.ASCII) {
       return readAsciiCommand();
@@ -77,6 +105,181 @@ public class RequestReader {
     return readBinaryCommand();
   }
   
+  /**
+   * Interprets the command contained in the given buffer, which must
+   * hold exactly one complete request starting at position 0. The
+   * buffer then becomes the request returned by {@link #getRequest()}.
+   */
+  Command readRequest(ByteBuffer request) throws IOException {
+    this.buffer = request;
+    if (protocol == Protocol.ASCII) {
+      return Command.valueOf(readCommand(request));
+    }
+    if (request.get(0) != REQUEST_MAGIC) {
+      throw new IllegalStateException("Not a valid request, magic byte incorrect");
+    }
+    return Command.getCommandFromOpCode(request.get(POSITION_OPCODE));
+  }
+
+  /**
+   * Returns the number of bytes of the first request in the given
+   * buffer, starting at its position, or -1 if the buffer does not yet
+   * hold the complete request.
+   * @throws InvalidRequestLength if the request is shorter than its
+   * header or longer than {@link #MAX_REQUEST_LENGTH}
+   */
+  static int getRequestLength(ByteBuffer buffer, Protocol protocol) {
+    return getRequestLength(buffer, protocol, MAX_REQUEST_LENGTH);
+  }
+
+  static int getRequestLength(ByteBuffer buffer, Protocol protocol, int maxLength) {
+    int start = buffer.position();
+    int available = buffer.remaining();
+    if (protocol == Protocol.BINARY) {
+      if (available < HEADER_LENGTH) {
+        return -1;
+      }
+      int bodyLength = buffer.getInt(start + AbstractCommand.TOTAL_BODY_LENGTH_INDEX);
+      if (bodyLength < 0) {
+        throw new InvalidRequestLength(ResponseStatus.INVALID_ARGUMENTS,
+            "negative body length " + bodyLength);
+      }
+      if (bodyLength > maxLength - HEADER_LENGTH) {
+        throw new InvalidRequestLength(ResponseStatus.VALUE_TOO_LARGE,
+            "request of " + (HEADER_LENGTH + (long)bodyLength)
+            + " bytes exceeds the maximum of " + maxLength);
+      }
+      int length = HEADER_LENGTH + bodyLength;
+      return length <= available ? length : -1;
+    }
+    int lineLength = -1;
+    for (int i=0; i<available; i++) {
+      if (buffer.get(start + i) == '\n') {
+        lineLength = i + 1;
+        break;
+      }
+    }
+    if (lineLength == -1) {
+      if (available >= maxLength) {
+        throw new InvalidRequestLength(ResponseStatus.VALUE_TOO_LARGE,
+            "command line exceeds the maximum of " + maxLength + " bytes");
+      }
+      return -1;
+    }
+    long dataLength = getAsciiDataLength(buffer, start, lineLength);
+    if (dataLength < 0) {
+      throw new InvalidRequestLength(ResponseStatus.INVALID_ARGUMENTS,
+          "negative data length " + dataLength);
+    }
+    long length = dataLength > 0 ? lineLength + dataLength + 2 /* \r\n */ : lineLength;
+    if (length > maxLength) {
+      throw new InvalidRequestLength(ResponseStatus.VALUE_TOO_LARGE,
+          "request of " + length + " bytes exceeds the maximum of " + maxLength);
+    }
+    return length <= available ? (int)length : -1;
+  }
+
+  /**
+   * Storage commands are followed by a data block whose size is the
+   * fifth token of the command line; all other commands are one line.
+   * @return the size of the data block, or 0 if there is none
+   */
+  private static long getAsciiDataLength(ByteBuffer buffer, int start, int lineLength) {
+    byte[] line = new byte[lineLength];
+    for (int i=0; i<lineLength; i++) {
+      line[i] = buffer.get(start + i);
+    }
+    String[] tokens = new String(line, charsetASCII).trim().split(" ");
+    String cmd = tokens[0].toLowerCase();
+    if (tokens.length < 5 || !(cmd.equals("set") || cmd.equals("add")
+        || cmd.equals("replace") || cmd.equals("append")
+        || cmd.equals("prepend") || cmd.equals("cas"))) {
+      return 0;
+    }
+    try {
+      return Long.parseLong(tokens[4]);
+    } catch (NumberFormatException e) {
+      // let the command report the malformed request
+      return 0;
+    }
+  }
+
+  /**
+   * Adds the reply to a request whose length is out of range to the
+   * pending replies. The connection must be closed once it was sent.
+   * @param request the buffer holding the start of the request at its
+   * position
+   */
+  void sendInvalidRequestLength(ByteBuffer request, InvalidRequestLength e) {
+    if (this.protocol == Protocol.ASCII) {
+      addPendingReply(charsetASCII.encode("CLIENT_ERROR " + e.getMessage() + "\r\n"));
+      return;
+    }
+    byte[] errMsg = e.getMessage().getBytes(charsetASCII);
+    ByteBuffer reply = ByteBuffer.allocate(RESPONSE_HEADER_LENGTH + errMsg.length);
+    reply.put(0, RESPONSE_MAGIC);
+    reply.put(POSITION_OPCODE, request.get(request.position() + POSITION_OPCODE));
+    reply.putShort(POSITION_RESPONSE_STATUS, e.getStatus().asShort());
+    reply.putInt(AbstractCommand.TOTAL_BODY_LENGTH_INDEX, errMsg.length);
+    reply.putInt(POSITION_OPAQUE, request.getInt(request.position() + POSITION_OPAQUE));
+    reply.position(RESPONSE_HEADER_LENGTH);
+    reply.put(errMsg);
+    reply.flip();
+    addPendingReply(reply);
+  }
+
+  /**
+   * Thrown for a request that is shorter than its header or longer than
+   * {@link RequestReader#MAX_REQUEST_LENGTH}.
+   */
+  static class InvalidRequestLength extends ClientError {
+    private static final long serialVersionUID = 4019566386434217052L;
+
+    private final ResponseStatus status;
+
+    InvalidRequestLength(ResponseStatus status, String message) {
+      super(message);
+      this.status = status;
+    }
+
+    /**
+     * Returns the status of the reply to a binary request
+     */
+    ResponseStatus getStatus() {
+      return this.status;
+    }
+  }
+
+  /**
+   * Returns the replies accumulated since the last call, flipped and
+   * ready to be written, and starts a new batch. The returned buffer
+   * must be drained before this reader is used again.
+   */
+  ByteBuffer getPendingReplies() {
+    ByteBuffer replies = this.pendingReplies;
+    replies.flip();
+    return replies;
+  }
+
+  /**
+   * Readies the reply buffer for the next batch once the replies
+   * returned by {@link #getPendingReplies()} have been written.
+   */
+  void clearPendingReplies() {
+    this.pendingReplies.clear();
+  }
+
+  private void addPendingReply(ByteBuffer reply) {
+    if (this.pendingReplies.remaining() < reply.remaining()) {
+      ByteBuffer oldReplies = this.pendingReplies;
+      oldReplies.flip();
+      this.pendingReplies = ByteBuffer.allocate(
+          Math.max(oldReplies.capacity() * 2, oldReplies.remaining() + reply.remaining()));
+      this.pendingReplies.put(oldReplies);
+    }
+    this.pendingReplies.put(reply);
+  }
+
   private Command readBinaryCommand() throws IOException {
     SocketChannel channel = this.socket.getChannel();
     if (channel == null || !channel.isOpen()) {
@@ -122,6 +325,9 @@ public class RequestReader {
         ConnectionHandler.getLogger().finer("Request:"+buffer+str.toString());
       }
       int bodyLength = buffer.getInt(AbstractCommand.TOTAL_BODY_LENGTH_INDEX);
+      if (bodyLength < 0 || bodyLength > MAX_REQUEST_LENGTH - HEADER_LENGTH) {
+        throw new IOException("Invalid request body length " + bodyLength);
+      }
       if ((HEADER_LENGTH + bodyLength) > requestLength) {
         // set the position back to the start of the request
         buffer.position(buffer.position() - 2 /*since we read two bytes*/);
@@ -258,6 +464,10 @@ public class RequestReader {
         ConnectionHandler.getLogger().finer("sending reply:"+reply+" "+Command.buffertoString(reply));
       }
     }
+    if (this.pendingReplies != null) {
+      addPendingReply(reply);
+      return;
+    }
     SocketChannel channel = this.socket.getChannel();
     if (channel == null || !channel.isOpen()) {
       throw new IllegalStateException("cannot write to channel");
@@ -266,6 +476,11 @@ public class RequestReader {
   }
 
   public void sendException(Exception e) {
+    if (this.pendingReplies != null) {
+      Reply reply = e instanceof ClientError ? Reply.CLIENT_ERROR : Reply.ERROR;
+      addPendingReply(charsetASCII.encode(reply.toString()));
+      return;
+    }
     SocketChannel channel = this.socket.getChannel();
     if (channel == null || !channel.isOpen()) {
       throw new IllegalStateException("cannot write to channel");
@@ -32,6 +32,18 @@ public enum ResponseStatus {
       return 0x0002;
     }
   },
+  VALUE_TOO_LARGE {
+    @Override
+    public short asShort() {
+      return 0x0003;
+    }
+  },
+  INVALID_ARGUMENTS {
+    @Override
+    public short asShort() {
+      return 0x0004;
+    }
+  },
   ITEM_NOT_STORED {
     @Override
     public short asShort() {
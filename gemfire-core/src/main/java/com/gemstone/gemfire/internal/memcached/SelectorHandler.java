@@ -0,0 +1,282 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.memcached;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheClosedException;
+import com.gemstone.gemfire.internal.memcached.commands.ClientError;
+import com.gemstone.gemfire.memcached.GemFireMemcachedServer;
+import com.gemstone.gemfire.memcached.GemFireMemcachedServer.Protocol;
+
+/**
+ * Services many memcached client connections from a single thread
+ * using a {@link Selector}. This is the non-blocking alternative to
+ * {@link ConnectionHandler}, which needs one thread per client.
+ * <p>
+ * Each connection has its own read buffer and reply buffer. All the
+ * complete requests found in the read buffer after a read are processed
+ * in order, and their replies are sent back with a single write, so
+ * clients that pipeline requests do not pay for a write per request.
+ * While a connection has replies that could not be written, no further
+ * requests are read from it.
+ *
+ * @see GemFireMemcachedServer
+ */
+public class SelectorHandler implements Runnable {
+
+  private final Selector selector;
+
+  private final Cache cache;
+
+  private final Protocol protocol;
+
+  /**
+   * channels handed over by the acceptor thread, registered
+   * with the selector by the selector thread
+   */
+  private final ConcurrentLinkedQueue<SocketChannel> newClients = new ConcurrentLinkedQueue<SocketChannel>();
+
+  private volatile boolean shutdown;
+
+  public SelectorHandler(Cache cache, Protocol protocol) throws IOException {
+    this.selector = Selector.open();
+    this.cache = cache;
+    this.protocol = protocol;
+    ConnectionHandler.initLogger(cache);
+  }
+
+  /**
+   * Hands a newly accepted client over to this handler. The channel
+   * must already be in non-blocking mode.
+   */
+  public void register(SocketChannel channel) {
+    this.newClients.add(channel);
+    this.selector.wakeup();
+  }
+
+  public void run() {
+    try {
+      while (!this.shutdown && !Thread.currentThread().isInterrupted()) {
+        this.selector.select();
+        registerNewClients();
+        Iterator<SelectionKey> it = this.selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          SelectionKey key = it.next();
+          it.remove();
+          Client client = (Client) key.attachment();
+          try {
+            if (key.isValid() && key.isWritable()) {
+              client.write();
+            }
+            if (key.isValid() && key.isReadable()) {
+              client.read();
+            }
+          } catch (CacheClosedException e) {
+            client.close();
+            this.shutdown = true;
+          } catch (IOException e) {
+            client.close();
+          } catch (IllegalStateException e) {
+            // thrown for a malformed binary request
+            ConnectionHandler.getLogger().fine("closing memcached client connection", e);
+            client.close();
+          }
+        }
+      }
+    } catch (ClosedSelectorException e) {
+      // shutting down
+    } catch (IOException e) {
+      ConnectionHandler.getLogger().warning("memcached selector failed", e);
+    } finally {
+      closeAll();
+    }
+    ConnectionHandler.getLogger().fine("Selector handler "+Thread.currentThread().getName()+" terminating");
+  }
+
+  /**
+   * Stops this handler and closes all of its client connections.
+   */
+  public void shutdown() {
+    this.shutdown = true;
+    this.selector.wakeup();
+  }
+
+  private void registerNewClients() {
+    SocketChannel channel;
+    while ((channel = this.newClients.poll()) != null) {
+      try {
+        SelectionKey key = channel.register(this.selector, SelectionKey.OP_READ);
+        key.attach(new Client(channel, key));
+      } catch (IOException e) {
+        closeQuietly(channel);
+      }
+    }
+  }
+
+  private void closeAll() {
+    try {
+      for (SelectionKey key : this.selector.keys()) {
+        closeQuietly(key.channel());
+      }
+      this.selector.close();
+    } catch (IOException e) {
+      // ignore
+    } catch (ClosedSelectorException e) {
+      // already closed
+    }
+    SocketChannel channel;
+    while ((channel = this.newClients.poll()) != null) {
+      closeQuietly(channel);
+    }
+  }
+
+  private static void closeQuietly(Channel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
+
+  /**
+   * State of one client connection.
+   */
+  private class Client {
+
+    private final SocketChannel channel;
+
+    private final SelectionKey key;
+
+    private final RequestReader reader;
+
+    /**
+     * bytes read from the client, in write mode between reads
+     */
+    private ByteBuffer in;
+
+    /**
+     * replies that have not yet been completely written, or null
+     */
+    private ByteBuffer out;
+
+    /**
+     * set when a quit command is read; the connection is closed
+     * once the preceding replies have been written
+     */
+    private boolean closeAfterFlush;
+
+    Client(SocketChannel channel, SelectionKey key) {
+      this.channel = channel;
+      this.key = key;
+      this.reader = new RequestReader(protocol);
+      int size = 1024;
+      try {
+        size = channel.socket().getReceiveBufferSize();
+      } catch (SocketException e) {
+        // use default size
+      }
+      this.in = ByteBuffer.allocate(size);
+    }
+
+    void read() throws IOException {
+      int bytesRead = this.channel.read(this.in);
+      if (bytesRead == -1) {
+        close();
+        return;
+      }
+      this.in.flip();
+      while (!this.closeAfterFlush) {
+        int length;
+        try {
+          length = RequestReader.getRequestLength(this.in, protocol);
+        } catch (RequestReader.InvalidRequestLength e) {
+          // the rest of the stream can not be framed
+          ConnectionHandler.getLogger().info("closing memcached client connection: " + e.getMessage());
+          this.reader.sendInvalidRequestLength(this.in, e);
+          this.in.position(this.in.limit());
+          this.closeAfterFlush = true;
+          break;
+        }
+        if (length == -1) {
+          break;
+        }
+        ByteBuffer request = this.in.slice();
+        request.limit(length);
+        this.in.position(this.in.position() + length);
+        this.closeAfterFlush = processRequest(request);
+      }
+      this.in.compact();
+      if (!this.closeAfterFlush && !this.in.hasRemaining()) {
+        // the pending request does not fit, make room for it
+        ByteBuffer oldIn = this.in;
+        oldIn.flip();
+        this.in = ByteBuffer.allocate(oldIn.capacity() * 2);
+        this.in.put(oldIn);
+      }
+      this.out = this.reader.getPendingReplies();
+      write();
+    }
+
+    /**
+     * @return true if the client asked to close the connection
+     */
+    private boolean processRequest(ByteBuffer request) throws IOException {
+      try {
+        Command command = this.reader.readRequest(request);
+        if (ConnectionHandler.getLogger().fineEnabled()) {
+          ConnectionHandler.getLogger().fine("processing command:"+command);
+        }
+        ByteBuffer reply = command.getCommandProcessor().processCommand(
+            this.reader, protocol, cache);
+        if (reply != null) {
+          this.reader.sendReply(reply);
+        }
+        return command == Command.QUIT || command == Command.QUITQ;
+      } catch (ClientError e) {
+        this.reader.sendException(e);
+      } catch (IllegalArgumentException e) {
+        // thrown by Command.valueOf() when there is no matching command
+        this.reader.sendException(e);
+      }
+      return false;
+    }
+
+    void write() throws IOException {
+      if (this.out.hasRemaining()) {
+        this.channel.write(this.out);
+      }
+      if (this.out.hasRemaining()) {
+        this.key.interestOps(SelectionKey.OP_WRITE);
+        return;
+      }
+      this.out = null;
+      this.reader.clearPendingReplies();
+      if (this.closeAfterFlush) {
+        close();
+      } else {
+        this.key.interestOps(SelectionKey.OP_READ);
+      }
+    }
+
+    void close() {
+      this.key.cancel();
+      closeQuietly(this.channel);
+    }
+  }
+}
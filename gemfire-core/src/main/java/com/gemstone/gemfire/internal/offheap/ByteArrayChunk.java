@@ -0,0 +1,36 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A chunk that stores a byte[] region value, or the compressed
+ * form of a value in a region that has a compressor.
+ *
+ * @since 8.2
+ */
+public final class ByteArrayChunk extends Chunk {
+
+  ByteArrayChunk(MemoryAllocator allocator, ByteBuffer slab, int slabId,
+      int offset, int capacity, int dataSize) {
+    super(allocator, slab, slabId, offset, capacity, dataSize);
+  }
+
+  public boolean isSerialized() {
+    return false;
+  }
+
+  public Object getValueAsHeapObject() {
+    return getRawBytes();
+  }
+
+  public int getSizeInBytes() {
+    return MEM_OVERHEAD + getDataSize();
+  }
+}
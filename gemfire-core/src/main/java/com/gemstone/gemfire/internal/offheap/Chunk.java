@@ -0,0 +1,264 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import com.gemstone.gemfire.cache.CacheClosedException;
+import com.gemstone.gemfire.internal.HeapDataOutputStream;
+import com.gemstone.gemfire.internal.InternalDataSerializer;
+import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
+
+/**
+ * A block of off-heap memory handed out by a {@link MemoryAllocator}.
+ * <p>
+ * The chunk object itself lives on the heap and is small: it records which
+ * slab the data is in, where it starts, and how many references to it exist.
+ * Keeping the reference count on the heap means that a reader that loses the
+ * race with the last {@link #release()} finds out without touching memory
+ * that may already have been handed to another value.
+ *
+ * @since 8.2
+ */
+public abstract class Chunk implements StoredObject {
+
+  /**
+   * The heap overhead of a chunk: object header, the slab, allocator
+   * and two ints of location, the data size and the reference count.
+   */
+  static final int MEM_OVERHEAD = PER_OBJECT_OVERHEAD + 4 + 4 + 4 + 4 + 4 + 4;
+
+  private static final AtomicIntegerFieldUpdater<Chunk> refCountUpdater
+    = AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "refCount");
+
+  private final MemoryAllocator allocator;
+  /**
+   * The slab this chunk was carved out of. It is shared by every chunk in the
+   * slab so its position and limit must never be changed; use
+   * {@link ByteBuffer#duplicate()} or the absolute get methods instead.
+   */
+  private final ByteBuffer slab;
+  private final int slabId;
+  private final int offset;
+  private final int capacity;
+  private final int dataSize;
+  private volatile int refCount = 1;
+
+  protected Chunk(MemoryAllocator allocator, ByteBuffer slab, int slabId,
+      int offset, int capacity, int dataSize) {
+    this.allocator = allocator;
+    this.slab = slab;
+    this.slabId = slabId;
+    this.offset = offset;
+    this.capacity = capacity;
+    this.dataSize = dataSize;
+  }
+
+  public boolean retain() {
+    if (this.allocator.isClosed()) {
+      throw new CacheClosedException(LocalizedStrings.SimpleMemoryAllocatorImpl_OFF_HEAP_MEMORY_HAS_BEEN_CLOSED.toLocalizedString());
+    }
+    for (;;) {
+      int rc = this.refCount;
+      if (rc <= 0) {
+        return false;
+      }
+      if (refCountUpdater.compareAndSet(this, rc, rc+1)) {
+        return true;
+      }
+    }
+  }
+
+  public void release() {
+    for (;;) {
+      int rc = this.refCount;
+      if (rc <= 0) {
+        throw new IllegalStateException("Released an off-heap value that had already been freed: " + this);
+      }
+      if (refCountUpdater.compareAndSet(this, rc, rc-1)) {
+        if (rc == 1) {
+          this.allocator.free(this);
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of references currently held on this chunk;
+   * zero once it has been freed.
+   */
+  public int getRefCount() {
+    return this.refCount;
+  }
+
+  public int getDataSize() {
+    return this.dataSize;
+  }
+
+  /**
+   * Returns the number of bytes of off-heap memory owned by this chunk.
+   * This may be more than its data size because allocations are rounded up.
+   */
+  int getCapacity() {
+    return this.capacity;
+  }
+
+  int getSlabId() {
+    return this.slabId;
+  }
+
+  int getOffset() {
+    return this.offset;
+  }
+
+  MemoryAllocator getAllocator() {
+    return this.allocator;
+  }
+
+  /**
+   * Copies <code>bytes</code> into this chunk. Only called by the allocator
+   * before the chunk is handed out.
+   */
+  void initialize(byte[] bytes) {
+    ByteBuffer bb = this.slab.duplicate();
+    bb.position(this.offset);
+    bb.put(bytes, 0, this.dataSize);
+  }
+
+  /**
+   * Throws if a reference to this chunk can not be obtained.
+   * Used by the accessors that copy data out of a chunk the caller may not
+   * have retained.
+   */
+  protected final void retainForRead() {
+    if (!retain()) {
+      throw new IllegalStateException("Read an off-heap value that had already been freed: " + this);
+    }
+  }
+
+  /**
+   * Returns a heap copy of this chunk's data.
+   */
+  public byte[] getRawBytes() {
+    retainForRead();
+    try {
+      byte[] result = new byte[this.dataSize];
+      ByteBuffer bb = this.slab.duplicate();
+      bb.position(this.offset);
+      bb.get(result);
+      return result;
+    } finally {
+      release();
+    }
+  }
+
+  public ByteBuffer createDirectByteBuffer() {
+    ByteBuffer bb = this.slab.duplicate();
+    bb.limit(this.offset + this.dataSize);
+    bb.position(this.offset);
+    return bb.slice().asReadOnlyBuffer();
+  }
+
+  public void sendAsByteArray(DataOutput out) throws IOException {
+    retainForRead();
+    try {
+      InternalDataSerializer.writeArrayLength(this.dataSize, out);
+      ByteBuffer bb = createDirectByteBuffer();
+      if (out instanceof HeapDataOutputStream) {
+        ((HeapDataOutputStream)out).write(bb);
+      } else {
+        byte[] buf = new byte[Math.min(bb.remaining(), 8192)];
+        while (bb.hasRemaining()) {
+          int len = Math.min(bb.remaining(), buf.length);
+          bb.get(buf, 0, len);
+          out.write(buf, 0, len);
+        }
+      }
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Returns a stream that reads this chunk's data directly from off-heap
+   * memory. The caller must hold a reference to this chunk until it is done
+   * with the stream.
+   */
+  protected DataInputStream createDataInputStream() {
+    return new DataInputStream(new ChunkInputStream(createDirectByteBuffer()));
+  }
+
+  @Override
+  public String toString() {
+    // do not read the data here; a chunk's toString may be called after it is freed
+    return getShortClassName() + "@" + Integer.toHexString(System.identityHashCode(this))
+      + " slab=" + this.slabId + " offset=" + this.offset
+      + " dataSize=" + this.dataSize + " refCount=" + this.refCount;
+  }
+
+  private String getShortClassName() {
+    String cname = getClass().getName();
+    return cname.substring(getClass().getPackage().getName().length()+1);
+  }
+
+  /**
+   * An InputStream over a direct ByteBuffer. This is deliberately not a
+   * {@link com.gemstone.gemfire.internal.tcp.ByteBufferInputStream} so that
+   * pdx deserialization copies the bytes it keeps instead of referring to
+   * off-heap memory that may be freed after the read.
+   */
+  private static final class ChunkInputStream extends InputStream {
+    private final ByteBuffer bb;
+
+    ChunkInputStream(ByteBuffer bb) {
+      this.bb = bb;
+    }
+
+    @Override
+    public int read() {
+      if (!this.bb.hasRemaining()) {
+        return -1;
+      }
+      return this.bb.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!this.bb.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, this.bb.remaining());
+      this.bb.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public long skip(long n) {
+      int len = (int)Math.min(n, this.bb.remaining());
+      if (len <= 0) {
+        return 0;
+      }
+      this.bb.position(this.bb.position() + len);
+      return len;
+    }
+
+    @Override
+    public int available() {
+      return this.bb.remaining();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import com.gemstone.gemfire.cache.OutOfOffHeapMemoryException;
+
+/**
+ * Allocates and frees the off-heap memory used to store region values.
+ * Memory is handed out as {@link Chunk}s which are reference counted;
+ * a chunk's memory is given back to its allocator when its last
+ * reference is released.
+ *
+ * @since 8.2
+ */
+public interface MemoryAllocator {
+
+  /**
+   * Copies the given serialized bytes into newly allocated off-heap memory.
+   * The returned chunk has a reference count of one.
+   *
+   * @param bytes the data to copy off-heap
+   * @param isSerialized true if <code>bytes</code> is the serialized form
+   *        of an object; false if it is a byte[] value
+   * @throws OutOfOffHeapMemoryException if no memory is available
+   */
+  public Chunk allocateAndInitialize(byte[] bytes, boolean isSerialized);
+
+  /**
+   * Returns the memory owned by the given chunk to this allocator.
+   * Only called by {@link Chunk#release()} once the chunk's reference count
+   * has dropped to zero.
+   */
+  public void free(Chunk chunk);
+
+  /**
+   * Returns the total number of bytes of off-heap memory managed by this allocator.
+   */
+  public long getTotalMemory();
+
+  /**
+   * Returns the number of bytes not currently allocated to a chunk.
+   */
+  public long getFreeMemory();
+
+  /**
+   * Returns the number of bytes currently allocated to chunks.
+   */
+  public long getUsedMemory();
+
+  /**
+   * Returns the statistics for this allocator.
+   */
+  public OffHeapMemoryStats getStats();
+
+  /**
+   * Returns true if {@link #close()} has been called.
+   * Chunks of a closed allocator can no longer be retained.
+   */
+  public boolean isClosed();
+
+  /**
+   * Releases all the memory owned by this allocator.
+   */
+  public void close();
+}
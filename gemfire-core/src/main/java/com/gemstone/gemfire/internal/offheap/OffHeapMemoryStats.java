@@ -0,0 +1,125 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import com.gemstone.gemfire.StatisticDescriptor;
+import com.gemstone.gemfire.Statistics;
+import com.gemstone.gemfire.StatisticsFactory;
+import com.gemstone.gemfire.StatisticsType;
+import com.gemstone.gemfire.StatisticsTypeFactory;
+import com.gemstone.gemfire.internal.StatisticsTypeFactoryImpl;
+
+/**
+ * GemFire statistics about the off-heap memory of a member.
+ *
+ * @since 8.2
+ */
+public class OffHeapMemoryStats {
+
+  private static final StatisticsType type;
+
+  ////////////////////  Statistic "Id" Fields  ////////////////////
+
+  private static final int maxMemoryId;
+  private static final int freeMemoryId;
+  private static final int usedMemoryId;
+  private static final int objectsId;
+  private static final int allocationsId;
+  private static final int freesId;
+  private static final int outOfMemoryId;
+
+  static {
+    String statName = "OffHeapMemoryStats";
+    String statDescription =
+      "Statistics about the off-heap memory used to store region values";
+
+    StatisticsTypeFactory f = StatisticsTypeFactoryImpl.singleton();
+
+    type = f.createType(statName, statDescription,
+       new StatisticDescriptor[] {
+         f.createLongGauge("maxMemory", "The configured off-heap-memory-size of this member.", "bytes"),
+         f.createLongGauge("freeMemory", "The amount of off-heap memory that is not allocated to a value.", "bytes"),
+         f.createLongGauge("usedMemory", "The amount of off-heap memory that is allocated to values.", "bytes"),
+         f.createLongGauge("objects", "The number of values currently stored off-heap.", "objects"),
+         f.createLongCounter("allocations", "The total number of off-heap allocations.", "operations"),
+         f.createLongCounter("frees", "The total number of off-heap frees.", "operations"),
+         f.createLongCounter("outOfMemory", "The total number of off-heap allocations that failed because no memory was available.", "operations")
+       });
+
+    // Initialize id fields
+    maxMemoryId = type.nameToId("maxMemory");
+    freeMemoryId = type.nameToId("freeMemory");
+    usedMemoryId = type.nameToId("usedMemory");
+    objectsId = type.nameToId("objects");
+    allocationsId = type.nameToId("allocations");
+    freesId = type.nameToId("frees");
+    outOfMemoryId = type.nameToId("outOfMemory");
+  }
+
+  //////////////////////  Instance Fields  //////////////////////
+
+  /** The Statistics object that we delegate most behavior to */
+  private final Statistics stats;
+
+  ///////////////////////  Constructors  ///////////////////////
+
+  public OffHeapMemoryStats(StatisticsFactory f, String name) {
+    this.stats = f.createAtomicStatistics(type, name);
+  }
+
+  /////////////////////  Instance Methods  /////////////////////
+
+  public void close() {
+    this.stats.close();
+  }
+
+  public void setMaxMemory(long v) {
+    this.stats.setLong(maxMemoryId, v);
+    this.stats.setLong(freeMemoryId, v);
+  }
+  public long getMaxMemory() {
+    return this.stats.getLong(maxMemoryId);
+  }
+  public long getFreeMemory() {
+    return this.stats.getLong(freeMemoryId);
+  }
+  public long getUsedMemory() {
+    return this.stats.getLong(usedMemoryId);
+  }
+  public long getObjects() {
+    return this.stats.getLong(objectsId);
+  }
+  public long getAllocations() {
+    return this.stats.getLong(allocationsId);
+  }
+  public long getFrees() {
+    return this.stats.getLong(freesId);
+  }
+  public long getOutOfMemory() {
+    return this.stats.getLong(outOfMemoryId);
+  }
+
+  public void incAllocation(long bytes) {
+    this.stats.incLong(usedMemoryId, bytes);
+    this.stats.incLong(freeMemoryId, -bytes);
+    this.stats.incLong(objectsId, 1);
+    this.stats.incLong(allocationsId, 1);
+  }
+  public void incFree(long bytes) {
+    this.stats.incLong(usedMemoryId, -bytes);
+    this.stats.incLong(freeMemoryId, bytes);
+    this.stats.incLong(objectsId, -1);
+    this.stats.incLong(freesId, 1);
+  }
+  public void incOutOfMemory() {
+    this.stats.incLong(outOfMemoryId, 1);
+  }
+  public Statistics getStats(){
+    return stats;
+  }
+}
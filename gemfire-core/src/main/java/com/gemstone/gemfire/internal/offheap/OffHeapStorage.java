@@ -0,0 +1,79 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import com.gemstone.gemfire.StatisticsFactory;
+
+/**
+ * Creates the off-heap memory of a member from its
+ * {@link com.gemstone.gemfire.distributed.internal.DistributionConfig#OFF_HEAP_MEMORY_SIZE_NAME off-heap-memory-size}.
+ *
+ * @since 8.2
+ */
+public class OffHeapStorage {
+
+  /**
+   * The largest number of bytes of off-heap memory held in a single direct buffer.
+   * No single value larger than this can be stored off-heap.
+   */
+  public static final int MAX_SLAB_SIZE = Integer.getInteger("gemfire.OFF_HEAP_SLAB_SIZE", 1024 * 1024 * 1024);
+
+  private OffHeapStorage() {
+    // no instances
+  }
+
+  /**
+   * Converts an off-heap-memory-size to a number of bytes.
+   * The size is a number optionally followed by one of the units
+   * "k", "m", "g" or "t" (in either case). An empty string means zero.
+   *
+   * @throws IllegalArgumentException if <code>value</code> is not a valid size
+   */
+  public static long parseOffHeapMemorySize(String value) {
+    if (value == null) {
+      return 0;
+    }
+    value = value.trim();
+    if (value.length() == 0) {
+      return 0;
+    }
+    long multiplier = 1;
+    switch (Character.toLowerCase(value.charAt(value.length()-1))) {
+    case 'k': multiplier = 1024L; break;
+    case 'm': multiplier = 1024L * 1024; break;
+    case 'g': multiplier = 1024L * 1024 * 1024; break;
+    case 't': multiplier = 1024L * 1024 * 1024 * 1024; break;
+    default: break;
+    }
+    String number = multiplier == 1 ? value : value.substring(0, value.length()-1);
+    long result;
+    try {
+      result = Long.parseLong(number);
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid off-heap-memory-size " + value, ex);
+    }
+    if (result < 0 || result > Long.MAX_VALUE / multiplier) {
+      throw new IllegalArgumentException("Invalid off-heap-memory-size " + value);
+    }
+    return result * multiplier;
+  }
+
+  /**
+   * Creates the off-heap memory described by <code>offHeapMemorySize</code>.
+   *
+   * @return the allocator of the new memory or null if the size is zero
+   */
+  public static MemoryAllocator createOffHeapStorage(StatisticsFactory sf, String offHeapMemorySize) {
+    long size = parseOffHeapMemorySize(offHeapMemorySize);
+    if (size == 0) {
+      return null;
+    }
+    OffHeapMemoryStats stats = new OffHeapMemoryStats(sf, "offHeapMemoryStats");
+    return new SimpleMemoryAllocatorImpl(stats, size, MAX_SLAB_SIZE);
+  }
+}
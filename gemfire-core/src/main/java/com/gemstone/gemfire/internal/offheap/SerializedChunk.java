@@ -0,0 +1,111 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.gemstone.gemfire.SerializationException;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.internal.cache.BytesAndBitsForCompactor;
+import com.gemstone.gemfire.internal.cache.CachedDeserializable;
+import com.gemstone.gemfire.internal.cache.CachedDeserializableFactory;
+import com.gemstone.gemfire.internal.cache.RegionEntry;
+import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
+import com.gemstone.gemfire.internal.lang.StringUtils;
+import com.gemstone.gemfire.internal.util.BlobHelper;
+
+/**
+ * A chunk that stores the serialized form of an object.
+ * Unlike {@link com.gemstone.gemfire.internal.cache.VMCachedDeserializable}
+ * it never caches the deserialized form; every deserialization reads
+ * straight from off-heap memory and produces a new heap object.
+ *
+ * @since 8.2
+ */
+public final class SerializedChunk extends Chunk implements CachedDeserializable {
+
+  SerializedChunk(MemoryAllocator allocator, ByteBuffer slab, int slabId,
+      int offset, int capacity, int dataSize) {
+    super(allocator, slab, slabId, offset, capacity, dataSize);
+  }
+
+  public boolean isSerialized() {
+    return true;
+  }
+
+  public Object getValueAsHeapObject() {
+    return CachedDeserializableFactory.create(getRawBytes());
+  }
+
+  /**
+   * Deserializes this chunk's data directly from off-heap memory.
+   */
+  public Object deserialize() {
+    retainForRead();
+    try {
+      return BlobHelper.deserializeBuffer(createDataInputStream(), getDataSize());
+    } catch (IOException e) {
+      throw new SerializationException(LocalizedStrings.EntryEventImpl_AN_IOEXCEPTION_WAS_THROWN_WHILE_DESERIALIZING.toLocalizedString(), e);
+    } catch (ClassNotFoundException e) {
+      throw new SerializationException(LocalizedStrings.EntryEventImpl_A_CLASSNOTFOUNDEXCEPTION_WAS_THROWN_WHILE_TRYING_TO_DESERIALIZE_CACHED_VALUE.toLocalizedString(), e);
+    } finally {
+      release();
+    }
+  }
+
+  public Object getDeserializedValue(Region r, RegionEntry re) {
+    return deserialize();
+  }
+
+  public Object getDeserializedForReading() {
+    return deserialize();
+  }
+
+  public Object getDeserializedWritableCopy(Region r, RegionEntry re) {
+    // each deserialization creates a new object so no copy is needed
+    return deserialize();
+  }
+
+  public String getStringForm() {
+    try {
+      return StringUtils.forceToString(getDeserializedForReading());
+    } catch (RuntimeException ex) {
+      return "Could not convert object to string because " + ex;
+    }
+  }
+
+  public byte[] getSerializedValue() {
+    return getRawBytes();
+  }
+
+  /**
+   * Returns a heap copy of the serialized bytes.
+   */
+  public Object getValue() {
+    return getRawBytes();
+  }
+
+  public void writeValueAsByteArray(DataOutput out) throws IOException {
+    sendAsByteArray(out);
+  }
+
+  public void fillSerializedValue(BytesAndBitsForCompactor wrapper, byte userBits) {
+    byte[] bytes = getRawBytes();
+    wrapper.setData(bytes, userBits, bytes.length, false);
+  }
+
+  public int getSizeInBytes() {
+    return MEM_OVERHEAD + getDataSize();
+  }
+
+  public int getValueSizeInBytes() {
+    return getDataSize();
+  }
+}
@@ -0,0 +1,290 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gemstone.gemfire.cache.OutOfOffHeapMemoryException;
+import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
+
+/**
+ * A {@link MemoryAllocator} that carves chunks out of a fixed number of
+ * direct ByteBuffer slabs allocated when the cache is created.
+ * <p>
+ * Chunk sizes are rounded up to a multiple of {@link #TINY_MULTIPLE}.
+ * Freed chunks are kept in a free list per size and are reused by the next
+ * allocation of the same size. Sizes up to {@link #MAX_TINY} have a
+ * preallocated free list; larger sizes are rounded up to a multiple of
+ * {@link #HUGE_MULTIPLE} so that there are few enough distinct sizes to keep
+ * in a sorted map. Memory that has never been allocated is handed out by
+ * bumping an offset in the current slab. Only when both are exhausted is a
+ * larger free chunk used, and if there is none an
+ * {@link OutOfOffHeapMemoryException} is thrown; chunks are never moved so
+ * the allocator does no compaction.
+ *
+ * @since 8.2
+ */
+public final class SimpleMemoryAllocatorImpl implements MemoryAllocator {
+
+  /** Every chunk's capacity is a multiple of this. */
+  public static final int TINY_MULTIPLE = 16;
+  /** The largest size that has its own preallocated free list. */
+  public static final int MAX_TINY = 64 * 1024;
+  /** Chunks larger than {@link #MAX_TINY} are rounded up to a multiple of this. */
+  public static final int HUGE_MULTIPLE = 4 * 1024;
+
+  private final OffHeapMemoryStats stats;
+  private final long totalMemory;
+  private final AtomicLong usedMemory = new AtomicLong();
+  private volatile boolean closed;
+
+  private volatile ByteBuffer[] slabs;
+  /** Free lists for sizes up to MAX_TINY indexed by size/TINY_MULTIPLE */
+  private final FreeList[] tinyFreeLists = new FreeList[MAX_TINY/TINY_MULTIPLE + 1];
+  /** Free lists for sizes greater than MAX_TINY keyed by size */
+  private final ConcurrentSkipListMap<Integer, FreeList> hugeFreeLists = new ConcurrentSkipListMap<Integer, FreeList>();
+
+  /** The slab that bump allocation is currently taking memory from. Guarded by this. */
+  private int currentSlab;
+  /** The offset of the first never allocated byte of currentSlab. Guarded by this. */
+  private int currentOffset;
+
+  /**
+   * Creates an allocator that owns <code>totalMemory</code> bytes of
+   * off-heap memory divided into slabs of at most <code>slabSize</code> bytes.
+   */
+  public SimpleMemoryAllocatorImpl(OffHeapMemoryStats stats, long totalMemory, int slabSize) {
+    if (slabSize < TINY_MULTIPLE) {
+      throw new IllegalArgumentException("slabSize must be at least " + TINY_MULTIPLE + " but was " + slabSize);
+    }
+    slabSize = slabSize - (slabSize % TINY_MULTIPLE);
+    totalMemory = totalMemory - (totalMemory % TINY_MULTIPLE);
+    if (totalMemory <= 0) {
+      throw new IllegalArgumentException("totalMemory must be at least " + TINY_MULTIPLE);
+    }
+    long slabCount = (totalMemory + slabSize - 1) / slabSize;
+    if (slabCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("too many slabs: " + slabCount);
+    }
+    ByteBuffer[] newSlabs = new ByteBuffer[(int)slabCount];
+    long remaining = totalMemory;
+    for (int i=0; i < newSlabs.length; i++) {
+      int size = (int)Math.min(slabSize, remaining);
+      newSlabs[i] = ByteBuffer.allocateDirect(size);
+      remaining -= size;
+    }
+    for (int i=1; i < this.tinyFreeLists.length; i++) {
+      this.tinyFreeLists[i] = new FreeList();
+    }
+    this.slabs = newSlabs;
+    this.totalMemory = totalMemory;
+    this.stats = stats;
+    this.stats.setMaxMemory(totalMemory);
+  }
+
+  /**
+   * Returns the number of slabs the memory of this allocator is divided into.
+   */
+  public int getSlabCount() {
+    ByteBuffer[] s = this.slabs;
+    return s == null ? 0 : s.length;
+  }
+
+  public Chunk allocateAndInitialize(byte[] bytes, boolean isSerialized) {
+    Chunk result = allocate(bytes.length, isSerialized);
+    result.initialize(bytes);
+    return result;
+  }
+
+  /**
+   * Returns the capacity of a chunk that can hold <code>size</code> bytes.
+   */
+  static int roundUp(int size) {
+    if (size <= MAX_TINY) {
+      if (size == 0) {
+        return TINY_MULTIPLE;
+      }
+      return (size + TINY_MULTIPLE - 1) & ~(TINY_MULTIPLE - 1);
+    } else {
+      return (size + HUGE_MULTIPLE - 1) & ~(HUGE_MULTIPLE - 1);
+    }
+  }
+
+  private Chunk allocate(int size, boolean isSerialized) {
+    ByteBuffer[] s = this.slabs;
+    if (this.closed || s == null) {
+      throw new OutOfOffHeapMemoryException(LocalizedStrings.SimpleMemoryAllocatorImpl_OFF_HEAP_MEMORY_HAS_BEEN_CLOSED.toLocalizedString());
+    }
+    final int capacity = roundUp(size);
+    FreeList fl = getFreeList(capacity, false);
+    long addr = fl == null ? -1L : fl.pop();
+    if (addr == -1L) {
+      addr = allocateFromSlab(s, capacity);
+    }
+    int chunkCapacity = capacity;
+    if (addr == -1L) {
+      // use any larger free chunk
+      if (capacity < MAX_TINY) {
+        for (int i=capacity/TINY_MULTIPLE + 1; i < this.tinyFreeLists.length && addr == -1L; i++) {
+          addr = this.tinyFreeLists[i].pop();
+          chunkCapacity = i * TINY_MULTIPLE;
+        }
+      }
+      if (addr == -1L) {
+        for (Map.Entry<Integer, FreeList> e: this.hugeFreeLists.tailMap(capacity, false).entrySet()) {
+          addr = e.getValue().pop();
+          if (addr != -1L) {
+            chunkCapacity = e.getKey();
+            break;
+          }
+        }
+      }
+    }
+    if (addr == -1L) {
+      this.stats.incOutOfMemory();
+      throw new OutOfOffHeapMemoryException(LocalizedStrings.SimpleMemoryAllocatorImpl_OUT_OF_OFF_HEAP_MEMORY_ALLOCATING_0_BYTES.toLocalizedString(new Object[] {size, this.usedMemory.get(), this.totalMemory}));
+    }
+    int slabId = (int)(addr >>> 32);
+    int offset = (int)addr;
+    this.usedMemory.addAndGet(chunkCapacity);
+    this.stats.incAllocation(chunkCapacity);
+    if (isSerialized) {
+      return new SerializedChunk(this, s[slabId], slabId, offset, chunkCapacity, size);
+    } else {
+      return new ByteArrayChunk(this, s[slabId], slabId, offset, chunkCapacity, size);
+    }
+  }
+
+  /**
+   * Takes <code>capacity</code> bytes of never allocated memory.
+   * @return the encoded address of the memory or -1 if there is none left
+   */
+  private synchronized long allocateFromSlab(ByteBuffer[] s, int capacity) {
+    while (this.currentSlab < s.length) {
+      int slabSize = s[this.currentSlab].capacity();
+      int remaining = slabSize - this.currentOffset;
+      if (remaining >= capacity) {
+        long result = encode(this.currentSlab, this.currentOffset);
+        this.currentOffset += capacity;
+        return result;
+      }
+      // the tail of this slab is too small; keep it for smaller allocations
+      if (remaining > 0) {
+        getFreeList(remaining, true).push(encode(this.currentSlab, this.currentOffset));
+      }
+      this.currentSlab++;
+      this.currentOffset = 0;
+    }
+    return -1L;
+  }
+
+  private static long encode(int slabId, int offset) {
+    return (((long)slabId) << 32) | (offset & 0xFFFFFFFFL);
+  }
+
+  private FreeList getFreeList(int capacity, boolean create) {
+    if (capacity <= MAX_TINY) {
+      return this.tinyFreeLists[capacity/TINY_MULTIPLE];
+    }
+    Integer key = Integer.valueOf(capacity);
+    FreeList result = this.hugeFreeLists.get(key);
+    if (result == null && create) {
+      result = new FreeList();
+      FreeList old = this.hugeFreeLists.putIfAbsent(key, result);
+      if (old != null) {
+        result = old;
+      }
+    }
+    return result;
+  }
+
+  public void free(Chunk chunk) {
+    if (chunk.getAllocator() != this) {
+      throw new IllegalArgumentException("chunk " + chunk + " was not allocated by " + this);
+    }
+    if (this.closed) {
+      return;
+    }
+    int capacity = chunk.getCapacity();
+    getFreeList(capacity, true).push(encode(chunk.getSlabId(), chunk.getOffset()));
+    this.usedMemory.addAndGet(-capacity);
+    this.stats.incFree(capacity);
+  }
+
+  public long getTotalMemory() {
+    return this.totalMemory;
+  }
+
+  public long getFreeMemory() {
+    return this.totalMemory - this.usedMemory.get();
+  }
+
+  public long getUsedMemory() {
+    return this.usedMemory.get();
+  }
+
+  public OffHeapMemoryStats getStats() {
+    return this.stats;
+  }
+
+  public boolean isClosed() {
+    return this.closed;
+  }
+
+  public void close() {
+    this.closed = true;
+    // the direct buffers are freed once the chunks that refer to them are collected
+    this.slabs = null;
+    for (int i=1; i < this.tinyFreeLists.length; i++) {
+      this.tinyFreeLists[i].clear();
+    }
+    this.hugeFreeLists.clear();
+    this.stats.close();
+  }
+
+  @Override
+  public String toString() {
+    return "SimpleMemoryAllocatorImpl totalMemory=" + this.totalMemory
+      + " usedMemory=" + this.usedMemory.get() + " slabs=" + getSlabCount();
+  }
+
+  /**
+   * A stack of the encoded addresses of free chunks of one size.
+   */
+  private static final class FreeList {
+    private long[] addrs = new long[4];
+    private int size;
+
+    synchronized void push(long addr) {
+      if (this.size == this.addrs.length) {
+        long[] newAddrs = new long[this.addrs.length * 2];
+        System.arraycopy(this.addrs, 0, newAddrs, 0, this.size);
+        this.addrs = newAddrs;
+      }
+      this.addrs[this.size++] = addr;
+    }
+
+    /**
+     * @return the most recently freed address or -1 if the list is empty
+     */
+    synchronized long pop() {
+      if (this.size == 0) {
+        return -1L;
+      }
+      return this.addrs[--this.size];
+    }
+
+    synchronized void clear() {
+      this.addrs = new long[4];
+      this.size = 0;
+    }
+  }
+}
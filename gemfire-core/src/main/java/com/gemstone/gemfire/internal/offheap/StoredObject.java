@@ -0,0 +1,72 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.gemstone.gemfire.internal.cache.lru.Sizeable;
+
+/**
+ * A region value whose data is stored outside of the java heap.
+ * <p>
+ * The region entry that refers to a stored object owns one reference to it.
+ * Any other reader must call {@link #retain()} before it reads the data and
+ * {@link #release()} once it is done with it. The memory is freed when the
+ * last reference is released so a reader that does not retain a stored object
+ * may see its memory reused for another value.
+ *
+ * @since 8.2
+ */
+public interface StoredObject extends Sizeable {
+
+  /**
+   * Attempts to add a reference to this object.
+   * @return true if a reference was added; false if this object has already
+   *         been freed in which case the caller must not read it.
+   */
+  public boolean retain();
+
+  /**
+   * Removes a reference from this object, freeing its memory if it was the last one.
+   */
+  public void release();
+
+  /**
+   * Returns true if the data is the serialized form of an object;
+   * false if the data is a byte[] value.
+   */
+  public boolean isSerialized();
+
+  /**
+   * Returns the number of bytes of data stored in this object.
+   */
+  public int getDataSize();
+
+  /**
+   * Returns a heap copy of this value in the form it would have had if
+   * it had never been stored off-heap: a CachedDeserializable
+   * if {@link #isSerialized() serialized}; otherwise a byte[].
+   */
+  public Object getValueAsHeapObject();
+
+  /**
+   * Returns a read-only buffer whose remaining bytes are this object's data.
+   * The buffer refers directly to the off-heap memory so the caller must
+   * hold a reference to this object for as long as it uses the buffer.
+   */
+  public ByteBuffer createDirectByteBuffer();
+
+  /**
+   * Writes this object's data to <code>out</code>, in the same format as
+   * {@link com.gemstone.gemfire.DataSerializer#writeByteArray(byte[], DataOutput)},
+   * without first copying it to a heap byte[].
+   */
+  public void sendAsByteArray(DataOutput out) throws IOException;
+}
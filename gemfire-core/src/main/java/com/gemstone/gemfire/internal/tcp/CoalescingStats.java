@@ -0,0 +1,107 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import com.gemstone.gemfire.StatisticDescriptor;
+import com.gemstone.gemfire.Statistics;
+import com.gemstone.gemfire.StatisticsFactory;
+import com.gemstone.gemfire.StatisticsType;
+import com.gemstone.gemfire.StatisticsTypeFactory;
+import com.gemstone.gemfire.distributed.internal.DistributionStats;
+import com.gemstone.gemfire.internal.StatisticsTypeFactoryImpl;
+
+/**
+ * Statistics about the messages coalesced by a shared ordered
+ * {@link Connection} while a write to its socket was in progress.
+ *
+ * @since 8.2
+ */
+public class CoalescingStats {
+
+  private static final StatisticsType type;
+
+  private static final int directWritesId;
+  private static final int coalescedMessagesId;
+  private static final int batchWritesId;
+  private static final int batchBytesId;
+  private static final int maxBatchMessagesId;
+  private static final int bufferFullWaitsId;
+  private static final int bufferFullWaitTimeId;
+
+  static {
+    StatisticsTypeFactory f = StatisticsTypeFactoryImpl.singleton();
+
+    type = f.createType("P2PCoalescingStats",
+        "Statistics about the messages coalesced by a shared ordered peer connection",
+        new StatisticDescriptor[] {
+          f.createLongCounter("directWrites",
+              "Number of messages written as soon as they were sent because no write was in progress", "messages"),
+          f.createLongCounter("coalescedMessages",
+              "Number of messages copied to the coalescing buffer because a write was in progress", "messages"),
+          f.createLongCounter("batchWrites",
+              "Number of writes of the coalescing buffer. coalescedMessages divided by batchWrites is the average number of messages per batch", "operations"),
+          f.createLongCounter("batchBytes",
+              "Number of bytes written by the writes of the coalescing buffer", "bytes"),
+          f.createIntGauge("maxBatchMessages",
+              "Largest number of messages written by a single write of the coalescing buffer", "messages"),
+          f.createLongCounter("bufferFullWaits",
+              "Number of messages that waited for room in the coalescing buffer", "operations"),
+          f.createLongCounter("bufferFullWaitTime",
+              "Total time spent waiting for room in the coalescing buffer", "nanoseconds"),
+        });
+
+    directWritesId = type.nameToId("directWrites");
+    coalescedMessagesId = type.nameToId("coalescedMessages");
+    batchWritesId = type.nameToId("batchWrites");
+    batchBytesId = type.nameToId("batchBytes");
+    maxBatchMessagesId = type.nameToId("maxBatchMessages");
+    bufferFullWaitsId = type.nameToId("bufferFullWaits");
+    bufferFullWaitTimeId = type.nameToId("bufferFullWaitTime");
+  }
+
+  private final Statistics stats;
+
+  public CoalescingStats(StatisticsFactory factory, String name) {
+    this.stats = factory.createAtomicStatistics(type, name);
+  }
+
+  public void incDirectWrites() {
+    this.stats.incLong(directWritesId, 1);
+  }
+
+  public void incCoalescedMessages() {
+    this.stats.incLong(coalescedMessagesId, 1);
+  }
+
+  public void endBatchWrite(int messages, int bytes) {
+    this.stats.incLong(batchWritesId, 1);
+    this.stats.incLong(batchBytesId, bytes);
+    if (messages > this.stats.getInt(maxBatchMessagesId)) {
+      this.stats.setInt(maxBatchMessagesId, messages);
+    }
+  }
+
+  public void endBufferFullWait(long start) {
+    this.stats.incLong(bufferFullWaitsId, 1);
+    if (DistributionStats.enableClockStats) {
+      this.stats.incLong(bufferFullWaitTimeId, DistributionStats.getStatTime() - start);
+    }
+  }
+
+  public long getCoalescedMessages() {
+    return this.stats.getLong(coalescedMessagesId);
+  }
+
+  public long getBatchWrites() {
+    return this.stats.getLong(batchWritesId);
+  }
+
+  public void close() {
+    this.stats.close();
+  }
+}
@@ -98,6 +98,13 @@ public class Connection implements Runnable {
   public final static int DIRECT_ACK_BIT = 0x20;
   //We no longer support early ack
   //public final static int EARLY_ACK_BIT = 0x10;
+  /**
+   * set in the type of a frame whose payload is compressed; only sent to
+   * receivers that accepted compression during the handshake. An unused bit
+   * rather than the retired early ack bit.
+   * @since 8.2
+   */
+  public final static int COMPRESSED_BIT = 0x80;
 
   public static final int MSG_HEADER_SIZE_OFFSET = 0;
   public static final int MSG_HEADER_TYPE_OFFSET = 4;
@@ -122,6 +129,27 @@ public class Connection implements Runnable {
   public final boolean isSharedResource() {
     return this.sharedResource;
   }
+
+  /**
+   * true if the frames sent on this connection may be compressed because
+   * the receiver accepted it during the handshake
+   * @since 8.2
+   */
+  private volatile boolean compressFrames;
+
+  /**
+   * true if this receiver accepted compressed frames during the handshake
+   * @since 8.2
+   */
+  private boolean acceptCompressedFrames;
+
+  /**
+   * Returns true if the frames sent on this connection may be compressed.
+   * @since 8.2
+   */
+  final boolean isCompressingFrames() {
+    return this.compressFrames;
+  }
   
   /** The idle timeout timer task for this connection */
   private SystemTimerTask idleTask;
@@ -399,6 +427,9 @@ public class Connection implements Runnable {
 
   boolean directAck;
 
+  /** whether the payload of the message being read with nio is compressed */
+  boolean nioFrameCompressed;
+
   short nioMsgId;
 
   /** whether the length of the next message has been established */
@@ -682,6 +713,9 @@ public class Connection implements Runnable {
       bb.putInt(cfg.getAsyncMaxQueueSize());
       // write own product version
       Version.writeOrdinal(bb, Version.CURRENT.ordinal(), true);
+      if (this.acceptCompressedFrames) {
+        bb.put(FrameCompression.SNAPPY);
+      }
       // now set the msg length into position 0
       bb.putInt(0, calcHdrSize(bb.position()-MSG_HEADER_BYTES));
       if (useNIO()) {
@@ -881,6 +915,11 @@ public class Connection implements Runnable {
     // write the product version ordinal
     Version.CURRENT.writeOrdinal(connectHandshake, true);
     connectHandshake.writeInt(dominoCount.get()+1);
+    if (FrameCompression.ENABLED) {
+      // ask for compressed frames; receivers that do not know about them
+      // ignore this byte
+      connectHandshake.writeByte(FrameCompression.SNAPPY);
+    }
 // this writes the sending member + thread name that is stored in senderName
 // on the receiver to show the cause of reader thread creation
 //    if (dominoCount.get() > 0) {
@@ -911,6 +950,11 @@ public class Connection implements Runnable {
     os.writeLong(this.uniqueId);
     Version.CURRENT.writeOrdinal(os, true);
     os.writeInt(dominoCount.get()+1);
+    if (FrameCompression.ENABLED) {
+      // ask for compressed frames; receivers that do not know about them
+      // ignore this byte
+      os.writeByte(FrameCompression.SNAPPY);
+    }
  // this writes the sending member + thread name that is stored in senderName
  // on the receiver to show the cause of reader thread creation
 //    if (dominoCount.get() > 0) {
@@ -1181,6 +1225,8 @@ public class Connection implements Runnable {
     }
     if (preserveOrder && BATCH_SENDS) {
       conn.createBatchSendBuffer();
+    } else if (preserveOrder && sharedResource && COALESCE_SENDS) {
+      conn.createCoalesceBuffers();
     }
     conn.finishedConnecting = true;
     return conn;
@@ -1452,6 +1498,72 @@ public class Connection implements Runnable {
     if (this.batchFlusher != null) {
       this.batchFlusher.close();
     }
+    if (this.coalescingStats != null) {
+      this.coalescingStats.close();
+    }
+  }
+
+  /**
+   * If true, a message sent on a shared ordered connection while another
+   * thread is writing to its socket is copied to a buffer instead of waiting
+   * for the socket. Once the write in progress completes, one of the threads
+   * whose message is in the buffer writes all of them at once, and the
+   * threads that sent them return once that write completes or fails. See
+   * {@link SendCoalescer}. Unlike batch
+   * sends, a message sent while no write is in progress is written
+   * immediately and no message waits for a timer.
+   * @since 8.2
+   */
+  private static final boolean COALESCE_SENDS = Boolean.getBoolean("p2p.coalesceSends");
+  protected static final int COALESCE_BUFFER_SIZE = Integer.getInteger("p2p.coalesceBufferSize", 64*1024).intValue();
+  /** Coalesces the messages sent on this connection; null if they are not coalesced */
+  private SendCoalescer coalescer;
+  private CoalescingStats coalescingStats;
+
+  private void createCoalesceBuffers() {
+    // the messages must be written synchronously, in the order they were sent,
+    // so async queuing, which may conflate them, can not be used
+    if (!this.useNIO || this.asyncDistributionTimeout != 0) {
+      return;
+    }
+    ByteBuffer buffer;
+    ByteBuffer writeBuffer;
+    if (TCPConduit.useDirectBuffers) {
+      buffer = ByteBuffer.allocateDirect(COALESCE_BUFFER_SIZE);
+      writeBuffer = ByteBuffer.allocateDirect(COALESCE_BUFFER_SIZE);
+    } else {
+      buffer = ByteBuffer.allocate(COALESCE_BUFFER_SIZE);
+      writeBuffer = ByteBuffer.allocate(COALESCE_BUFFER_SIZE);
+    }
+    final CoalescingStats cstats = new CoalescingStats(this.owner.getDM().getSystem(),
+        String.valueOf(this.remoteAddr));
+    this.coalescingStats = cstats;
+    this.coalescer = new SendCoalescer(buffer, writeBuffer) {
+      @Override
+      protected void write(ByteBuffer bb, DistributionMessage msg) throws IOException {
+        writePreserialized(bb, msg);
+      }
+      @Override
+      protected void checkCancelInProgress() {
+        owner.getConduit().getCancelCriterion().checkCancelInProgress(null);
+      }
+      @Override
+      protected void directWrite() {
+        cstats.incDirectWrites();
+      }
+      @Override
+      protected void messageCoalesced() {
+        cstats.incCoalescedMessages();
+      }
+      @Override
+      protected void batchWritten(int count, int bytes) {
+        cstats.endBatchWrite(count, bytes);
+      }
+      @Override
+      protected void bufferFullWaitEnded(long start) {
+        cstats.endBufferFullWait(start);
+      }
+    };
   }
 
   /** use to test message prep overhead (no socket write).
@@ -2043,13 +2155,17 @@ public class Connection implements Runnable {
           (lenbytes[MSG_HEADER_SIZE_OFFSET+3]&0xff);
         /*byte msgHdrVersion =*/ calcHdrVersion(len);
         len = calcMsgByteSize(len);
-        int msgType = lenbytes[MSG_HEADER_TYPE_OFFSET];
+        int msgType = lenbytes[MSG_HEADER_TYPE_OFFSET] & 0xff;
         short msgId = (short)((lenbytes[MSG_HEADER_ID_OFFSET]&0xff * 0x100)
                               + (lenbytes[MSG_HEADER_ID_OFFSET+1]&0xff));
         boolean myDirectAck = (msgType & DIRECT_ACK_BIT) != 0;
         if (myDirectAck) {
           msgType &= ~DIRECT_ACK_BIT; // clear the bit
         }
+        boolean compressed = (msgType & COMPRESSED_BIT) != 0;
+        if (compressed) {
+          msgType &= ~COMPRESSED_BIT; // clear the bit
+        }
         // Following validation fixes bug 31145
         if (!validMsgType(msgType)) {
           logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_UNKNOWN_P2P_MESSAGE_TYPE_0, Integer.valueOf(msgType)));
@@ -2064,6 +2180,18 @@ public class Connection implements Runnable {
           stopped = true;
           continue;
         }
+        if (compressed) {
+          try {
+            bytes = FrameCompression.decompress(bytes);
+          } catch (RuntimeException e) {
+            // the rest of a chunked message would be lost, so give up on the connection
+            logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_ERROR_DESERIALIZING_MESSAGE), e);
+            this.readerShuttingDown = true;
+            requestClose(LocalizedStrings.Connection_ERROR_DESERIALIZING_MESSAGE.toLocalizedString());
+            break;
+          }
+          len = bytes.length;
+        }
         boolean interrupted = Thread.interrupted();
         try {
           if (this.handshakeRead) {
@@ -2261,6 +2389,8 @@ public class Connection implements Runnable {
                 // read the product version ordinal for on-the-fly serialization
                 // transformations (for rolling upgrades)
                 this.remoteVersion = Version.readVersion(dis, true);
+                this.compressFrames = FrameCompression.ENABLED
+                    && FrameCompression.readReply(dis);
               }
               notifyHandshakeWaiter(true);
             } else {
@@ -2293,6 +2423,7 @@ public class Connection implements Runnable {
                 dominoCount.set(dominoNumber);
 //                this.senderName = dis.readUTF();
               }
+              this.acceptCompressedFrames = FrameCompression.readRequest(dis);
 
               if (!this.sharedResource) {
                 if (tipDomino()) {
@@ -2497,6 +2628,21 @@ public class Connection implements Runnable {
       batchSend(buffer);
       return;
     }
+    if (this.coalescer != null) {
+      if (!SOCKET_WRITE_DISABLED) {
+        this.coalescer.send(buffer, msg);
+      }
+    } else {
+      writePreserialized(buffer, msg);
+    }
+    if (cacheContentChanges) {
+      messagesSent++;
+    }
+  }
+
+  private void writePreserialized(ByteBuffer buffer, DistributionMessage msg)
+    throws IOException, ConnectionException
+  {
     final boolean origSocketInUse = this.socketInUse;
     byte originalState = -1;
     synchronized (stateLock) {
@@ -2526,9 +2672,6 @@ public class Connection implements Runnable {
           }
         }
       }
-      if (cacheContentChanges) {
-        messagesSent++;
-      }
     } finally {
       accessed();
       this.socketInUse = origSocketInUse;
@@ -3469,6 +3612,10 @@ public class Connection implements Runnable {
           if (directAck) {
             nioMessageType &= ~DIRECT_ACK_BIT; // clear the ack bit
           }
+          nioFrameCompressed = (nioMessageType & COMPRESSED_BIT) != 0;
+          if (nioFrameCompressed) {
+            nioMessageType &= ~COMPRESSED_BIT; // clear the compressed bit
+          }
           // Following validation fixes bug 31145
           if (!validMsgType(nioMessageType)) {
             Integer nioMessageTypeInteger = Integer.valueOf(nioMessageType);
@@ -3491,12 +3638,26 @@ public class Connection implements Runnable {
           int startPos = nioInputBuffer.position();
           int oldLimit = nioInputBuffer.limit();
           nioInputBuffer.limit(startPos+nioMessageLength);
+          ByteBuffer frame = nioInputBuffer;
+          int frameLength = nioMessageLength;
+          if (nioFrameCompressed) {
+            try {
+              frame = FrameCompression.decompress(nioInputBuffer, nioMessageLength);
+            } catch (RuntimeException e) {
+              // the rest of a chunked message would be lost, so give up on the connection
+              logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_ERROR_DESERIALIZING_MESSAGE), e);
+              this.readerShuttingDown = true;
+              requestClose(LocalizedStrings.Connection_ERROR_DESERIALIZING_MESSAGE.toLocalizedString());
+              return;
+            }
+            frameLength = frame.remaining();
+          }
           if (this.handshakeRead) {
             if (nioMessageType == NORMAL_MSG_TYPE) {
-              this.owner.getConduit().stats.incMessagesBeingReceived(true, nioMessageLength);
+              this.owner.getConduit().stats.incMessagesBeingReceived(true, frameLength);
               ByteBufferInputStream bbis = remoteVersion == null
-                  ? new ByteBufferInputStream(nioInputBuffer)
-                  : new VersionedByteBufferInputStream(nioInputBuffer,
+                  ? new ByteBufferInputStream(frame)
+                  : new VersionedByteBufferInputStream(frame,
                       remoteVersion);
               DistributionMessage msg = null;
               try {
@@ -3511,7 +3672,7 @@ public class Connection implements Runnable {
                       new Object[] { msg, Integer.valueOf(bbis.available())}));
                 }
                 try {
-                  if (!dispatchMessage(msg, nioMessageLength, directAck)) {
+                  if (!dispatchMessage(msg, frameLength, directAck)) {
                     directAck = false;
                   }
                 }
@@ -3572,9 +3733,9 @@ public class Connection implements Runnable {
             }
             else if (nioMessageType == CHUNKED_MSG_TYPE) {
               MsgDestreamer md = obtainMsgDestreamer(nioMsgId, remoteVersion);
-              this.owner.getConduit().stats.incMessagesBeingReceived(md.size() == 0, nioMessageLength);
+              this.owner.getConduit().stats.incMessagesBeingReceived(md.size() == 0, frameLength);
               try {
-                md.addChunk(nioInputBuffer, nioMessageLength);
+                md.addChunk(frame, frameLength);
               }
               catch (IOException ex) {
                 logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_FAILED_HANDLING_CHUNK_MESSAGE), ex);
@@ -3583,9 +3744,9 @@ public class Connection implements Runnable {
             else /* (nioMessageType == END_CHUNKED_MSG_TYPE) */ {
               //logger.info("END_CHUNK msgId="+nioMsgId);
               MsgDestreamer md = obtainMsgDestreamer(nioMsgId, remoteVersion);
-              this.owner.getConduit().stats.incMessagesBeingReceived(md.size() == 0, nioMessageLength);
+              this.owner.getConduit().stats.incMessagesBeingReceived(md.size() == 0, frameLength);
               try {
-                md.addChunk(nioInputBuffer, nioMessageLength);
+                md.addChunk(frame, frameLength);
               }
               catch (IOException ex) {
                 logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_FAILED_HANDLING_END_CHUNK_MESSAGE), ex);
@@ -3707,6 +3868,8 @@ public class Connection implements Runnable {
                   // read the product version ordinal for on-the-fly serialization
                   // transformations (for rolling upgrades)
                   this.remoteVersion = Version.readVersion(dis, true);
+                  this.compressFrames = FrameCompression.ENABLED
+                      && FrameCompression.readReply(dis);
                 }
               }
               catch (Exception e) {
@@ -3781,6 +3944,7 @@ public class Connection implements Runnable {
                   dominoCount.set(dominoNumber);
 //                  this.senderName = dis.readUTF();
                 }
+                this.acceptCompressedFrames = FrameCompression.readRequest(dis);
                 if (!this.sharedResource) {
                   if (tipDomino()) {
                     logger.info(LocalizedMessage.create(
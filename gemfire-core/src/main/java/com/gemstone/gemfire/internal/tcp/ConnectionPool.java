@@ -0,0 +1,188 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The shared ordered connections to each member that threads owning their
+ * resources send on when {@link ConnectionTable#ORDERED_POOL_SIZE} is set.
+ * Every member gets up to size connections. A thread is mapped to a fixed
+ * slot by its id, so it always sends to a member on the same connection and
+ * the member receives its messages in order. A connection stays in its slot,
+ * and is reused by every thread mapped to the slot, until it is removed or
+ * is no longer usable.
+ *
+ * @param <K> identifies a member
+ * @param <C> a connection
+ * @since 8.2
+ */
+abstract class ConnectionPool<K, C> {
+
+  private final int size;
+
+  /** The key is the member and the value its Slots */
+  private final ConcurrentMap<K, Slots<C>> slotsMap = new ConcurrentHashMap<K, Slots<C>>();
+
+  ConnectionPool(int size) {
+    this.size = size;
+  }
+
+  /**
+   * Creates a connection to the member.
+   */
+  protected abstract C connect(K member, long startTime, long ackTimeout,
+      long ackSATimeout) throws IOException;
+
+  /**
+   * Returns false if the connection is closed or timed out.
+   */
+  protected abstract boolean isUsable(C c);
+
+  /**
+   * Closes a connection that was removed from the pool.
+   */
+  protected abstract void close(String reason, C c);
+
+  /**
+   * Throws an exception if the pool must not create connections anymore.
+   */
+  protected void checkCancelInProgress() {
+  }
+
+  /** Returns the slot that the thread with the given id uses */
+  final int slotOf(long threadId) {
+    return (int)(threadId % this.size);
+  }
+
+  /**
+   * Returns the connection to the member in the slot of the current thread,
+   * creating it if the slot is empty or its connection is not usable.
+   *
+   * @param startTime the ms clock start time for the operation
+   * @param ackTimeout the ms ack-wait-threshold, or zero
+   * @param ackSATimeout the ms ack-severe-alert-threshold, or zero
+   * @throws IOException if the connection could not be created
+   */
+  final C get(K member, long startTime, long ackTimeout, long ackSATimeout)
+      throws IOException {
+    int slot = slotOf(Thread.currentThread().getId());
+    for (;;) {
+      checkCancelInProgress();
+      Slots<C> slots = this.slotsMap.get(member);
+      if (slots == null) {
+        slots = new Slots<C>(this.size);
+        Slots<C> old = this.slotsMap.putIfAbsent(member, slots);
+        if (old != null) {
+          slots = old;
+        }
+      }
+      synchronized (slots.locks[slot]) {
+        if (slots.closed) {
+          // the member was removed while we were looking; try new slots
+          this.slotsMap.remove(member, slots);
+          continue;
+        }
+        C result = slots.connections[slot];
+        if (result != null && isUsable(result)) {
+          return result;
+        }
+        result = connect(member, startTime, ackTimeout, ackSATimeout);
+        slots.connections[slot] = result;
+        return result;
+      }
+    }
+  }
+
+  /** Returns true if the pool has slots for the member */
+  final boolean contains(K member) {
+    return this.slotsMap.containsKey(member);
+  }
+
+  /**
+   * Removes the connection from its slot, if it is still there, and closes
+   * it. Called when the connection goes idle or is closed.
+   */
+  final void remove(K member, C c, String reason) {
+    Slots<C> slots = this.slotsMap.get(member);
+    if (slots == null) {
+      return;
+    }
+    for (int i=0; i < slots.connections.length; i++) {
+      boolean removed = false;
+      synchronized (slots.locks[i]) {
+        if (slots.connections[i] == c) {
+          slots.connections[i] = null;
+          removed = true;
+        }
+      }
+      if (removed) {
+        close(reason, c);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Removes and closes all connections to the member. Called when the member
+   * leaves.
+   */
+  final void removeMember(K member, String reason) {
+    Slots<C> slots = this.slotsMap.remove(member);
+    if (slots != null) {
+      closeSlots(reason, slots);
+    }
+  }
+
+  /**
+   * Removes and closes all connections.
+   */
+  final void close(String reason) {
+    for (Iterator<Slots<C>> it=this.slotsMap.values().iterator(); it.hasNext(); ) {
+      closeSlots(reason, it.next());
+      it.remove();
+    }
+  }
+
+  private void closeSlots(String reason, Slots<C> slots) {
+    slots.closed = true;
+    for (int i=0; i < slots.connections.length; i++) {
+      C c;
+      synchronized (slots.locks[i]) {
+        c = slots.connections[i];
+        slots.connections[i] = null;
+      }
+      if (c != null) {
+        close(reason, c);
+      }
+    }
+  }
+
+  /**
+   * The connections to one member. Each slot has its own lock so that
+   * connecting one slot does not hold up the threads sending on the others.
+   */
+  private static class Slots<C> {
+    final C[] connections;
+    final Object[] locks;
+    /** set once the member has been removed */
+    volatile boolean closed;
+
+    @SuppressWarnings("unchecked")
+    Slots(int size) {
+      this.connections = (C[])new Object[size];
+      this.locks = new Object[size];
+      for (int i=0; i < size; i++) {
+        this.locks[i] = new Object();
+      }
+    }
+  }
+}
@@ -67,6 +67,17 @@ public class ConnectionTable  {
    * true if the current thread wants non-shared resources
    */
   private static ThreadLocal threadWantsOwnResources = new ThreadLocal();
+
+  /**
+   * When greater than zero, threads that own their resources send ordered
+   * messages to a member on one of this many shared connections instead of
+   * on a connection of their own. A thread always uses the same one of them
+   * so the messages it sends to a member are still received in order.
+   * 
+   * @since 8.2
+   */
+  static final int ORDERED_POOL_SIZE = Integer.getInteger("p2p.orderedConnectionPoolSize", 0).intValue();
+
   /**
    * Used for messages whose order must be preserved
    * Only connections used for sending messages,
@@ -102,6 +113,43 @@ public class ConnectionTable  {
    * with the same key.
    */
   private ConcurrentMap threadConnectionMap;
+
+  /**
+   * Used for the ordered messages of threads that own their resources when
+   * {@link #ORDERED_POOL_SIZE} is set.
+   */
+  private final ConnectionPool<Stub, Connection> orderedPool =
+      new ConnectionPool<Stub, Connection>(ORDERED_POOL_SIZE) {
+    @Override
+    protected Connection connect(Stub id, long startTime, long ackTimeout, long ackSATimeout)
+        throws IOException {
+      Connection result = Connection.createSender(owner.getMembershipManager(),
+          ConnectionTable.this, true /* preserveOrder */, id,
+          owner.getMemberForStub(id, false), true /* shared */,
+          startTime, ackTimeout, ackSATimeout);
+      if (logger.isDebugEnabled()) {
+        logger.debug("ConnectionTable: created a pooled ordered connection: {}", result);
+      }
+      owner.stats.incSenders(true /*shared*/, true /* preserveOrder */);
+      scheduleIdleTimeout(result);
+      return result;
+    }
+    @Override
+    protected boolean isUsable(Connection c) {
+      return c.connected && !c.timedOut;
+    }
+    @Override
+    protected void close(String reason, Connection c) {
+      closeCon(reason, c);
+    }
+    @Override
+    protected void checkCancelInProgress() {
+      if (closed) {
+        owner.getCancelCriterion().checkCancelInProgress(null);
+        throw new DistributedSystemDisconnectedException(LocalizedStrings.ConnectionTable_CONNECTION_TABLE_IS_CLOSED.toLocalizedString());
+      }
+    }
+  };
   
   /**
    * Used for all non-ordered messages.
@@ -547,6 +595,27 @@ public class ConnectionTable  {
     return result;
   }
   
+  /**
+   * Must be looking for an ordered connection for a thread that owns its
+   * resources when {@link #ORDERED_POOL_SIZE} is set. The connection is
+   * shared with the other threads that map to the same slot of the pool,
+   * so replies to the messages sent on it come back on the shared
+   * connections of the other member and its reader hands the messages off
+   * to the executors of the distribution manager.
+   * 
+   * @param id stub on which to create the connection
+   * @param startTime the ms clock start time for the operation
+   * @param ackTimeout the ms ack-wait-threshold, or zero
+   * @param ackSATimeout the ms ack-severe-alert-threshold, or zero
+   * @return the connection
+   * @throws IOException if the connection could not be created
+   * @throws DistributedSystemDisconnectedException
+   */
+  private Connection getOrderedAndPooled(Stub id, long startTime, long ackTimeout, long ackSATimeout)
+      throws IOException, DistributedSystemDisconnectedException {
+    return this.orderedPool.get(id, startTime, ackTimeout, ackSATimeout);
+  }
+
   /** schedule an idle-connection timeout task */
   private void scheduleIdleTimeout(Connection conn) {
     if (conn == null) {
@@ -610,6 +679,8 @@ public class ConnectionTable  {
     boolean threadOwnsResources = threadOwnsResources();
     if (!preserveOrder || !threadOwnsResources) {
       result = getUnorderedOrConserveSockets(id, threadOwnsResources, preserveOrder, startTime, ackTimeout, ackSATimeout);
+    } else if (ORDERED_POOL_SIZE > 0) {
+      result = getOrderedAndPooled(id, startTime, ackTimeout, ackSATimeout);
     } else {
       result = getOrderedAndOwned(id, startTime, ackTimeout, ackSATimeout);
     }
@@ -690,6 +761,7 @@ public class ConnectionTable  {
       }
       this.unorderedConnectionMap.clear();
     }
+    this.orderedPool.close(LocalizedStrings.ConnectionTable_CONNECTION_TABLE_BEING_DESTROYED.toLocalizedString());
     if (this.threadConnectionMap != null) {
       this.threadConnectionMap = null;
     }
@@ -785,6 +857,9 @@ public class ConnectionTable  {
           needsRemoval = true;
       }
     }
+    if (!needsRemoval) {
+      needsRemoval = this.orderedPool.contains(stub);
+    }
     if (!needsRemoval) {
       ConcurrentMap cm = this.threadConnectionMap;
       if (cm != null) {
@@ -800,6 +875,7 @@ public class ConnectionTable  {
       synchronized (this.unorderedConnectionMap) {
          closeCon(reason, this.unorderedConnectionMap.remove(stub));
       }
+      this.orderedPool.removeMember(stub, reason);
 
       {
         ConcurrentMap cm = this.threadConnectionMap;
@@ -912,6 +988,7 @@ public class ConnectionTable  {
           closeCon(reason, this.orderedConnectionMap.remove(stub));
         }
       }
+      this.orderedPool.remove(stub, c, reason);
     } else {
       synchronized (this.unorderedConnectionMap) {
         if (this.unorderedConnectionMap.get(stub) == c) {
@@ -0,0 +1,162 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.compression.Compressor;
+import com.gemstone.gemfire.compression.SnappyCompressor;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * Compresses the frames sent on a {@link Connection} whose receiver agreed
+ * to it during the handshake, and decompresses the frames it receives.
+ *
+ * The sender of a connection asks for compression by appending
+ * {@link #SNAPPY} to its handshake when the <code>p2p.compressFrames</code>
+ * system property is set, and the receiver accepts by appending it to its
+ * reply. Members that do not know about compression ignore the extra byte
+ * so they keep exchanging uncompressed frames.
+ *
+ * Only the payload of a frame is compressed. The header of a compressed frame
+ * is the header of the original frame with {@link Connection#COMPRESSED_BIT}
+ * set in its type and the length of the compressed payload.
+ *
+ * Only peer connections compress. A client-server {@link
+ * com.gemstone.gemfire.internal.cache.tier.sockets.Message} is not framed:
+ * its parts are written to the socket one at a time, large ones straight from
+ * their own buffers, so compressing it would take a new part encoding in the
+ * messages and chunked messages of both sides, negotiated in the client
+ * handshake.
+ *
+ * @since 8.2
+ */
+class FrameCompression {
+
+  private static final Logger logger = LogService.getLogger();
+
+  /** the compression that may be negotiated during a handshake */
+  static final byte SNAPPY = 1;
+
+  /** true if connections ask their receiver for compressed frames */
+  static final boolean ENABLED = Boolean.getBoolean("p2p.compressFrames")
+      && isAvailable();
+
+  /**
+   * frames whose payload is smaller than this many bytes are sent
+   * uncompressed
+   */
+  static final int THRESHOLD = Integer.getInteger("p2p.compressionThreshold", 1024).intValue();
+
+  /**
+   * Holds the compressor, or null if it could not be loaded. Loading it
+   * loads the native Snappy library, so it is only done by members that
+   * compress their frames or are asked to receive compressed frames.
+   */
+  private static class CompressorHolder {
+    static final Compressor compressor = createCompressor();
+  }
+
+  private static Compressor createCompressor() {
+    try {
+      return SnappyCompressor.getDefaultInstance();
+    } catch (IllegalStateException e) {
+      if (Boolean.getBoolean("p2p.compressFrames")) {
+        logger.warn("Peer connections will not compress their messages: {}", e.getMessage());
+      }
+      return null;
+    } catch (LinkageError e) {
+      if (Boolean.getBoolean("p2p.compressFrames")) {
+        logger.warn("Peer connections will not compress their messages: {}", e.toString());
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if compressed frames can be received.
+   */
+  static boolean isAvailable() {
+    return CompressorHolder.compressor != null;
+  }
+
+  /**
+   * Reads the byte a connecting member appends to its handshake to ask for
+   * compressed frames. Members that do not know about compression append
+   * nothing.
+   *
+   * @return true if the member asked for compressed frames and they can be
+   *         decompressed here
+   */
+  static boolean readRequest(InputStream in) throws IOException {
+    return in.available() > 0 && in.read() == SNAPPY && isAvailable();
+  }
+
+  /**
+   * Reads the byte a receiver appends to its handshake reply to accept
+   * compressed frames. Receivers that do not know about compression, or did
+   * not accept it, append nothing.
+   *
+   * @return true if the receiver accepted compressed frames
+   */
+  static boolean readReply(InputStream in) throws IOException {
+    return in.available() > 0 && in.read() == SNAPPY;
+  }
+
+  /**
+   * Returns a compressed copy of the given frame, or null if its payload is
+   * smaller than the threshold or does not compress. The position of the
+   * given frame must be at its header and is left unchanged.
+   */
+  static ByteBuffer compress(ByteBuffer frame) {
+    final int start = frame.position();
+    final int length = frame.limit() - start - Connection.MSG_HEADER_BYTES;
+    if (length < THRESHOLD) {
+      return null;
+    }
+    byte[] payload = new byte[length];
+    frame.position(start + Connection.MSG_HEADER_BYTES);
+    frame.get(payload);
+    frame.position(start);
+    byte[] compressed = CompressorHolder.compressor.compress(payload);
+    if (compressed.length >= length) {
+      return null;
+    }
+    ByteBuffer result = ByteBuffer.allocate(Connection.MSG_HEADER_BYTES + compressed.length);
+    result.putInt(Connection.MSG_HEADER_SIZE_OFFSET, Connection.calcHdrSize(compressed.length));
+    result.put(Connection.MSG_HEADER_TYPE_OFFSET,
+        (byte)(frame.get(start + Connection.MSG_HEADER_TYPE_OFFSET) | Connection.COMPRESSED_BIT));
+    result.putShort(Connection.MSG_HEADER_ID_OFFSET, frame.getShort(start + Connection.MSG_HEADER_ID_OFFSET));
+    result.position(Connection.MSG_HEADER_BYTES);
+    result.put(compressed);
+    result.flip();
+    return result;
+  }
+
+  /**
+   * Returns the decompressed payload of a frame.
+   */
+  static byte[] decompress(byte[] payload) {
+    return CompressorHolder.compressor.decompress(payload);
+  }
+
+  /**
+   * Returns the decompressed payload of a frame that is in the next
+   * <code>length</code> bytes of the given buffer. The position of the
+   * buffer is moved past the payload.
+   */
+  static ByteBuffer decompress(ByteBuffer buffer, int length) {
+    byte[] payload = new byte[length];
+    buffer.get(payload);
+    return ByteBuffer.wrap(CompressorHolder.compressor.decompress(payload));
+  }
+}
@@ -312,10 +312,24 @@ public class MsgStreamer extends OutputStream implements
       conflationMsg = this.msg;
     }
     this.stats.endMsgSerialization(this.serStartTime);
+    // the frame is compressed at most once, for the first connection whose
+    // receiver accepts compressed frames
+    ByteBuffer compressedFrame = null;
+    boolean compressionTried = false;
     for (Iterator it=this.cons.iterator(); it.hasNext();) {
       Connection con = (Connection)it.next();
+      ByteBuffer frame = this.buffer;
+      if (con.isCompressingFrames()) {
+        if (!compressionTried) {
+          compressionTried = true;
+          compressedFrame = FrameCompression.compress(this.buffer);
+        }
+        if (compressedFrame != null) {
+          frame = compressedFrame;
+        }
+      }
       try {
-        con.sendPreserialized(this.buffer, lastFlushForMessage && this.msg.containsRegionContentChange(),
+        con.sendPreserialized(frame, lastFlushForMessage && this.msg.containsRegionContentChange(),
             conflationMsg);
       } catch (IOException ex) {
         it.remove();
@@ -329,6 +343,9 @@ public class MsgStreamer extends OutputStream implements
         con.closeForReconnect(LocalizedStrings.MsgStreamer_CLOSING_DUE_TO_0.toLocalizedString("ConnectionException"));
       }
       this.buffer.rewind();
+      if (compressedFrame != null) {
+        compressedFrame.rewind();
+      }
     }
     startSerialization();
     this.buffer.clear();
@@ -0,0 +1,256 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.gemstone.gemfire.distributed.internal.DistributionMessage;
+import com.gemstone.gemfire.distributed.internal.DistributionStats;
+
+/**
+ * Coalesces the messages sent on a connection while a write to its socket is
+ * in progress. The first thread to send while no write is in progress
+ * becomes the writer and writes its own message. The messages that other
+ * threads copy to the coalesce buffer meanwhile form a batch. Once its write
+ * completes the writer hands the batch over to one of the threads whose
+ * message is in it and returns, so that every thread returns as soon as its
+ * own message is written, however busy the connection stays. That thread
+ * writes the batch, hands the next one over, and so on until the buffer is
+ * empty.
+ *
+ * A thread whose message was coalesced waits until its batch is written. If
+ * a write fails, every thread whose message was in the failed batch or is
+ * still in the buffer gets the exception it threw; the threads whose
+ * messages were already written do not. A message that does not fit in the
+ * buffer waits for the writing to finish and is then written by its own
+ * thread.
+ *
+ * @since 8.2
+ */
+abstract class SendCoalescer {
+
+  /**
+   * The messages coalesced into one write
+   */
+  private static final class Batch {
+    /** The number of messages in the batch. Guarded by lock. */
+    int count;
+    /**
+     * True once the batch is in the write buffer, waiting for one of its
+     * senders to write it. Guarded by lock.
+     */
+    boolean ready;
+    /** True once one of its senders is writing the batch. Guarded by lock. */
+    boolean claimed;
+    /** True once the batch was written or failed. Guarded by lock. */
+    boolean done;
+    /** The exception the write of the batch failed with. Guarded by lock. */
+    Throwable failure;
+  }
+
+  private final Object lock = new Object();
+
+  /** The messages sent while a write is in progress. Guarded by lock. */
+  private ByteBuffer buffer;
+
+  /**
+   * The buffer holding the batch that is being written. Only the sender that
+   * claimed the batch uses it.
+   */
+  private ByteBuffer writeBuffer;
+
+  /** The batch of the messages in buffer. Guarded by lock. */
+  private Batch pending = new Batch();
+
+  /**
+   * True while a thread is writing or a batch waits to be claimed. Guarded by
+   * lock.
+   */
+  private boolean writerActive;
+
+  /**
+   * @param buffer
+   *          the buffer to coalesce messages in
+   * @param writeBuffer
+   *          an empty buffer of the same size, which messages are coalesced
+   *          in while the other one is written
+   */
+  SendCoalescer(ByteBuffer buffer, ByteBuffer writeBuffer) {
+    this.buffer = buffer;
+    this.writeBuffer = writeBuffer;
+  }
+
+  /**
+   * Writes the remaining bytes of the buffer to the socket.
+   *
+   * @param msg
+   *          the message in the buffer, or null for a batch of coalesced
+   *          messages
+   */
+  protected abstract void write(ByteBuffer bb, DistributionMessage msg)
+      throws IOException;
+
+  /**
+   * Throws an exception if the connection is being closed. Called before a
+   * sender waits for room in the buffer.
+   */
+  protected void checkCancelInProgress() {
+  }
+
+  /** Called when the writer has written its own message */
+  protected void directWrite() {
+  }
+
+  /** Called when a message was copied to the coalesce buffer */
+  protected void messageCoalesced() {
+  }
+
+  /** Called when a batch of coalesced messages was written */
+  protected void batchWritten(int count, int bytes) {
+  }
+
+  /** Called when a sender stops waiting for room in the coalesce buffer */
+  protected void bufferFullWaitEnded(long start) {
+  }
+
+  /**
+   * Sends the message, coalescing it with the other messages sent while a
+   * write is in progress, and returns once it was written.
+   *
+   * @throws IOException
+   *           or a runtime exception, if the write of the message failed
+   */
+  final void send(ByteBuffer src, DistributionMessage msg) throws IOException {
+    // the batch this thread writes, or null to write its own message
+    Batch batch = null;
+    synchronized (this.lock) {
+      long waitStart = 0;
+      while (this.writerActive) {
+        if (src.remaining() <= this.buffer.remaining()) {
+          this.buffer.put(src);
+          this.pending.count++;
+          batch = this.pending;
+          messageCoalesced();
+          if (waitStart != 0) {
+            bufferFullWaitEnded(waitStart);
+            waitStart = 0;
+          }
+          while (!batch.done && (!batch.ready || batch.claimed)) {
+            await();
+          }
+          if (batch.done) {
+            if (batch.failure != null) {
+              rethrow(batch.failure);
+            }
+            return;
+          }
+          // the batch was handed over; this thread writes it
+          batch.claimed = true;
+          break;
+        }
+        // a message bigger than the room left waits for the writing to
+        // finish and is then written by this thread
+        if (waitStart == 0) {
+          waitStart = DistributionStats.getStatTime();
+        }
+        checkCancelInProgress();
+        await();
+      }
+      if (waitStart != 0) {
+        bufferFullWaitEnded(waitStart);
+      }
+      this.writerActive = true;
+    }
+    boolean written = false;
+    Throwable failure = null;
+    try {
+      if (batch == null) {
+        write(src, msg);
+        directWrite();
+      } else {
+        ByteBuffer bb = this.writeBuffer;
+        bb.flip();
+        final int bytes = bb.remaining();
+        try {
+          write(bb, null);
+        } finally {
+          bb.clear();
+        }
+        batchWritten(batch.count, bytes);
+      }
+      written = true;
+    } catch (IOException e) {
+      failure = e;
+      throw e;
+    } catch (RuntimeException e) {
+      failure = e;
+      throw e;
+    } catch (Error e) {
+      failure = e;
+      throw e;
+    } finally {
+      synchronized (this.lock) {
+        if (batch != null) {
+          batch.failure = written ? null : failure;
+          batch.done = true;
+        }
+        if (!written) {
+          // the connection will be closed; fail the coalesced messages
+          // rather than write them after later ones
+          this.pending.failure = failure;
+          this.pending.done = true;
+          this.pending = new Batch();
+          this.buffer.clear();
+          this.writerActive = false;
+        } else if (this.buffer.position() == 0) {
+          // must be done while holding the lock so that no message is
+          // coalesced after the last write
+          this.writerActive = false;
+        } else {
+          // hand the next batch over to one of its senders
+          ByteBuffer bb = this.buffer;
+          this.buffer = this.writeBuffer;
+          this.writeBuffer = bb;
+          this.pending.ready = true;
+          this.pending = new Batch();
+        }
+        this.lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Waits for the writer to make progress. Must be called while holding the
+   * lock.
+   */
+  private void await() {
+    boolean interrupted = Thread.interrupted();
+    try {
+      this.lock.wait(); // spurious wakeup ok
+    }
+    catch (InterruptedException ex) {
+      interrupted = true;
+    }
+    finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static void rethrow(Throwable failure) throws IOException {
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    throw (Error) failure;
+  }
+}
@@ -8,6 +8,7 @@
 
 package com.gemstone.gemfire.internal.util;
 
+import java.io.DataInput;
 import java.io.IOException;
 
 import com.gemstone.gemfire.DataSerializer;
@@ -131,6 +132,20 @@ public class BlobHelper {
     return result;
   }
 
+  /**
+   * Deserializes an object from <code>in</code> whose serialized form is
+   * <code>numBytes</code> long. Used to deserialize values stored off-heap
+   * without first copying them to a heap byte[].
+   * @since 8.2
+   */
+  public static Object deserializeBuffer(DataInput in, int numBytes)
+      throws IOException, ClassNotFoundException {
+    final long start = startDeserialization();
+    Object result = DataSerializer.readObject(in);
+    endDeserialization(start, numBytes);
+    return result;
+  }
+
   private static long startSerialization() {
     long result = 0;
     DMStats stats = InternalDistributedSystem.getDMStats();
@@ -0,0 +1,29 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.util.concurrent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A {@link ConcurrentMap} that can also iterate over its mappings without
+ * creating an entry object per mapping. This is what a region map needs
+ * from the map that holds its region entries.
+ *
+ * @since 8.2
+ */
+public interface ConcurrentMapWithReusableEntries<K, V> extends ConcurrentMap<K, V> {
+
+  /**
+   * Returns a view of the mappings of this map, like {@link #entrySet()},
+   * whose iterator returns the same <code>Map.Entry</code> instance for
+   * every mapping. Callers must not hold on to the returned entries.
+   */
+  public Set<Map.Entry<K, V>> entrySetWithReusableEntries();
+}
@@ -53,7 +53,6 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.gemstone.gemfire.internal.cache.RegionEntry;
@@ -122,7 +121,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  *          the type of mapped values
  */
 public class CustomEntryConcurrentHashMap<K, V> extends AbstractMap<K, V> implements
-    ConcurrentMap<K, V>, Serializable {
+    ConcurrentMapWithReusableEntries<K, V>, Serializable {
 
   private static final long serialVersionUID = -7056732555635108300L;
 
@@ -0,0 +1,794 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.util.concurrent;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent map whose keys are all {@link Long}s or all {@link Integer}s.
+ * The keys are stored as primitive longs in open-addressed tables, next to
+ * an array with the values, so a mapping needs no hash table node and a
+ * lookup compares primitives instead of calling <code>equals</code> on key
+ * objects.
+ * <p>
+ * Like {@link CustomEntryConcurrentHashMap} the map is divided into
+ * stripes, each with its own table and lock. Writers lock the stripe of
+ * the key; readers do not lock. A key keeps its slot until the table is
+ * rebuilt, so removing a mapping only marks its value as removed, and the
+ * removed slots are dropped the next time the table grows or is rebuilt.
+ * <p>
+ * Null keys and values are not supported. Using a key of the other type
+ * throws a {@link ClassCastException}, or finds no mapping for lookups.
+ * Iterators are weakly consistent, as in {@link CustomEntryConcurrentHashMap}.
+ *
+ * @param <V> the type of mapped values
+ *
+ * @since 8.2
+ */
+public class PrimitiveKeyConcurrentHashMap<V> extends AbstractMap<Object, V>
+    implements ConcurrentMapWithReusableEntries<Object, V> {
+
+  /**
+   * The maximum number of stripes
+   */
+  static final int MAX_STRIPES = 1 << 16;
+
+  /**
+   * The maximum capacity of the table of one stripe
+   */
+  static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  /**
+   * The minimum capacity of the table of one stripe
+   */
+  static final int MINIMUM_CAPACITY = 4;
+
+  /**
+   * The highest fraction of a table that may be in use. An open-addressed
+   * table can not hold more mappings than it has slots, so greater load
+   * factors, which are valid for chained hash maps, are reduced to this.
+   */
+  static final float MAXIMUM_LOAD_FACTOR = 0.9f;
+
+  /**
+   * Marks the value of a slot whose mapping was removed. The key stays in
+   * the slot so that lookups of the keys stored after it keep probing.
+   */
+  static final Object REMOVED = new Object();
+
+  /**
+   * True if the keys are Integers, false if they are Longs
+   */
+  private final boolean intKeys;
+
+  private final Stripe[] stripes;
+
+  private final int stripeShift;
+
+  private final int stripeMask;
+
+  private final int initialStripeCapacity;
+
+  private Set<Object> keySet;
+
+  private Collection<V> values;
+
+  private Set<Map.Entry<Object, V>> entrySet;
+
+  private Set<Map.Entry<Object, V>> reusableEntrySet;
+
+  /**
+   * Returns true if this map can hold keys of the given type.
+   */
+  public static boolean isSupportedKeyType(Class<?> keyType) {
+    return keyType == Long.class || keyType == Integer.class;
+  }
+
+  /**
+   * Creates a new, empty map.
+   *
+   * @param keyType
+   *          {@link Long} or {@link Integer}
+   * @param initialCapacity
+   *          the number of mappings the map can hold before it grows
+   * @param loadFactor
+   *          the fraction of a table that may be in use before it grows;
+   *          values above {@link #MAXIMUM_LOAD_FACTOR} are reduced to it
+   * @param concurrencyLevel
+   *          the estimated number of concurrently updating threads
+   * @throws IllegalArgumentException
+   *           if the key type is not supported or a size parameter is out
+   *           of range
+   */
+  public PrimitiveKeyConcurrentHashMap(Class<?> keyType, int initialCapacity,
+      float loadFactor, int concurrencyLevel) {
+    if (!isSupportedKeyType(keyType)) {
+      throw new IllegalArgumentException("Unsupported key type " + keyType);
+    }
+    if (!(loadFactor > 0) || initialCapacity < 0 || concurrencyLevel <= 0) {
+      throw new IllegalArgumentException();
+    }
+    if (loadFactor > MAXIMUM_LOAD_FACTOR) {
+      loadFactor = MAXIMUM_LOAD_FACTOR;
+    }
+    this.intKeys = keyType == Integer.class;
+    if (concurrencyLevel > MAX_STRIPES) {
+      concurrencyLevel = MAX_STRIPES;
+    }
+    // the stripe is picked with the high bits of the hash and the slot
+    // with the low bits, as in CustomEntryConcurrentHashMap
+    int shift = 0;
+    int numStripes = 1;
+    while (numStripes < concurrencyLevel) {
+      ++shift;
+      numStripes <<= 1;
+    }
+    this.stripeShift = 32 - shift;
+    this.stripeMask = numStripes - 1;
+    int perStripe = initialCapacity / numStripes;
+    if (perStripe * numStripes < initialCapacity) {
+      ++perStripe;
+    }
+    this.initialStripeCapacity = capacityFor(perStripe, loadFactor);
+    this.stripes = new Stripe[numStripes];
+    for (int i = 0; i < numStripes; i++) {
+      this.stripes[i] = new Stripe(this.initialStripeCapacity, loadFactor);
+    }
+  }
+
+  /**
+   * Returns the table capacity needed to hold the given number of mappings.
+   */
+  static int capacityFor(int size, float loadFactor) {
+    long needed = (long)Math.ceil((size + 1) / (double)loadFactor);
+    int cap = MINIMUM_CAPACITY;
+    while (cap < needed && cap < MAXIMUM_CAPACITY) {
+      cap <<= 1;
+    }
+    return cap;
+  }
+
+  /**
+   * Spreads the bits of a key over the whole int; the stripe is taken
+   * from the high bits and the first slot from the low bits.
+   */
+  static int hash(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int)key;
+  }
+
+  private boolean isKey(Object key) {
+    return this.intKeys ? key instanceof Integer : key instanceof Long;
+  }
+
+  private long toPrimitive(Object key) {
+    if (this.intKeys) {
+      return ((Integer)key).intValue();
+    }
+    return ((Long)key).longValue();
+  }
+
+  private Object toKey(long key) {
+    if (this.intKeys) {
+      return Integer.valueOf((int)key);
+    }
+    return Long.valueOf(key);
+  }
+
+  private long checkKey(Object key) {
+    if (key == null) {
+      throw new NullPointerException();
+    }
+    if (!isKey(key)) {
+      throw new ClassCastException("Key " + key + " of " + key.getClass()
+          + " is not a " + (this.intKeys ? Integer.class : Long.class));
+    }
+    return toPrimitive(key);
+  }
+
+  private static void checkValue(Object value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+  }
+
+  private Stripe stripeFor(int hash) {
+    return this.stripes[(hash >>> this.stripeShift) & this.stripeMask];
+  }
+
+  @Override
+  public final int size() {
+    long sum = 0;
+    for (Stripe s : this.stripes) {
+      sum += s.count;
+    }
+    return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int)sum;
+  }
+
+  @Override
+  public final boolean isEmpty() {
+    for (Stripe s : this.stripes) {
+      if (s.count != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public final V get(Object key) {
+    if (!isKey(key)) {
+      return null;
+    }
+    long k = toPrimitive(key);
+    int hash = hash(k);
+    return (V)stripeFor(hash).get(k, hash);
+  }
+
+  @Override
+  public final boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public final boolean containsValue(Object value) {
+    checkValue(value);
+    for (V v : values()) {
+      if (value.equals(v)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public final V put(Object key, V value) {
+    long k = checkKey(key);
+    checkValue(value);
+    int hash = hash(k);
+    return (V)stripeFor(hash).put(k, hash, value, false);
+  }
+
+  @SuppressWarnings("unchecked")
+  public final V putIfAbsent(Object key, V value) {
+    long k = checkKey(key);
+    checkValue(value);
+    int hash = hash(k);
+    return (V)stripeFor(hash).put(k, hash, value, true);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public final V remove(Object key) {
+    if (!isKey(key)) {
+      return null;
+    }
+    long k = toPrimitive(key);
+    int hash = hash(k);
+    return (V)stripeFor(hash).replace(k, hash, null, null);
+  }
+
+  public final boolean remove(Object key, Object value) {
+    if (!isKey(key) || value == null) {
+      return false;
+    }
+    long k = toPrimitive(key);
+    int hash = hash(k);
+    return stripeFor(hash).replace(k, hash, value, null) != null;
+  }
+
+  public final boolean replace(Object key, V oldValue, V newValue) {
+    checkValue(oldValue);
+    checkValue(newValue);
+    if (!isKey(key)) {
+      return false;
+    }
+    long k = toPrimitive(key);
+    int hash = hash(k);
+    return stripeFor(hash).replace(k, hash, oldValue, newValue) != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  public final V replace(Object key, V value) {
+    checkValue(value);
+    if (!isKey(key)) {
+      return null;
+    }
+    long k = toPrimitive(key);
+    int hash = hash(k);
+    return (V)stripeFor(hash).replace(k, hash, null, value);
+  }
+
+  @Override
+  public final void clear() {
+    for (Stripe s : this.stripes) {
+      s.clear(this.initialStripeCapacity);
+    }
+  }
+
+  @Override
+  public final Set<Object> keySet() {
+    Set<Object> ks = this.keySet;
+    return (ks != null) ? ks : (this.keySet = new KeySet());
+  }
+
+  @Override
+  public final Collection<V> values() {
+    Collection<V> vs = this.values;
+    return (vs != null) ? vs : (this.values = new Values());
+  }
+
+  @Override
+  public final Set<Map.Entry<Object, V>> entrySet() {
+    Set<Map.Entry<Object, V>> es = this.entrySet;
+    return (es != null) ? es : (this.entrySet = new EntrySet(false));
+  }
+
+  public final Set<Map.Entry<Object, V>> entrySetWithReusableEntries() {
+    Set<Map.Entry<Object, V>> es = this.reusableEntrySet;
+    return (es != null) ? es : (this.reusableEntrySet = new EntrySet(true));
+  }
+
+  /**
+   * The keys and values of one stripe. Keys are written before their
+   * value is published with a volatile write, and a slot never changes
+   * its key, so a reader that sees a value also sees its key.
+   */
+  static final class Table {
+    final long[] keys;
+
+    final AtomicReferenceArray<Object> values;
+
+    final int mask;
+
+    Table(int capacity) {
+      this.keys = new long[capacity];
+      this.values = new AtomicReferenceArray<Object>(capacity);
+      this.mask = capacity - 1;
+    }
+  }
+
+  /**
+   * One independently locked part of the map.
+   */
+  static final class Stripe extends ReentrantLock {
+
+    private static final long serialVersionUID = 3916402516063588374L;
+
+    private final float loadFactor;
+
+    volatile Table table;
+
+    /**
+     * number of mappings in this stripe
+     */
+    volatile int count;
+
+    /**
+     * number of slots in use, including removed mappings. Guarded by this.
+     */
+    private int used;
+
+    /**
+     * the number of used slots at which the table is rebuilt. Guarded by
+     * this.
+     */
+    private int threshold;
+
+    Stripe(int capacity, float loadFactor) {
+      this.loadFactor = loadFactor;
+      setTable(new Table(capacity));
+    }
+
+    private void setTable(Table t) {
+      this.threshold = Math.min((int)(t.keys.length * this.loadFactor),
+          t.keys.length - 1);
+      this.table = t;
+    }
+
+    Object get(long key, int hash) {
+      final Table t = this.table;
+      final long[] keys = t.keys;
+      final AtomicReferenceArray<Object> values = t.values;
+      int i = hash & t.mask;
+      for (;;) {
+        Object v = values.get(i);
+        if (v == null) {
+          return null;
+        }
+        if (keys[i] == key) {
+          return v == REMOVED ? null : v;
+        }
+        i = (i + 1) & t.mask;
+      }
+    }
+
+    Object put(long key, int hash, Object value, boolean onlyIfAbsent) {
+      lock();
+      try {
+        for (;;) {
+          final Table t = this.table;
+          int i = hash & t.mask;
+          Object v;
+          while ((v = t.values.get(i)) != null) {
+            if (t.keys[i] == key) {
+              if (v == REMOVED) {
+                t.values.set(i, value);
+                this.count++;
+                return null;
+              }
+              if (!onlyIfAbsent) {
+                t.values.set(i, value);
+              }
+              return v;
+            }
+            i = (i + 1) & t.mask;
+          }
+          if (this.used >= this.threshold) {
+            rebuild();
+            continue;
+          }
+          t.keys[i] = key;
+          t.values.set(i, value);
+          this.used++;
+          this.count++;
+          return null;
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Replaces the value of the given key with newValue, or removes the
+     * mapping if newValue is null. If expected is not null the mapping is
+     * only changed if its value equals expected.
+     *
+     * @return the previous value, or null if the mapping was not changed
+     */
+    Object replace(long key, int hash, Object expected, Object newValue) {
+      lock();
+      try {
+        final Table t = this.table;
+        int i = hash & t.mask;
+        Object v;
+        while ((v = t.values.get(i)) != null) {
+          if (t.keys[i] == key) {
+            if (v == REMOVED || (expected != null && !expected.equals(v))) {
+              return null;
+            }
+            if (newValue == null) {
+              t.values.set(i, REMOVED);
+              this.count--;
+            }
+            else {
+              t.values.set(i, newValue);
+            }
+            return v;
+          }
+          i = (i + 1) & t.mask;
+        }
+        return null;
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Copies the current mappings into a new table, which is twice as
+     * large unless most of the used slots hold removed mappings.
+     * Readers keep using the old table until the new one is published.
+     */
+    private void rebuild() {
+      final Table old = this.table;
+      int capacity = old.keys.length;
+      if (this.count >= this.threshold / 2) {
+        if (capacity >= MAXIMUM_CAPACITY) {
+          if (this.count >= capacity - 1) {
+            throw new IllegalStateException("Map stripe is full");
+          }
+        }
+        else {
+          capacity <<= 1;
+        }
+      }
+      final Table t = new Table(capacity);
+      int n = 0;
+      for (int j = 0; j < old.keys.length; j++) {
+        Object v = old.values.get(j);
+        if (v != null && v != REMOVED) {
+          long key = old.keys[j];
+          int i = hash(key) & t.mask;
+          while (t.values.get(i) != null) {
+            i = (i + 1) & t.mask;
+          }
+          t.keys[i] = key;
+          t.values.lazySet(i, v);
+          n++;
+        }
+      }
+      this.used = n;
+      setTable(t);
+    }
+
+    void clear(int capacity) {
+      lock();
+      try {
+        this.used = 0;
+        this.count = 0;
+        setTable(new Table(capacity));
+      } finally {
+        unlock();
+      }
+    }
+  }
+
+  /**
+   * Walks the stripes and returns the slots that hold a mapping.
+   */
+  abstract class HashIterator {
+    private int nextStripe;
+
+    private Table table;
+
+    private int nextSlot;
+
+    private long nextKey;
+
+    private Object nextValue;
+
+    private Object lastKey;
+
+    /**
+     * the value of the mapping last returned
+     */
+    Object lastValue;
+
+    HashIterator() {
+      this.nextStripe = 0;
+      this.nextSlot = -1;
+      advance();
+    }
+
+    private void advance() {
+      for (;;) {
+        if (this.table != null) {
+          while (++this.nextSlot < this.table.keys.length) {
+            Object v = this.table.values.get(this.nextSlot);
+            if (v != null && v != REMOVED) {
+              this.nextKey = this.table.keys[this.nextSlot];
+              this.nextValue = v;
+              return;
+            }
+          }
+        }
+        if (this.nextStripe >= stripes.length) {
+          this.table = null;
+          this.nextValue = null;
+          return;
+        }
+        this.table = stripes[this.nextStripe++].table;
+        this.nextSlot = -1;
+      }
+    }
+
+    public final boolean hasNext() {
+      return this.nextValue != null;
+    }
+
+    /**
+     * Moves to the next mapping, whose key and value are then available
+     * from {@link #lastKey()} and {@link #lastValue}.
+     */
+    final void nextMapping() {
+      if (this.nextValue == null) {
+        throw new NoSuchElementException();
+      }
+      this.lastValue = this.nextValue;
+      this.lastKey = toKey(this.nextKey);
+      advance();
+    }
+
+    final Object lastKey() {
+      return this.lastKey;
+    }
+
+    public final void remove() {
+      if (this.lastKey == null) {
+        throw new IllegalStateException();
+      }
+      PrimitiveKeyConcurrentHashMap.this.remove(this.lastKey);
+      this.lastKey = null;
+    }
+  }
+
+  final class KeyIterator extends HashIterator implements Iterator<Object> {
+    public Object next() {
+      nextMapping();
+      return lastKey();
+    }
+  }
+
+  final class ValueIterator extends HashIterator implements Iterator<V> {
+    @SuppressWarnings("unchecked")
+    public V next() {
+      nextMapping();
+      return (V)this.lastValue;
+    }
+  }
+
+  final class EntryIterator extends HashIterator implements
+      Iterator<Map.Entry<Object, V>> {
+    private final WriteThroughEntry reusableEntry;
+
+    EntryIterator(boolean useReusableEntry) {
+      this.reusableEntry = useReusableEntry ? new WriteThroughEntry() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Map.Entry<Object, V> next() {
+      nextMapping();
+      WriteThroughEntry e = this.reusableEntry != null ? this.reusableEntry
+          : new WriteThroughEntry();
+      e.key = lastKey();
+      e.value = (V)this.lastValue;
+      return e;
+    }
+  }
+
+  /**
+   * An entry returned by the entry iterators; setting its value writes
+   * through to the map.
+   */
+  final class WriteThroughEntry implements Map.Entry<Object, V> {
+    Object key;
+
+    V value;
+
+    public Object getKey() {
+      return this.key;
+    }
+
+    public V getValue() {
+      return this.value;
+    }
+
+    public V setValue(V value) {
+      checkValue(value);
+      V v = this.value;
+      this.value = value;
+      put(this.key, value);
+      return v;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      return this.key.equals(e.getKey()) && this.value.equals(e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return this.key.hashCode() ^ this.value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return this.key + "=" + this.value;
+    }
+  }
+
+  final class KeySet extends AbstractSet<Object> {
+    @Override
+    public Iterator<Object> iterator() {
+      return new KeyIterator();
+    }
+
+    @Override
+    public int size() {
+      return PrimitiveKeyConcurrentHashMap.this.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return containsKey(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return PrimitiveKeyConcurrentHashMap.this.remove(o) != null;
+    }
+
+    @Override
+    public void clear() {
+      PrimitiveKeyConcurrentHashMap.this.clear();
+    }
+  }
+
+  final class Values extends AbstractCollection<V> {
+    @Override
+    public Iterator<V> iterator() {
+      return new ValueIterator();
+    }
+
+    @Override
+    public int size() {
+      return PrimitiveKeyConcurrentHashMap.this.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return containsValue(o);
+    }
+
+    @Override
+    public void clear() {
+      PrimitiveKeyConcurrentHashMap.this.clear();
+    }
+  }
+
+  final class EntrySet extends AbstractSet<Map.Entry<Object, V>> {
+    private final boolean useReusableEntry;
+
+    EntrySet(boolean useReusableEntry) {
+      this.useReusableEntry = useReusableEntry;
+    }
+
+    @Override
+    public Iterator<Map.Entry<Object, V>> iterator() {
+      return new EntryIterator(this.useReusableEntry);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      V v = get(e.getKey());
+      return v != null && v.equals(e.getValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      if (!(o instanceof Map.Entry)) {
+        return false;
+      }
+      Map.Entry<?, ?> e = (Map.Entry<?, ?>)o;
+      return PrimitiveKeyConcurrentHashMap.this.remove(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public int size() {
+      return PrimitiveKeyConcurrentHashMap.this.size();
+    }
+
+    @Override
+    public void clear() {
+      PrimitiveKeyConcurrentHashMap.this.clear();
+    }
+  }
+}
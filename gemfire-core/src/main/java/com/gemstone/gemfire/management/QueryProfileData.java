@@ -0,0 +1,143 @@
+/*
+ *  =========================================================================
+ *  Copyright (c) 2002-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * more patents listed at http://www.pivotal.io/patents.
+ *  ========================================================================
+ */
+package com.gemstone.gemfire.management;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Composite data type used to distribute where the time of the profiled
+ * executions of a query on a member went. All times are in nanoseconds.
+ *
+ * The iteration time includes the time spent evaluating the where clause and
+ * deserializing the iterated values.
+ *
+ * @since 8.2
+ */
+public class QueryProfileData {
+
+  private String queryString;
+
+  private long executions;
+
+  private long totalTime;
+
+  private long maxTime;
+
+  private long indexLookupTime;
+
+  private long iterationTime;
+
+  private long filterTime;
+
+  private long deserializationTime;
+
+  private long resultTransferTime;
+
+  private long mergeTime;
+
+  @ConstructorProperties( { "queryString", "executions", "totalTime",
+      "maxTime", "indexLookupTime", "iterationTime", "filterTime",
+      "deserializationTime", "resultTransferTime", "mergeTime" })
+  public QueryProfileData(String queryString, long executions, long totalTime,
+      long maxTime, long indexLookupTime, long iterationTime, long filterTime,
+      long deserializationTime, long resultTransferTime, long mergeTime) {
+    this.queryString = queryString;
+    this.executions = executions;
+    this.totalTime = totalTime;
+    this.maxTime = maxTime;
+    this.indexLookupTime = indexLookupTime;
+    this.iterationTime = iterationTime;
+    this.filterTime = filterTime;
+    this.deserializationTime = deserializationTime;
+    this.resultTransferTime = resultTransferTime;
+    this.mergeTime = mergeTime;
+  }
+
+  /**
+   * Returns the query string.
+   */
+  public String getQueryString() {
+    return queryString;
+  }
+
+  /**
+   * Returns the number of profiled executions of the query.
+   */
+  public long getExecutions() {
+    return executions;
+  }
+
+  /**
+   * Returns the total time of the profiled executions.
+   */
+  public long getTotalTime() {
+    return totalTime;
+  }
+
+  /**
+   * Returns the time of the slowest profiled execution.
+   */
+  public long getMaxTime() {
+    return maxTime;
+  }
+
+  /**
+   * Returns the time spent looking up indexes.
+   */
+  public long getIndexLookupTime() {
+    return indexLookupTime;
+  }
+
+  /**
+   * Returns the time spent iterating over collections.
+   */
+  public long getIterationTime() {
+    return iterationTime;
+  }
+
+  /**
+   * Returns the time spent evaluating the where clause on candidate values.
+   */
+  public long getFilterTime() {
+    return filterTime;
+  }
+
+  /**
+   * Returns the time spent deserializing values.
+   */
+  public long getDeserializationTime() {
+    return deserializationTime;
+  }
+
+  /**
+   * Returns the time spent sending results to the member or client that
+   * executed the query.
+   */
+  public long getResultTransferTime() {
+    return resultTransferTime;
+  }
+
+  /**
+   * Returns the time spent merging the results received from other members.
+   */
+  public long getMergeTime() {
+    return mergeTime;
+  }
+
+  @Override
+  public String toString() {
+    return "QueryProfileData [queryString=" + queryString + ", executions="
+        + executions + ", totalTime=" + totalTime + ", maxTime=" + maxTime
+        + ", indexLookupTime=" + indexLookupTime + ", iterationTime="
+        + iterationTime + ", filterTime=" + filterTime
+        + ", deserializationTime=" + deserializationTime
+        + ", resultTransferTime=" + resultTransferTime + ", mergeTime="
+        + mergeTime + "]";
+  }
+}
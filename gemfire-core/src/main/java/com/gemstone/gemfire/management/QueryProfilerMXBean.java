@@ -0,0 +1,65 @@
+/*
+ *  =========================================================================
+ *  Copyright (c) 2002-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * more patents listed at http://www.pivotal.io/patents.
+ *  ========================================================================
+ */
+package com.gemstone.gemfire.management;
+
+/**
+ * MBean that provides access to the profiles of the queries executed by a
+ * member: where the time of each query went between index lookups, iteration,
+ * where clause evaluation, deserialization, sending results and merging the
+ * results of other members.
+ *
+ * Profiling is off unless the member was started with the
+ * <tt>gemfire.Query.PROFILE</tt> system property or it is started with
+ * {@link #startProfiling()}.
+ *
+ * @since 8.2
+ */
+public interface QueryProfilerMXBean {
+
+  /**
+   * Returns whether the queries executed by this member are profiled.
+   */
+  public boolean isProfilingEnabled();
+
+  /**
+   * Starts profiling the queries executed by this member.
+   */
+  public void startProfiling();
+
+  /**
+   * Stops profiling the queries executed by this member. The profiles
+   * recorded so far are kept.
+   */
+  public void stopProfiling();
+
+  /**
+   * Removes the profiles recorded so far.
+   */
+  public void resetProfiles();
+
+  /**
+   * Returns the number of query executions profiled on this member.
+   */
+  public long getProfiledQueries();
+
+  /**
+   * Returns the total time, in nanoseconds, of the query executions profiled
+   * on this member.
+   */
+  public long getProfiledQueryTime();
+
+  /**
+   * Returns the profiles of the queries with the highest total time.
+   *
+   * @param count
+   *          Maximum number of profiles to return.
+   */
+  public QueryProfileData[] listQueryProfiles(int count);
+
+}
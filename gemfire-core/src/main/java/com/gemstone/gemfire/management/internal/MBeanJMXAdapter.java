@@ -567,6 +567,10 @@ public class MBeanJMXAdapter implements ManagementConstants {
     return getObjectName((MessageFormat.format(OBJECTNAME__LOCATOR_MXBEAN, new Object[] { makeCompliantName(member) })));
   }
 
+  public static ObjectName getQueryProfilerMBeanName(DistributedMember member) {
+    return getObjectName((MessageFormat.format(OBJECTNAME__QUERYPROFILER_MXBEAN, new Object[] { getMemberNameOrId(member) })));
+  }
+
   public Map<ObjectName, Object> getLocalGemFireMBean() {
     return this.localGemFireMBean;
   }
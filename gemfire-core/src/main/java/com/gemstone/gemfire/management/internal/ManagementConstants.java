@@ -113,6 +113,8 @@ public interface ManagementConstants {
   public static final String OBJECTNAME__DISKSTORE_MXBEAN              = OBJECTNAME__PREFIX + "service=DiskStore,name={0},type=Member,member={1}";
   
   public static final String OBJECTNAME__LOCATOR_MXBEAN                = OBJECTNAME__PREFIX + "service=Locator,type=Member,member={0}";
+
+  public static final String OBJECTNAME__QUERYPROFILER_MXBEAN          = OBJECTNAME__PREFIX + "service=QueryProfiler,type=Member,member={0}";
   
   public static final String AGGREGATE_MBEAN_PATTERN                   = OBJECTNAME__PREFIX + "*,type=Distributed";
   // Object Name keys 
@@ -60,6 +60,7 @@ import com.gemstone.gemfire.management.ManagementException;
 import com.gemstone.gemfire.management.ManagementService;
 import com.gemstone.gemfire.management.ManagerMXBean;
 import com.gemstone.gemfire.management.MemberMXBean;
+import com.gemstone.gemfire.management.QueryProfilerMXBean;
 import com.gemstone.gemfire.management.RegionMXBean;
 import com.gemstone.gemfire.management.internal.AlertDetails;
 import com.gemstone.gemfire.management.internal.FederationComponent;
@@ -166,6 +167,15 @@ public class ManagementAdapter {
       ObjectName changedMBeanName = service.registerInternalMBean(
           (MemberMXBean) memberBean, memberMBeanName);
       service.federate(changedMBeanName, MemberMXBean.class, true);
+
+      QueryProfilerMXBean queryProfilerBean = new QueryProfilerMBean(
+          new QueryProfilerMBeanBridge(cacheImpl.getQueryProfiler()));
+      ObjectName queryProfilerMBeanName = MBeanJMXAdapter
+          .getQueryProfilerMBeanName(cacheImpl.getDistributedSystem()
+              .getDistributedMember());
+      changedMBeanName = service.registerInternalMBean(queryProfilerBean,
+          queryProfilerMBeanName);
+      service.federate(changedMBeanName, QueryProfilerMXBean.class, true);
      
       
       
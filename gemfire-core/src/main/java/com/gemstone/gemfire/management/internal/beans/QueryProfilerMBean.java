@@ -0,0 +1,64 @@
+/*
+ *  =========================================================================
+ *  Copyright (c) 2002-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * more patents listed at http://www.pivotal.io/patents.
+ *  ========================================================================
+ */
+package com.gemstone.gemfire.management.internal.beans;
+
+import javax.management.NotificationBroadcasterSupport;
+
+import com.gemstone.gemfire.management.QueryProfileData;
+import com.gemstone.gemfire.management.QueryProfilerMXBean;
+
+/**
+ * Management API to access the query profiles of a member
+ * 
+ * @since 8.2
+ */
+public class QueryProfilerMBean extends NotificationBroadcasterSupport
+    implements QueryProfilerMXBean {
+
+  private QueryProfilerMBeanBridge bridge;
+
+  public QueryProfilerMBean(QueryProfilerMBeanBridge bridge) {
+    this.bridge = bridge;
+  }
+
+  @Override
+  public boolean isProfilingEnabled() {
+    return bridge.isProfilingEnabled();
+  }
+
+  @Override
+  public void startProfiling() {
+    bridge.startProfiling();
+  }
+
+  @Override
+  public void stopProfiling() {
+    bridge.stopProfiling();
+  }
+
+  @Override
+  public void resetProfiles() {
+    bridge.resetProfiles();
+  }
+
+  @Override
+  public long getProfiledQueries() {
+    return bridge.getProfiledQueries();
+  }
+
+  @Override
+  public long getProfiledQueryTime() {
+    return bridge.getProfiledQueryTime();
+  }
+
+  @Override
+  public QueryProfileData[] listQueryProfiles(int count) {
+    return bridge.listQueryProfiles(count);
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ *  =========================================================================
+ *  Copyright (c) 2002-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * more patents listed at http://www.pivotal.io/patents.
+ *  ========================================================================
+ */
+package com.gemstone.gemfire.management.internal.beans;
+
+import java.util.List;
+
+import com.gemstone.gemfire.cache.query.internal.QueryProfiler;
+import com.gemstone.gemfire.management.QueryProfileData;
+
+/**
+ * This class acts as a Bridge between JMX layer and the query profiler of a
+ * member
+ * 
+ * @since 8.2
+ */
+public class QueryProfilerMBeanBridge {
+
+  private QueryProfiler profiler;
+
+  public QueryProfilerMBeanBridge(QueryProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  /** Operations **/
+  public void startProfiling() {
+    QueryProfiler.setEnabled(true);
+  }
+
+  public void stopProfiling() {
+    QueryProfiler.setEnabled(false);
+  }
+
+  public void resetProfiles() {
+    profiler.clear();
+  }
+
+  public QueryProfileData[] listQueryProfiles(int count) {
+    List<QueryProfiler.Profile> profiles = profiler.getProfiles();
+    int size = Math.max(0, Math.min(count, profiles.size()));
+    QueryProfileData[] result = new QueryProfileData[size];
+    for (int i = 0; i < size; i++) {
+      QueryProfiler.Profile profile = profiles.get(i);
+      result[i] = new QueryProfileData(profile.getQueryString(),
+          profile.getExecutions(), profile.getTotalTime(),
+          profile.getMaxTime(),
+          profile.getPhaseTime(QueryProfiler.INDEX_LOOKUP),
+          profile.getPhaseTime(QueryProfiler.ITERATION),
+          profile.getPhaseTime(QueryProfiler.FILTER),
+          profile.getPhaseTime(QueryProfiler.DESERIALIZATION),
+          profile.getPhaseTime(QueryProfiler.RESULT_TRANSFER),
+          profile.getPhaseTime(QueryProfiler.MERGE));
+    }
+    return result;
+  }
+
+  /** Statistics **/
+  public boolean isProfilingEnabled() {
+    return QueryProfiler.isEnabled();
+  }
+
+  public long getProfiledQueries() {
+    return profiler.getStats().getProfiledQueries();
+  }
+
+  public long getProfiledQueryTime() {
+    return profiler.getStats().getProfiledQueryTime();
+  }
+}
@@ -15,6 +15,7 @@ import java.net.Socket;
 import java.net.UnknownHostException;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -30,6 +31,7 @@ import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
 import com.gemstone.gemfire.internal.SocketCreator;
 import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
 import com.gemstone.gemfire.internal.memcached.ConnectionHandler;
+import com.gemstone.gemfire.internal.memcached.SelectorHandler;
 
 /**
  * This is the Server that listens for incoming memcached client connections.
@@ -43,6 +45,17 @@ import com.gemstone.gemfire.internal.memcached.ConnectionHandler;
  * "gemcached" region is {@link RegionShortcut#PARTITION} by default,
  * though a cache.xml can be provided to override region attributes.
  * 
+ * By default one thread is dedicated to each client connection. When
+ * selector threads are configured, either with the
+ * {@link #GemFireMemcachedServer(String, int, Protocol, int)} constructor
+ * or with the "gemfire.memcached.selectorThreads" system property, the
+ * client connections are instead shared by that many threads, each using
+ * non-blocking I/O. In this mode requests pipelined by a client are
+ * decoded from a single read and their replies are sent with a single write.
+ * A client that sends a request longer than the
+ * "gemfire.memcached.maxRequestLength" system property, 16 MB by default, or
+ * a negative length is sent an error and disconnected.
+ * 
  * This class has a Main method that can be used to
  * start the server.
  * 
@@ -83,6 +96,25 @@ public class GemFireMemcachedServer {
   
   private final int DEFAULT_PORT = 11212;
 
+  /**
+   * The default number of selector threads; 0 means one thread per client
+   */
+  private static final int DEFAULT_SELECTOR_THREADS = Integer.getInteger("gemfire.memcached.selectorThreads", 0);
+
+  /**
+   * the number of threads sharing the client connections using non-blocking
+   * I/O, or 0 to dedicate a thread to each client
+   */
+  private final int selectorThreads;
+
+  /**
+   * the handlers that client connections are assigned to when
+   * {@link #selectorThreads} is greater than zero
+   */
+  private SelectorHandler[] selectorHandlers;
+
+  private int nextSelectorHandler;
+
   /**
    * the thread executor pool to handle requests from clients.
    * We create one thread for each client.
@@ -128,6 +160,7 @@ public class GemFireMemcachedServer {
       this.serverPort = port;
     }
     this.protocol = Protocol.ASCII;
+    this.selectorThreads = DEFAULT_SELECTOR_THREADS;
   }
 
   /**
@@ -142,6 +175,24 @@ public class GemFireMemcachedServer {
    * @see Protocol
    */
   public GemFireMemcachedServer(String bindAddress, int port, Protocol protocol) {
+    this(bindAddress, port, protocol, DEFAULT_SELECTOR_THREADS);
+  }
+
+  /**
+   * Create an instance of the server. to start
+   * the server {@link #start()} must be called.
+   * 
+   * @param bindAddress the address on which the server listens
+   *        for new memcached client connections.
+   * @param port the port on which the server listens
+   *        for new memcached client connections.
+   * @param protocol the protocol that this server should understand
+   * @param selectorThreads the number of threads that share all the
+   *        client connections using non-blocking I/O; 0 dedicates
+   *        a thread to each client connection
+   * @see Protocol
+   */
+  public GemFireMemcachedServer(String bindAddress, int port, Protocol protocol, int selectorThreads) {
     this.bindAddress = bindAddress;
     if (port <= 0 ) {
       this.serverPort = DEFAULT_PORT;
@@ -149,6 +200,10 @@ public class GemFireMemcachedServer {
       this.serverPort = port;
     }
     this.protocol = protocol;
+    if (selectorThreads < 0) {
+      throw new IllegalArgumentException("selectorThreads must not be negative: "+selectorThreads);
+    }
+    this.selectorThreads = selectorThreads;
   }
 
   /**
@@ -184,6 +239,7 @@ public class GemFireMemcachedServer {
     if (logger.fineEnabled()) {
       logger.fine("GemFireMemcachedServer configured socket buffer size:"+getSocketBufferSize());
     }
+    startSelectorHandlers();
     final CountDownLatch latch = new CountDownLatch(1);
     acceptor = new Thread(new Runnable() {
       public void run() {
@@ -225,7 +281,36 @@ public class GemFireMemcachedServer {
     return system.getConfig().getSocketBufferSize();
   }
 
+  private void startSelectorHandlers() throws IOException {
+    if (this.selectorThreads == 0) {
+      return;
+    }
+    this.selectorHandlers = new SelectorHandler[this.selectorThreads];
+    for (int i=0; i<this.selectorThreads; i++) {
+      this.selectorHandlers[i] = new SelectorHandler(cache, protocol);
+      executor.execute(this.selectorHandlers[i]);
+    }
+  }
+
   private void handleNewClient(Socket s) {
+    if (this.selectorHandlers != null) {
+      SocketChannel channel = s.getChannel();
+      try {
+        channel.configureBlocking(false);
+      } catch (IOException e) {
+        logger.info("Could not accept memcached client connection", e);
+        try {
+          channel.close();
+        } catch (IOException e1) {
+        }
+        return;
+      }
+      // only the acceptor thread assigns connections
+      SelectorHandler handler = this.selectorHandlers[this.nextSelectorHandler];
+      this.nextSelectorHandler = (this.nextSelectorHandler + 1) % this.selectorHandlers.length;
+      handler.register(channel);
+      return;
+    }
     ConnectionHandler connHandler = new ConnectionHandler(s, cache, protocol);
     executor.execute(connHandler);
   }
@@ -238,6 +323,11 @@ public class GemFireMemcachedServer {
     if (acceptor != null) {
       this.acceptor.interrupt();
     }
+    if (this.selectorHandlers != null) {
+      for (SelectorHandler handler : this.selectorHandlers) {
+        handler.shutdown();
+      }
+    }
     this.executor.shutdownNow();
     this.cache.close();
   }
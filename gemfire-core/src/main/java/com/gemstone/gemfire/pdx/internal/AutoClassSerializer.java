@@ -0,0 +1,70 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.pdx.internal;
+
+import com.gemstone.gemfire.CancelException;
+import com.gemstone.gemfire.pdx.NonPortableClassException;
+import com.gemstone.gemfire.pdx.PdxSerializationException;
+import com.gemstone.gemfire.pdx.internal.unsafe.UnsafeWrapper;
+
+/**
+ * Superclass of the serializers generated by
+ * {@link AutoClassSerializerGenerator} for the classes auto serialized by a
+ * ReflectionBasedAutoSerializer. A generated serializer writes and reads all
+ * the fields of its class in a single method, in the order of the
+ * {@link AutoSerializableManager.AutoClassInfo} it was generated for, instead
+ * of going through a {@link AutoSerializableManager.PdxFieldWrapper} per field.
+ *
+ * It is only used when the fields are written in the order of the pdx type
+ * already defined for the class and read from a pdx type that exactly matches
+ * the class.
+ *
+ * @since 8.2
+ */
+public abstract class AutoClassSerializer {
+
+  /** Used by the generated code to access the fields of the object */
+  protected static final UnsafeWrapper unsafe = AutoSerializableManager.getUnsafe();
+
+  /**
+   * Writes the fields of the given object, in order, without their names.
+   */
+  public final void write(PdxWriterImpl writer, Object obj, boolean checkPortability) {
+    try {
+      doWrite(writer, obj, checkPortability);
+    } catch (Exception ex) {
+      handleException(true, obj, ex);
+    }
+  }
+
+  /**
+   * Reads the fields of the given object, in order.
+   */
+  public final void read(InternalPdxReader reader, Object obj) {
+    try {
+      doRead(reader, obj);
+    } catch (Exception ex) {
+      handleException(false, obj, ex);
+    }
+  }
+
+  protected abstract void doWrite(PdxWriterImpl writer, Object obj, boolean checkPortability);
+
+  protected abstract void doRead(InternalPdxReader reader, Object obj);
+
+  private static void handleException(boolean serialization, Object obj, Exception ex) {
+    if (ex instanceof CancelException) {
+      throw (CancelException)ex;
+    } else if (ex instanceof NonPortableClassException) {
+      throw (NonPortableClassException)ex;
+    } else {
+      throw new PdxSerializationException((serialization ? "Serialization" : "Deserialization")
+          + " error for class " + obj.getClass().getName(), ex);
+    }
+  }
+}
@@ -0,0 +1,430 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.pdx.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.pdx.FieldType;
+import com.gemstone.gemfire.pdx.internal.AutoSerializableManager.PdxFieldWrapper;
+import com.gemstone.gemfire.pdx.internal.unsafe.UnsafeWrapper;
+
+/**
+ * Generates, at runtime, an {@link AutoClassSerializer} specialized for the
+ * fields of a class auto serialized by a ReflectionBasedAutoSerializer. For
+ * each field the generated code reads or writes the field with the
+ * {@link UnsafeWrapper} at its constant offset and calls the
+ * {@link PdxWriterImpl} or {@link InternalPdxReader} method for its type
+ * directly, so a field costs no virtual call through its
+ * {@link PdxFieldWrapper} nor any type switch.
+ *
+ * Since the fields are accessed by offset the generated class does not need
+ * access to the serialized class, and is defined by its own class loader
+ * whose parent is the one of GemFire. It is therefore unloaded once the class
+ * info it was generated for is garbage collected.
+ *
+ * No serializer is generated, and the field wrappers are used instead, if
+ * Unsafe is not available, if a field value is transformed by the
+ * auto serializer, or if the type of a field differs from the type it is
+ * serialized as.
+ *
+ * @since 8.2
+ */
+final class AutoClassSerializerGenerator {
+  private static final Logger logger = LogService.getLogger();
+
+  private static final String SUPER_CLASS = "com/gemstone/gemfire/pdx/internal/AutoClassSerializer";
+  private static final String WRITER_CLASS = "com/gemstone/gemfire/pdx/internal/PdxWriterImpl";
+  private static final String READER_CLASS = "com/gemstone/gemfire/pdx/internal/InternalPdxReader";
+  private static final String UNSAFE_CLASS = "com/gemstone/gemfire/pdx/internal/unsafe/UnsafeWrapper";
+  private static final String CLASS_NAME_PREFIX = "com.gemstone.gemfire.pdx.internal.GeneratedAutoClassSerializer";
+
+  private static final AtomicInteger nextClassId = new AtomicInteger();
+
+  /**
+   * The pdx field types that can be generated, with the name used by the
+   * writer and reader methods for them and the descriptor of their values.
+   */
+  private static final Map<FieldType, String[]> TYPES = new EnumMap<FieldType, String[]>(FieldType.class);
+  /**
+   * The field wrapper created by AutoSerializableManager for each type.
+   */
+  private static final Map<FieldType, Class<?>> WRAPPERS = new EnumMap<FieldType, Class<?>>(FieldType.class);
+  static {
+    addType(FieldType.BOOLEAN, "Boolean", "Z", AutoSerializableManager.BooleanField.class);
+    addType(FieldType.BYTE, "Byte", "B", AutoSerializableManager.ByteField.class);
+    addType(FieldType.CHAR, "Char", "C", AutoSerializableManager.CharField.class);
+    addType(FieldType.SHORT, "Short", "S", AutoSerializableManager.ShortField.class);
+    addType(FieldType.INT, "Int", "I", AutoSerializableManager.IntField.class);
+    addType(FieldType.LONG, "Long", "J", AutoSerializableManager.LongField.class);
+    addType(FieldType.FLOAT, "Float", "F", AutoSerializableManager.FloatField.class);
+    addType(FieldType.DOUBLE, "Double", "D", AutoSerializableManager.DoubleField.class);
+    addType(FieldType.DATE, "Date", "Ljava/util/Date;", AutoSerializableManager.DateField.class);
+    addType(FieldType.STRING, "String", "Ljava/lang/String;", AutoSerializableManager.StringField.class);
+    addType(FieldType.OBJECT, "Object", "Ljava/lang/Object;", AutoSerializableManager.ObjectField.class);
+    addType(FieldType.BOOLEAN_ARRAY, "BooleanArray", "[Z", AutoSerializableManager.BooleanArrayField.class);
+    addType(FieldType.CHAR_ARRAY, "CharArray", "[C", AutoSerializableManager.CharArrayField.class);
+    addType(FieldType.BYTE_ARRAY, "ByteArray", "[B", AutoSerializableManager.ByteArrayField.class);
+    addType(FieldType.SHORT_ARRAY, "ShortArray", "[S", AutoSerializableManager.ShortArrayField.class);
+    addType(FieldType.INT_ARRAY, "IntArray", "[I", AutoSerializableManager.IntArrayField.class);
+    addType(FieldType.LONG_ARRAY, "LongArray", "[J", AutoSerializableManager.LongArrayField.class);
+    addType(FieldType.FLOAT_ARRAY, "FloatArray", "[F", AutoSerializableManager.FloatArrayField.class);
+    addType(FieldType.DOUBLE_ARRAY, "DoubleArray", "[D", AutoSerializableManager.DoubleArrayField.class);
+    addType(FieldType.STRING_ARRAY, "StringArray", "[Ljava/lang/String;", AutoSerializableManager.StringArrayField.class);
+    addType(FieldType.OBJECT_ARRAY, "ObjectArray", "[Ljava/lang/Object;", AutoSerializableManager.ObjectArrayField.class);
+    addType(FieldType.ARRAY_OF_BYTE_ARRAYS, "ArrayOfByteArrays", "[[B", AutoSerializableManager.ByteArrayArrayField.class);
+  }
+
+  private static void addType(FieldType type, String name, String descriptor, Class<?> wrapper) {
+    TYPES.put(type, new String[] { name, descriptor });
+    WRAPPERS.put(type, wrapper);
+  }
+
+  private AutoClassSerializerGenerator() {
+  }
+
+  /**
+   * Returns a new serializer for the given fields of the given class, or null
+   * if none can be generated for them.
+   */
+  static AutoClassSerializer generate(Class<?> clazz, List<PdxFieldWrapper> fields) {
+    return generate(clazz, fields, AutoSerializableManager.getUnsafe());
+  }
+
+  /**
+   * Returns a new serializer for the given fields of the given class that
+   * accesses them with the given Unsafe, or null if none can be generated
+   * for them.
+   */
+  static AutoClassSerializer generate(Class<?> clazz, List<PdxFieldWrapper> fields, UnsafeWrapper unsafe) {
+    if (unsafe == null) {
+      return null;
+    }
+    FieldType[] types = new FieldType[fields.size()];
+    long[] offsets = new long[fields.size()];
+    for (int i = 0; i < types.length; i++) {
+      PdxFieldWrapper f = fields.get(i);
+      if (f.transform()) {
+        return null;
+      }
+      FieldType ft = FieldType.get(f.getField().getType());
+      if (WRAPPERS.get(ft) != f.getClass()) {
+        return null;
+      }
+      types[i] = ft;
+      offsets[i] = unsafe.objectFieldOffset(f.getField());
+    }
+    String className = CLASS_NAME_PREFIX + nextClassId.incrementAndGet();
+    try {
+      byte[] bytes = new ClassWriter(className.replace('.', '/'), types, offsets).toByteArray();
+      Class<?> c = new GeneratedClassLoader().define(className, bytes);
+      return (AutoClassSerializer)c.newInstance();
+    } catch (Exception ex) {
+      logger.warn("Could not generate a serializer for {}; its fields will be serialized by reflection", clazz.getName(), ex);
+    } catch (LinkageError ex) {
+      logger.warn("Could not generate a serializer for {}; its fields will be serialized by reflection", clazz.getName(), ex);
+    }
+    return null;
+  }
+
+  private static final class GeneratedClassLoader extends ClassLoader {
+    GeneratedClassLoader() {
+      super(AutoClassSerializer.class.getClassLoader());
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+
+  /**
+   * Writes the class file of a generated serializer. The generated methods
+   * are straight-line code, so the class file needs no stack map frames.
+   */
+  private static final class ClassWriter {
+    private static final int CLASS_FILE_VERSION = 50; // 1.6
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int ILOAD_3 = 0x1d;
+    private static final int LDC2_W = 0x14;
+    private static final int GETSTATIC = 0xb2;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int CHECKCAST = 0xc0;
+    private static final int RETURN = 0xb1;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final String className;
+    private final FieldType[] types;
+    private final long[] offsets;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(this.poolBytes);
+    private final Map<String, Integer> poolIndexes = new HashMap<String, Integer>();
+    private int poolSize = 1;
+
+    ClassWriter(String className, FieldType[] types, long[] offsets) {
+      this.className = className;
+      this.types = types;
+      this.offsets = offsets;
+    }
+
+    byte[] toByteArray() throws IOException {
+      int thisClass = classRef(this.className);
+      int superClass = classRef(SUPER_CLASS);
+      List<byte[]> methods = new ArrayList<byte[]>();
+      methods.add(method(ACC_PUBLIC, "<init>", "()V", 1, 1, constructorCode()));
+      methods.add(method(ACC_PROTECTED, "doWrite",
+          "(L" + WRITER_CLASS + ";Ljava/lang/Object;Z)V", 6, 4, writeCode()));
+      methods.add(method(ACC_PROTECTED, "doRead",
+          "(L" + READER_CLASS + ";Ljava/lang/Object;)V", 7, 3, readCode()));
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0);
+      out.writeShort(CLASS_FILE_VERSION);
+      out.writeShort(this.poolSize);
+      this.pool.flush();
+      this.poolBytes.writeTo(out);
+      out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0); // interfaces
+      out.writeShort(0); // fields
+      out.writeShort(methods.size());
+      for (byte[] m : methods) {
+        out.write(m);
+      }
+      out.writeShort(0); // attributes
+      out.flush();
+      return bytes.toByteArray();
+    }
+
+    private byte[] constructorCode() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream code = new DataOutputStream(bytes);
+      code.writeByte(ALOAD_0);
+      code.writeByte(INVOKESPECIAL);
+      code.writeShort(methodRef(SUPER_CLASS, "<init>", "()V"));
+      code.writeByte(RETURN);
+      code.flush();
+      return bytes.toByteArray();
+    }
+
+    /**
+     * For each field: writer.write<Type>((<type>)unsafe.get<Type>(obj, offset)[, checkPortability])
+     */
+    private byte[] writeCode() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream code = new DataOutputStream(bytes);
+      int unsafe = fieldRef(SUPER_CLASS, "unsafe", "L" + UNSAFE_CLASS + ";");
+      for (int i = 0; i < this.types.length; i++) {
+        FieldType ft = this.types[i];
+        String name = TYPES.get(ft)[0];
+        String descriptor = TYPES.get(ft)[1];
+        code.writeByte(ALOAD_1);
+        code.writeByte(GETSTATIC);
+        code.writeShort(unsafe);
+        code.writeByte(ALOAD_2);
+        code.writeByte(LDC2_W);
+        code.writeShort(longConstant(this.offsets[i]));
+        code.writeByte(INVOKEVIRTUAL);
+        if (isPrimitive(descriptor)) {
+          code.writeShort(methodRef(UNSAFE_CLASS, "get" + name, "(Ljava/lang/Object;J)" + descriptor));
+        } else {
+          code.writeShort(methodRef(UNSAFE_CLASS, "getObject", "(Ljava/lang/Object;J)Ljava/lang/Object;"));
+          if (ft != FieldType.OBJECT) {
+            code.writeByte(CHECKCAST);
+            code.writeShort(classRef(descriptor.startsWith("[") ? descriptor
+                : descriptor.substring(1, descriptor.length() - 1)));
+          }
+        }
+        String writeDescriptor;
+        if (ft == FieldType.OBJECT || ft == FieldType.OBJECT_ARRAY) {
+          code.writeByte(ILOAD_3);
+          writeDescriptor = "(" + descriptor + "Z)V";
+        } else {
+          writeDescriptor = "(" + descriptor + ")V";
+        }
+        code.writeByte(INVOKEVIRTUAL);
+        code.writeShort(methodRef(WRITER_CLASS, "write" + name, writeDescriptor));
+      }
+      code.writeByte(RETURN);
+      code.flush();
+      return bytes.toByteArray();
+    }
+
+    /**
+     * For each field: unsafe.put<Type>(obj, offset, reader.read<Type>())
+     */
+    private byte[] readCode() throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream code = new DataOutputStream(bytes);
+      int unsafe = fieldRef(SUPER_CLASS, "unsafe", "L" + UNSAFE_CLASS + ";");
+      for (int i = 0; i < this.types.length; i++) {
+        FieldType ft = this.types[i];
+        String name = TYPES.get(ft)[0];
+        String descriptor = TYPES.get(ft)[1];
+        code.writeByte(GETSTATIC);
+        code.writeShort(unsafe);
+        code.writeByte(ALOAD_2);
+        code.writeByte(LDC2_W);
+        code.writeShort(longConstant(this.offsets[i]));
+        code.writeByte(ALOAD_1);
+        code.writeByte(INVOKEINTERFACE);
+        code.writeShort(interfaceMethodRef(READER_CLASS, "read" + name, "()" + descriptor));
+        code.writeByte(1); // argument slots, including the receiver
+        code.writeByte(0);
+        code.writeByte(INVOKEVIRTUAL);
+        if (isPrimitive(descriptor)) {
+          code.writeShort(methodRef(UNSAFE_CLASS, "put" + name, "(Ljava/lang/Object;J" + descriptor + ")V"));
+        } else {
+          code.writeShort(methodRef(UNSAFE_CLASS, "putObject", "(Ljava/lang/Object;JLjava/lang/Object;)V"));
+        }
+      }
+      code.writeByte(RETURN);
+      code.flush();
+      return bytes.toByteArray();
+    }
+
+    private static boolean isPrimitive(String descriptor) {
+      return descriptor.length() == 1;
+    }
+
+    private byte[] method(int access, String name, String descriptor,
+        int maxStack, int maxLocals, byte[] code) throws IOException {
+      if (code.length > 65535) {
+        throw new IllegalStateException("Method " + name + " would be too large");
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeShort(access);
+      out.writeShort(utf8(name));
+      out.writeShort(utf8(descriptor));
+      out.writeShort(1); // attributes
+      out.writeShort(utf8("Code"));
+      out.writeInt(12 + code.length);
+      out.writeShort(maxStack);
+      out.writeShort(maxLocals);
+      out.writeInt(code.length);
+      out.write(code);
+      out.writeShort(0); // exception table
+      out.writeShort(0); // attributes
+      out.flush();
+      return bytes.toByteArray();
+    }
+
+    private int utf8(String s) throws IOException {
+      Integer index = this.poolIndexes.get("U" + s);
+      if (index == null) {
+        this.pool.writeByte(CONSTANT_UTF8);
+        this.pool.writeUTF(s);
+        index = addConstant("U" + s, 1);
+      }
+      return index;
+    }
+
+    private int longConstant(long v) throws IOException {
+      Integer index = this.poolIndexes.get("J" + v);
+      if (index == null) {
+        this.pool.writeByte(CONSTANT_LONG);
+        this.pool.writeLong(v);
+        // a long takes two entries of the constant pool
+        index = addConstant("J" + v, 2);
+      }
+      return index;
+    }
+
+    private int classRef(String internalName) throws IOException {
+      Integer index = this.poolIndexes.get("C" + internalName);
+      if (index == null) {
+        int nameIndex = utf8(internalName);
+        this.pool.writeByte(CONSTANT_CLASS);
+        this.pool.writeShort(nameIndex);
+        index = addConstant("C" + internalName, 1);
+      }
+      return index;
+    }
+
+    private int nameAndType(String name, String descriptor) throws IOException {
+      String key = "N" + name + ' ' + descriptor;
+      Integer index = this.poolIndexes.get(key);
+      if (index == null) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        this.pool.writeByte(CONSTANT_NAME_AND_TYPE);
+        this.pool.writeShort(nameIndex);
+        this.pool.writeShort(descriptorIndex);
+        index = addConstant(key, 1);
+      }
+      return index;
+    }
+
+    private int fieldRef(String owner, String name, String descriptor) throws IOException {
+      return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    private int methodRef(String owner, String name, String descriptor) throws IOException {
+      return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    private int interfaceMethodRef(String owner, String name, String descriptor) throws IOException {
+      return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+      String key = "M" + tag + ' ' + owner + '.' + name + ' ' + descriptor;
+      Integer index = this.poolIndexes.get(key);
+      if (index == null) {
+        int classIndex = classRef(owner);
+        int nameAndTypeIndex = nameAndType(name, descriptor);
+        this.pool.writeByte(tag);
+        this.pool.writeShort(classIndex);
+        this.pool.writeShort(nameAndTypeIndex);
+        index = addConstant(key, 1);
+      }
+      return index;
+    }
+
+    private int addConstant(String key, int entries) {
+      int index = this.poolSize;
+      if (index + entries > 65535) {
+        throw new IllegalStateException("Too many constants");
+      }
+      this.poolSize += entries;
+      this.poolIndexes.put(key, index);
+      return index;
+    }
+  }
+}
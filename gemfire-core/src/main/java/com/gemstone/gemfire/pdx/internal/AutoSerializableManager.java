@@ -613,6 +613,18 @@ public class AutoSerializableManager {
     unsafe = tmp;
   }
 
+  static UnsafeWrapper getUnsafe() {
+    return unsafe;
+  }
+
+  /**
+   * If true, a serializer is generated for each auto serialized class instead
+   * of serializing its fields with a {@link PdxFieldWrapper} per field.
+   * Not final so that tests can change it.
+   * @since 8.2
+   */
+  static boolean GENERATE_SERIALIZERS = Boolean.getBoolean("gemfire.AutoSerializer.GENERATE");
+
   public static abstract class PdxFieldWrapper {
     private final FieldWrapper field;
     private final String fieldName;
@@ -1882,6 +1894,11 @@ public class AutoSerializableManager {
         optimizeFieldWrites = true;
       }
     }
+    AutoClassSerializer serializer = autoClassInfo.getSerializer();
+    if (optimizeFieldWrites && serializer != null) {
+      serializer.write(w, obj, getCheckPortability());
+      return;
+    }
     for (PdxFieldWrapper f : autoClassInfo.getFields()) {
       //System.out.println("DEBUG writing field=" + f.getField().getName() + " offset=" + ((PdxWriterImpl)writer).position());
       if (f.transform()) {
@@ -2030,10 +2047,17 @@ public class AutoSerializableManager {
      * The PdxType created by the first serialization by the auto serializer.
      */
     private PdxType serializedType = null;
+
+    /**
+     * The serializer generated for the fields, or null if the fields are
+     * serialized by their wrappers.
+     */
+    private final AutoClassSerializer serializer;
     
     public AutoClassInfo(Class<?> clazz, List<PdxFieldWrapper> fields) {
       this.clazzRef = new WeakReference<Class<?>>(clazz);
       this.fields = fields;
+      this.serializer = GENERATE_SERIALIZERS ? AutoClassSerializerGenerator.generate(clazz, fields) : null;
     }
     
     public String toFormattedString() {
@@ -2079,6 +2103,10 @@ public class AutoSerializableManager {
       return this.fields;
     }
 
+    public AutoClassSerializer getSerializer() {
+      return this.serializer;
+    }
+
     public boolean matchesPdxType(PdxType t) {
       Integer pdxTypeId = Integer.valueOf(t.getTypeId());
       if (this.matchingPdxIds.contains(pdxTypeId)) {
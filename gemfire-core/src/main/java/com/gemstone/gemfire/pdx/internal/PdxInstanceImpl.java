@@ -24,6 +24,7 @@ import org.springframework.util.StringUtils;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gemstone.gemfire.InternalGemFireException;
+import com.gemstone.gemfire.cache.query.internal.QueryProfiler;
 import com.gemstone.gemfire.distributed.internal.DMStats;
 import com.gemstone.gemfire.internal.ClassPathLoader;
 import com.gemstone.gemfire.internal.DSCODE;
@@ -214,15 +215,20 @@ public class PdxInstanceImpl extends PdxReaderImpl implements PdxInstance, Senda
       return this;
     }
     boolean wouldReadSerialized = PdxInstanceImpl.getPdxReadSerialized();
-    if (!wouldReadSerialized) {
-      return getUnmodifiableReader().basicGetObject();
-    } else {
-      PdxInstanceImpl.setPdxReadSerialized(false);
-      try {
+    QueryProfiler.enter(QueryProfiler.DESERIALIZATION);
+    try {
+      if (!wouldReadSerialized) {
         return getUnmodifiableReader().basicGetObject();
-      } finally {
-        PdxInstanceImpl.setPdxReadSerialized(true);
+      } else {
+        PdxInstanceImpl.setPdxReadSerialized(false);
+        try {
+          return getUnmodifiableReader().basicGetObject();
+        } finally {
+          PdxInstanceImpl.setPdxReadSerialized(true);
+        }
       }
+    } finally {
+      QueryProfiler.exit(QueryProfiler.DESERIALIZATION);
     }
   }
   
@@ -617,6 +623,13 @@ public class PdxInstanceImpl extends PdxReaderImpl implements PdxInstance, Senda
   public Object getRawField(String fieldName){
     return getUnmodifiableReader(fieldName).readRawField(fieldName);
   }
+
+  /**
+   * @see PdxReaderImpl#compareRawField(String, Object)
+   */
+  public int compareField(String fieldName, Object value) {
+    return getUnmodifiableReader(fieldName).compareRawField(fieldName, value);
+  }
   
   
  public Object getDefaultValueIfFieldExistsInAnyPdxVersions(String fieldName,
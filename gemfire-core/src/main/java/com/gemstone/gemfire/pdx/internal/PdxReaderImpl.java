@@ -827,6 +827,11 @@ public class PdxReaderImpl implements InternalPdxReader, java.io.Serializable {
    */
   public void orderedDeserialize(Object obj, AutoClassInfo ci) {
     PdxReaderImpl reader = prepForOrderedReading();
+    AutoClassSerializer serializer = ci.getSerializer();
+    if (serializer != null) {
+      serializer.read(reader, obj);
+      return;
+    }
     for (PdxFieldWrapper f: ci.getFields()) {
       //System.out.println("DEBUG reading field=" + f.getField().getName() + " offset=" + reader.dis.position());
       f.orderedDeserialize(reader, obj);
@@ -867,6 +872,82 @@ public class PdxReaderImpl implements InternalPdxReader, java.io.Serializable {
     }
   }
   
+  /**
+   * Returned by {@link #compareRawField} if the field cannot be compared in
+   * its serialized form.
+   */
+  public static final int NOT_COMPARABLE = Integer.MIN_VALUE;
+
+  /**
+   * Compares a numeric or String field with a value the way the query engine
+   * compares the value returned by {@link #readRawField} with it, but reads
+   * the field straight from the serialized bytes instead of creating an
+   * object for it.
+   * 
+   * @param value a Byte, Short, Integer, Long, Float or Double for a numeric
+   *          field, a PdxString for a String field
+   * @return a negative integer, zero, or a positive integer as the field is
+   *         less than, equal to, or greater than the value, or
+   *         {@link #NOT_COMPARABLE} if the field is missing, null, or of
+   *         another type
+   * @since 8.2
+   */
+  public int compareRawField(String fieldName, Object value) {
+    PdxField ft = blobType.getPdxField(fieldName);
+    if (ft == null) {
+      return NOT_COMPARABLE;
+    }
+    FieldType type = ft.getFieldType();
+    if (type == FieldType.STRING) {
+      if (!(value instanceof PdxString)) {
+        return NOT_COMPARABLE;
+      }
+      ByteBuffer buffer = dis.getBuffer();
+      if (!buffer.hasArray()) {
+        return NOT_COMPARABLE;
+      }
+      byte[] bytes = buffer.array();
+      int offset = getPositionForField(ft) + buffer.arrayOffset();
+      if (bytes[offset] == DSCODE.NULL || bytes[offset] == DSCODE.NULL_STRING) {
+        return NOT_COMPARABLE;
+      }
+      return Integer.signum(((PdxString) value).compareSerialized(bytes, offset));
+    }
+    if (!(value instanceof Integer || value instanceof Long
+        || value instanceof Double || value instanceof Float
+        || value instanceof Short || value instanceof Byte)) {
+      return NOT_COMPARABLE;
+    }
+    Number number = (Number) value;
+    // follows NumericComparator: the widest type of either side decides how
+    // the two are compared
+    switch (type) {
+    case BYTE:
+    case SHORT:
+    case INT:
+    case LONG:
+      long l = type == FieldType.LONG ? readLong(ft) : type == FieldType.INT
+          ? readInt(ft) : type == FieldType.SHORT ? readShort(ft) : readByte(ft);
+      if (value instanceof Double) {
+        return Double.compare(l, number.doubleValue());
+      }
+      if (value instanceof Float) {
+        return Float.compare((float) (double) l, number.floatValue());
+      }
+      return l == number.longValue() ? 0 : (l < number.longValue() ? -1 : 1);
+    case FLOAT:
+      float f = readFloat(ft);
+      if (value instanceof Double) {
+        return Double.compare(f, number.doubleValue());
+      }
+      return Float.compare(f, (float) number.doubleValue());
+    case DOUBLE:
+      return Double.compare(readDouble(ft), number.doubleValue());
+    default:
+      return NOT_COMPARABLE;
+    }
+  }
+
   /**
    * 
    * @param ft
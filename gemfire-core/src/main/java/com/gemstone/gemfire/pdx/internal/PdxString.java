@@ -64,8 +64,12 @@ public class PdxString implements Comparable<PdxString>, Sendable {
   }
 
   private int getLength() {
+    return getLength(this.bytes, this.header, this.offset);
+  }
+
+  private static int getLength(byte[] bytes, byte header, int offset) {
     int length = 0;
-    int lenOffset = this.offset;
+    int lenOffset = offset;
     if (header == DSCODE.STRING_BYTES || header == DSCODE.STRING) {
       lenOffset -= 2;
       byte a = bytes[lenOffset];
@@ -120,6 +124,35 @@ public class PdxString implements Comparable<PdxString>, Sendable {
     return len1 - len2;
   }
 
+  /**
+   * Compares the String serialized at the given offset with this one, the
+   * way a PdxString created for those bytes is compared with this one by
+   * {@link #compareTo}, but without creating the PdxString.
+   * 
+   * @param serializedBytes the bytes holding the String
+   * @param headerOffset the offset of the String's header in the bytes
+   * @since 8.2
+   */
+  public int compareSerialized(byte[] serializedBytes, int headerOffset) {
+    byte serializedHeader = serializedBytes[headerOffset];
+    if (serializedHeader != this.header) {
+      return new PdxString(serializedBytes, headerOffset).compareTo(this);
+    }
+    int i = calcOffset(serializedHeader, headerOffset);
+    int j = this.offset;
+    int len1 = getLength(serializedBytes, serializedHeader, i);
+    int len2 = this.getLength();
+    int n = Math.min(len1, len2);
+    while (n-- != 0) {
+      byte c1 = serializedBytes[i++];
+      byte c2 = this.bytes[j++];
+      if (c1 != c2) {
+        return c1 - c2;
+      }
+    }
+    return len1 - len2;
+  }
+
   public int hashCode() {
     int h = 0;
     int len = this.getLength();
@@ -98,6 +98,22 @@ public class PeerTypeRegistration implements TypeRegistration {
   private final Map<String, Set<PdxType>> classToType = new CopyOnWriteHashMap<String, Set<PdxType>>();
 
   private volatile boolean typeRegistryInUse = false;
+
+  /**
+   * If true, a new type or enum gets an id derived from its content, with
+   * linear probing on collisions, instead of the next free id allocated while
+   * holding the PDX distributed lock. All the members of the distributed
+   * system should use the same setting.
+   * @since 8.2
+   */
+  private final boolean hashedIds = Boolean.getBoolean("gemfire.pdx.hashedTypeIds");
+
+  /**
+   * The ids of the types and enums that were in the registry the first time
+   * a hashed id was needed. Lets a type or enum defined with a sequential id
+   * keep it.
+   */
+  private volatile Map<Object, Object> existingIds;
   
   public PeerTypeRegistration(GemFireCacheImpl cache) {
     this.cache = cache;
@@ -112,6 +128,15 @@ public class PeerTypeRegistration implements TypeRegistration {
     this.nextEnumId = distributedSystemId << 24;
     this.maxEnumId = distributedSystemId << 24 | 0xFFFFFF;
   }
+
+  /**
+   * Creates a registration that shares the registry region of the given one,
+   * the way the registrations of two members share it. For unit tests.
+   */
+  PeerTypeRegistration(PeerTypeRegistration other) {
+    this(other.cache);
+    this.idToType = other.getIdToType();
+  }
   
   private Region<Object/*Integer or EnumCode*/, Object/*PdxType or enum info*/> getIdToType() {
     if (this.idToType != null) {
@@ -330,6 +355,9 @@ public class PeerTypeRegistration implements TypeRegistration {
     if(existingId != null) {
       return existingId.intValue();
     }
+    if (this.hashedIds) {
+      return defineHashedType(newType);
+    }
     lock();
     try {
       int id = getExistingIdForType(newType);
@@ -351,6 +379,144 @@ public class PeerTypeRegistration implements TypeRegistration {
     }
   }
 
+  /**
+   * Defines the type without the distributed lock. The type is published at
+   * the id derived from its content, or at the next id if a different type
+   * already uses it. Since members defining the same type compute the same
+   * id, they end up sharing it.
+   */
+  private int defineHashedType(PdxType newType) {
+    Integer scannedId = (Integer)getExistingIds().get(newType);
+    int id = scannedId != null ? scannedId.intValue() : toHashedId(contentHash(newType));
+    for (int probes = 0; probes < MAX_HASHED_IDS; probes++) {
+      newType.setTypeId(id);
+      PdxType foundType = (PdxType)publish(id, newType);
+      if (foundType.equals(newType)) {
+        id = foundType.getTypeId();
+        typeToId.put(newType, Integer.valueOf(id));
+        this.lastAllocatedTypeId = id;
+        return id;
+      }
+      id = nextHashedId(id);
+    }
+    throw new InternalGemFireError("Used up all of the PDX type ids for this distributed system. The maximum number of PDX types is " + maxTypeId);
+  }
+
+  /**
+   * Enum version of {@link #defineHashedType}
+   */
+  private int defineHashedEnum(EnumInfo newInfo) {
+    EnumId scannedId = (EnumId)getExistingIds().get(newInfo);
+    int id = scannedId != null ? scannedId.intValue()
+        : toHashedId(newInfo.hashCode() * 31 + newInfo.getOrdinal());
+    for (int probes = 0; probes < MAX_HASHED_IDS; probes++) {
+      EnumId enumId = new EnumId(id);
+      EnumInfo foundInfo = (EnumInfo)publish(enumId, newInfo);
+      if (foundInfo.equals(newInfo)) {
+        enumToId.put(newInfo, enumId);
+        this.lastAllocatedEnumId = id;
+        return id;
+      }
+      id = nextHashedId(id);
+    }
+    throw new InternalGemFireError("Used up all of the PDX enum ids for this distributed system. The maximum number of PDX types is " + maxEnumId);
+  }
+
+  /** The number of ids available to hashed types of this distributed system */
+  private static final int MAX_HASHED_IDS = 0xFFFFFE;
+
+  /**
+   * Returns a hash of the type that, unlike its hashCode, is the same in
+   * every member.
+   */
+  static int contentHash(PdxType type) {
+    int hash = type.getClassName().hashCode();
+    hash = hash * 31 + (type.getNoDomainClass() ? 1 : 0);
+    for (PdxField field : type.getFields()) {
+      hash = hash * 31 + field.getFieldName().hashCode();
+      hash = hash * 31 + field.getFieldType().name().hashCode();
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the id of this distributed system for the given hash. The low 24
+   * bits of an id are never 0 nor 0xFFFFFF, like the allocated ids.
+   */
+  int toHashedId(int hash) {
+    int low = ((hash ^ (hash >>> 24)) & 0xFFFFFF) % MAX_HASHED_IDS + 1;
+    return (this.maxTypeId & 0xFF000000) | low;
+  }
+
+  private int nextHashedId(int id) {
+    int low = id & 0xFFFFFF;
+    return (id & 0xFF000000) | (low == MAX_HASHED_IDS ? 1 : low + 1);
+  }
+
+  private Map<Object, Object> getExistingIds() {
+    Map<Object, Object> result = this.existingIds;
+    if (result == null) {
+      result = new HashMap<Object, Object>();
+      TXStateProxy currentState = suspendTX();
+      try {
+        for (Map.Entry<Object, Object> entry : getIdToType().entrySet()) {
+          result.put(entry.getValue(), entry.getKey());
+        }
+      } finally {
+        resumeTX(currentState);
+      }
+      this.existingIds = result;
+    }
+    return result;
+  }
+
+  /**
+   * Puts the value at the given key of the registry, unless another value
+   * is already there, and returns the value at the key. If an equal value is
+   * already there it is put again so that, when this method returns, it is
+   * known to have been distributed to every member; the member that put it
+   * may not have finished distributing it yet.
+   */
+  private Object publish(Object k, Object v) {
+    Region<Object, Object> r = getIdToType();
+    Cache c = (Cache)r.getRegionService();
+
+    checkDistributedTypeRegistryState();
+
+    TXManagerImpl txManager = (TXManagerImpl) c.getCacheTransactionManager();
+    TXStateProxy currentState = suspendTX();
+    boolean state = useUDPMessagingIfNecessary();
+    try {
+      // The transaction fails to commit if another member put the key
+      // after we read it, in which case we read it again.
+      int failureCount = 0;
+      while(true) {
+        txManager.begin();
+        try {
+          Object existing = r.get(k);
+          if (existing != null && !existing.equals(v)) {
+            txManager.rollback();
+            return existing;
+          }
+          Object result = existing != null ? existing : v;
+          r.put(k, result);
+          txManager.commit();
+          return result;
+        } catch(TransactionException e) {
+          if (txManager.exists()) {
+            txManager.rollback();
+          }
+          if(++failureCount > MAX_TRANSACTION_FAILURES) {
+            throw e;
+          }
+        }
+      }
+    } finally {
+      releaseUDPMessaging(state);
+      resumeTX(currentState);
+    }
+  }
+
   private void updateIdToTypeRegion(PdxType newType) {
     updateRegion(newType.getTypeId(), newType);
   }
@@ -564,6 +730,9 @@ public class PeerTypeRegistration implements TypeRegistration {
     if(existingId != null) {
       return existingId.intValue();
     }
+    if (this.hashedIds) {
+      return defineHashedEnum(ei);
+    }
     lock();
     try {
       EnumId id = getExistingIdForEnum(ei);
@@ -611,6 +780,9 @@ public class PeerTypeRegistration implements TypeRegistration {
     if(existingId != null) {
       return existingId.intValue();
     }
+    if (this.hashedIds) {
+      return defineHashedEnum(newInfo);
+    }
     lock();
     try {
       EnumId id = getExistingIdForEnum(newInfo);
@@ -716,6 +888,7 @@ public class PeerTypeRegistration implements TypeRegistration {
     idToType.clear();
     enumToId.clear();
     typeToId.clear();
+    existingIds = null;
    }
   
   @Override
@@ -0,0 +1,488 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.CancelCriterion;
+import com.gemstone.gemfire.cache.client.ServerConnectivityException;
+import com.gemstone.gemfire.cache.client.ServerOperationException;
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionManager;
+import com.gemstone.gemfire.distributed.internal.ServerLocation;
+import com.gemstone.gemfire.internal.cache.tier.MessageType;
+import com.gemstone.gemfire.internal.cache.tier.sockets.Message;
+import com.gemstone.gemfire.internal.cache.tier.sockets.ServerQueueStatus;
+import com.gemstone.junit.UnitTest;
+
+/**
+ * Tests {@link PipelinedOpExecutor} against connections whose server is
+ * played by the test.
+ */
+@Category(UnitTest.class)
+public class PipelinedOpExecutorJUnitTest {
+
+  private static final CancelCriterion NOT_CANCELLED = new CancelCriterion() {
+    public String cancelInProgress() {
+      return null;
+    }
+
+    public RuntimeException generateCancelledException(Throwable e) {
+      return null;
+    }
+  };
+
+  private DummyManager manager;
+  private PipelinedOpExecutor executor;
+
+  @Before
+  public void setUp() {
+    this.manager = new DummyManager();
+  }
+
+  @After
+  public void tearDown() {
+    if (this.executor != null) {
+      this.executor.close();
+    }
+  }
+
+  private PipelinedOpExecutor createExecutor(int lifetime, int maxDepth) {
+    this.executor = new PipelinedOpExecutor("test", NOT_CANCELLED,
+        this.manager, 10000, lifetime, 1, maxDepth);
+    return this.executor;
+  }
+
+  @Test
+  public void testResponsesCompleteTheirOps() throws Exception {
+    createExecutor(-1, 16);
+    List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(this.executor.submit(new TestOp(i)));
+    }
+    DummyConnection cnx = this.manager.borrowed.get(0);
+    // the ops are sent without waiting for their responses
+    for (int i = 0; i < 5; i++) {
+      respond(cnx, i);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals("reply-" + i, futures.get(i).get(30, TimeUnit.SECONDS));
+    }
+    assertEquals(1, this.manager.borrowed.size());
+  }
+
+  @Test
+  public void testServerOperationExceptionOnlyFailsItsOp() throws Exception {
+    createExecutor(-1, 16);
+    Future<Object> first = this.executor.submit(new TestOp(0));
+    Future<Object> second = this.executor.submit(new TestOp(1));
+    DummyConnection cnx = this.manager.borrowed.get(0);
+    sentOp(cnx);
+    ServerOperationException failure = new ServerOperationException("failed on server");
+    cnx.responses.add(failure);
+    respond(cnx, 1);
+
+    assertSame(failure, failureOf(first));
+    assertEquals("reply-1", second.get(30, TimeUnit.SECONDS));
+    assertFalse(cnx.destroyed);
+  }
+
+  @Test
+  public void testDepthLimitsTheOpsWaitingForResponses() throws Exception {
+    createExecutor(-1, 2);
+    Future<Object> first = this.executor.submit(new TestOp(0));
+    this.executor.submit(new TestOp(1));
+    DummyConnection cnx = this.manager.borrowed.get(0);
+
+    AtomicReference<Object> third = submitInThread(new TestOp(2));
+    Thread.sleep(200);
+    // the third op waits for a response before it is sent
+    assertNull(third.get());
+    assertEquals(2, cnx.sent.size());
+
+    respond(cnx, 0);
+    assertEquals("reply-0", first.get(30, TimeUnit.SECONDS));
+    assertNotNull(waitFor(third));
+    assertEquals(3, cnx.sent.size());
+  }
+
+  @Test
+  public void testServerFailureFailsThePendingOps() throws Exception {
+    createExecutor(-1, 16);
+    Future<Object> first = this.executor.submit(new TestOp(0));
+    Future<Object> second = this.executor.submit(new TestOp(1));
+    Future<Object> third = this.executor.submit(new TestOp(2));
+    DummyConnection cnx = this.manager.borrowed.get(0);
+    respond(cnx, 0);
+    cnx.responses.add(new IOException("server crashed"));
+
+    assertEquals("reply-0", first.get(30, TimeUnit.SECONDS));
+    assertTrue(failureOf(second) instanceof ServerConnectivityException);
+    assertTrue(failureOf(third) instanceof ServerConnectivityException);
+    assertTrue(cnx.destroyed);
+    waitForReturn(cnx);
+
+    // the next op gets a new connection
+    Future<Object> next = this.executor.submit(new TestOp(3));
+    assertEquals(2, this.manager.borrowed.size());
+    DummyConnection newCnx = this.manager.borrowed.get(1);
+    respond(newCnx, 3);
+    assertEquals("reply-3", next.get(30, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCloseFailsThePendingOps() throws Exception {
+    createExecutor(-1, 16);
+    Future<Object> first = this.executor.submit(new TestOp(0));
+    Future<Object> second = this.executor.submit(new TestOp(1));
+    DummyConnection cnx = this.manager.borrowed.get(0);
+
+    this.executor.close();
+    assertTrue(failureOf(first) instanceof ServerConnectivityException);
+    assertTrue(failureOf(second) instanceof ServerConnectivityException);
+    assertTrue(cnx.destroyed);
+    try {
+      this.executor.submit(new TestOp(2));
+      fail("expected the executor to be closed");
+    } catch (ServerConnectivityException expected) {
+    }
+    assertEquals(1, this.manager.borrowed.size());
+  }
+
+  @Test
+  public void testIdleConnectionIsReturnedToThePool() throws Exception {
+    createExecutor(-1, 16);
+    Future<Object> first = this.executor.submit(new TestOp(0));
+    DummyConnection cnx = this.manager.borrowed.get(0);
+    respond(cnx, 0);
+    assertEquals("reply-0", first.get(30, TimeUnit.SECONDS));
+
+    waitForReturn(cnx);
+    assertFalse(cnx.destroyed);
+    Future<Object> second = this.executor.submit(new TestOp(1));
+    assertEquals(2, this.manager.borrowed.size());
+    respond(this.manager.borrowed.get(1), 1);
+    assertEquals("reply-1", second.get(30, TimeUnit.SECONDS));
+    // no more ops are sent on the returned connection
+    assertEquals(1, cnx.sent.size());
+  }
+
+  @Test
+  public void testExpiredConnectionIsReplacedOnceItsResponsesAreRead()
+      throws Exception {
+    createExecutor(50, 16);
+    Future<Object> first = this.executor.submit(new TestOp(0));
+    DummyConnection cnx = this.manager.borrowed.get(0);
+    Thread.sleep(100);
+
+    AtomicReference<Object> second = submitInThread(new TestOp(1));
+    Thread.sleep(200);
+    // the second op is not sent ahead of the response to the first
+    assertNull(second.get());
+    assertEquals(1, this.manager.borrowed.size());
+    assertEquals(1, cnx.sent.size());
+
+    respond(cnx, 0);
+    assertEquals("reply-0", first.get(30, TimeUnit.SECONDS));
+    assertTrue(waitFor(second) instanceof Future);
+    waitForReturn(cnx);
+    assertFalse(cnx.destroyed);
+    assertEquals(2, this.manager.borrowed.size());
+    assertEquals(1, this.manager.borrowed.get(1).sent.size());
+  }
+
+  /**
+   * Answers the next op sent on the connection, which must have the given id
+   */
+  private static void respond(DummyConnection cnx, int id) throws Exception {
+    TestOp op = sentOp(cnx);
+    assertEquals(id, op.id);
+    cnx.responses.add("reply-" + id);
+  }
+
+  private static TestOp sentOp(DummyConnection cnx) throws Exception {
+    TestOp op = cnx.received.poll(30, TimeUnit.SECONDS);
+    assertNotNull(op);
+    return op;
+  }
+
+  private static Throwable failureOf(Future<Object> future) throws Exception {
+    try {
+      future.get(30, TimeUnit.SECONDS);
+      fail("expected the op to fail");
+      return null;
+    } catch (ExecutionException expected) {
+      return expected.getCause();
+    }
+  }
+
+  /**
+   * Submits the op from another thread, which sets the returned reference to
+   * the future, or to the exception thrown, once the op was submitted.
+   */
+  private AtomicReference<Object> submitInThread(final TestOp op) {
+    final AtomicReference<Object> result = new AtomicReference<Object>();
+    Thread t = new Thread(new Runnable() {
+      public void run() {
+        try {
+          result.set(executor.submit(op));
+        } catch (Throwable e) {
+          result.set(e);
+        }
+      }
+    });
+    t.setDaemon(true);
+    t.start();
+    return result;
+  }
+
+  private static Object waitFor(AtomicReference<Object> ref)
+      throws InterruptedException {
+    long end = System.currentTimeMillis() + 30000;
+    while (ref.get() == null && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    return ref.get();
+  }
+
+  private void waitForReturn(DummyConnection cnx) throws InterruptedException {
+    long end = System.currentTimeMillis() + 30000;
+    while (!this.manager.returned.contains(cnx)
+        && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    assertTrue(this.manager.returned.contains(cnx));
+  }
+
+  /**
+   * An op whose message is the op itself, handed to the connection
+   */
+  private static class TestOp extends AbstractOp {
+    final int id;
+
+    TestOp(int id) {
+      super(MessageType.PUT, 1);
+      this.id = id;
+    }
+
+    @Override
+    long attemptPipelinedSend(Connection cnx, ByteBuffer commBuffer) {
+      DummyConnection dummy = (DummyConnection) cnx;
+      dummy.sent.add(this);
+      dummy.received.add(this);
+      return 0;
+    }
+
+    @Override
+    void abandonPipelinedAttempt(Connection cnx, long start) {
+    }
+
+    @Override
+    Object attemptPipelinedRead(Connection cnx, long start) throws Exception {
+      Object response = ((DummyConnection) cnx).responses.take();
+      if (response instanceof Exception) {
+        throw (Exception) response;
+      }
+      return response;
+    }
+
+    @Override
+    protected Object processResponse(Message msg) {
+      return null;
+    }
+
+    @Override
+    protected boolean isErrorResponse(int msgType) {
+      return false;
+    }
+
+    @Override
+    protected long startAttempt(ConnectionStats stats) {
+      return 0;
+    }
+
+    @Override
+    protected void endSendAttempt(ConnectionStats stats, long start) {
+    }
+
+    @Override
+    protected void endAttempt(ConnectionStats stats, long start) {
+    }
+  }
+
+  public class DummyManager implements ConnectionManager {
+    final List<DummyConnection> borrowed = new CopyOnWriteArrayList<DummyConnection>();
+    final List<Connection> returned = new CopyOnWriteArrayList<Connection>();
+
+    public Connection borrowConnection(long aquireTimeout) {
+      DummyConnection result = new DummyConnection(
+          new ServerLocation("localhost", this.borrowed.size()));
+      this.borrowed.add(result);
+      return result;
+    }
+
+    public Connection borrowConnection(ServerLocation server,
+        long aquireTimeout, boolean onlyUseExistingCnx) {
+      throw new UnsupportedOperationException();
+    }
+
+    public void returnConnection(Connection connection) {
+      this.returned.add(connection);
+    }
+
+    public void returnConnection(Connection connection, boolean accessed) {
+      this.returned.add(connection);
+    }
+
+    public void start(ScheduledExecutorService backgroundProcessor) {
+    }
+
+    public void close(boolean keepAlive) {
+    }
+
+    public void emergencyClose() {
+    }
+
+    public Connection exchangeConnection(Connection conn, Set excludedServers,
+        long aquireTimeout) {
+      throw new UnsupportedOperationException();
+    }
+
+    public int getConnectionCount() {
+      return this.borrowed.size();
+    }
+
+    public void activate(Connection conn) {
+    }
+
+    public void passivate(Connection conn, boolean accessed) {
+    }
+
+    public Connection getConnection(Connection conn) {
+      return conn;
+    }
+  }
+
+  /**
+   * A connection whose server replies with the responses the test adds
+   */
+  public class DummyConnection implements Connection {
+    private final ServerLocation server;
+
+    /** the ops sent on this connection */
+    final List<TestOp> sent = new CopyOnWriteArrayList<TestOp>();
+
+    /** the ops sent that the test has not answered yet */
+    final LinkedBlockingQueue<TestOp> received = new LinkedBlockingQueue<TestOp>();
+
+    /** the responses read by the ops, in order */
+    final LinkedBlockingQueue<Object> responses = new LinkedBlockingQueue<Object>();
+
+    volatile boolean destroyed;
+
+    public DummyConnection(ServerLocation serverLocation) {
+      this.server = serverLocation;
+    }
+
+    public void close(boolean keepAlive) throws Exception {
+    }
+
+    public void destroy() {
+      this.destroyed = true;
+      // a read in progress fails once the socket is closed
+      this.responses.add(new IOException("connection destroyed"));
+    }
+
+    public boolean isDestroyed() {
+      return this.destroyed;
+    }
+
+    public ByteBuffer getCommBuffer() {
+      return ByteBuffer.allocate(1024);
+    }
+
+    public ServerLocation getServer() {
+      return this.server;
+    }
+
+    public Socket getSocket() {
+      return null;
+    }
+
+    public ConnectionStats getStats() {
+      return null;
+    }
+
+    public int getDistributedSystemId() {
+      return 0;
+    }
+
+    public Endpoint getEndpoint() {
+      return null;
+    }
+
+    public ServerQueueStatus getQueueStatus() {
+      return null;
+    }
+
+    public Object execute(Op op) throws Exception {
+      return op.attempt(this);
+    }
+
+    public void emergencyClose() {
+    }
+
+    public short getWanSiteVersion() {
+      return -1;
+    }
+
+    public void setWanSiteVersion(short wanSiteVersion) {
+    }
+
+    public InputStream getInputStream() {
+      return null;
+    }
+
+    public OutputStream getOutputStream() {
+      return null;
+    }
+
+    public void setConnectionID(long id) {
+    }
+
+    public long getConnectionID() {
+      return 0;
+    }
+  }
+}
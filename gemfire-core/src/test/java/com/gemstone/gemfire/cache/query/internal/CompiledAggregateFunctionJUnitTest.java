@@ -0,0 +1,147 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.query.FunctionDomainException;
+import com.gemstone.gemfire.cache.query.QueryInvalidException;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.CompiledAggregateFunction.Aggregator;
+import com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes;
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class CompiledAggregateFunctionJUnitTest {
+
+  private static final CompiledValue ARG = new CompiledLiteral(null);
+
+  private static Aggregator create(int type, boolean distinct) {
+    return new CompiledAggregateFunction(type, ARG, distinct).createAggregator();
+  }
+
+  /**
+   * Aggregates the given values in two aggregators and merges their partial
+   * results into a third, the way a partitioned region query does.
+   */
+  private static Object aggregate(int type, boolean distinct, Object... values)
+      throws TypeMismatchException {
+    Aggregator member1 = create(type, distinct);
+    Aggregator member2 = create(type, distinct);
+    for (int i = 0; i < values.length; i++) {
+      (i % 2 == 0 ? member1 : member2).accumulate(values[i]);
+    }
+    Aggregator coordinator = create(type, distinct);
+    coordinator.merge(member1.getPartialResult());
+    coordinator.merge(member2.getPartialResult());
+    return coordinator.getResult();
+  }
+
+  @Test
+  public void testSum() throws Exception {
+    assertEquals(Long.valueOf(10), aggregate(OQLLexerTokenTypes.LITERAL_sum,
+        false, 1, 2, null, 3, QueryService.UNDEFINED, 4));
+    assertEquals(Double.valueOf(4.5), aggregate(
+        OQLLexerTokenTypes.LITERAL_sum, false, 1, 2L, 1.5f));
+    assertEquals(new BigDecimal("3.5"), aggregate(
+        OQLLexerTokenTypes.LITERAL_sum, false, new BigDecimal("1.5"), 2));
+    assertNull(aggregate(OQLLexerTokenTypes.LITERAL_sum, false));
+    try {
+      aggregate(OQLLexerTokenTypes.LITERAL_sum, false, "a");
+      fail("expected TypeMismatchException");
+    } catch (TypeMismatchException expected) {
+    }
+  }
+
+  @Test
+  public void testMinMax() throws Exception {
+    assertEquals(1, aggregate(OQLLexerTokenTypes.LITERAL_min, false, 3, 1,
+        null, 2));
+    assertEquals(2.5, aggregate(OQLLexerTokenTypes.LITERAL_max, false, 1,
+        2.5, 2L));
+    assertEquals("b", aggregate(OQLLexerTokenTypes.LITERAL_max, false, "a",
+        "b", "ab"));
+    assertNull(aggregate(OQLLexerTokenTypes.LITERAL_min, false, null, null));
+  }
+
+  @Test
+  public void testAvg() throws Exception {
+    assertEquals(Double.valueOf(2.5), aggregate(
+        OQLLexerTokenTypes.LITERAL_avg, false, 1, 2, 3, 4, null));
+    assertEquals(new BigDecimal("2"), aggregate(
+        OQLLexerTokenTypes.LITERAL_avg, false, new BigDecimal("1"), 3));
+    // the member with no values sends no partial result
+    assertEquals(Double.valueOf(5), aggregate(
+        OQLLexerTokenTypes.LITERAL_avg, false, 5));
+    assertNull(aggregate(OQLLexerTokenTypes.LITERAL_avg, false));
+  }
+
+  @Test
+  public void testCount() throws Exception {
+    assertEquals(Integer.valueOf(2), aggregate(
+        OQLLexerTokenTypes.LITERAL_count, false, 1, null, 1,
+        QueryService.UNDEFINED));
+    Aggregator countStar = new CompiledAggregateFunction(
+        OQLLexerTokenTypes.LITERAL_count, null, false).createAggregator();
+    countStar.accumulate(null);
+    countStar.accumulate(null);
+    assertEquals(Integer.valueOf(2), countStar.getResult());
+    assertEquals(Integer.valueOf(0), aggregate(
+        OQLLexerTokenTypes.LITERAL_count, false));
+  }
+
+  @Test
+  public void testDistinct() throws Exception {
+    // duplicates across members are only counted once
+    assertEquals(Integer.valueOf(3), aggregate(
+        OQLLexerTokenTypes.LITERAL_count, true, "a", "a", "b", "c", "b",
+        null));
+    assertEquals(Long.valueOf(6), aggregate(OQLLexerTokenTypes.LITERAL_sum,
+        true, 1, 2, 3, 3, 2, 1));
+  }
+
+  @Test
+  public void testEvaluateOutsideOfGroup() throws Exception {
+    CompiledAggregateFunction sum = new CompiledAggregateFunction(
+        OQLLexerTokenTypes.LITERAL_sum, ARG, false);
+    try {
+      sum.evaluate(new ExecutionContext(null, null));
+      fail("expected FunctionDomainException");
+    } catch (FunctionDomainException expected) {
+    }
+  }
+
+  @Test
+  public void testInvalidGroupBySelect() throws Exception {
+    Object[] projection = new Object[] { "total", new CompiledAggregateFunction(
+        OQLLexerTokenTypes.LITERAL_sum, ARG, false) };
+    try {
+      new CompiledGroupBySelect(false, null, new ArrayList(), null,
+          Collections.singletonList(ARG), null, null, null, null);
+      fail("expected QueryInvalidException");
+    } catch (QueryInvalidException expected) {
+    }
+    try {
+      new CompiledGroupBySelect(false, null, new ArrayList(),
+          Collections.singletonList(projection), null, null,
+          Collections.singletonList(ARG), null, null);
+      fail("expected QueryInvalidException");
+    } catch (QueryInvalidException expected) {
+    }
+  }
+}
@@ -14,6 +14,7 @@ import org.junit.experimental.categories.Category;
 
 import junit.framework.TestCase;
 
+import com.gemstone.gemfire.cache.query.QueryService;
 import com.gemstone.gemfire.cache.query.data.Portfolio;
 import com.gemstone.gemfire.cache.query.internal.types.StructTypeImpl;
 import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
@@ -60,4 +61,27 @@ public class OrderByComparatorJUnitTest extends TestCase {
       }
     }
   }
+
+  public void testCompareSortKeys() throws Exception {
+    // nulls and UNDEFINED sort first, desc criteria invert the order
+    assertTrue(OrderByComparator.compareSortKeys(sortKey(null, false),
+        sortKey(Integer.valueOf(1), false)) < 0);
+    assertTrue(OrderByComparator.compareSortKeys(sortKey(QueryService.UNDEFINED,
+        false), sortKey(Integer.valueOf(1), false)) < 0);
+    assertTrue(OrderByComparator.compareSortKeys(sortKey(Integer.valueOf(2),
+        true), sortKey(Integer.valueOf(1), true)) < 0);
+
+    ArrayList key1 = sortKey("a", false);
+    key1.addAll(sortKey(Integer.valueOf(1), true));
+    ArrayList key2 = sortKey("a", false);
+    key2.addAll(sortKey(Integer.valueOf(2), true));
+    assertTrue(OrderByComparator.compareSortKeys(key1, key2) > 0);
+    assertEquals(0, OrderByComparator.compareSortKeys(key1, key1));
+  }
+
+  private static ArrayList sortKey(Object value, boolean desc) {
+    ArrayList list = new ArrayList();
+    list.add(new Object[] { value, Boolean.valueOf(desc) });
+    return list;
+  }
 }
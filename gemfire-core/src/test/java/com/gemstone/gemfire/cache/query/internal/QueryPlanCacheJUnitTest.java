@@ -0,0 +1,62 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class QueryPlanCacheJUnitTest {
+
+  private static final String QUERY = "select * from /portfolios p where p.ID = $1";
+
+  @Test
+  public void testPlanIsReused() {
+    QueryPlanCache cache = new QueryPlanCache(10);
+    QueryPlanCache.Plan plan = cache.getPlan(QUERY);
+    assertSame(plan, cache.getPlan(QUERY));
+    assertNotSame(plan, cache.getPlan(QUERY + " and p.status = 'active'"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testTraceIsKept() {
+    QueryPlanCache cache = new QueryPlanCache(10);
+    assertTrue(cache.getPlan("<trace> " + QUERY).isTraceRequested());
+  }
+
+  @Test
+  public void testStatefulQueriesAreNotCached() {
+    QueryPlanCache cache = new QueryPlanCache(10);
+    String like = "select * from /portfolios p where p.status like $1";
+    assertNotSame(cache.getPlan(like), cache.getPlan(like));
+    String count = "select count(*) from /portfolios p where p.ID > $1";
+    assertNotSame(cache.getPlan(count), cache.getPlan(count));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testSizeIsBounded() {
+    QueryPlanCache cache = new QueryPlanCache(3);
+    for (int i = 0; i < 10; i++) {
+      cache.getPlan(QUERY + " and p.position = " + i);
+    }
+    assertEquals(3, cache.size());
+
+    QueryPlanCache disabled = new QueryPlanCache(0);
+    assertNotSame(disabled.getPlan(QUERY), disabled.getPlan(QUERY));
+    assertEquals(0, disabled.size());
+  }
+}
@@ -0,0 +1,145 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class QueryProfilerJUnitTest {
+
+  private static final String QUERY = "select * from /portfolios p where p.ID > 10";
+
+  private boolean wasEnabled;
+
+  @Before
+  public void setUp() {
+    this.wasEnabled = QueryProfiler.isEnabled();
+    QueryProfiler.setEnabled(true);
+  }
+
+  @After
+  public void tearDown() {
+    QueryProfiler.detach();
+    QueryProfiler.setEnabled(this.wasEnabled);
+  }
+
+  @Test
+  public void testDisabledProfilerRecordsNothing() {
+    QueryProfiler.setEnabled(false);
+    QueryProfiler profiler = new QueryProfiler(null, 10);
+    QueryProfiler.Execution execution = profiler.begin(QUERY);
+    assertNull(execution);
+    QueryProfiler.end(execution);
+    assertTrue(profiler.getProfiles().isEmpty());
+  }
+
+  @Test
+  public void testPhasesAreRecordedPerQuery() throws Exception {
+    QueryProfiler profiler = new QueryProfiler(null, 10);
+    for (int i = 0; i < 2; i++) {
+      QueryProfiler.Execution execution = profiler.begin(QUERY);
+      assertNotNull(execution);
+      QueryProfiler.enter(QueryProfiler.ITERATION);
+      QueryProfiler.enter(QueryProfiler.FILTER);
+      Thread.sleep(2);
+      QueryProfiler.exit(QueryProfiler.FILTER);
+      QueryProfiler.exit(QueryProfiler.ITERATION);
+      QueryProfiler.end(execution);
+    }
+    QueryProfiler.Profile profile = profiler.getProfile(QUERY);
+    assertEquals(2, profile.getExecutions());
+    assertTrue(profile.getPhaseTime(QueryProfiler.FILTER) > 0);
+    assertTrue(profile.getPhaseTime(QueryProfiler.ITERATION) >= profile.getPhaseTime(QueryProfiler.FILTER));
+    assertTrue(profile.getTotalTime() >= profile.getPhaseTime(QueryProfiler.ITERATION));
+    assertTrue(profile.getMaxTime() <= profile.getTotalTime());
+    assertEquals(0, profile.getPhaseTime(QueryProfiler.INDEX_LOOKUP));
+  }
+
+  @Test
+  public void testNestedPhaseIsTimedOnce() throws Exception {
+    QueryProfiler profiler = new QueryProfiler(null, 10);
+    QueryProfiler.Execution execution = profiler.begin(QUERY);
+    // a nested query does not start another execution
+    assertNull(profiler.begin(QUERY));
+    QueryProfiler.enter(QueryProfiler.INDEX_LOOKUP);
+    QueryProfiler.enter(QueryProfiler.INDEX_LOOKUP);
+    Thread.sleep(2);
+    QueryProfiler.exit(QueryProfiler.INDEX_LOOKUP);
+    QueryProfiler.exit(QueryProfiler.INDEX_LOOKUP);
+    QueryProfiler.end(execution);
+    QueryProfiler.Profile profile = profiler.getProfile(QUERY);
+    assertEquals(1, profile.getExecutions());
+    assertTrue(profile.getPhaseTime(QueryProfiler.INDEX_LOOKUP) <= profile.getTotalTime());
+  }
+
+  @Test
+  public void testAttachedThreadAddsToExecution() throws Exception {
+    QueryProfiler profiler = new QueryProfiler(null, 10);
+    final QueryProfiler.Execution execution = profiler.begin(QUERY);
+    assertTrue(QueryProfiler.current() == execution);
+    Thread worker = new Thread(new Runnable() {
+      public void run() {
+        assertTrue(QueryProfiler.attach(execution));
+        try {
+          QueryProfiler.enter(QueryProfiler.DESERIALIZATION);
+          try {
+            Thread.sleep(2);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          QueryProfiler.exit(QueryProfiler.DESERIALIZATION);
+        } finally {
+          QueryProfiler.detach();
+        }
+      }
+    });
+    worker.start();
+    worker.join();
+    QueryProfiler.end(execution);
+    assertNull(QueryProfiler.current());
+    assertTrue(profiler.getProfile(QUERY).getPhaseTime(QueryProfiler.DESERIALIZATION) > 0);
+  }
+
+  @Test
+  public void testCheapestProfileIsDropped() throws Exception {
+    QueryProfiler profiler = new QueryProfiler(null, 2);
+    profile(profiler, "slow", 5);
+    profile(profiler, "fast", 0);
+    profile(profiler, "new", 0);
+    List<QueryProfiler.Profile> profiles = profiler.getProfiles();
+    assertEquals(2, profiles.size());
+    assertEquals("slow", profiles.get(0).getQueryString());
+    assertNull(profiler.getProfile("fast"));
+    assertNotNull(profiler.getProfile("new"));
+
+    profiler.clear();
+    assertTrue(profiler.getProfiles().isEmpty());
+    assertNull(QueryProfiler.current());
+  }
+
+  private void profile(QueryProfiler profiler, String query, long sleep)
+      throws InterruptedException {
+    QueryProfiler.Execution execution = profiler.begin(query);
+    if (sleep > 0) {
+      Thread.sleep(sleep);
+    }
+    QueryProfiler.end(execution);
+  }
+}
@@ -0,0 +1,260 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.query.internal.index.AbstractIndex.InternalIndexStatistics;
+import com.gemstone.gemfire.internal.cache.RegionEntry;
+import com.gemstone.gemfire.internal.cache.VMThinRegionEntryHeapIntKey;
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class ConcurrentHashIndexSetJUnitTest {
+
+  private static final int SEGMENTS = 16;
+  private static final int THREADS = 8;
+  private static final int ENTRIES_PER_THREAD = 500;
+  private static final int KEYS = 64;
+  private static final int MOVES = 20;
+
+  private ThreadLocal<Object2ObjectOpenHashMap> oldKeys;
+  private ConcurrentHashIndexSet set;
+  private RegionEntry[][] entries;
+
+  @Before
+  public void setUp() {
+    this.oldKeys = new ThreadLocal<Object2ObjectOpenHashMap>();
+    this.set = new ConcurrentHashIndexSet(SEGMENTS, null, this.oldKeys,
+        new InternalIndexStatistics() {});
+    this.set.setHashIndexStrategy(new KeyStrategy());
+    this.entries = new RegionEntry[THREADS][ENTRIES_PER_THREAD];
+    for (int t = 0; t < THREADS; t++) {
+      for (int i = 0; i < ENTRIES_PER_THREAD; i++) {
+        int id = t * ENTRIES_PER_THREAD + i;
+        this.entries[t][i] = new VMThinRegionEntryHeapIntKey(null, id,
+            new AtomicInteger(id % KEYS));
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentAdds() throws Exception {
+    runConcurrently(new Task() {
+      public void run(int thread) throws Exception {
+        for (RegionEntry entry : entries[thread]) {
+          set.add(Integer.valueOf(keyOf(entry)), entry);
+        }
+      }
+    });
+    assertIndexed(allEntries());
+  }
+
+  @Test
+  public void testConcurrentRemoves() throws Exception {
+    for (RegionEntry entry : allEntries()) {
+      set.add(Integer.valueOf(keyOf(entry)), entry);
+    }
+    runConcurrently(new Task() {
+      public void run(int thread) throws Exception {
+        for (int i = 0; i < ENTRIES_PER_THREAD; i += 2) {
+          RegionEntry entry = entries[thread][i];
+          set.remove(Integer.valueOf(keyOf(entry)), entry, false);
+        }
+      }
+    });
+    List<RegionEntry> remaining = new ArrayList<RegionEntry>();
+    for (RegionEntry[] owned : this.entries) {
+      for (int i = 1; i < ENTRIES_PER_THREAD; i += 2) {
+        remaining.add(owned[i]);
+      }
+    }
+    assertIndexed(remaining);
+  }
+
+  @Test
+  public void testConcurrentMovesAcrossSegments() throws Exception {
+    for (RegionEntry entry : allEntries()) {
+      set.add(Integer.valueOf(keyOf(entry)), entry);
+    }
+    runConcurrently(new Task() {
+      public void run(int thread) throws Exception {
+        Random random = new Random(thread);
+        for (int round = 0; round < MOVES; round++) {
+          for (RegionEntry entry : entries[thread]) {
+            move(entry, (keyOf(entry) + 1 + random.nextInt(KEYS - 1)) % KEYS);
+          }
+        }
+      }
+    });
+    assertIndexed(allEntries());
+  }
+
+  @Test
+  public void testConcurrentMovesAddsAndRemoves() throws Exception {
+    runConcurrently(new Task() {
+      public void run(int thread) throws Exception {
+        Random random = new Random(thread);
+        for (RegionEntry entry : entries[thread]) {
+          set.add(Integer.valueOf(keyOf(entry)), entry);
+        }
+        for (int round = 0; round < MOVES; round++) {
+          for (RegionEntry entry : entries[thread]) {
+            move(entry, random.nextInt(KEYS));
+          }
+        }
+        for (int i = 0; i < ENTRIES_PER_THREAD; i += 2) {
+          RegionEntry entry = entries[thread][i];
+          set.remove(Integer.valueOf(keyOf(entry)), entry, false);
+        }
+      }
+    });
+    List<RegionEntry> remaining = new ArrayList<RegionEntry>();
+    for (RegionEntry[] owned : this.entries) {
+      for (int i = 1; i < ENTRIES_PER_THREAD; i += 2) {
+        remaining.add(owned[i]);
+      }
+    }
+    assertIndexed(remaining);
+  }
+
+  /**
+   * Changes the key of an indexed entry the way a {@link HashIndex} does:
+   * the old key is remembered for the updating thread, the value of the entry
+   * is changed and the entry is then added with its new key.
+   */
+  private void move(RegionEntry entry, int newKey) throws Exception {
+    Object2ObjectOpenHashMap keys = this.oldKeys.get();
+    if (keys == null) {
+      keys = new Object2ObjectOpenHashMap();
+      this.oldKeys.set(keys);
+    }
+    AtomicInteger key = (AtomicInteger)entry._getValue();
+    keys.put(entry, Integer.valueOf(key.get()));
+    key.set(newKey);
+    try {
+      this.set.add(Integer.valueOf(newKey), entry);
+    } finally {
+      keys.remove(entry);
+    }
+  }
+
+  /**
+   * Asserts that each of the given entries is found exactly once, under its
+   * current key, and that nothing else is indexed.
+   */
+  private void assertIndexed(List<RegionEntry> expected) {
+    Map<Object, Integer> found = new IdentityHashMap<Object, Integer>();
+    for (int key = 0; key < KEYS; key++) {
+      for (Iterator itr = this.set.get(Integer.valueOf(key)); itr.hasNext();) {
+        Object entry = itr.next();
+        assertEquals(key, keyOf(entry));
+        Integer count = found.get(entry);
+        found.put(entry, count == null ? 1 : count + 1);
+      }
+    }
+    for (RegionEntry entry : expected) {
+      assertEquals("occurrences of entry " + entry.getKey(), Integer.valueOf(1),
+          found.get(entry));
+    }
+    assertEquals(expected.size(), found.size());
+    int all = 0;
+    for (Iterator itr = this.set.getAll(); itr.hasNext(); itr.next()) {
+      all++;
+    }
+    assertEquals(expected.size(), all);
+  }
+
+  private List<RegionEntry> allEntries() {
+    List<RegionEntry> all = new ArrayList<RegionEntry>();
+    for (RegionEntry[] owned : this.entries) {
+      for (RegionEntry entry : owned) {
+        all.add(entry);
+      }
+    }
+    return all;
+  }
+
+  private static int keyOf(Object entry) {
+    return ((AtomicInteger)((RegionEntry)entry)._getValue()).get();
+  }
+
+  private interface Task {
+    void run(int thread) throws Exception;
+  }
+
+  private static void runConcurrently(final Task task) throws Exception {
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      final int thread = t;
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            task.run(thread);
+          } catch (Throwable e) {
+            error.compareAndSet(null, e);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(error.get());
+  }
+
+  /**
+   * Indexes entries on the key held in their value.
+   */
+  private static class KeyStrategy implements HashIndexStrategy {
+
+    public int computeHashCode(Object o) {
+      return computeHashCode(o, false);
+    }
+
+    public int computeHashCode(Object o, boolean recomputeKey) {
+      if (recomputeKey) {
+        return computeKey(o).hashCode();
+      }
+      return o.hashCode();
+    }
+
+    public Object computeKey(Object o) {
+      return Integer.valueOf(keyOf(o));
+    }
+
+    public boolean equalsOnAdd(Object o1, Object o2) {
+      if (o1 == null) {
+        return o2 == null;
+      }
+      return o1.equals(o2);
+    }
+
+    public boolean equalsOnGet(Object indexKey, Object o) {
+      return indexKey.equals(computeKey(o));
+    }
+  }
+}
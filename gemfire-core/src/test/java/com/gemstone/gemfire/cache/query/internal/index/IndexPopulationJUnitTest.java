@@ -0,0 +1,147 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.query.Index;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests that indexes populated by several threads hold the same mappings as
+ * indexes populated by a single thread.
+ */
+@Category(IntegrationTest.class)
+public class IndexPopulationJUnitTest {
+
+  private static final int ENTRIES = 10000;
+  private static final int THREADS = 4;
+
+  private Cache cache;
+  private QueryService queryService;
+
+  @Before
+  public void setUp() {
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    this.cache = new CacheFactory(props).create();
+    this.queryService = this.cache.getQueryService();
+  }
+
+  @After
+  public void tearDown() {
+    IndexManager.TEST_POPULATION_THREADS = 0;
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testParallelPopulationOfReplicatedRegion() throws Exception {
+    checkParallelPopulation(RegionShortcut.REPLICATE);
+  }
+
+  @Test
+  public void testParallelPopulationOfPartitionedRegion() throws Exception {
+    checkParallelPopulation(RegionShortcut.PARTITION);
+  }
+
+  @Test
+  public void testCacheCloseShutsDownPopulationExecutor() throws Exception {
+    IndexManager.TEST_POPULATION_THREADS = THREADS;
+    createRegion("parallel", RegionShortcut.REPLICATE);
+    createIndexes("parallel");
+    ExecutorService executor = IndexManager.getPopulationExecutor();
+
+    this.cache.close();
+    assertTrue(executor.isShutdown());
+    assertNotSame(executor, IndexManager.getPopulationExecutor());
+    IndexManager.shutdownPopulationExecutor();
+  }
+
+  private void checkParallelPopulation(RegionShortcut shortcut)
+      throws Exception {
+    createRegion("sequential", shortcut);
+    createRegion("parallel", shortcut);
+
+    Index[] sequential = createIndexes("sequential");
+    IndexManager.TEST_POPULATION_THREADS = THREADS;
+    Index[] parallel = createIndexes("parallel");
+
+    for (int i = 0; i < sequential.length; i++) {
+      assertEquals(sequential[i].getStatistics().getNumberOfKeys(),
+          parallel[i].getStatistics().getNumberOfKeys());
+      assertEquals(sequential[i].getStatistics().getNumberOfValues(),
+          parallel[i].getStatistics().getNumberOfValues());
+    }
+    assertEquals(ENTRIES, select("parallel", "p.id >= 0").size());
+    String[] conditions = { "p.id >= 100 AND p.id < 2100", "p.id = 777",
+        "p.status = 's3'", "p.status = 'none'" };
+    for (String condition : conditions) {
+      assertEquals(condition, select("sequential", condition),
+          select("parallel", condition));
+    }
+  }
+
+  private void createRegion(String name, RegionShortcut shortcut) {
+    Region<Integer, Value> region = this.cache.<Integer, Value> createRegionFactory(shortcut)
+        .create(name);
+    for (int id = 0; id < ENTRIES; id++) {
+      region.put(id, new Value(id));
+    }
+  }
+
+  private Index[] createIndexes(String regionName) throws Exception {
+    String from = "/" + regionName + " p";
+    return new Index[] {
+        this.queryService.createIndex(regionName + "Id", "p.id", from),
+        this.queryService.createHashIndex(regionName + "Status", "p.status", from) };
+  }
+
+  private Set<Integer> select(String regionName, String condition)
+      throws Exception {
+    SelectResults results = (SelectResults)this.queryService.newQuery(
+        "SELECT * FROM /" + regionName + " p WHERE " + condition).execute();
+    Set<Integer> ids = new TreeSet<Integer>();
+    for (Object value : results) {
+      ids.add(((Value)value).id);
+    }
+    assertEquals(results.size(), ids.size());
+    return ids;
+  }
+
+  public static class Value {
+    public final int id;
+    public final String status;
+
+    Value(int id) {
+      this.id = id;
+      this.status = "s" + (id % 10);
+    }
+  }
+}
@@ -0,0 +1,220 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.query.Index;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.FileUtil;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests saving compact range indexes to a snapshot and restoring them, and
+ * that indexes are rebuilt instead when the snapshot cannot be trusted.
+ */
+@Category(IntegrationTest.class)
+public class IndexSnapshotJUnitTest {
+
+  private static final int ENTRIES = 1000;
+
+  private File dir;
+  private File snapshot;
+  private Cache cache;
+  private QueryService queryService;
+  private Region<Integer, Value> region;
+  private CompactRangeIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    this.dir = new File("IndexSnapshotJUnitTest");
+    FileUtil.delete(this.dir);
+    this.dir.mkdirs();
+    this.snapshot = new File(this.dir, "index.snapshot");
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    this.cache = new CacheFactory(props).create();
+    this.queryService = this.cache.getQueryService();
+    this.cache.createDiskStoreFactory().setDiskDirs(new File[] { this.dir })
+        .create("store");
+    this.region = this.cache.<Integer, Value> createRegionFactory(
+        RegionShortcut.REPLICATE_PERSISTENT).setDiskStoreName("store").create("region");
+    for (int id = 0; id < ENTRIES; id++) {
+      this.region.put(id, new Value(id));
+    }
+    this.index = createIndex("p.id");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+    FileUtil.delete(this.dir);
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    assertTrue(write());
+    assertTrue(this.snapshot.exists());
+    unpopulate(this.index);
+
+    assertEquals(Collections.singleton(this.index), restore());
+    assertFalse(this.snapshot.exists());
+    this.index.setPopulated(true);
+    assertEquals(ENTRIES, this.index.getIndexStorage().size());
+    assertEquals(100, select("p.id < 100"));
+    assertEquals(1, select("p.id = 777"));
+  }
+
+  @Test
+  public void testModifiedEntryIsNotRestored() throws Exception {
+    assertTrue(write());
+    this.region.put(5, new Value(5));
+    unpopulate(this.index);
+
+    assertTrue(restore().isEmpty());
+    assertFalse(this.snapshot.exists());
+    assertEquals(0, this.index.getIndexStorage().size());
+  }
+
+  @Test
+  public void testChangedDefinitionIsNotRestored() throws Exception {
+    assertTrue(write());
+    this.queryService.removeIndex(this.index);
+    this.index = createIndex("p.name");
+    unpopulate(this.index);
+
+    assertTrue(restore().isEmpty());
+    assertEquals(0, this.index.getIndexStorage().size());
+  }
+
+  @Test
+  public void testTruncatedSnapshotIsRebuilt() throws Exception {
+    assertTrue(write());
+    RandomAccessFile file = new RandomAccessFile(this.snapshot, "rw");
+    try {
+      file.setLength(file.length() / 2);
+    } finally {
+      file.close();
+    }
+    checkRebuilt();
+  }
+
+  @Test
+  public void testCorruptSnapshotIsRebuilt() throws Exception {
+    assertTrue(write());
+    RandomAccessFile file = new RandomAccessFile(this.snapshot, "rw");
+    try {
+      // garbage in the middle of the mappings
+      for (long pos = file.length() / 3; pos < file.length() / 3 + 64; pos++) {
+        file.seek(pos);
+        file.writeByte(0x7f);
+      }
+    } finally {
+      file.close();
+    }
+    checkRebuilt();
+  }
+
+  @Test
+  public void testFingerprint() throws Exception {
+    String[] classNames = { Integer.class.getName(), Value.class.getName() };
+    byte[] fingerprint = IndexSnapshot.fingerprint(this.index, classNames);
+    assertNotNull(fingerprint);
+    assertTrue(Arrays.equals(fingerprint,
+        IndexSnapshot.fingerprint(this.index, classNames)));
+    assertFalse(Arrays.equals(fingerprint,
+        IndexSnapshot.fingerprint(this.index, new String[] { Integer.class.getName() })));
+    assertNull(IndexSnapshot.fingerprint(this.index,
+        new String[] { "com.example.NoSuchDomainClass" }));
+  }
+
+  /**
+   * Restores the index through the index manager from a snapshot that cannot
+   * be read and checks that it is populated from the region entries instead.
+   */
+  private void checkRebuilt() throws Exception {
+    unpopulate(this.index);
+    List<Index> indexes = new ArrayList<Index>();
+    indexes.add(this.index);
+    IndexUtils.getIndexManager(this.region, false).restoreIndexes(
+        this.snapshot, indexes);
+
+    assertFalse(this.snapshot.exists());
+    assertTrue(this.index.isPopulated());
+    assertEquals(ENTRIES, this.index.getIndexStorage().size());
+    assertEquals(100, select("p.id < 100"));
+  }
+
+  private CompactRangeIndex createIndex(String expression) throws Exception {
+    return (CompactRangeIndex) this.queryService.createIndex("idx", expression,
+        "/region p");
+  }
+
+  private boolean write() {
+    Collection<Index> indexes = Collections.<Index> singleton(this.index);
+    return IndexSnapshot.write(this.snapshot, (LocalRegion) this.region, indexes);
+  }
+
+  private Set<Index> restore() {
+    return IndexSnapshot.restore(this.snapshot, (LocalRegion) this.region,
+        Collections.singletonMap("idx", this.index), ENTRIES);
+  }
+
+  /**
+   * Empties an index the way it is before recovery populates it.
+   */
+  private static void unpopulate(CompactRangeIndex index) {
+    index.setPopulated(false);
+    index.clear();
+  }
+
+  private int select(String condition) throws Exception {
+    return ((SelectResults) this.queryService.newQuery(
+        "SELECT * FROM /region p WHERE " + condition).execute()).size();
+  }
+
+  public static class Value implements Serializable {
+    public final int id;
+    public final String name;
+
+    Value(int id) {
+      this.id = id;
+      this.name = "value" + id;
+    }
+  }
+}
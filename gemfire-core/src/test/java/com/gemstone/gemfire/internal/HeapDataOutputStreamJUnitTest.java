@@ -7,7 +7,12 @@
  */
 package com.gemstone.gemfire.internal;
 
+import java.io.DataInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 import org.junit.experimental.categories.Category;
 
@@ -38,4 +43,33 @@ public class HeapDataOutputStreamJUnitTest extends TestCase {
     assertEquals(new String(bytes) , new String(actual));
   }
 
+  public void testGatherTo() throws Exception {
+    HeapDataOutputStream out = new HeapDataOutputStream(32, Version.CURRENT);
+    byte[] bytes = "1234567890qwertyuiopasdfghjklzxcvbnm,./;'".getBytes();
+    out.write(bytes, 0, 10);
+    out.writeWithByteArrayWrappedConditionally(bytes, 10, bytes.length - 10);
+    ByteBuffer prefix = ByteBuffer.wrap("header".getBytes());
+
+    ServerSocketChannel server = ServerSocketChannel.open();
+    try {
+      server.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      SocketChannel sender = SocketChannel.open(server.socket().getLocalSocketAddress());
+      SocketChannel receiver = server.accept();
+      try {
+        out.gatherTo(sender, prefix);
+        assertEquals(0, prefix.remaining());
+        assertEquals(0, out.size());
+
+        byte[] actual = new byte[6 + bytes.length];
+        new DataInputStream(receiver.socket().getInputStream()).readFully(actual);
+        assertEquals("header" + new String(bytes), new String(actual));
+      } finally {
+        sender.close();
+        receiver.close();
+      }
+    } finally {
+      server.close();
+    }
+  }
+
 }
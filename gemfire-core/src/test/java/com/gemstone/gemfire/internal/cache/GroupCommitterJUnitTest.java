@@ -0,0 +1,176 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.DiskAccessException;
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class GroupCommitterJUnitTest {
+
+  private static final int WRITERS = 16;
+  private static final int WRITES = 200;
+
+  /**
+   * Stands in for an oplog: records are appended to a buffer under a lock and
+   * a flush moves everything in the buffer to the durable set.
+   */
+  private static class Log extends GroupCommitter {
+    final Object lock = new Object();
+    final List<Integer> buffer = new ArrayList<Integer>();
+    final Set<Integer> durable = new HashSet<Integer>();
+    final AtomicInteger flushes = new AtomicInteger();
+    final AtomicLong committedRecords = new AtomicLong();
+
+    long write(int record) {
+      synchronized (this.lock) {
+        this.buffer.add(record);
+        return append();
+      }
+    }
+
+    boolean isDurable(int record) {
+      synchronized (this.lock) {
+        return this.durable.contains(record);
+      }
+    }
+
+    @Override
+    protected void flush() {
+      this.flushes.incrementAndGet();
+      try {
+        // give other writers a chance to join the group
+        Thread.sleep(1);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      synchronized (this.lock) {
+        this.durable.addAll(this.buffer);
+        this.buffer.clear();
+      }
+    }
+
+    @Override
+    protected void committed(long records) {
+      this.committedRecords.addAndGet(records);
+    }
+  }
+
+  @Test
+  public void testWritersReturnOnlyAfterTheirRecordIsFlushed() throws Exception {
+    final Log log = new Log();
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[WRITERS];
+    for (int t = 0; t < WRITERS; t++) {
+      final int writer = t;
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            for (int i = 0; i < WRITES; i++) {
+              int record = writer * WRITES + i;
+              log.commit(log.write(record));
+              if (!log.isDurable(record)) {
+                error.compareAndSet(null, new AssertionError("record " + record + " was not flushed"));
+              }
+            }
+          } catch (Throwable e) {
+            error.compareAndSet(null, e);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(error.get());
+    assertEquals(WRITERS * WRITES, log.durable.size());
+    assertEquals(WRITERS * WRITES, log.committedRecords.get());
+    assertTrue(log.flushes.get() <= WRITERS * WRITES);
+  }
+
+  @Test
+  public void testFlushFailureReachesEveryWaitingWriter() throws Exception {
+    final CountDownLatch flushStarted = new CountDownLatch(1);
+    final CountDownLatch failFlush = new CountDownLatch(1);
+    final DiskAccessException failure = new DiskAccessException("expected", (Throwable)null);
+    final AtomicInteger flushes = new AtomicInteger();
+    final GroupCommitter committer = new GroupCommitter() {
+      @Override
+      protected void flush() {
+        flushes.incrementAndGet();
+        flushStarted.countDown();
+        try {
+          failFlush.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        throw failure;
+      }
+    };
+
+    final long[] tickets = new long[WRITERS];
+    for (int t = 0; t < WRITERS; t++) {
+      tickets[t] = committer.append();
+    }
+    final Throwable[] results = new Throwable[WRITERS];
+    Thread[] threads = new Thread[WRITERS];
+    for (int t = 0; t < WRITERS; t++) {
+      final int writer = t;
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            committer.commit(tickets[writer]);
+          } catch (Throwable e) {
+            results[writer] = e;
+          }
+        }
+      });
+      threads[t].start();
+      if (t == 0) {
+        // make the first writer the leader
+        assertTrue(flushStarted.await(30, TimeUnit.SECONDS));
+      }
+    }
+    failFlush.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(1, flushes.get());
+    for (int t = 0; t < WRITERS; t++) {
+      assertSame(failure, results[t]);
+    }
+
+    // a record appended after the failure is committed by a new flush
+    final long ticket = committer.append();
+    try {
+      committer.commit(ticket);
+    } catch (DiskAccessException expected) {
+      // the new flush fails the same way
+    }
+    assertEquals(2, flushes.get());
+  }
+}
@@ -0,0 +1,259 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.distributed.internal.DM;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.internal.Version;
+import com.gemstone.gemfire.internal.cache.versions.VersionStamp;
+import com.gemstone.gemfire.internal.cache.versions.VersionTag;
+import com.gemstone.gemfire.internal.util.BlobHelper;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests that the GII chunks applied by several threads, and the chunks held
+ * back by the bytes in flight limit, leave the image target with the
+ * entries, version tags and tombstones of the image.
+ */
+@Category(IntegrationTest.class)
+public class InitialImageApplyChunkJUnitTest {
+
+  private static final int ENTRIES = 1000;
+  private static final int THREADS = 4;
+
+  private int oldApplyThreads;
+  private int oldMaxBytesInFlight;
+  private GemFireCacheImpl cache;
+  private DistributedRegion region;
+  private InternalDistributedMember provider;
+  private ThreadPoolExecutor executor;
+  private final AtomicInteger rangesExecuted = new AtomicInteger();
+
+  /** the value, or token, and entry version each key is expected to have */
+  private final Map<Integer, Object[]> expected = new HashMap<Integer, Object[]>();
+
+  @Before
+  public void setUp() throws Exception {
+    this.oldApplyThreads = InitialImageOperation.APPLY_THREADS;
+    this.oldMaxBytesInFlight = InitialImageOperation.MAX_BYTES_IN_FLIGHT;
+    InitialImageOperation.APPLY_THREADS = THREADS;
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    this.cache = (GemFireCacheImpl) new CacheFactory(props).create();
+    this.region = (DistributedRegion) this.cache
+        .createRegionFactory(RegionShortcut.REPLICATE).create("region");
+    assertTrue(this.region.getConcurrencyChecksEnabled());
+    this.provider = new InternalDistributedMember(InetAddress.getLocalHost(), 12345);
+    this.executor = new ThreadPoolExecutor(THREADS, THREADS, 10, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>()) {
+      @Override
+      protected void beforeExecute(Thread t, Runnable r) {
+        rangesExecuted.incrementAndGet();
+      }
+    };
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    InitialImageOperation.APPLY_THREADS = this.oldApplyThreads;
+    InitialImageOperation.MAX_BYTES_IN_FLIGHT = this.oldMaxBytesInFlight;
+    this.executor.shutdownNow();
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testChunksAppliedInParallel() throws Exception {
+    long now = System.currentTimeMillis();
+    List chunk1 = new ArrayList();
+    for (int i = 0; i < ENTRIES; i++) {
+      Object value = i % 7 == 0 ? Token.INVALID
+          : i % 11 == 0 ? Token.TOMBSTONE : "a" + i;
+      chunk1.add(entry(i, value, 2, i + 1, now));
+    }
+    assertTrue(apply(chunk1));
+    assertEquals(THREADS - 1, this.rangesExecuted.getAndSet(0));
+    assertImage();
+
+    // the next chunk replaces, invalidates and destroys the same keys, and
+    // its stale entries lose against those of the first chunk
+    List chunk2 = new ArrayList();
+    for (int i = 0; i < ENTRIES; i++) {
+      if (i % 5 == 2) {
+        chunk2.add(entry(i, "stale" + i, 1, i + 1, now - 1000));
+      } else {
+        Object value = i % 3 == 0 ? Token.TOMBSTONE
+            : i % 3 == 1 ? "b" + i : Token.INVALID;
+        chunk2.add(entry(i, value, 3, ENTRIES + i + 1, now + 1));
+      }
+    }
+    assertTrue(apply(chunk2));
+    assertEquals(THREADS - 1, this.rangesExecuted.getAndSet(0));
+    assertImage();
+    assertEquals(2 * ENTRIES,
+        this.region.getVersionVector().getVersionForMember(this.provider));
+  }
+
+  @Test
+  public void testSmallChunkAppliedByOneThread() throws Exception {
+    long now = System.currentTimeMillis();
+    List chunk = new ArrayList();
+    for (int i = 0; i < 2 * InitialImageOperation.MIN_ENTRIES_PER_APPLY_THREAD - 1; i++) {
+      chunk.add(entry(i, i % 2 == 0 ? "a" + i : Token.TOMBSTONE, 1, i + 1, now));
+    }
+    assertTrue(apply(chunk));
+    assertEquals(0, this.rangesExecuted.get());
+    assertImage();
+  }
+
+  @Test
+  public void testAbortsOnceRegionIsDestroyed() throws Exception {
+    List chunk = new ArrayList();
+    for (int i = 0; i < ENTRIES; i++) {
+      chunk.add(entry(i, "a" + i, 1, i + 1, System.currentTimeMillis()));
+    }
+    this.region.destroyRegion();
+    assertFalse(apply(chunk));
+  }
+
+  @Test
+  public void testChunkSizeAndPermitsFollowMaxBytesInFlight() {
+    int chunkSize = InitialImageOperation.CHUNK_SIZE_IN_BYTES;
+    InitialImageOperation.MAX_BYTES_IN_FLIGHT = 0;
+    assertEquals(chunkSize, InitialImageOperation.getChunkSizeInBytes());
+    assertEquals(InitialImageOperation.CHUNK_PERMITS,
+        InitialImageFlowControl.getMaxPermits());
+
+    InitialImageOperation.MAX_BYTES_IN_FLIGHT = 3 * chunkSize + 1;
+    assertEquals(chunkSize, InitialImageOperation.getChunkSizeInBytes());
+    assertEquals(3, InitialImageFlowControl.getMaxPermits());
+
+    // a limit below the chunk size shrinks the chunks to one in flight
+    InitialImageOperation.MAX_BYTES_IN_FLIGHT = chunkSize / 4;
+    assertEquals(chunkSize / 4, InitialImageOperation.getChunkSizeInBytes());
+    assertEquals(1, InitialImageFlowControl.getMaxPermits());
+  }
+
+  @Test
+  public void testMaxBytesInFlightHoldsBackChunks() throws Exception {
+    InitialImageOperation.MAX_BYTES_IN_FLIGHT =
+        2 * InitialImageOperation.CHUNK_SIZE_IN_BYTES;
+    DM dm = this.cache.getDistributionManager();
+    final InitialImageFlowControl flowControl =
+        InitialImageFlowControl.register(dm, dm.getId());
+    try {
+      flowControl.acquirePermit();
+      flowControl.acquirePermit();
+      Thread sender = new Thread("third chunk") {
+        @Override
+        public void run() {
+          flowControl.acquirePermit();
+        }
+      };
+      sender.start();
+      sender.join(500);
+      assertTrue("third chunk sent before a permit was returned", sender.isAlive());
+
+      // the target returns the permit of a processed chunk
+      flowControl.releasePermit();
+      sender.join(30000);
+      assertFalse(sender.isAlive());
+    } finally {
+      flowControl.unregister();
+    }
+  }
+
+  private boolean apply(List chunk) throws Exception {
+    InitialImageOperation op = new InitialImageOperation(this.region,
+        this.region.entries);
+    return op.applyChunk(chunk, this.provider, Version.CURRENT, this.executor);
+  }
+
+  /**
+   * Returns an image entry of the provider, and records it as the expected
+   * state of the key unless an entry with a later version was recorded.
+   */
+  private InitialImageOperation.Entry entry(int key, Object value,
+      int entryVersion, long regionVersion, long timestamp) throws Exception {
+    InitialImageOperation.Entry result = new InitialImageOperation.Entry();
+    result.key = key;
+    if (value == Token.TOMBSTONE) {
+      result.value = Token.TOMBSTONE;
+      result.setTombstone();
+    } else if (value == Token.INVALID) {
+      result.setInvalid();
+    } else {
+      result.value = BlobHelper.serializeToBlob(value);
+      result.setSerialized(true);
+    }
+    result.setLastModified(this.region.getDistributionManager(), timestamp);
+    VersionTag tag = VersionTag.create(this.provider);
+    tag.setEntryVersion(entryVersion);
+    tag.setRegionVersion(regionVersion);
+    tag.setVersionTimeStamp(timestamp);
+    result.setVersionTag(tag);
+
+    Object[] old = this.expected.get(key);
+    if (old == null || ((Integer) old[1]).intValue() < entryVersion) {
+      this.expected.put(key, new Object[] { value, entryVersion });
+    }
+    return result;
+  }
+
+  private void assertImage() {
+    int tombstones = 0;
+    for (Map.Entry<Integer, Object[]> e : this.expected.entrySet()) {
+      Integer key = e.getKey();
+      Object value = e.getValue()[0];
+      RegionEntry re = this.region.getRegionEntry(key);
+      VersionStamp stamp = re.getVersionStamp();
+      assertEquals(key.toString(), e.getValue()[1], stamp.getEntryVersion());
+      assertEquals(key.toString(), this.provider, stamp.getMemberID());
+      if (value == Token.TOMBSTONE) {
+        assertTrue(key.toString(), re.isTombstone());
+        assertFalse(key.toString(), this.region.containsKey(key));
+        tombstones++;
+      } else if (value == Token.INVALID) {
+        assertTrue(key.toString(), re.isInvalid());
+        assertTrue(key.toString(), this.region.containsKey(key));
+        assertFalse(key.toString(), this.region.containsValueForKey(key));
+      } else {
+        assertEquals(value, this.region.get(key));
+      }
+    }
+    assertEquals(tombstones, this.region.getTombstoneCount());
+    assertEquals(this.expected.size() - tombstones, this.region.size());
+    assertNull(this.region.getRegionEntry(this.expected.size()));
+  }
+}
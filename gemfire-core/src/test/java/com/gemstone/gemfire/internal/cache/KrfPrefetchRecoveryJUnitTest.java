@@ -0,0 +1,222 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.DiskAccessException;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.FileUtil;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests the recovery of a disk store whose krfs are read ahead by several
+ * recovery threads.
+ */
+@Category(IntegrationTest.class)
+public class KrfPrefetchRecoveryJUnitTest {
+
+  private static final int ENTRIES = 100;
+  private static final int OPLOGS = 5;
+
+  private File dir;
+  private GemFireCacheImpl cache;
+  private DiskStoreImpl diskStore;
+
+  @Before
+  public void setUp() throws Exception {
+    this.dir = new File("_KrfPrefetchRecoveryJUnitTest");
+    FileUtil.delete(this.dir);
+    FileUtil.mkdirs(this.dir);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    closeCache();
+    FileUtil.delete(this.dir);
+  }
+
+  @Test
+  public void testEntriesOfAllOplogsAreRecovered() throws Exception {
+    Map<Integer, byte[]> expected = populate();
+    assertTrue(krfs().length > 1);
+
+    Region<Integer, byte[]> region = createRegion(4);
+    assertTrue(this.diskStore.getStats().getKrfPrefetches() > 1);
+    assertEquals(0, this.diskStore.getStats().getOplogsToRecover());
+    assertRecovered(expected, region);
+
+    // the recovered disk store keeps working and recovers again
+    region.put(0, new byte[] { 42 });
+    expected.put(0, new byte[] { 42 });
+    closeCache();
+    assertRecovered(expected, createRegion(4));
+  }
+
+  @Test
+  public void testRecoveryMatchesSingleThreadedRecovery() throws Exception {
+    Map<Integer, byte[]> expected = populate();
+    Region<Integer, byte[]> region = createRegion(1);
+    assertEquals(0, this.diskStore.getStats().getKrfPrefetches());
+    assertRecovered(expected, region);
+    closeCache();
+
+    region = createRegion(OPLOGS * 2);
+    assertTrue(this.diskStore.getStats().getKrfPrefetches() > 1);
+    assertRecovered(expected, region);
+  }
+
+  @Test
+  public void testCorruptKrfFailsRecovery() throws Exception {
+    populate();
+    File krf = oldest(krfs());
+    RandomAccessFile raf = new RandomAccessFile(krf, "rw");
+    try {
+      raf.setLength(raf.length() / 2);
+    } finally {
+      raf.close();
+    }
+
+    // every attempt fails the same way however many threads read the krfs
+    for (int threads : new int[] { 4, 4, 1 }) {
+      try {
+        createRegion(threads);
+        fail("expected DiskAccessException recovering " + krf);
+      } catch (Exception e) {
+        DiskAccessException dae = diskAccessException(e);
+        assertNotNull("expected DiskAccessException but got " + e, dae);
+        assertTrue(dae.getMessage(), dae.getMessage().contains(krf.getName()));
+      } finally {
+        closeCache();
+      }
+      assertTrue(krf.exists());
+    }
+  }
+
+  /**
+   * Creates, updates, invalidates and destroys entries over several oplogs,
+   * closes the cache and returns the values the entries must be recovered
+   * with. An invalid entry is expected to have a null value.
+   */
+  private Map<Integer, byte[]> populate() {
+    Region<Integer, byte[]> region = createRegion(1);
+    Map<Integer, byte[]> expected = new HashMap<Integer, byte[]>();
+    for (int oplog = 0; oplog < OPLOGS; oplog++) {
+      // each oplog overwrites part of the entries of the previous ones
+      for (int i = oplog * 10; i < ENTRIES; i++) {
+        byte[] value = new byte[] { (byte) oplog, (byte) i };
+        region.put(i, value);
+        expected.put(i, value);
+      }
+      region.invalidate(oplog);
+      expected.put(oplog, null);
+      region.destroy(ENTRIES - 1 - oplog);
+      expected.remove(ENTRIES - 1 - oplog);
+      this.diskStore.forceRoll();
+    }
+    closeCache();
+    return expected;
+  }
+
+  private Region<Integer, byte[]> createRegion(int recoveryThreads) {
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    this.cache = (GemFireCacheImpl) new CacheFactory(props).create();
+    this.diskStore = (DiskStoreImpl) this.cache.createDiskStoreFactory()
+        .setDiskDirs(new File[] { this.dir }).setAutoCompact(false)
+        .setRecoveryThreadCount(recoveryThreads).create("prefetch");
+    return this.cache
+        .<Integer, byte[]> createRegionFactory(RegionShortcut.LOCAL_PERSISTENT)
+        .setDiskStoreName("prefetch").setDiskSynchronous(true)
+        .create("region");
+  }
+
+  private void closeCache() {
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+    this.cache = null;
+    this.diskStore = null;
+  }
+
+  private static void assertRecovered(Map<Integer, byte[]> expected,
+      Region<Integer, byte[]> region) {
+    assertEquals(expected.size(), region.size());
+    for (int i = 0; i < ENTRIES; i++) {
+      if (!expected.containsKey(i)) {
+        assertFalse(String.valueOf(i), region.containsKey(i));
+      } else if (expected.get(i) == null) {
+        assertTrue(String.valueOf(i), region.containsKey(i));
+        assertNull(String.valueOf(i), region.get(i));
+      } else {
+        assertArrayEquals(String.valueOf(i), expected.get(i), region.get(i));
+      }
+    }
+  }
+
+  private static DiskAccessException diskAccessException(Throwable t) {
+    for (; t != null; t = t.getCause()) {
+      if (t instanceof DiskAccessException) {
+        return (DiskAccessException) t;
+      }
+    }
+    return null;
+  }
+
+  private File[] krfs() {
+    File[] result = this.dir.listFiles();
+    int count = 0;
+    for (File f : result) {
+      if (f.getName().endsWith(Oplog.KRF_FILE_EXT)) {
+        result[count++] = f;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  /**
+   * Returns the krf of the oplog with the lowest id.
+   */
+  private static File oldest(File[] krfs) {
+    File result = null;
+    for (File krf : krfs) {
+      if (result == null || oplogId(krf) < oplogId(result)) {
+        result = krf;
+      }
+    }
+    return result;
+  }
+
+  private static long oplogId(File krf) {
+    String name = krf.getName();
+    return Long.parseLong(name.substring(name.lastIndexOf('_') + 1,
+        name.length() - Oplog.KRF_FILE_EXT.length()));
+  }
+}
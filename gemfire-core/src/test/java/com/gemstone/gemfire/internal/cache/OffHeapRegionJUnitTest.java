@@ -0,0 +1,215 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.OutOfOffHeapMemoryException;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.offheap.ByteArrayChunk;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocator;
+import com.gemstone.gemfire.internal.offheap.StoredObject;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests that the off-heap values of a region are released once they are
+ * replaced, invalidated, destroyed or fail to be stored.
+ */
+@Category(IntegrationTest.class)
+public class OffHeapRegionJUnitTest {
+
+  private static final int ENTRIES = 50;
+
+  private GemFireCacheImpl cache;
+  private MemoryAllocator ma;
+
+  @Before
+  public void setUp() {
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    props.setProperty(DistributionConfig.OFF_HEAP_MEMORY_SIZE_NAME, "2m");
+    this.cache = (GemFireCacheImpl) new CacheFactory(props).create();
+    this.ma = this.cache.getOffHeapStore();
+  }
+
+  @After
+  public void tearDown() {
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testLocalRegionValuesAreReleased() {
+    Region<Integer, Object> region = createRegion(RegionShortcut.LOCAL);
+    putAll(region, 1);
+    getAll(region, 1);
+    long used = this.ma.getUsedMemory();
+    assertTrue(used > 0);
+
+    // replacing every value frees the old ones
+    putAll(region, 2);
+    getAll(region, 2);
+    assertEquals(used, this.ma.getUsedMemory());
+
+    for (int i = 0; i < ENTRIES; i++) {
+      region.invalidate(i);
+      assertNull(region.get(i));
+    }
+    assertEquals(0, this.ma.getUsedMemory());
+
+    putAll(region, 3);
+    for (int i = 0; i < ENTRIES; i++) {
+      region.destroy(i);
+    }
+    assertEquals(0, this.ma.getUsedMemory());
+
+    putAll(region, 4);
+    region.clear();
+    assertEquals(0, this.ma.getUsedMemory());
+  }
+
+  @Test
+  public void testPartitionedRegionValuesAreReleased() {
+    Region<Integer, Object> region = createRegion(RegionShortcut.PARTITION);
+    // byte[] values are stored as ByteArrayChunks which the buckets must size
+    putAll(region, 1);
+    getAll(region, 1);
+    putAll(region, 2);
+    getAll(region, 2);
+    assertTrue(this.ma.getUsedMemory() > 0);
+
+    for (int i = 0; i < ENTRIES; i++) {
+      region.invalidate(i);
+    }
+    assertEquals(0, this.ma.getUsedMemory());
+
+    putAll(region, 3);
+    for (int i = 0; i < ENTRIES; i++) {
+      region.destroy(i);
+    }
+    assertEquals(0, this.ma.getUsedMemory());
+  }
+
+  @Test
+  public void testFailedPutKeepsTheOldValue() {
+    Region<Integer, Object> region = createRegion(RegionShortcut.LOCAL);
+    byte[] value = new byte[] { 1, 2, 3 };
+    region.put(1, value);
+    long used = this.ma.getUsedMemory();
+    try {
+      region.put(1, new byte[4 * 1024 * 1024]);
+      fail("expected OutOfOffHeapMemoryException");
+    } catch (OutOfOffHeapMemoryException expected) {
+    }
+    assertEquals(used, this.ma.getUsedMemory());
+    assertArrayEquals(value, (byte[]) region.get(1));
+
+    region.destroy(1);
+    assertEquals(0, this.ma.getUsedMemory());
+  }
+
+  @Test
+  public void testPreparedValueNotStoredIsReleased() throws Exception {
+    Region<Integer, Object> region = createRegion(RegionShortcut.LOCAL);
+    region.put(1, "stored");
+    long used = this.ma.getUsedMemory();
+    LocalRegion lr = (LocalRegion) region;
+    RegionEntry re = lr.getRegionEntry(1);
+
+    synchronized (re) {
+      Object prepared = AbstractRegionMap.prepareValueForCache(lr, "not stored");
+      assertTrue(prepared instanceof StoredObject);
+      assertTrue(this.ma.getUsedMemory() > used);
+      AbstractRegionMap.releaseIfNotStored(re, prepared);
+      assertEquals(used, this.ma.getUsedMemory());
+
+      // the value owned by the entry is left alone
+      AbstractRegionMap.releaseIfNotStored(re, re.getTransformedValue());
+    }
+    assertEquals(used, this.ma.getUsedMemory());
+    assertEquals("stored", region.get(1));
+  }
+
+  @Test
+  public void testOffHeapByteArraySize() {
+    byte[] bytes = new byte[100];
+    StoredObject so = this.ma.allocateAndInitialize(bytes, false);
+    try {
+      assertTrue(so instanceof ByteArrayChunk);
+      // like a heap byte[] an off-heap one is never wrapped
+      assertEquals(so.getSizeInBytes(), CachedDeserializableFactory.calcMemSize(so));
+      assertEquals(so.getSizeInBytes(), BucketRegion.calcMemSize(so));
+    } finally {
+      so.release();
+    }
+    assertEquals(0, this.ma.getUsedMemory());
+  }
+
+  private Region<Integer, Object> createRegion(RegionShortcut shortcut) {
+    Region<Integer, Object> result = this.cache
+        .<Integer, Object> createRegionFactory(shortcut).setOffHeap(true)
+        .create("region");
+    assertSame(this.ma, this.cache.getOffHeapStore());
+    assertEquals(0, this.ma.getUsedMemory());
+    return result;
+  }
+
+  /**
+   * Puts a byte[] into the even entries and a serialized object into the odd
+   * ones.
+   */
+  private static void putAll(Region<Integer, Object> region, int version) {
+    for (int i = 0; i < ENTRIES; i++) {
+      region.put(i, value(i, version));
+    }
+  }
+
+  private static void getAll(Region<Integer, Object> region, int version) {
+    for (int i = 0; i < ENTRIES; i++) {
+      Object expected = value(i, version);
+      Object actual = region.get(i);
+      if (expected instanceof byte[]) {
+        assertArrayEquals((byte[]) expected, (byte[]) actual);
+      } else {
+        assertEquals(expected, actual);
+      }
+    }
+  }
+
+  private static Object value(int i, int version) {
+    if (i % 2 == 0) {
+      byte[] result = new byte[100 + i];
+      Arrays.fill(result, (byte) version);
+      return result;
+    }
+    List<Object> result = new ArrayList<Object>();
+    result.add("value" + i);
+    result.add(version);
+    return result;
+  }
+}
@@ -0,0 +1,167 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.EvictionAction;
+import com.gemstone.gemfire.cache.EvictionAttributes;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.FileUtil;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests that the crf of an oplog read through a mapping is unmapped before it
+ * is deleted.
+ */
+@Category(IntegrationTest.class)
+public class OplogMappedReadsJUnitTest {
+
+  private static final int ENTRIES = 100;
+
+  private boolean oldMmapReads;
+  private File dir;
+  private Cache cache;
+  private DiskStoreImpl diskStore;
+  private Region<Integer, byte[]> region;
+
+  @Before
+  public void setUp() throws Exception {
+    this.oldMmapReads = Oplog.MMAP_READS;
+    Oplog.MMAP_READS = true;
+    this.dir = new File("_OplogMappedReadsJUnitTest");
+    FileUtil.delete(this.dir);
+    FileUtil.mkdirs(this.dir);
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    this.cache = new CacheFactory(props).create();
+    this.diskStore = (DiskStoreImpl) this.cache.createDiskStoreFactory()
+        .setDiskDirs(new File[] { this.dir }).setAutoCompact(false)
+        .setAllowForceCompaction(true).create("mapped");
+    this.region = this.cache
+        .<Integer, byte[]> createRegionFactory(RegionShortcut.LOCAL_PERSISTENT)
+        .setDiskStoreName("mapped").setDiskSynchronous(true)
+        .setEvictionAttributes(EvictionAttributes.createLRUEntryAttributes(1,
+            EvictionAction.OVERFLOW_TO_DISK))
+        .create("region");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Oplog.MMAP_READS = this.oldMmapReads;
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+    FileUtil.delete(this.dir);
+  }
+
+  @Test
+  public void testCompactedOplogIsUnmappedAndDeleted() throws Exception {
+    putAll((byte) 1);
+    this.diskStore.forceRoll();
+    File firstCrf = oldest(crfs());
+
+    // the values are faulted in from the mapping of the first crf
+    getAll((byte) 1);
+    assertTrue(this.diskStore.getStats().getOplogMappedReads() > 0);
+    assertEquals(1, this.diskStore.getStats().getMappedOplogs());
+
+    // overwriting every entry leaves the first oplog without live values
+    putAll((byte) 2);
+    this.diskStore.forceRoll();
+    this.diskStore.forceCompaction();
+    waitForDeletion(firstCrf);
+    assertEquals(0, this.diskStore.getStats().getMappedOplogs());
+    getAll((byte) 2);
+  }
+
+  @Test
+  public void testDestroyedRegionIsUnmappedAndDeleted() throws Exception {
+    putAll((byte) 1);
+    this.diskStore.forceRoll();
+    getAll((byte) 1);
+    assertEquals(1, this.diskStore.getStats().getMappedOplogs());
+
+    this.region.destroyRegion();
+    for (File crf : crfs()) {
+      waitForDeletion(crf);
+    }
+    assertEquals(0, this.diskStore.getStats().getMappedOplogs());
+  }
+
+  private void putAll(byte value) {
+    for (int i = 0; i < ENTRIES; i++) {
+      byte[] bytes = new byte[1024];
+      Arrays.fill(bytes, value);
+      this.region.put(i, bytes);
+    }
+  }
+
+  private void getAll(byte value) {
+    for (int i = 0; i < ENTRIES; i++) {
+      byte[] bytes = this.region.get(i);
+      assertEquals(1024, bytes.length);
+      assertEquals(value, bytes[0]);
+      assertEquals(value, bytes[1023]);
+    }
+  }
+
+  private File[] crfs() {
+    File[] result = this.dir.listFiles();
+    int count = 0;
+    for (File f : result) {
+      if (f.getName().endsWith(Oplog.CRF_FILE_EXT)) {
+        result[count++] = f;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  /**
+   * Returns the crf of the oplog with the lowest id.
+   */
+  private static File oldest(File[] crfs) {
+    File result = null;
+    for (File crf : crfs) {
+      if (result == null || oplogId(crf) < oplogId(result)) {
+        result = crf;
+      }
+    }
+    return result;
+  }
+
+  private static long oplogId(File crf) {
+    String name = crf.getName();
+    return Long.parseLong(name.substring(name.lastIndexOf('_') + 1,
+        name.length() - Oplog.CRF_FILE_EXT.length()));
+  }
+
+  private static void waitForDeletion(File f) throws InterruptedException {
+    long end = System.currentTimeMillis() + 30000;
+    while (f.exists() && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    assertFalse(f + " was not deleted", f.exists());
+  }
+}
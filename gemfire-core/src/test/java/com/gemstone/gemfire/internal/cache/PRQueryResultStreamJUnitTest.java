@@ -0,0 +1,323 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.CancelCriterion;
+import com.gemstone.gemfire.InternalGemFireException;
+import com.gemstone.gemfire.cache.query.QueryException;
+import com.gemstone.gemfire.cache.query.Struct;
+import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
+import com.gemstone.gemfire.cache.query.internal.StructImpl;
+import com.gemstone.gemfire.cache.query.internal.types.StructTypeImpl;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.internal.util.BlobHelper;
+import com.gemstone.gemfire.pdx.PdxInstance;
+import com.gemstone.gemfire.pdx.internal.PdxString;
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class PRQueryResultStreamJUnitTest {
+
+  private static final int WINDOW = 2;
+
+  private static final CancelCriterion NOT_CANCELLED = new CancelCriterion() {
+    @Override
+    public String cancelInProgress() {
+      return null;
+    }
+
+    @Override
+    public RuntimeException generateCancelledException(Throwable e) {
+      return null;
+    }
+  };
+
+  /**
+   * A stream that records the permits it grants and the aborts it sends
+   * instead of messaging the members.
+   */
+  private static class Stream extends PRQueryResultStream {
+    final List<Integer> permits = new ArrayList<Integer>();
+    int aborts;
+
+    Stream(int limit, boolean convertPdx) {
+      super(null, null, NOT_CANCELLED,
+          new DefaultQuery("SELECT * FROM /portfolios", null), limit, WINDOW,
+          convertPdx, true);
+    }
+
+    @Override
+    void grantChunk(InternalDistributedMember sender, int processorId) {
+      this.permits.add(processorId);
+    }
+
+    @Override
+    void abortStreaming() {
+      this.aborts++;
+    }
+  }
+
+  @Test
+  public void testResultsOfAllMembersAreReturned() throws Exception {
+    Stream stream = new Stream(-1, true);
+    InternalDistributedMember remote = member(1);
+    assertTrue(stream.add(remote, Arrays.asList("r1", "r2"), 7));
+    assertTrue(stream.addLocal(member(2), Arrays.asList("l1")));
+    assertTrue(stream.add(remote, Arrays.asList("r3"), 0));
+    stream.finish(null);
+
+    assertEquals(Arrays.asList("r1", "r2", "l1", "r3"), drain(stream));
+    // a permit for the one chunk that came from a flow controlled member
+    assertEquals(Arrays.asList(7), stream.permits);
+    assertEquals(0, stream.aborts);
+    assertTrue(stream.isClosed());
+  }
+
+  @Test
+  public void testEarlyCloseAbortsTheMembers() throws Exception {
+    Stream stream = new Stream(-1, true);
+    InternalDistributedMember remote = member(1);
+    stream.add(remote, Arrays.asList("r1", "r2"), 7);
+    stream.add(remote, Arrays.asList("r3"), 7);
+    assertEquals("r1", stream.next());
+
+    stream.close();
+    assertEquals(1, stream.aborts);
+    assertFalse(stream.hasNext());
+    // the chunks that arrive afterwards are dropped
+    assertFalse(stream.add(remote, Arrays.asList("r4"), 7));
+    assertFalse(stream.addLocal(member(2), Arrays.asList("l1")));
+    stream.finish(null);
+    assertFalse(stream.hasNext());
+    stream.close();
+    assertEquals(1, stream.aborts);
+    assertEquals(Arrays.asList(7), stream.permits);
+  }
+
+  @Test
+  public void testLimitClosesTheStream() throws Exception {
+    Stream stream = new Stream(2, true);
+    stream.add(member(1), Arrays.asList("r1", "r2", "r3"), 7);
+    assertEquals(Arrays.asList("r1", "r2"), drain(stream));
+    assertEquals(1, stream.aborts);
+    assertTrue(stream.isClosed());
+  }
+
+  @Test
+  public void testRemoteFailureIsThrownFromNext() throws Exception {
+    Stream stream = new Stream(-1, true);
+    stream.add(member(1), Arrays.asList("r1"), 7);
+    RuntimeException failure = new IllegalStateException("bucket lost");
+    stream.finish(failure);
+
+    // the results received before the failure are returned first
+    assertEquals("r1", stream.next());
+    try {
+      stream.next();
+      fail("expected the failure of the query");
+    } catch (IllegalStateException expected) {
+      assertSame(failure, expected);
+    }
+    assertEquals(0, stream.aborts);
+    assertFalse(stream.hasNext());
+  }
+
+  @Test
+  public void testCheckedFailureIsWrapped() throws Exception {
+    Stream stream = new Stream(-1, true);
+    QueryException failure = new QueryException("data store failed");
+    stream.finish(failure);
+    try {
+      stream.next();
+      fail("expected the failure of the query");
+    } catch (InternalGemFireException expected) {
+      assertSame(failure, expected.getCause());
+    }
+  }
+
+  @Test
+  public void testLocalResultsWaitForTheWindow() throws Exception {
+    final Stream stream = new Stream(-1, true);
+    final InternalDistributedMember me = member(2);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    final int chunks = WINDOW * 3;
+    final int[] added = new int[1];
+    Thread producer = new Thread(new Runnable() {
+      public void run() {
+        try {
+          for (int i = 0; i < chunks; i++) {
+            stream.addLocal(me, Arrays.asList(i));
+            synchronized (added) {
+              added[0]++;
+              added.notifyAll();
+            }
+          }
+          stream.finish(null);
+        } catch (Throwable e) {
+          error.compareAndSet(null, e);
+        }
+      }
+    });
+    producer.start();
+    // the producer stops once a window of chunks is queued
+    waitForAdded(added, WINDOW);
+    Thread.sleep(200);
+    synchronized (added) {
+      assertEquals(WINDOW, added[0]);
+    }
+    // each chunk taken lets the producer queue another one
+    assertEquals(0, stream.next());
+    waitForAdded(added, WINDOW + 1);
+
+    for (int i = 1; i < chunks; i++) {
+      assertEquals(i, stream.next());
+    }
+    assertFalse(stream.hasNext());
+    producer.join(30000);
+    assertFalse(producer.isAlive());
+    assertNull(error.get());
+    assertTrue(stream.permits.isEmpty());
+  }
+
+  @Test
+  public void testCloseReleasesTheLocalProducer() throws Exception {
+    final Stream stream = new Stream(-1, true);
+    final InternalDistributedMember me = member(2);
+    final AtomicReference<Object> result = new AtomicReference<Object>();
+    for (int i = 0; i < WINDOW; i++) {
+      stream.addLocal(me, Arrays.asList(i));
+    }
+    Thread producer = new Thread(new Runnable() {
+      public void run() {
+        try {
+          result.set(stream.addLocal(me, Arrays.asList(WINDOW)));
+        } catch (Throwable e) {
+          result.set(e);
+        }
+      }
+    });
+    producer.start();
+    Thread.sleep(200);
+    assertTrue(producer.isAlive());
+    stream.close();
+    producer.join(30000);
+    assertFalse(producer.isAlive());
+    assertEquals(Boolean.FALSE, result.get());
+  }
+
+  @Test
+  public void testRemoteValuesAndPdxInstancesAreConverted() throws Exception {
+    Stream stream = new Stream(-1, true);
+    Object serialized = new VMCachedDeserializable(
+        BlobHelper.serializeToBlob("remote value"));
+    StructImpl struct = new StructImpl(
+        new StructTypeImpl(new String[] { "id", "value", "name" }),
+        new Object[] { pdxInstance("domain object"), serialized,
+            new PdxString("name") });
+    stream.add(member(1), Arrays.<Object> asList(serialized,
+        pdxInstance("domain object"), new PdxString("string"), struct), 7);
+    stream.finish(null);
+
+    assertEquals("remote value", stream.next());
+    assertEquals("domain object", stream.next());
+    assertEquals("string", stream.next());
+    Struct converted = (Struct) stream.next();
+    assertEquals(Arrays.asList("id", "value", "name"),
+        Arrays.asList(converted.getStructType().getFieldNames()));
+    assertEquals(Arrays.asList("domain object", "remote value", "name"),
+        Arrays.asList(converted.getFieldValues()));
+    assertFalse(stream.hasNext());
+  }
+
+  @Test
+  public void testPdxInstancesAreKeptWhenReadSerialized() throws Exception {
+    Stream stream = new Stream(-1, false);
+    PdxInstance pdx = pdxInstance("domain object");
+    PdxString string = new PdxString("string");
+    stream.add(member(1), Arrays.<Object> asList(pdx, string), 7);
+    stream.finish(null);
+    assertSame(pdx, stream.next());
+    assertSame(string, stream.next());
+  }
+
+  @Test
+  public void testLocalValuesAreNotDeserialized() throws Exception {
+    Stream stream = new Stream(-1, true);
+    Object serialized = new VMCachedDeserializable(
+        BlobHelper.serializeToBlob("local value"));
+    stream.addLocal(member(2), Arrays.asList(serialized));
+    stream.finish(null);
+    assertSame(serialized, stream.next());
+  }
+
+  private static List<Object> drain(PRQueryResultStream stream) {
+    List<Object> result = new ArrayList<Object>();
+    while (stream.hasNext()) {
+      result.add(stream.next());
+    }
+    return result;
+  }
+
+  private static void waitForAdded(int[] added, int count)
+      throws InterruptedException {
+    long end = System.currentTimeMillis() + 30000;
+    synchronized (added) {
+      while (added[0] < count && System.currentTimeMillis() < end) {
+        added.wait(100);
+      }
+      assertTrue(added[0] >= count);
+    }
+  }
+
+  private static InternalDistributedMember member(int port) throws Exception {
+    return new InternalDistributedMember("localhost", port);
+  }
+
+  /**
+   * Returns a PdxInstance whose domain object is the given one.
+   */
+  private static PdxInstance pdxInstance(final Object object) {
+    return (PdxInstance) Proxy.newProxyInstance(
+        PdxInstance.class.getClassLoader(), new Class[] { PdxInstance.class },
+        new InvocationHandler() {
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getObject")) {
+              return object;
+            }
+            if (method.getName().equals("equals")) {
+              return proxy == args[0];
+            }
+            if (method.getName().equals("hashCode")) {
+              return System.identityHashCode(proxy);
+            }
+            if (method.getName().equals("toString")) {
+              return "PdxInstance[" + object + "]";
+            }
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+}
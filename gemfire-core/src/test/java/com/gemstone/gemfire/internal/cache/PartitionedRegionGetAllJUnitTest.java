@@ -0,0 +1,374 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.DataSerializer;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.CacheLoader;
+import com.gemstone.gemfire.cache.CacheLoaderException;
+import com.gemstone.gemfire.cache.CacheWriterException;
+import com.gemstone.gemfire.cache.EntryEvent;
+import com.gemstone.gemfire.cache.LoaderHelper;
+import com.gemstone.gemfire.cache.Operation;
+import com.gemstone.gemfire.cache.PartitionAttributesFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionFactory;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.util.CacheWriterAdapter;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.internal.HeapDataOutputStream;
+import com.gemstone.gemfire.internal.Version;
+import com.gemstone.gemfire.internal.cache.partitioned.FetchBulkEntriesMessage.FetchBulkEntriesResponse;
+import com.gemstone.gemfire.internal.cache.tier.sockets.command.Get70;
+import com.gemstone.gemfire.internal.cache.versions.VersionTag;
+import com.gemstone.gemfire.internal.util.BlobHelper;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests that a getAll on a partitioned region that fetches the keys of other
+ * members in bulk returns what getting the keys one by one returns. The other
+ * members are simulated by a fetcher that replies with the entries of the
+ * local buckets.
+ */
+@Category(IntegrationTest.class)
+public class PartitionedRegionGetAllJUnitTest {
+
+  private static final int ENTRIES = 40;
+
+  private PartitionedRegion.BulkEntriesFetcher oldFetcher;
+  private LocalFetcher fetcher;
+  private GemFireCacheImpl cache;
+
+  @Before
+  public void setUp() throws Exception {
+    this.oldFetcher = PartitionedRegion.bulkEntriesFetcher;
+    this.fetcher = new LocalFetcher();
+    PartitionedRegion.bulkEntriesFetcher = this.fetcher;
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    this.cache = (GemFireCacheImpl) new CacheFactory(props).create();
+  }
+
+  @After
+  public void tearDown() {
+    PartitionedRegion.bulkEntriesFetcher = this.oldFetcher;
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testGetAllMatchesGets() {
+    Region<Object, Object> bulk = createRegion("bulk", null, null);
+    Region<Object, Object> perKey = createRegion("perKey", null, null);
+    populate(bulk);
+    populate(perKey);
+    List<Object> keys = keys();
+
+    Map<Object, Object> result = bulk.getAll(keys);
+    assertTrue(this.fetcher.sent > 0);
+    assertTrue(this.fetcher.fetchedKeys > 0);
+    assertResultsMatchGets(keys, perKey, result);
+  }
+
+  @Test
+  public void testGetAllLoadsLikeGets() {
+    CountingLoader bulkLoader = new CountingLoader();
+    CountingWriter bulkWriter = new CountingWriter();
+    CountingLoader perKeyLoader = new CountingLoader();
+    CountingWriter perKeyWriter = new CountingWriter();
+    Region<Object, Object> bulk = createRegion("bulk", bulkLoader, bulkWriter);
+    Region<Object, Object> perKey = createRegion("perKey", perKeyLoader,
+        perKeyWriter);
+    populate(bulk);
+    populate(perKey);
+    int creates = perKeyWriter.creates;
+    List<Object> keys = keys();
+
+    Map<Object, Object> result = bulk.getAll(keys);
+    assertTrue(this.fetcher.fetchedKeys > 0);
+    assertResultsMatchGets(keys, perKey, result);
+    assertTrue(perKeyLoader.loads > 0);
+    assertEquals(perKeyLoader.loads, bulkLoader.loads);
+    assertTrue(perKeyWriter.creates > creates);
+    assertEquals(perKeyWriter.creates, bulkWriter.creates);
+    assertEquals(perKey.size(), bulk.size());
+    for (Object key : keys) {
+      assertValueEquals(key, perKey.get(key), bulk.get(key));
+    }
+  }
+
+  @Test
+  public void testFailedFetchIsCountedAndFallsBackToGets() {
+    Region<Object, Object> bulk = createRegion("bulk", null, null);
+    Region<Object, Object> perKey = createRegion("perKey", null, null);
+    populate(bulk);
+    populate(perKey);
+    this.fetcher.failingMember = member(1);
+    List<Object> keys = keys();
+
+    Map<Object, Object> result = bulk.getAll(keys);
+    assertResultsMatchGets(keys, perKey, result);
+    assertEquals(1, ((PartitionedRegion) bulk).getPrStats().getGetAllMsgsRetried());
+  }
+
+  @Test
+  public void testBucketMovedDuringFetchFallsBackToGets() {
+    Region<Object, Object> bulk = createRegion("bulk", null, null);
+    Region<Object, Object> perKey = createRegion("perKey", null, null);
+    populate(bulk);
+    populate(perKey);
+    // the member no longer hosts the bucket of key 0 when the message arrives
+    this.fetcher.movedBuckets.add(PartitionedRegionHelper.getHashKey(
+        (PartitionedRegion) bulk, Operation.GET, 0, null, null));
+    List<Object> keys = keys();
+
+    Map<Object, Object> result = bulk.getAll(keys);
+    assertTrue(this.fetcher.fetchedKeys > 0);
+    assertResultsMatchGets(keys, perKey, result);
+    assertEquals(0, ((PartitionedRegion) bulk).getPrStats().getGetAllMsgsRetried());
+  }
+
+  @Test
+  public void testFetchedServerEntriesMatchGets() throws Exception {
+    Region<Object, Object> bulk = createRegion("bulk", null, null);
+    Region<Object, Object> perKey = createRegion("perKey", null, null);
+    populate(bulk);
+    populate(perKey);
+    List<Object> keys = keys();
+
+    // like GetAll70 the server fetches the tombstones too
+    Map<Object, Object> values = new HashMap<Object, Object>();
+    Map<Object, VersionTag> versions = new HashMap<Object, VersionTag>();
+    ((PartitionedRegion) bulk).fetchEntriesInBulk(keys, true, values, versions);
+    assertFalse(values.isEmpty());
+
+    Get70 request = (Get70) Get70.getCommand();
+    boolean sawTombstone = false;
+    for (Object key : keys) {
+      if (!values.containsKey(key)) {
+        continue;
+      }
+      sawTombstone |= values.get(key) == Token.TOMBSTONE;
+      Get70.Entry expected = request.getValueAndIsObject(perKey, key, null, null);
+      Get70.Entry actual = request.getFetchedValueAndIsObject(bulk, key,
+          values.get(key), versions.get(key), null);
+      assertValueEquals(key, clientValue(expected), clientValue(actual));
+      assertEquals(String.valueOf(key), expected.isObject, actual.isObject);
+      assertEquals(String.valueOf(key), expected.keyNotPresent, actual.keyNotPresent);
+      if (expected.versionTag == null) {
+        assertNull(actual.versionTag);
+      } else {
+        assertEquals(expected.versionTag.getEntryVersion(),
+            actual.versionTag.getEntryVersion());
+      }
+    }
+    assertTrue(sawTombstone);
+  }
+
+  private Region<Object, Object> createRegion(String name,
+      CacheLoader<Object, Object> loader, CountingWriter writer) {
+    RegionFactory<Object, Object> factory = this.cache
+        .<Object, Object> createRegionFactory(RegionShortcut.PARTITION)
+        .setPartitionAttributes(new PartitionAttributesFactory<Object, Object>()
+            .setTotalNumBuckets(7).create());
+    if (loader != null) {
+      factory.setCacheLoader(loader);
+    }
+    if (writer != null) {
+      factory.setCacheWriter(writer);
+    }
+    return factory.create(name);
+  }
+
+  /**
+   * Puts byte[] and object values, then invalidates some of the entries and
+   * destroys others, which leaves tombstones.
+   */
+  private static void populate(Region<Object, Object> region) {
+    for (int i = 0; i < ENTRIES; i++) {
+      if (i % 2 == 0) {
+        region.put(i, new byte[] { (byte) i, 1, 2 });
+      } else {
+        region.put(i, "value" + i);
+      }
+    }
+    for (int i = 0; i < 4; i++) {
+      region.invalidate(i);
+    }
+    for (int i = 4; i < 8; i++) {
+      region.destroy(i);
+    }
+  }
+
+  /**
+   * Returns the keys of the populated entries and some keys that never
+   * existed.
+   */
+  private static List<Object> keys() {
+    List<Object> result = new ArrayList<Object>();
+    for (int i = 0; i < ENTRIES + 5; i++) {
+      result.add(i);
+    }
+    result.add("missing");
+    return result;
+  }
+
+  private static void assertResultsMatchGets(List<Object> keys,
+      Region<Object, Object> perKey, Map<Object, Object> result) {
+    assertEquals(new HashSet<Object>(keys), result.keySet());
+    for (Object key : keys) {
+      assertValueEquals(key, perKey.get(key), result.get(key));
+    }
+  }
+
+  private static void assertValueEquals(Object key, Object expected,
+      Object actual) {
+    if (expected instanceof byte[]) {
+      assertArrayEquals(String.valueOf(key), (byte[]) expected, (byte[]) actual);
+    } else {
+      assertEquals(String.valueOf(key), expected, actual);
+    }
+  }
+
+  /**
+   * Returns the value of the entry as the client reads it.
+   */
+  private static Object clientValue(Get70.Entry entry) throws Exception {
+    if (entry.isObject && entry.value instanceof byte[]) {
+      return BlobHelper.deserializeBlob((byte[]) entry.value);
+    }
+    return entry.value;
+  }
+
+  private static InternalDistributedMember member(int port) {
+    try {
+      return new InternalDistributedMember("localhost", port);
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Pretends that the buckets are hosted by two other members, which reply
+   * with the entries of the local buckets, read and serialized the way
+   * FetchBulkEntriesReplyMessage does.
+   */
+  private static class LocalFetcher extends PartitionedRegion.BulkEntriesFetcher {
+    /** the buckets whose member lost them before the message arrived */
+    final Set<Integer> movedBuckets = new HashSet<Integer>();
+    /** the member that departs before replying */
+    InternalDistributedMember failingMember;
+    int sent;
+    int fetchedKeys;
+
+    @Override
+    InternalDistributedMember getNode(PartitionedRegion pr, int bucketId) {
+      if (pr.getDataStore().getLocalBucketById(bucketId) == null) {
+        // nobody hosts the bucket yet
+        return null;
+      }
+      return member(bucketId % 2 + 1);
+    }
+
+    @Override
+    FetchBulkEntriesResponse send(final PartitionedRegion pr,
+        final InternalDistributedMember node,
+        final HashMap<Integer, HashSet> bucketKeys,
+        final boolean returnTombstones) throws ForceReattemptException {
+      this.sent++;
+      return new FetchBulkEntriesResponse(pr.getSystem(), pr, node) {
+        @Override
+        public BucketDump[] waitForEntries() throws ForceReattemptException {
+          cleanup();
+          if (node.equals(failingMember)) {
+            throw new ForceReattemptException("member departed");
+          }
+          List<BucketDump> result = new ArrayList<BucketDump>();
+          for (Map.Entry<Integer, HashSet> entry : bucketKeys.entrySet()) {
+            if (movedBuckets.contains(entry.getKey())) {
+              continue;
+            }
+            BucketRegion bucket = pr.getDataStore().getLocalBucketById(entry.getKey());
+            assertNotNull(bucket);
+            Map<Object, Object> values = new HashMap<Object, Object>();
+            Map<Object, VersionTag> versions = new HashMap<Object, VersionTag>();
+            for (Object key : entry.getValue()) {
+              EntryEventImpl holder = EntryEventImpl.createVersionTagHolder();
+              Object value = bucket.get(key, null, true, true, true, null,
+                  holder, returnTombstones, false);
+              values.put(key, copy(value));
+              versions.put(key, holder.getVersionTag());
+              fetchedKeys++;
+            }
+            result.add(new BucketDump(entry.getKey(), node, null, values, versions));
+          }
+          return result.toArray(new BucketDump[result.size()]);
+        }
+      };
+    }
+
+    private static Object copy(Object value) {
+      try {
+        HeapDataOutputStream out = new HeapDataOutputStream(Version.CURRENT);
+        DataSerializer.writeObject(value, out);
+        return DataSerializer.readObject(new DataInputStream(
+            new ByteArrayInputStream(out.toByteArray())));
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  private static class CountingLoader implements CacheLoader<Object, Object> {
+    int loads;
+
+    public synchronized Object load(LoaderHelper<Object, Object> helper)
+        throws CacheLoaderException {
+      this.loads++;
+      return "loaded" + helper.getKey();
+    }
+
+    public void close() {
+    }
+  }
+
+  private static class CountingWriter extends CacheWriterAdapter<Object, Object> {
+    int creates;
+
+    @Override
+    public synchronized void beforeCreate(EntryEvent<Object, Object> event)
+        throws CacheWriterException {
+      this.creates++;
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.util.concurrent.PrimitiveKeyConcurrentHashMap;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests regions whose entries are kept in a
+ * {@link PrimitiveKeyConcurrentHashMap}.
+ */
+@Category(IntegrationTest.class)
+public class PrimitiveKeyRegionMapJUnitTest {
+
+  private boolean oldPrimitiveKeyRegionMap;
+  private Cache cache;
+
+  @Before
+  public void setUp() {
+    this.oldPrimitiveKeyRegionMap = AbstractRegionMap.PRIMITIVE_KEY_REGION_MAP;
+    AbstractRegionMap.PRIMITIVE_KEY_REGION_MAP = true;
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    this.cache = new CacheFactory(props).create();
+  }
+
+  @After
+  public void tearDown() {
+    AbstractRegionMap.PRIMITIVE_KEY_REGION_MAP = this.oldPrimitiveKeyRegionMap;
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testDefaultLoadFactor() {
+    checkRegion("defaultLoadFactor", 0.75f);
+  }
+
+  @Test
+  public void testLoadFactorsOfOneAndAbove() {
+    checkRegion("loadFactorOne", 1f);
+    checkRegion("loadFactorTwo", 2f);
+  }
+
+  private void checkRegion(String name, float loadFactor) {
+    Region<Integer, String> region = this.cache
+        .<Integer, String> createRegionFactory(RegionShortcut.LOCAL)
+        .setKeyConstraint(Integer.class).setLoadFactor(loadFactor)
+        .create(name);
+    assertTrue(((AbstractRegionMap) ((LocalRegion) region).getRegionMap())
+        ._getMap() instanceof PrimitiveKeyConcurrentHashMap);
+    for (int i = 0; i < 1000; i++) {
+      region.put(i, "value" + i);
+    }
+    for (int i = 0; i < 1000; i += 2) {
+      region.destroy(i);
+    }
+    assertEquals(500, region.size());
+    for (int i = 0; i < 1000; i++) {
+      if (i % 2 == 0) {
+        assertNull(region.get(i));
+      } else {
+        assertEquals("value" + i, region.get(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache.partitioned;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hamcrest.Description;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.CancelCriterion;
+import com.gemstone.gemfire.distributed.internal.DM;
+import com.gemstone.gemfire.distributed.internal.DistributionMessage;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.internal.cache.partitioned.StreamingPartitionOperation.ChunkPermitMessage;
+import com.gemstone.gemfire.internal.cache.partitioned.StreamingPartitionOperation.ChunkWindow;
+import com.gemstone.junit.UnitTest;
+
+/**
+ * Tests the flow control between a data store streaming query results and
+ * the requestor that consumes them.
+ */
+@Category(UnitTest.class)
+public class ChunkWindowJUnitTest {
+
+  private static final int PROCESSOR_ID = 42;
+
+  private Mockery context;
+  private DM dm;
+  private InternalDistributedMember requestor;
+  private Set<InternalDistributedMember> members;
+  private ChunkWindow window;
+
+  @Before
+  public void setUp() {
+    this.context = new Mockery() {{
+      setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    this.dm = this.context.mock(DM.class);
+    this.requestor = this.context.mock(InternalDistributedMember.class);
+    this.members = new CopyOnWriteArraySet<InternalDistributedMember>();
+    this.members.add(this.requestor);
+    final CancelCriterion cancelCriterion = new CancelCriterion() {
+      @Override
+      public String cancelInProgress() {
+        return null;
+      }
+
+      @Override
+      public RuntimeException generateCancelledException(Throwable e) {
+        return null;
+      }
+    };
+    this.context.checking(new Expectations() {{
+      allowing(dm).getCancelCriterion();
+      will(returnValue(cancelCriterion));
+      allowing(dm).getDistributionManagerIds();
+      will(returnValue(members));
+    }});
+  }
+
+  @After
+  public void tearDown() {
+    if (this.window != null) {
+      this.window.unregister();
+    }
+  }
+
+  @Test
+  public void testSenderWaitsForPermits() throws Exception {
+    this.window = ChunkWindow.register(this.requestor, PROCESSOR_ID, 2);
+    assertTrue(this.window.acquire(this.dm));
+    assertTrue(this.window.acquire(this.dm));
+
+    Acquirer sender = new Acquirer();
+    sender.start();
+    sender.join(500);
+    assertTrue("sender should wait for a permit", sender.isAlive());
+
+    ChunkWindow.grant(this.requestor, PROCESSOR_ID, 1);
+    sender.join(30000);
+    assertFalse(sender.isAlive());
+    assertNull(sender.error.get());
+    assertEquals(Boolean.TRUE, sender.acquired.get());
+  }
+
+  @Test
+  public void testPermitsOnlyReachTheirWindow() throws Exception {
+    this.window = ChunkWindow.register(this.requestor, PROCESSOR_ID, 0);
+    ChunkWindow other = ChunkWindow.register(this.requestor, PROCESSOR_ID + 1, 0);
+    try {
+      Acquirer sender = new Acquirer();
+      sender.start();
+      ChunkWindow.grant(this.requestor, PROCESSOR_ID + 1, 1);
+      sender.join(500);
+      assertTrue("sender should wait for a permit", sender.isAlive());
+
+      ChunkWindow.grant(this.requestor, PROCESSOR_ID, 1);
+      sender.join(30000);
+      assertEquals(Boolean.TRUE, sender.acquired.get());
+    } finally {
+      other.unregister();
+    }
+  }
+
+  @Test
+  public void testPermitMessageGrantsPermits() throws Exception {
+    this.window = ChunkWindow.register(this.requestor, PROCESSOR_ID, 0);
+    Acquirer sender = new Acquirer();
+    sender.start();
+
+    deliver(sendPermits(PROCESSOR_ID, 1));
+    sender.join(30000);
+    assertFalse(sender.isAlive());
+    assertEquals(Boolean.TRUE, sender.acquired.get());
+  }
+
+  @Test
+  public void testEarlyCloseByConsumerStopsSender() throws Exception {
+    this.window = ChunkWindow.register(this.requestor, PROCESSOR_ID, 1);
+    assertTrue(this.window.acquire(this.dm));
+
+    Acquirer sender = new Acquirer();
+    sender.start();
+    sender.join(500);
+    assertTrue("sender should wait for a permit", sender.isAlive());
+
+    // the consumer closed its iterator
+    deliver(sendPermits(PROCESSOR_ID, -1));
+    sender.join(30000);
+    assertFalse(sender.isAlive());
+    assertNull(sender.error.get());
+    assertEquals(Boolean.FALSE, sender.acquired.get());
+
+    // permits that arrive after the abort do not restart the stream
+    ChunkWindow.grant(this.requestor, PROCESSOR_ID, 1);
+    assertFalse(this.window.acquire(this.dm));
+  }
+
+  @Test
+  public void testRequestorDepartureStopsSender() throws Exception {
+    this.window = ChunkWindow.register(this.requestor, PROCESSOR_ID, 0);
+    Acquirer sender = new Acquirer();
+    sender.start();
+    sender.join(500);
+    assertTrue("sender should wait for a permit", sender.isAlive());
+
+    this.members.remove(this.requestor);
+    sender.join(30000);
+    assertFalse(sender.isAlive());
+    assertNull(sender.error.get());
+    assertEquals(Boolean.FALSE, sender.acquired.get());
+  }
+
+  @Test
+  public void testPermitsAfterUnregisterAreIgnored() throws Exception {
+    ChunkWindow window = ChunkWindow.register(this.requestor, PROCESSOR_ID, 0);
+    window.unregister();
+    // must not fail although nobody is waiting for them any more
+    ChunkWindow.grant(this.requestor, PROCESSOR_ID, 1);
+    ChunkWindow.grant(this.requestor, PROCESSOR_ID, -1);
+  }
+
+  /**
+   * Sends a permit message through the mocked distribution manager and
+   * returns it the way the data store would receive it.
+   */
+  private ChunkPermitMessage sendPermits(int processorId, int numPermits)
+      throws Exception {
+    final AtomicReference<DistributionMessage> sent = new AtomicReference<DistributionMessage>();
+    this.context.checking(new Expectations() {{
+      oneOf(dm).putOutgoing(with(any(DistributionMessage.class)));
+      will(new Action() {
+        public Object invoke(Invocation invocation) {
+          sent.set((DistributionMessage)invocation.getParameter(0));
+          return null;
+        }
+
+        public void describeTo(Description description) {
+          description.appendText("captures the message");
+        }
+      });
+    }});
+    if (numPermits < 0) {
+      ChunkPermitMessage.sendAbort(this.dm, this.requestor, processorId);
+    } else {
+      ChunkPermitMessage.send(this.dm, this.requestor, processorId, numPermits);
+    }
+    this.context.assertIsSatisfied();
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    sent.get().toData(new DataOutputStream(bytes));
+    ChunkPermitMessage received = new ChunkPermitMessage();
+    received.fromData(new DataInputStream(new ByteArrayInputStream(
+        bytes.toByteArray())));
+    received.setSender(this.requestor);
+    return received;
+  }
+
+  private static void deliver(ChunkPermitMessage message) {
+    message.process(null);
+  }
+
+  /**
+   * Waits for a permit the way a data store does before sending a chunk.
+   */
+  private class Acquirer extends Thread {
+    final AtomicReference<Boolean> acquired = new AtomicReference<Boolean>();
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+    @Override
+    public void run() {
+      try {
+        this.acquired.set(window.acquire(dm));
+      } catch (Throwable e) {
+        this.error.set(e);
+      }
+    }
+  }
+}
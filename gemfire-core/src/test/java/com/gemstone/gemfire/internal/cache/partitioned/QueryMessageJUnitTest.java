@@ -0,0 +1,99 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.cache.partitioned;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.internal.cache.Token;
+import com.gemstone.junit.UnitTest;
+
+/**
+ * Tests how a data store splits the results of a partitioned region query
+ * into the chunks it streams back.
+ */
+@Category(UnitTest.class)
+public class QueryMessageJUnitTest {
+
+  /**
+   * The sorted results of several buckets queried in parallel, as collected
+   * by a data store with more than one query thread. Each bucket's results are
+   * sorted but the buckets are not sorted relative to each other.
+   */
+  private static List<Collection> bucketResults() {
+    List<Collection> results = new ArrayList<Collection>();
+    results.add(Arrays.asList(4, 7, 9));
+    results.add(Collections.emptyList());
+    results.add(Arrays.asList(1, 8));
+    results.add(Arrays.asList(2));
+    results.add(Arrays.asList(3, 5, 6, 10));
+    return results;
+  }
+
+  @Test
+  public void testOrderedResultsOfEachBucketAreChunkedApart() throws Exception {
+    List<Collection> results = bucketResults();
+    List<List<Object>> chunks = chunk(results, true);
+
+    List<List<Object>> expected = new ArrayList<List<Object>>();
+    for (Collection bucket : results) {
+      if (!bucket.isEmpty()) {
+        expected.add(new ArrayList<Object>(bucket));
+      }
+    }
+    assertEquals(expected, chunks);
+  }
+
+  @Test
+  public void testUnorderedResultsShareChunks() throws Exception {
+    List<List<Object>> chunks = chunk(bucketResults(), false);
+    assertEquals(1, chunks.size());
+    assertEquals(Arrays.<Object>asList(4, 7, 9, 1, 8, 2, 3, 5, 6, 10),
+        chunks.get(0));
+  }
+
+  @Test
+  public void testSingleResultsCollectionIsNotSplit() throws Exception {
+    List<Collection> results = new ArrayList<Collection>();
+    results.add(Arrays.asList(1, 2, 3, 4));
+    List<List<Object>> chunks = chunk(results, true);
+    assertEquals(1, chunks.size());
+    assertEquals(Arrays.<Object>asList(1, 2, 3, 4), chunks.get(0));
+  }
+
+  /**
+   * Reads the replies of a query message the way
+   * {@link StreamingPartitionOperation.StreamingPartitionMessage} does and
+   * returns the objects of each chunk, assuming every chunk has room for all
+   * of the objects.
+   */
+  private static List<List<Object>> chunk(List<Collection> results,
+      boolean keepApart) throws Exception {
+    QueryMessage message = new QueryMessage();
+    message.startReplies(results, keepApart);
+    List<List<Object>> chunks = new ArrayList<List<Object>>();
+    List<Object> chunk = null;
+    for (Object reply = message.getNextReplyObject(null);
+        reply != Token.END_OF_STREAM; reply = message.getNextReplyObject(null)) {
+      if (chunk == null || message.startsNewChunk()) {
+        chunk = new ArrayList<Object>();
+        chunks.add(chunk);
+      }
+      chunk.add(reply);
+    }
+    return chunks;
+  }
+}
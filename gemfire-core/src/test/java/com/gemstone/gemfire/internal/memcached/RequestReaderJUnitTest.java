@@ -0,0 +1,167 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.memcached;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.memcached.GemFireMemcachedServer.Protocol;
+import com.gemstone.junit.UnitTest;
+
+/**
+ * Tests how the selector based memcached server finds the boundaries of
+ * the requests it reads.
+ */
+@Category(UnitTest.class)
+public class RequestReaderJUnitTest {
+
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  private static final int MAX = 1024;
+
+  @Test
+  public void testPartialBinaryRequest() {
+    ByteBuffer request = binaryRequest(10);
+    request.limit(20);
+    assertEquals(-1, length(request, Protocol.BINARY));
+    request.limit(30);
+    assertEquals(-1, length(request, Protocol.BINARY));
+    request.limit(34);
+    assertEquals(34, length(request, Protocol.BINARY));
+  }
+
+  @Test
+  public void testPipelinedBinaryRequests() {
+    ByteBuffer buffer = ByteBuffer.allocate(100);
+    buffer.put(binaryRequest(4));
+    buffer.put(binaryRequest(0));
+    buffer.flip();
+    assertEquals(28, length(buffer, Protocol.BINARY));
+    buffer.position(28);
+    assertEquals(24, length(buffer, Protocol.BINARY));
+  }
+
+  @Test
+  public void testNegativeBinaryBodyLength() {
+    ByteBuffer request = binaryRequest(0);
+    request.putInt(8, -30);
+    checkInvalid(request, Protocol.BINARY, ResponseStatus.INVALID_ARGUMENTS);
+    request.putInt(8, Integer.MIN_VALUE);
+    checkInvalid(request, Protocol.BINARY, ResponseStatus.INVALID_ARGUMENTS);
+  }
+
+  @Test
+  public void testOversizedBinaryRequest() {
+    ByteBuffer request = binaryRequest(0);
+    request.putInt(8, MAX - 24 + 1);
+    checkInvalid(request, Protocol.BINARY, ResponseStatus.VALUE_TOO_LARGE);
+    request.putInt(8, Integer.MAX_VALUE);
+    checkInvalid(request, Protocol.BINARY, ResponseStatus.VALUE_TOO_LARGE);
+    // the largest request allowed is only waited for
+    request.putInt(8, MAX - 24);
+    assertEquals(-1, length(request, Protocol.BINARY));
+  }
+
+  @Test
+  public void testPartialAsciiRequest() {
+    assertEquals(-1, length(ascii("get ke"), Protocol.ASCII));
+    assertEquals(8, length(ascii("get key\n"), Protocol.ASCII));
+    assertEquals(-1, length(ascii("set key 0 0 5\r\nval"), Protocol.ASCII));
+    assertEquals(22, length(ascii("set key 0 0 5\r\nvalue\r\n"), Protocol.ASCII));
+    assertEquals(22, length(ascii("set key 0 0 5\r\nvalue\r\nget key\r\n"), Protocol.ASCII));
+  }
+
+  @Test
+  public void testNegativeAsciiDataLength() {
+    checkInvalid(ascii("set key 0 0 -5\r\nvalue\r\n"), Protocol.ASCII,
+        ResponseStatus.INVALID_ARGUMENTS);
+  }
+
+  @Test
+  public void testOversizedAsciiRequest() {
+    checkInvalid(ascii("set key 0 0 " + MAX + "\r\n"), Protocol.ASCII,
+        ResponseStatus.VALUE_TOO_LARGE);
+    checkInvalid(ascii("set key 0 0 99999999999\r\n"), Protocol.ASCII,
+        ResponseStatus.VALUE_TOO_LARGE);
+    // a command line that never ends
+    StringBuilder line = new StringBuilder("get ");
+    while (line.length() < MAX) {
+      line.append('k');
+    }
+    checkInvalid(ascii(line.toString()), Protocol.ASCII,
+        ResponseStatus.VALUE_TOO_LARGE);
+  }
+
+  @Test
+  public void testInvalidLengthReplies() {
+    ByteBuffer request = binaryRequest(0);
+    request.put(1, (byte) 0x01);
+    request.putInt(12, 0x12345678);
+    request.putInt(8, -1);
+    RequestReader reader = new RequestReader(Protocol.BINARY);
+    reader.sendInvalidRequestLength(request, invalid(request, Protocol.BINARY));
+    ByteBuffer reply = reader.getPendingReplies();
+    assertEquals((byte) 0x81, reply.get(0));
+    assertEquals((byte) 0x01, reply.get(1));
+    assertEquals(ResponseStatus.INVALID_ARGUMENTS.asShort(), reply.getShort(6));
+    assertEquals(reply.limit() - 24, reply.getInt(8));
+    assertEquals(0x12345678, reply.getInt(12));
+
+    request = ascii("set key 0 0 -1\r\n");
+    reader = new RequestReader(Protocol.ASCII);
+    reader.sendInvalidRequestLength(request, invalid(request, Protocol.ASCII));
+    String text = ASCII.decode(reader.getPendingReplies()).toString();
+    assertTrue(text, text.startsWith("CLIENT_ERROR "));
+    assertTrue(text, text.endsWith("\r\n"));
+  }
+
+  private static int length(ByteBuffer buffer, Protocol protocol) {
+    int position = buffer.position();
+    int length = RequestReader.getRequestLength(buffer, protocol, MAX);
+    assertEquals(position, buffer.position());
+    return length;
+  }
+
+  private static void checkInvalid(ByteBuffer buffer, Protocol protocol,
+      ResponseStatus status) {
+    assertSame(status, invalid(buffer, protocol).getStatus());
+  }
+
+  private static RequestReader.InvalidRequestLength invalid(ByteBuffer buffer,
+      Protocol protocol) {
+    try {
+      RequestReader.getRequestLength(buffer, protocol, MAX);
+      fail("expected InvalidRequestLength");
+      return null;
+    } catch (RequestReader.InvalidRequestLength expected) {
+      return expected;
+    }
+  }
+
+  /**
+   * Returns a binary GET request with a body of the given length.
+   */
+  private static ByteBuffer binaryRequest(int bodyLength) {
+    ByteBuffer request = ByteBuffer.allocate(24 + bodyLength);
+    request.put(0, (byte) 0x80);
+    request.putInt(8, bodyLength);
+    return request;
+  }
+
+  private static ByteBuffer ascii(String request) {
+    return ByteBuffer.wrap(request.getBytes(ASCII));
+  }
+}
@@ -0,0 +1,168 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.offheap;
+
+import java.io.DataInputStream;
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.DataSerializer;
+import com.gemstone.gemfire.cache.OutOfOffHeapMemoryException;
+import com.gemstone.gemfire.internal.DummyStatisticsFactory;
+import com.gemstone.gemfire.internal.HeapDataOutputStream;
+import com.gemstone.gemfire.internal.Version;
+import com.gemstone.gemfire.internal.cache.CachedDeserializable;
+import com.gemstone.gemfire.internal.cache.EntryEventImpl;
+import com.gemstone.junit.UnitTest;
+
+/**
+ * Tests SimpleMemoryAllocatorImpl and the chunks it hands out.
+ */
+@Category(UnitTest.class)
+public class SimpleMemoryAllocatorJUnitTest extends TestCase
+{
+  private SimpleMemoryAllocatorImpl ma;
+
+  public SimpleMemoryAllocatorJUnitTest(String arg0) {
+    super(arg0);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (this.ma != null) {
+      this.ma.close();
+    }
+    super.tearDown();
+  }
+
+  private SimpleMemoryAllocatorImpl createAllocator(long totalMemory, int slabSize) {
+    OffHeapMemoryStats stats = new OffHeapMemoryStats(new DummyStatisticsFactory(), "test");
+    this.ma = new SimpleMemoryAllocatorImpl(stats, totalMemory, slabSize);
+    return this.ma;
+  }
+
+  public void testParseOffHeapMemorySize() {
+    assertEquals(0, OffHeapStorage.parseOffHeapMemorySize(""));
+    assertEquals(0, OffHeapStorage.parseOffHeapMemorySize(null));
+    assertEquals(100, OffHeapStorage.parseOffHeapMemorySize("100"));
+    assertEquals(2*1024, OffHeapStorage.parseOffHeapMemorySize("2k"));
+    assertEquals(3L*1024*1024, OffHeapStorage.parseOffHeapMemorySize("3M"));
+    assertEquals(4L*1024*1024*1024, OffHeapStorage.parseOffHeapMemorySize("4g"));
+    assertEquals(5L*1024*1024*1024*1024, OffHeapStorage.parseOffHeapMemorySize("5t"));
+    for (String bad: new String[] {"k", "-1m", "1x", "one", "99999999999t"}) {
+      try {
+        OffHeapStorage.parseOffHeapMemorySize(bad);
+        fail("expected IllegalArgumentException for " + bad);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  public void testByteArrayChunk() {
+    createAllocator(1024*1024, 64*1024);
+    byte[] bytes = new byte[] {1, 2, 3, 4, 5, 6, 7};
+    Chunk c = this.ma.allocateAndInitialize(bytes, false);
+    assertTrue(c instanceof ByteArrayChunk);
+    assertFalse(c.isSerialized());
+    assertEquals(bytes.length, c.getDataSize());
+    assertTrue(Arrays.equals(bytes, (byte[])c.getValueAsHeapObject()));
+    assertEquals(bytes.length, c.createDirectByteBuffer().remaining());
+    assertEquals(SimpleMemoryAllocatorImpl.TINY_MULTIPLE, this.ma.getUsedMemory());
+    assertEquals(1, this.ma.getStats().getObjects());
+    c.release();
+    assertEquals(0, this.ma.getUsedMemory());
+    assertEquals(0, this.ma.getStats().getObjects());
+  }
+
+  public void testSerializedChunk() throws Exception {
+    createAllocator(1024*1024, 64*1024);
+    String value = "a value that lives off-heap";
+    SerializedChunk c = (SerializedChunk)this.ma.allocateAndInitialize(EntryEventImpl.serialize(value), true);
+    assertTrue(c.isSerialized());
+    assertEquals(value, c.deserialize());
+    assertEquals(value, c.getDeserializedForReading());
+    assertNotSame(c.deserialize(), c.deserialize());
+    assertTrue(Arrays.equals(EntryEventImpl.serialize(value), c.getSerializedValue()));
+    CachedDeserializable cd = (CachedDeserializable)c.getValueAsHeapObject();
+    assertEquals(value, cd.getDeserializedForReading());
+
+    HeapDataOutputStream hdos = new HeapDataOutputStream(Version.CURRENT);
+    c.writeValueAsByteArray(hdos);
+    byte[] sent = DataSerializer.readByteArray(new DataInputStream(new ByteArrayInputStream(hdos.toByteArray())));
+    assertTrue(Arrays.equals(c.getSerializedValue(), sent));
+    c.release();
+  }
+
+  public void testRefCount() {
+    createAllocator(1024*1024, 64*1024);
+    Chunk c = this.ma.allocateAndInitialize(new byte[10], false);
+    assertEquals(1, c.getRefCount());
+    assertTrue(c.retain());
+    assertEquals(2, c.getRefCount());
+    c.release();
+    assertEquals(16, this.ma.getUsedMemory());
+    c.release();
+    assertEquals(0, c.getRefCount());
+    assertEquals(0, this.ma.getUsedMemory());
+    assertFalse(c.retain());
+    try {
+      c.release();
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      c.getRawBytes();
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  public void testFreedMemoryIsReused() {
+    createAllocator(1024, 512);
+    Chunk c1 = this.ma.allocateAndInitialize(new byte[100], false);
+    Chunk c2 = this.ma.allocateAndInitialize(new byte[100], false);
+    assertFalse(c1.getOffset() == c2.getOffset() && c1.getSlabId() == c2.getSlabId());
+    c1.release();
+    Chunk c3 = this.ma.allocateAndInitialize(new byte[97], false);
+    assertEquals(c1.getSlabId(), c3.getSlabId());
+    assertEquals(c1.getOffset(), c3.getOffset());
+    c2.release();
+    c3.release();
+    assertEquals(0, this.ma.getUsedMemory());
+  }
+
+  public void testOutOfMemory() {
+    createAllocator(1024, 512);
+    assertEquals(2, this.ma.getSlabCount());
+    Chunk c1 = this.ma.allocateAndInitialize(new byte[400], false);
+    Chunk c2 = this.ma.allocateAndInitialize(new byte[400], false);
+    // the tails of both slabs are too small for this
+    try {
+      this.ma.allocateAndInitialize(new byte[200], false);
+      fail("expected OutOfOffHeapMemoryException");
+    } catch (OutOfOffHeapMemoryException expected) {
+    }
+    assertEquals(1, this.ma.getStats().getOutOfMemory());
+    // but a small value fits in a tail
+    Chunk c3 = this.ma.allocateAndInitialize(new byte[50], false);
+    // and a freed chunk can hold a smaller value
+    c1.release();
+    Chunk c4 = this.ma.allocateAndInitialize(new byte[200], false);
+    assertEquals(c1.getOffset(), c4.getOffset());
+    assertEquals(c1.getCapacity(), c4.getCapacity());
+    c2.release();
+    c3.release();
+    c4.release();
+    assertEquals(0, this.ma.getUsedMemory());
+    assertEquals(1024, this.ma.getFreeMemory());
+  }
+}
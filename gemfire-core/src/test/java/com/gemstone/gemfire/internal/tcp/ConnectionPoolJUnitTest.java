@@ -0,0 +1,301 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class ConnectionPoolJUnitTest {
+
+  private static final int SIZE = 4;
+  private static final int THREADS = 16;
+  private static final int SENDS = 200;
+
+  /**
+   * Stands in for a connection: records the messages sent on it as pairs of
+   * thread id and sequence number.
+   */
+  private static class FakeConnection {
+    final String member;
+    final List<long[]> messages = new ArrayList<long[]>();
+    volatile boolean usable = true;
+    volatile String closeReason;
+
+    FakeConnection(String member) {
+      this.member = member;
+    }
+
+    synchronized void send(long threadId, long sequence) {
+      this.messages.add(new long[] { threadId, sequence });
+    }
+  }
+
+  private static class Pool extends ConnectionPool<String, FakeConnection> {
+    final List<FakeConnection> created = new ArrayList<FakeConnection>();
+    volatile boolean cancelled;
+
+    Pool() {
+      super(SIZE);
+    }
+
+    @Override
+    protected FakeConnection connect(String member, long startTime,
+        long ackTimeout, long ackSATimeout) throws IOException {
+      FakeConnection c = new FakeConnection(member);
+      synchronized (this.created) {
+        this.created.add(c);
+      }
+      return c;
+    }
+
+    @Override
+    protected boolean isUsable(FakeConnection c) {
+      return c.usable;
+    }
+
+    @Override
+    protected void close(String reason, FakeConnection c) {
+      assertNull("closed twice", c.closeReason);
+      c.usable = false;
+      c.closeReason = reason;
+    }
+
+    @Override
+    protected void checkCancelInProgress() {
+      if (this.cancelled) {
+        throw new IllegalStateException("cancelled");
+      }
+    }
+
+    FakeConnection get(String member) throws IOException {
+      return get(member, 0, 0, 0);
+    }
+  }
+
+  @Test
+  public void testThreadsOfOneSlotReuseItsConnection() throws Exception {
+    final Pool pool = new Pool();
+    final String[] members = { "m1", "m2" };
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    final Map<Thread, FakeConnection[]> used = new HashMap<Thread, FakeConnection[]>();
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+            FakeConnection[] connections = new FakeConnection[members.length];
+            for (int i = 0; i < SENDS; i++) {
+              for (int m = 0; m < members.length; m++) {
+                FakeConnection c = pool.get(members[m]);
+                if (connections[m] == null) {
+                  connections[m] = c;
+                } else if (connections[m] != c) {
+                  error.compareAndSet(null, new AssertionError("thread changed connections"));
+                }
+              }
+            }
+            synchronized (used) {
+              used.put(Thread.currentThread(), connections);
+            }
+          } catch (Throwable e) {
+            error.compareAndSet(null, e);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(error.get());
+
+    // a connection is created once per member and slot and then reused
+    assertTrue(pool.created.size() <= SIZE * members.length);
+    Map<Integer, FakeConnection[]> bySlot = new HashMap<Integer, FakeConnection[]>();
+    for (Map.Entry<Thread, FakeConnection[]> entry : used.entrySet()) {
+      FakeConnection[] connections = entry.getValue();
+      for (int m = 0; m < members.length; m++) {
+        assertEquals(members[m], connections[m].member);
+      }
+      int slot = pool.slotOf(entry.getKey().getId());
+      FakeConnection[] slotConnections = bySlot.get(slot);
+      if (slotConnections == null) {
+        bySlot.put(slot, connections);
+      } else {
+        for (int m = 0; m < members.length; m++) {
+          assertSame(slotConnections[m], connections[m]);
+        }
+      }
+    }
+    assertEquals(bySlot.size() * members.length, pool.created.size());
+  }
+
+  @Test
+  public void testMessagesOfEachThreadStayInOrder() throws Exception {
+    final Pool pool = new Pool();
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[THREADS];
+    for (int t = 0; t < THREADS; t++) {
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+            long threadId = Thread.currentThread().getId();
+            for (int i = 0; i < SENDS; i++) {
+              pool.get("m1").send(threadId, i);
+            }
+          } catch (Throwable e) {
+            error.compareAndSet(null, e);
+          }
+        }
+      });
+      threads[t].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(error.get());
+
+    // all messages of a thread were sent on one connection, in order
+    Map<Long, FakeConnection> connectionOfThread = new HashMap<Long, FakeConnection>();
+    Map<Long, Long> lastSequence = new HashMap<Long, Long>();
+    for (FakeConnection c : pool.created) {
+      for (long[] message : c.messages) {
+        FakeConnection previous = connectionOfThread.put(message[0], c);
+        assertTrue(previous == null || previous == c);
+        Long last = lastSequence.put(message[0], message[1]);
+        assertEquals(last == null ? 0 : last + 1, message[1]);
+      }
+    }
+    assertEquals(THREADS, lastSequence.size());
+    for (Long last : lastSequence.values()) {
+      assertEquals(SENDS - 1, last.longValue());
+    }
+  }
+
+  @Test
+  public void testRemovedOrUnusableConnectionIsReplaced() throws Exception {
+    Pool pool = new Pool();
+    FakeConnection first = pool.get("m1");
+    assertSame(first, pool.get("m1"));
+
+    // a connection that went idle leaves its slot and is closed
+    pool.remove("m1", first, "idle");
+    assertEquals("idle", first.closeReason);
+    FakeConnection second = pool.get("m1");
+    assertNotSame(first, second);
+    assertSame(second, pool.get("m1"));
+
+    // removing a connection that is no longer pooled does nothing
+    pool.remove("m1", first, "closed again");
+    assertSame(second, pool.get("m1"));
+
+    // a connection closed by its reader is replaced on the next get
+    second.usable = false;
+    FakeConnection third = pool.get("m1");
+    assertNotSame(second, third);
+    assertEquals(3, pool.created.size());
+  }
+
+  @Test
+  public void testMemberDepartureClosesItsConnections() throws Exception {
+    Pool pool = new Pool();
+    List<FakeConnection> m1 = getOnThreads(pool, "m1");
+    List<FakeConnection> m2 = getOnThreads(pool, "m2");
+    assertTrue(pool.contains("m1"));
+
+    pool.removeMember("m1", "departed");
+    assertFalse(pool.contains("m1"));
+    for (FakeConnection c : m1) {
+      assertEquals("departed", c.closeReason);
+    }
+    for (FakeConnection c : m2) {
+      assertNull(c.closeReason);
+    }
+    assertTrue(pool.contains("m2"));
+
+    // a member that joins again gets new connections
+    FakeConnection c = pool.get("m1");
+    assertFalse(m1.contains(c));
+    assertNull(c.closeReason);
+  }
+
+  @Test
+  public void testCloseClosesEveryConnection() throws Exception {
+    Pool pool = new Pool();
+    List<FakeConnection> connections = getOnThreads(pool, "m1");
+    connections.addAll(getOnThreads(pool, "m2"));
+
+    pool.close("table closed");
+    pool.cancelled = true;
+    assertFalse(pool.contains("m1"));
+    assertFalse(pool.contains("m2"));
+    for (FakeConnection c : connections) {
+      assertEquals("table closed", c.closeReason);
+    }
+    try {
+      pool.get("m1");
+      fail("expected IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  /**
+   * Gets a connection to the member on several threads and returns the
+   * distinct connections they got.
+   */
+  private static List<FakeConnection> getOnThreads(final Pool pool,
+      final String member) throws Exception {
+    final Map<FakeConnection, Boolean> connections = new IdentityHashMap<FakeConnection, Boolean>();
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    for (int t = 0; t < THREADS; t++) {
+      Thread thread = new Thread(new Runnable() {
+        public void run() {
+          try {
+            FakeConnection c = pool.get(member);
+            synchronized (connections) {
+              connections.put(c, Boolean.TRUE);
+            }
+          } catch (Throwable e) {
+            error.compareAndSet(null, e);
+          }
+        }
+      });
+      thread.start();
+      thread.join();
+    }
+    assertNull(error.get());
+    assertTrue(connections.size() <= SIZE);
+    return new ArrayList<FakeConnection>(connections.keySet());
+  }
+}
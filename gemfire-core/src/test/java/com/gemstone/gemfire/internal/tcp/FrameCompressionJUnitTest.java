@@ -0,0 +1,141 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.internal.Version;
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class FrameCompressionJUnitTest {
+
+  @Test
+  public void testCompressionNegotiated() throws IOException {
+    assumeTrue(FrameCompression.isAvailable());
+    boolean accepted = FrameCompression.readRequest(handshake(true));
+    assertTrue(accepted);
+    assertTrue(FrameCompression.readReply(reply(accepted)));
+  }
+
+  @Test
+  public void testOldSenderGetsNoCompressedFrames() throws IOException {
+    // a member that does not know about compression never asks for it and
+    // so gets a reply without the acceptance
+    boolean accepted = FrameCompression.readRequest(handshake(false));
+    assertFalse(accepted);
+    assertFalse(FrameCompression.readReply(reply(accepted)));
+  }
+
+  @Test
+  public void testOldReceiverGetsNoCompressedFrames() throws IOException {
+    // a member that does not know about compression ignores the request and
+    // replies without accepting it
+    assertFalse(FrameCompression.readReply(reply(false)));
+  }
+
+  @Test
+  public void testUnknownCompressionIsRefused() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream os = new DataOutputStream(baos);
+    os.writeByte(FrameCompression.SNAPPY + 1);
+    assertFalse(FrameCompression.readRequest(
+        new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))));
+  }
+
+  @Test
+  public void testCompressedFrameRoundTrips() {
+    assumeTrue(FrameCompression.isAvailable());
+    int length = FrameCompression.THRESHOLD * 4;
+    ByteBuffer frame = createFrame(length, Connection.CHUNKED_MSG_TYPE, (short)1234);
+
+    ByteBuffer compressed = FrameCompression.compress(frame);
+    assertEquals(0, frame.position());
+
+    int compressedLength = Connection.calcMsgByteSize(compressed.getInt());
+    assertEquals(compressed.limit() - Connection.MSG_HEADER_BYTES, compressedLength);
+    assertEquals(Connection.CHUNKED_MSG_TYPE | Connection.COMPRESSED_BIT, compressed.get() & 0xff);
+    assertEquals(1234, compressed.getShort());
+
+    ByteBuffer payload = FrameCompression.decompress(compressed, compressedLength);
+    assertEquals(length, payload.remaining());
+    for (int i = 0; i < length; i++) {
+      assertEquals((byte)(i % 7), payload.get());
+    }
+  }
+
+  @Test
+  public void testSmallFrameIsNotCompressed() {
+    assumeTrue(FrameCompression.isAvailable());
+    ByteBuffer frame = createFrame(FrameCompression.THRESHOLD - 1, Connection.NORMAL_MSG_TYPE, (short)0);
+    assertNull(FrameCompression.compress(frame));
+    assertEquals(0, frame.position());
+  }
+
+  private static ByteBuffer createFrame(int length, int msgType, short msgId) {
+    ByteBuffer frame = ByteBuffer.allocate(Connection.MSG_HEADER_BYTES + length);
+    frame.putInt(Connection.calcHdrSize(length));
+    frame.put((byte)msgType);
+    frame.putShort(msgId);
+    for (int i = 0; i < length; i++) {
+      frame.put((byte)(i % 7));
+    }
+    frame.flip();
+    return frame;
+  }
+
+  /**
+   * Returns the end of a connecting member's handshake, as read by the
+   * receiver once it has read the fields before the product version.
+   */
+  private static DataInputStream handshake(boolean askForCompression)
+      throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream os = new DataOutputStream(baos);
+    Version.CURRENT.writeOrdinal(os, true);
+    os.writeInt(1); // domino count
+    if (askForCompression) {
+      os.writeByte(FrameCompression.SNAPPY);
+    }
+    DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    assertNull(Version.readVersion(dis, true)); // the current version
+    assertEquals(1, dis.readInt());
+    return dis;
+  }
+
+  /**
+   * Returns the end of a receiver's handshake reply, as read by the
+   * connecting member once it has read the async configuration.
+   */
+  private static DataInputStream reply(boolean acceptCompression)
+      throws IOException {
+    ByteBuffer bb = ByteBuffer.allocate(128);
+    Version.writeOrdinal(bb, Version.CURRENT.ordinal(), true);
+    if (acceptCompression) {
+      bb.put(FrameCompression.SNAPPY);
+    }
+    bb.flip();
+    DataInputStream dis = new DataInputStream(new ByteBufferInputStream(bb));
+    assertNull(Version.readVersion(dis, true)); // the current version
+    return dis;
+  }
+}
@@ -0,0 +1,285 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.distributed.internal.DistributionMessage;
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class SendCoalescerJUnitTest {
+
+  /**
+   * Stands in for a connection: every write is recorded as the list of ints
+   * it wrote. The writes listed in blockedWrites wait for permission to
+   * proceed and the write numbered failedWrite throws failure.
+   */
+  private static class Channel extends SendCoalescer {
+    final List<List<Integer>> writes = new ArrayList<List<Integer>>();
+    final Semaphore writeStarted = new Semaphore(0);
+    final Semaphore proceed = new Semaphore(0);
+    final Semaphore coalesced = new Semaphore(0);
+    final AtomicInteger directWrites = new AtomicInteger();
+    final AtomicInteger bufferFullWaits = new AtomicInteger();
+    final List<Integer> batchCounts = new ArrayList<Integer>();
+    final AtomicInteger started = new AtomicInteger();
+    final List<Integer> blockedWrites;
+    final int failedWrite;
+    final IOException failure;
+
+    Channel(int bufferSize, List<Integer> blockedWrites, int failedWrite,
+        IOException failure) {
+      super(ByteBuffer.allocate(bufferSize), ByteBuffer.allocate(bufferSize));
+      this.blockedWrites = blockedWrites;
+      this.failedWrite = failedWrite;
+      this.failure = failure;
+    }
+
+    @Override
+    protected void write(ByteBuffer bb, DistributionMessage msg)
+        throws IOException {
+      int write = this.started.incrementAndGet();
+      this.writeStarted.release();
+      if (this.blockedWrites.contains(write)) {
+        this.proceed.acquireUninterruptibly();
+      }
+      if (write == this.failedWrite) {
+        throw this.failure;
+      }
+      List<Integer> ints = new ArrayList<Integer>();
+      while (bb.hasRemaining()) {
+        ints.add(bb.getInt());
+      }
+      synchronized (this.writes) {
+        this.writes.add(ints);
+      }
+    }
+
+    @Override
+    protected void directWrite() {
+      this.directWrites.incrementAndGet();
+    }
+
+    @Override
+    protected void messageCoalesced() {
+      this.coalesced.release();
+    }
+
+    @Override
+    protected void batchWritten(int count, int bytes) {
+      assertEquals(count * 4, bytes);
+      synchronized (this.batchCounts) {
+        this.batchCounts.add(count);
+      }
+    }
+
+    @Override
+    protected void bufferFullWaitEnded(long start) {
+      this.bufferFullWaits.incrementAndGet();
+    }
+
+    boolean wasWritten(int value) {
+      synchronized (this.writes) {
+        for (List<Integer> write : this.writes) {
+          if (write.contains(value)) {
+            return true;
+          }
+        }
+        return false;
+      }
+    }
+  }
+
+  @Test
+  public void testMessagesSentDuringAWriteAreWrittenInOneBatch()
+      throws Exception {
+    Channel channel = new Channel(64, Arrays.asList(1), 0, null);
+    Throwable[] results = new Throwable[6];
+    Thread[] threads = new Thread[6];
+    threads[0] = send(channel, 0, 1, results);
+    awaitPermit(channel.writeStarted);
+    for (int i = 1; i < threads.length; i++) {
+      threads[i] = send(channel, i, 1, results);
+      awaitPermit(channel.coalesced);
+    }
+    channel.proceed.release();
+    join(threads);
+
+    for (Throwable result : results) {
+      assertNull(result);
+    }
+    assertEquals(Arrays.asList(Arrays.asList(0), Arrays.asList(1, 2, 3, 4, 5)),
+        channel.writes);
+    assertEquals(Arrays.asList(5), channel.batchCounts);
+    assertEquals(1, channel.directWrites.get());
+  }
+
+  @Test
+  public void testMessageBiggerThanTheBufferIsWrittenDirectly()
+      throws Exception {
+    Channel channel = new Channel(8, Arrays.asList(1), 0, null);
+    Throwable[] results = new Throwable[3];
+    Thread[] threads = new Thread[3];
+    threads[0] = send(channel, 0, 1, results);
+    awaitPermit(channel.writeStarted);
+    threads[1] = send(channel, 1, 1, results);
+    awaitPermit(channel.coalesced);
+    threads[2] = send(channel, 2, 3, results);
+    awaitWaiting(threads[2]);
+    channel.proceed.release();
+    join(threads);
+
+    for (Throwable result : results) {
+      assertNull(result);
+    }
+    assertEquals(Arrays.asList(Arrays.asList(0), Arrays.asList(1),
+        Arrays.asList(2, 2, 2)), channel.writes);
+    assertEquals(2, channel.directWrites.get());
+    assertEquals(1, channel.bufferFullWaits.get());
+  }
+
+  @Test
+  public void testSenderReturnsOnceItsMessageIsWritten() throws Exception {
+    Channel channel = new Channel(64, Arrays.asList(1, 2, 3), 0, null);
+    Throwable[] results = new Throwable[4];
+    Thread[] threads = new Thread[4];
+    threads[0] = send(channel, 0, 1, results);
+    awaitPermit(channel.writeStarted);
+    threads[1] = send(channel, 1, 1, results);
+    awaitPermit(channel.coalesced);
+    channel.proceed.release();
+
+    // the buffer is never empty when a write completes, but every sender
+    // returns as soon as its own message is written
+    awaitPermit(channel.writeStarted);
+    threads[2] = send(channel, 2, 1, results);
+    awaitPermit(channel.coalesced);
+    join(threads[0]);
+    assertNull(results[0]);
+    channel.proceed.release();
+
+    awaitPermit(channel.writeStarted);
+    threads[3] = send(channel, 3, 1, results);
+    awaitPermit(channel.coalesced);
+    join(threads[1]);
+    assertNull(results[1]);
+    channel.proceed.release();
+
+    join(threads);
+    for (Throwable result : results) {
+      assertNull(result);
+    }
+    assertEquals(Arrays.asList(Arrays.asList(0), Arrays.asList(1),
+        Arrays.asList(2), Arrays.asList(3)), channel.writes);
+    assertEquals(1, channel.directWrites.get());
+  }
+
+  @Test
+  public void testWriteFailureReachesEveryCoalescedSender() throws Exception {
+    IOException failure = new IOException("expected");
+    Channel channel = new Channel(64, Arrays.asList(1, 2), 2, failure);
+    Throwable[] results = new Throwable[5];
+    Thread[] threads = new Thread[5];
+    threads[0] = send(channel, 0, 1, results);
+    awaitPermit(channel.writeStarted);
+    // 1 and 2 are in the batch whose write fails
+    threads[1] = send(channel, 1, 1, results);
+    awaitPermit(channel.coalesced);
+    threads[2] = send(channel, 2, 1, results);
+    awaitPermit(channel.coalesced);
+    channel.proceed.release();
+    awaitPermit(channel.writeStarted);
+    // 3 and 4 are still in the buffer when it fails
+    threads[3] = send(channel, 3, 1, results);
+    awaitPermit(channel.coalesced);
+    threads[4] = send(channel, 4, 1, results);
+    awaitPermit(channel.coalesced);
+    channel.proceed.release();
+    join(threads);
+
+    // the message of the first sender was written, so it does not fail
+    assertNull(results[0]);
+    for (int i = 1; i < results.length; i++) {
+      assertSame(failure, results[i]);
+    }
+    assertEquals(Arrays.asList(Arrays.asList(0)), channel.writes);
+    assertTrue(channel.batchCounts.isEmpty());
+
+    // a message sent after the failure is written by a new writer
+    Throwable[] after = new Throwable[6];
+    join(send(channel, 5, 1, after));
+    assertNull(after[5]);
+    assertEquals(Arrays.asList(Arrays.asList(0), Arrays.asList(5)),
+        channel.writes);
+  }
+
+  /**
+   * Sends the value repeated ints times in its own thread. The thread records
+   * the exception the send threw, or an error if the send returned before
+   * the message was written.
+   */
+  private static Thread send(final Channel channel, final int value,
+      final int ints, final Throwable[] results) {
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        ByteBuffer bb = ByteBuffer.allocate(ints * 4);
+        for (int i = 0; i < ints; i++) {
+          bb.putInt(value);
+        }
+        bb.flip();
+        try {
+          channel.send(bb, null);
+          if (!channel.wasWritten(value)) {
+            results[value] = new AssertionError("message " + value
+                + " was not written");
+          }
+        } catch (Throwable e) {
+          results[value] = e;
+        }
+      }
+    });
+    thread.start();
+    return thread;
+  }
+
+  private static void awaitPermit(Semaphore semaphore) throws Exception {
+    assertTrue(semaphore.tryAcquire(30, TimeUnit.SECONDS));
+  }
+
+  private static void awaitWaiting(Thread thread) throws Exception {
+    long end = System.currentTimeMillis() + 30000;
+    while (thread.getState() != Thread.State.WAITING) {
+      assertTrue(System.currentTimeMillis() < end);
+      Thread.sleep(10);
+    }
+  }
+
+  private static void join(Thread... threads) throws Exception {
+    for (Thread thread : threads) {
+      thread.join(30000);
+      assertFalse(thread.isAlive());
+    }
+  }
+}
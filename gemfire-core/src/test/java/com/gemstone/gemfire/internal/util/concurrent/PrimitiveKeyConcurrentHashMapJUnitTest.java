@@ -0,0 +1,191 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.internal.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class PrimitiveKeyConcurrentHashMapJUnitTest {
+
+  @Test
+  public void testBasicOperations() {
+    PrimitiveKeyConcurrentHashMap<String> map =
+        new PrimitiveKeyConcurrentHashMap<String>(Long.class, 16, 0.75f, 4);
+    assertTrue(map.isEmpty());
+    assertNull(map.put(1L, "one"));
+    assertEquals("one", map.put(1L, "uno"));
+    assertEquals("uno", map.putIfAbsent(1L, "one"));
+    assertNull(map.putIfAbsent(2L, "two"));
+    assertEquals(2, map.size());
+    assertEquals("uno", map.get(1L));
+    assertNull(map.get(1));
+    assertNull(map.get("1"));
+    assertFalse(map.remove(1L, "one"));
+    assertTrue(map.remove(1L, "uno"));
+    assertNull(map.get(1L));
+    assertFalse(map.containsKey(1L));
+    assertFalse(map.replace(2L, "one", "dos"));
+    assertTrue(map.replace(2L, "two", "dos"));
+    assertNull(map.replace(3L, "three"));
+    assertEquals("dos", map.remove(2L));
+    assertTrue(map.isEmpty());
+    // a removed key can be mapped again
+    assertNull(map.putIfAbsent(1L, "one"));
+    assertEquals(1, map.size());
+    map.clear();
+    assertTrue(map.isEmpty());
+  }
+
+  @Test
+  public void testKeyTypeChecks() {
+    try {
+      new PrimitiveKeyConcurrentHashMap<Object>(String.class, 16, 0.75f, 4);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+    PrimitiveKeyConcurrentHashMap<Object> map =
+        new PrimitiveKeyConcurrentHashMap<Object>(Integer.class, 16, 0.75f, 4);
+    try {
+      map.put(1L, "one");
+      fail("expected ClassCastException");
+    } catch (ClassCastException expected) {
+    }
+    try {
+      map.put(null, "one");
+      fail("expected NullPointerException");
+    } catch (NullPointerException expected) {
+    }
+    try {
+      map.put(1, null);
+      fail("expected NullPointerException");
+    } catch (NullPointerException expected) {
+    }
+  }
+
+  @Test
+  public void testRandomOperationsMatchHashMap() {
+    PrimitiveKeyConcurrentHashMap<Object> map =
+        new PrimitiveKeyConcurrentHashMap<Object>(Integer.class, 0, 0.75f, 8);
+    Map<Object, Object> expected = new HashMap<Object, Object>();
+    Random random = new Random(1234);
+    for (int i = 0; i < 200000; i++) {
+      Integer key = random.nextInt(5000);
+      if (random.nextInt(3) == 0) {
+        assertEquals(expected.remove(key), map.remove(key));
+      } else {
+        Integer value = random.nextInt();
+        assertEquals(expected.put(key, value), map.put(key, value));
+      }
+    }
+    assertEquals(expected.size(), map.size());
+    assertEquals(expected, map);
+    assertEquals(map, expected);
+    assertEquals(expected.keySet(), map.keySet());
+  }
+
+  @Test
+  public void testLoadFactorsOfOneAndAbove() {
+    float[] loadFactors = { 0.95f, 1f, 4f };
+    for (float loadFactor : loadFactors) {
+      PrimitiveKeyConcurrentHashMap<Object> map =
+          new PrimitiveKeyConcurrentHashMap<Object>(Integer.class, 10, loadFactor, 1);
+      Map<Object, Object> expected = new HashMap<Object, Object>();
+      Random random = new Random(1234);
+      for (int i = 0; i < 50000; i++) {
+        Integer key = random.nextInt(5000);
+        if (random.nextInt(4) == 0) {
+          assertEquals(expected.remove(key), map.remove(key));
+        } else {
+          assertEquals(expected.put(key, i), map.put(key, i));
+        }
+      }
+      assertEquals(expected, map);
+    }
+    float[] invalid = { 0f, -1f, Float.NaN };
+    for (float loadFactor : invalid) {
+      try {
+        new PrimitiveKeyConcurrentHashMap<Object>(Integer.class, 10, loadFactor, 1);
+        fail("expected IllegalArgumentException for " + loadFactor);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void testReusableEntries() {
+    PrimitiveKeyConcurrentHashMap<Object> map =
+        new PrimitiveKeyConcurrentHashMap<Object>(Long.class, 16, 0.75f, 1);
+    for (long i = 0; i < 100; i++) {
+      map.put(i, i * 2);
+    }
+    Map.Entry<Object, Object> first = null;
+    int count = 0;
+    for (Map.Entry<Object, Object> e : map.entrySetWithReusableEntries()) {
+      if (first == null) {
+        first = e;
+      }
+      assertSame(first, e);
+      assertEquals((Long)e.getKey() * 2, e.getValue());
+      count++;
+    }
+    assertEquals(100, count);
+
+    Iterator<Object> it = map.keySet().iterator();
+    while (it.hasNext()) {
+      if ((Long)it.next() % 2 == 0) {
+        it.remove();
+      }
+    }
+    assertEquals(50, map.size());
+    for (long i = 0; i < 100; i++) {
+      assertEquals(i % 2 != 0, map.containsKey(i));
+    }
+  }
+
+  @Test
+  public void testConcurrentPuts() throws InterruptedException {
+    final PrimitiveKeyConcurrentHashMap<Object> map =
+        new PrimitiveKeyConcurrentHashMap<Object>(Long.class, 0, 0.75f, 4);
+    final int perThread = 50000;
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final long base = (long)t * perThread;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (long k = base; k < base + perThread; k++) {
+            map.put(k, k);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertEquals(threads.length * perThread, map.size());
+    for (long k = 0; k < threads.length * perThread; k++) {
+      assertEquals(k, map.get(k));
+    }
+  }
+}
@@ -0,0 +1,282 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.pdx.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.util.BlobHelper;
+import com.gemstone.gemfire.pdx.ReflectionBasedAutoSerializer;
+import com.gemstone.gemfire.pdx.internal.AutoSerializableManager.AutoClassInfo;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests that the serializers generated with gemfire.AutoSerializer.GENERATE
+ * write the same bytes, and read the same objects, as the field wrappers of
+ * the reflection based auto serializer.
+ */
+@Category(IntegrationTest.class)
+public class AutoClassSerializerJUnitTest {
+
+  private boolean oldGenerate;
+  private GemFireCacheImpl cache;
+
+  @Before
+  public void setUp() {
+    this.oldGenerate = AutoSerializableManager.GENERATE_SERIALIZERS;
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    this.cache = (GemFireCacheImpl) new CacheFactory(props).create();
+  }
+
+  @After
+  public void tearDown() {
+    AutoSerializableManager.GENERATE_SERIALIZERS = this.oldGenerate;
+    TypeRegistry.setPdxSerializer(null);
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testGeneratedSerializerMatchesTheFieldWrappers() throws Exception {
+    assumeTrue(AutoSerializableManager.getUnsafe() != null);
+    AllFields value = AllFields.create();
+    AllFields nulls = new AllFields();
+
+    TestSerializer reflective = use(false, new TestSerializer(false));
+    assertNull(classInfo(reflective).getSerializer());
+    byte[] expected = serialize(value);
+    byte[] expectedNulls = serialize(nulls);
+
+    TestSerializer generated = use(true, new TestSerializer(false));
+    AutoClassSerializer serializer = classInfo(generated).getSerializer();
+    assertNotNull(serializer);
+    assertArrayEquals(expected, serialize(value));
+    assertArrayEquals(expectedNulls, serialize(nulls));
+
+    // the pdx type matches the class so the generated serializer reads it
+    assertRoundTripped(value, (AllFields) BlobHelper.deserializeBlob(expected));
+    assertRoundTripped(nulls, (AllFields) BlobHelper.deserializeBlob(expectedNulls));
+  }
+
+  @Test
+  public void testTransformedFieldsUseTheFieldWrappers() throws Exception {
+    TestSerializer transforming = use(true, new TestSerializer(true));
+    AllFields value = AllFields.create();
+    byte[] bytes = serialize(value);
+    assertNull(classInfo(transforming).getSerializer());
+    AllFields result = (AllFields) BlobHelper.deserializeBlob(bytes);
+    assertRoundTripped(value, result);
+    assertTrue(transforming.transformed > 0);
+  }
+
+  @Test
+  public void testNoSerializerIsGeneratedWithoutUnsafe() throws Exception {
+    TestSerializer reflective = use(false, new TestSerializer(false));
+    List<AutoSerializableManager.PdxFieldWrapper> fields = classInfo(reflective).getFields();
+    assertNull(AutoClassSerializerGenerator.generate(AllFields.class, fields, null));
+  }
+
+  @Test
+  public void testGeneratedClassLoadsAndVerifies() throws Exception {
+    assumeTrue(AutoSerializableManager.getUnsafe() != null);
+    TestSerializer reflective = use(false, new TestSerializer(false));
+    List<AutoSerializableManager.PdxFieldWrapper> fields = classInfo(reflective).getFields();
+
+    // creating the instance links, and so verifies, the generated class
+    AutoClassSerializer serializer = AutoClassSerializerGenerator.generate(
+        AllFields.class, fields, AutoSerializableManager.getUnsafe());
+    assertNotNull(serializer);
+    Class<?> c = serializer.getClass();
+    assertTrue(c.getName().startsWith(
+        "com.gemstone.gemfire.pdx.internal.GeneratedAutoClassSerializer"));
+    assertNotSame(AutoClassSerializer.class.getClassLoader(), c.getClassLoader());
+    assertEquals(c, Class.forName(c.getName(), true, c.getClassLoader()));
+  }
+
+  private static <T extends ReflectionBasedAutoSerializer> T use(
+      boolean generate, T serializer) throws Exception {
+    AutoSerializableManager.GENERATE_SERIALIZERS = generate;
+    TypeRegistry.setPdxSerializer(serializer);
+    // the first serialization creates the class info and defines the pdx
+    // type; the fields are only written in order after that
+    serialize(AllFields.create());
+    return serializer;
+  }
+
+  private static AutoClassInfo classInfo(ReflectionBasedAutoSerializer serializer) {
+    AutoClassInfo result = AutoSerializableManager.getInstance(serializer)
+        .getExistingClassInfo(AllFields.class);
+    assertNotNull(result);
+    return result;
+  }
+
+  private static byte[] serialize(Object obj) throws Exception {
+    return BlobHelper.serializeToBlob(obj);
+  }
+
+  /**
+   * Asserts that every serialized field of the result has the value of the
+   * original, and that the others have their default value.
+   */
+  private static void assertRoundTripped(AllFields original, AllFields result)
+      throws Exception {
+    for (Class<?> c = AllFields.class; c != Object.class; c = c.getSuperclass()) {
+      for (Field f : c.getDeclaredFields()) {
+        if (Modifier.isStatic(f.getModifiers())) {
+          continue;
+        }
+        f.setAccessible(true);
+        if (Modifier.isTransient(f.getModifiers())
+            || f.getName().equals(TestSerializer.EXCLUDED_FIELD)) {
+          assertEquals(f.getName(), 0, f.getInt(result));
+        } else {
+          assertTrue(f.getName() + " was " + f.get(result),
+              Arrays.deepEquals(new Object[] { f.get(original) },
+                  new Object[] { f.get(result) }));
+        }
+      }
+    }
+  }
+
+  /**
+   * Auto serializes the classes of this test, which the default patterns
+   * exclude since they are GemFire classes.
+   */
+  public static class TestSerializer extends ReflectionBasedAutoSerializer {
+    static final String EXCLUDED_FIELD = "excludedField";
+
+    private final boolean transform;
+
+    int transformed;
+
+    TestSerializer(boolean transform) {
+      this.transform = transform;
+    }
+
+    @Override
+    public boolean isClassAutoSerialized(Class<?> clazz) {
+      return clazz == AllFields.class;
+    }
+
+    @Override
+    public boolean isFieldIncluded(Field f, Class<?> clazz) {
+      return super.isFieldIncluded(f, clazz)
+          && !f.getName().equals(EXCLUDED_FIELD);
+    }
+
+    @Override
+    public boolean transformFieldValue(Field f, Class<?> clazz) {
+      return this.transform && f.getName().equals("stringField");
+    }
+
+    @Override
+    public Object writeTransform(Field f, Class<?> clazz, Object originalValue) {
+      this.transformed++;
+      return originalValue;
+    }
+  }
+
+  public static class Base {
+    private long baseLong;
+    private String baseString;
+    private int[] baseInts;
+  }
+
+  /**
+   * A class with a field of each pdx field type
+   */
+  public static class AllFields extends Base {
+    private boolean booleanField;
+    private byte byteField;
+    private char charField;
+    private short shortField;
+    private int intField;
+    private long longField;
+    private float floatField;
+    private double doubleField;
+    private Date dateField;
+    private String stringField;
+    private Object objectField;
+    private boolean[] booleanArrayField;
+    private char[] charArrayField;
+    private byte[] byteArrayField;
+    private short[] shortArrayField;
+    private int[] intArrayField;
+    private long[] longArrayField;
+    private float[] floatArrayField;
+    private double[] doubleArrayField;
+    private String[] stringArrayField;
+    private Object[] objectArrayField;
+    private byte[][] arrayOfByteArraysField;
+    private transient int transientField;
+    private int excludedField;
+
+    public AllFields() {
+    }
+
+    static AllFields create() {
+      AllFields result = new AllFields();
+      Base base = result;
+      base.baseLong = Long.MIN_VALUE;
+      base.baseString = "base";
+      base.baseInts = new int[] { 1, 2, 3 };
+      result.booleanField = true;
+      result.byteField = (byte) -3;
+      result.charField = '\u00e9';
+      result.shortField = Short.MAX_VALUE;
+      result.intField = -42;
+      result.longField = Long.MAX_VALUE;
+      result.floatField = 1.5f;
+      result.doubleField = -2.25d;
+      result.dateField = new Date(1234567890L);
+      result.stringField = "string";
+      List<Object> list = new ArrayList<Object>();
+      list.add("element");
+      list.add(7);
+      result.objectField = list;
+      result.booleanArrayField = new boolean[] { true, false };
+      result.charArrayField = new char[] { 'a', 'b' };
+      result.byteArrayField = new byte[] { 1, 2, 3 };
+      result.shortArrayField = new short[] { 4, 5 };
+      result.intArrayField = new int[] { 6, 7 };
+      result.longArrayField = new long[] { 8, 9 };
+      result.floatArrayField = new float[] { 10.5f };
+      result.doubleArrayField = new double[] { 11.5d };
+      result.stringArrayField = new String[] { "a", null, "c" };
+      result.objectArrayField = new Object[] { "x", 12, null };
+      result.arrayOfByteArraysField = new byte[][] { { 13 }, null, {} };
+      result.transientField = 14;
+      result.excludedField = 15;
+      return result;
+    }
+  }
+}
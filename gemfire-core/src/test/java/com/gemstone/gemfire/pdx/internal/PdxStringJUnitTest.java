@@ -0,0 +1,56 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.pdx.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.DataSerializer;
+import com.gemstone.junit.UnitTest;
+
+@Category(UnitTest.class)
+public class PdxStringJUnitTest {
+
+  private static byte[] serialize(int padding, String s) throws Exception {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bos);
+    for (int i = 0; i < padding; i++) {
+      out.writeByte(0);
+    }
+    DataSerializer.writeString(s, out);
+    out.close();
+    return bos.toByteArray();
+  }
+
+  private static void assertSameOrder(String serialized, String other)
+      throws Exception {
+    byte[] bytes = serialize(3, serialized);
+    PdxString pdxString = new PdxString(other);
+    int expected = new PdxString(bytes, 3).compareTo(pdxString);
+    assertEquals(serialized + " vs " + other, Integer.signum(expected),
+        Integer.signum(pdxString.compareSerialized(bytes, 3)));
+  }
+
+  @Test
+  public void testCompareSerialized() throws Exception {
+    assertSameOrder("abc", "abc");
+    assertSameOrder("abc", "abd");
+    assertSameOrder("abd", "abc");
+    assertSameOrder("ab", "abc");
+    assertSameOrder("abc", "ab");
+    assertSameOrder("", "a");
+    // different encodings of the two strings
+    assertSameOrder("abc", "ab\u00e9");
+    assertSameOrder("ab\u00e9", "abc");
+  }
+}
@@ -0,0 +1,151 @@
+/*=========================================================================
+ * Copyright (c) 2010-2014 Pivotal Software, Inc. All Rights Reserved.
+ * This product is protected by U.S. and international copyright
+ * and intellectual property laws. Pivotal products are covered by
+ * one or more patents listed at http://www.pivotal.io/patents.
+ *=========================================================================
+ */
+package com.gemstone.gemfire.pdx.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.distributed.internal.DistributionConfig;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.pdx.FieldType;
+import com.gemstone.junit.IntegrationTest;
+
+/**
+ * Tests the ids given to types and enums defined with
+ * gemfire.pdx.hashedTypeIds. Registrations sharing one registry region stand
+ * in for the members of a distributed system.
+ */
+@Category(IntegrationTest.class)
+public class PeerTypeRegistrationJUnitTest {
+
+  private static final String HASHED_IDS = "gemfire.pdx.hashedTypeIds";
+
+  private GemFireCacheImpl cache;
+  private PeerTypeRegistration registration;
+
+  @Before
+  public void setUp() {
+    System.setProperty(HASHED_IDS, "true");
+    Properties props = new Properties();
+    props.setProperty(DistributionConfig.MCAST_PORT_NAME, "0");
+    props.setProperty(DistributionConfig.LOCATORS_NAME, "");
+    this.cache = (GemFireCacheImpl) new CacheFactory(props).create();
+    this.registration = new PeerTypeRegistration(this.cache);
+    this.registration.initialize();
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(HASHED_IDS);
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testMembersGetTheSameTypeId() {
+    PeerTypeRegistration other = new PeerTypeRegistration(this.registration);
+    int id = this.registration.defineType(createType("com.example.Order", "id", "amount"));
+    assertEquals(hashedId(createType("com.example.Order", "id", "amount")), id);
+    assertEquals(id, other.defineType(createType("com.example.Order", "id", "amount")));
+    assertEquals(createType("com.example.Order", "id", "amount"), other.getType(id));
+  }
+
+  @Test
+  public void testMembersDefiningATypeConcurrentlyGetTheSameId() throws Exception {
+    final int members = 8;
+    final CountDownLatch start = new CountDownLatch(1);
+    final int[] ids = new int[members];
+    final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[members];
+    for (int m = 0; m < members; m++) {
+      final int member = m;
+      final PeerTypeRegistration memberRegistration = new PeerTypeRegistration(this.registration);
+      threads[m] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            start.await();
+            ids[member] = memberRegistration.defineType(createType("com.example.Trade", "id", "price"));
+          } catch (Throwable e) {
+            error.compareAndSet(null, e);
+          }
+        }
+      });
+      threads[m].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(error.get());
+    int expected = hashedId(createType("com.example.Trade", "id", "price"));
+    for (int id : ids) {
+      assertEquals(expected, id);
+    }
+  }
+
+  @Test
+  public void testCollisionMovesTypeToTheNextId() {
+    PdxType type = createType("com.example.Order", "id");
+    int hashedId = hashedId(type);
+    PdxType other = createType("com.example.Other", "name");
+    other.setTypeId(hashedId);
+    this.registration.addRemoteType(hashedId, other);
+
+    int low = hashedId & 0xFFFFFF;
+    int nextId = (hashedId & 0xFF000000) | (low == 0xFFFFFE ? 1 : low + 1);
+    assertEquals(nextId, new PeerTypeRegistration(this.registration).defineType(type));
+    assertEquals(other, this.registration.getType(hashedId));
+    assertEquals(type, this.registration.getType(nextId));
+  }
+
+  @Test
+  public void testExistingTypeKeepsItsId() {
+    PdxType existing = createType("com.example.Order", "id", "amount");
+    existing.setTypeId(1);
+    this.registration.addRemoteType(1, existing);
+
+    PeerTypeRegistration other = new PeerTypeRegistration(this.registration);
+    assertEquals(1, other.defineType(createType("com.example.Order", "id", "amount")));
+    // a type that is not in the registry yet still gets its hashed id
+    PdxType newType = createType("com.example.Order", "id");
+    assertEquals(hashedId(newType), other.defineType(newType));
+  }
+
+  @Test
+  public void testMembersGetTheSameEnumId() {
+    PeerTypeRegistration other = new PeerTypeRegistration(this.registration);
+    int id = this.registration.defineEnum(new EnumInfo("com.example.Color", "RED", 0));
+    assertEquals(id, other.defineEnum(new EnumInfo("com.example.Color", "RED", 0)));
+    int blue = other.defineEnum(new EnumInfo("com.example.Color", "BLUE", 1));
+    assertEquals(blue, this.registration.defineEnum(new EnumInfo("com.example.Color", "BLUE", 1)));
+    assertEquals(new EnumInfo("com.example.Color", "BLUE", 1), this.registration.getEnumById(blue));
+  }
+
+  private int hashedId(PdxType type) {
+    return this.registration.toHashedId(PeerTypeRegistration.contentHash(type));
+  }
+
+  private static PdxType createType(String className, String... fieldNames) {
+    PdxType type = new PdxType(className, true);
+    for (int i = 0; i < fieldNames.length; i++) {
+      type.addField(new PdxField(fieldNames[i], i, 0, FieldType.INT, false));
+    }
+    return type;
+  }
+}